@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.accounts;
+
+import com.btmura.android.reddit.accounts.CredentialCache.Credentials;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CredentialCacheTest extends TestCase {
+
+  private static final String ACCOUNT = "account";
+  private static final long HOUR_MS = 60 * 60 * 1000;
+
+  private final AtomicInteger loadCount = new AtomicInteger();
+  private final AtomicInteger refreshCount = new AtomicInteger();
+  private final List<Runnable> background = new ArrayList<Runnable>();
+
+  private Credentials stored;
+  private CredentialCache cache;
+  private CountDownLatch finishRefresh;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    stored = new Credentials("access", "refresh",
+        System.currentTimeMillis() + HOUR_MS);
+    finishRefresh = new CountDownLatch(0);
+    cache = new CredentialCache(new CredentialCache.Loader() {
+      @Override
+      public Credentials load(String accountName) {
+        loadCount.incrementAndGet();
+        return stored;
+      }
+    }, new Executor() {
+      @Override
+      public void execute(Runnable command) {
+        background.add(command);
+      }
+    });
+  }
+
+  public void testPeek_loadsOnce() throws Exception {
+    for (int i = 0; i < 5; i++) {
+      assertEquals("access", cache.peek(ACCOUNT).accessToken);
+    }
+    assertEquals(1, loadCount.get());
+  }
+
+  public void testPeek_missingCredentials() throws Exception {
+    stored = null;
+    assertNull(cache.peek(ACCOUNT));
+    assertNull(cache.get(ACCOUNT, new CountingRefresher()));
+  }
+
+  public void testInvalidate() throws Exception {
+    cache.peek(ACCOUNT);
+    cache.invalidate(ACCOUNT);
+    cache.peek(ACCOUNT);
+    assertEquals(2, loadCount.get());
+  }
+
+  public void testGet_notExpiring() throws Exception {
+    Credentials c = cache.get(ACCOUNT, new CountingRefresher());
+    assertEquals("access", c.accessToken);
+    assertEquals(0, refreshCount.get());
+    assertTrue(background.isEmpty());
+  }
+
+  public void testGet_expired() throws Exception {
+    stored = new Credentials("access", "refresh",
+        System.currentTimeMillis() - 1);
+    Credentials c = cache.get(ACCOUNT, new CountingRefresher());
+    assertEquals("access1", c.accessToken);
+    assertEquals("refresh", c.refreshToken);
+    assertEquals(1, refreshCount.get());
+
+    // Later requests use the refreshed token without loading it again.
+    c = cache.get(ACCOUNT, new CountingRefresher());
+    assertEquals("access1", c.accessToken);
+    assertEquals(1, loadCount.get());
+  }
+
+  public void testGet_refreshesAheadOfExpiration() throws Exception {
+    stored = new Credentials("access", "refresh", System.currentTimeMillis()
+        + CredentialCache.REFRESH_AHEAD_MS / 2);
+    CountingRefresher refresher = new CountingRefresher();
+    assertEquals("access", cache.get(ACCOUNT, refresher).accessToken);
+    assertEquals("access", cache.get(ACCOUNT, refresher).accessToken);
+    assertEquals(0, refreshCount.get());
+    assertEquals(1, background.size());
+
+    background.get(0).run();
+    assertEquals(1, refreshCount.get());
+    assertEquals("access1", cache.get(ACCOUNT, refresher).accessToken);
+  }
+
+  public void testRefresh_staleTokenAlreadyReplaced() throws Exception {
+    CountingRefresher refresher = new CountingRefresher();
+    assertEquals("access1",
+        cache.refresh(ACCOUNT, "access", refresher).accessToken);
+    assertEquals("access1",
+        cache.refresh(ACCOUNT, "access", refresher).accessToken);
+    assertEquals(1, refreshCount.get());
+  }
+
+  public void testRefresh_concurrentUnauthorized() throws Exception {
+    finishRefresh = new CountDownLatch(1);
+    ExecutorService executor = Executors.newCachedThreadPool();
+    try {
+      List<Future<Credentials>> results = new ArrayList<Future<Credentials>>();
+      for (int i = 0; i < 4; i++) {
+        results.add(executor.submit(new Callable<Credentials>() {
+          @Override
+          public Credentials call() throws Exception {
+            return cache.refresh(ACCOUNT, "access", new CountingRefresher());
+          }
+        }));
+      }
+      Thread.sleep(100);
+      finishRefresh.countDown();
+      for (Future<Credentials> result : results) {
+        assertEquals("access1", result.get(5, TimeUnit.SECONDS).accessToken);
+      }
+      assertEquals(1, refreshCount.get());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  class CountingRefresher implements CredentialCache.Refresher {
+
+    @Override
+    public Credentials refresh(String accountName, String refreshToken) {
+      try {
+        assertTrue(finishRefresh.await(5, TimeUnit.SECONDS));
+      } catch (InterruptedException e) {
+        throw new AssertionError(e);
+      }
+      int count = refreshCount.incrementAndGet();
+      return new Credentials("access" + count, refreshToken,
+          System.currentTimeMillis() + HOUR_MS);
+    }
+  }
+}
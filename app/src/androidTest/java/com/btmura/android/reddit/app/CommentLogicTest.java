@@ -15,15 +15,28 @@
  */
 package com.btmura.android.reddit.app;
 
+import android.database.MatrixCursor;
+import android.util.Log;
+
 import com.btmura.android.reddit.app.CommentLogic.CommentList;
+import com.btmura.android.reddit.app.CommentLogic.CursorCommentList;
+import com.btmura.android.reddit.app.CommentLogic.SubtreeIndex;
+import com.btmura.android.reddit.database.Comments;
 
 import junit.framework.TestCase;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 
 public class CommentLogicTest extends TestCase {
 
+  private static final String TAG = "CommentLogicTest";
+
+  private static final int BENCHMARK_COMMENTS = 1000;
+  private static final int BENCHMARK_WARMUPS = 5;
+  private static final int BENCHMARK_RUNS = 20;
+
   public void testGetInsertPosition() {
     // mc0
     // mc1
@@ -42,10 +55,12 @@ public class CommentLogicTest extends TestCase {
     assertEquals(4, CommentLogic.getInsertPosition(mcl, 2));
     assertEquals(4, CommentLogic.getInsertPosition(mcl, 3));
 
-    assertEquals(5, CommentLogic.getInsertSequence(mcl, 0));
-    assertEquals(5, CommentLogic.getInsertSequence(mcl, 1));
-    assertEquals(4, CommentLogic.getInsertSequence(mcl, 2));
-    assertEquals(4, CommentLogic.getInsertSequence(mcl, 3));
+    assertEquals(1028, CommentLogic.getInsertSequence(mcl, 0));
+    assertEquals(1028, CommentLogic.getInsertSequence(mcl, 1));
+    assertEquals(CommentLogic.NO_SEQUENCE,
+        CommentLogic.getInsertSequence(mcl, 2));
+    assertEquals(CommentLogic.NO_SEQUENCE,
+        CommentLogic.getInsertSequence(mcl, 3));
 
     assertEquals(0, CommentLogic.getInsertNesting(mcl, 0));
     assertEquals(1, CommentLogic.getInsertNesting(mcl, 1));
@@ -53,6 +68,207 @@ public class CommentLogicTest extends TestCase {
     assertEquals(3, CommentLogic.getInsertNesting(mcl, 3));
   }
 
+  public void testGetInsertSequence_gapped() {
+    // mc0
+    // mc1
+    // +--mc2
+    // |  +--mc3
+    // +--mc4
+    MockComment mc0 = MockComment.of(0, 0, 0);
+    MockComment mc1 = MockComment.of(1, 1024, 0);
+    MockComment mc2 = MockComment.of(2, 2048, 1);
+    MockComment mc3 = MockComment.of(3, 3072, 2);
+    MockComment mc4 = MockComment.of(4, 4096, 1);
+    MockCommentList mcl = MockCommentList.of(mc0, mc1, mc2, mc3, mc4);
+
+    assertEquals(5120, CommentLogic.getInsertSequence(mcl, 0));
+    assertEquals(5120, CommentLogic.getInsertSequence(mcl, 1));
+    assertEquals(3584, CommentLogic.getInsertSequence(mcl, 2));
+    assertEquals(3584, CommentLogic.getInsertSequence(mcl, 3));
+
+    // Replies keep halving the gap until it needs renumbering.
+    mc4.sequence = 3074;
+    assertEquals(3073, CommentLogic.getInsertSequence(mcl, 3));
+    mc4.sequence = 3073;
+    assertEquals(CommentLogic.NO_SEQUENCE,
+        CommentLogic.getInsertSequence(mcl, 3));
+  }
+
+  public void testGetSubtreeEnd() {
+    // mc0
+    // mc1
+    // +--mc2
+    // |  +--mc3
+    // +--mc4
+    // mc5
+    MockComment mc0 = MockComment.of(0, 0, 0);
+    MockComment mc1 = MockComment.of(1, 1024, 0);
+    MockComment mc2 = MockComment.of(2, 2048, 1);
+    MockComment mc3 = MockComment.of(3, 3072, 2);
+    MockComment mc4 = MockComment.of(4, 4096, 1);
+    MockComment mc5 = MockComment.of(5, 5120, 0);
+    MockCommentList mcl = MockCommentList.of(mc0, mc1, mc2, mc3, mc4, mc5);
+
+    assertEquals(5, CommentLogic.getSubtreeEnd(mcl, 1));
+    assertEquals(4, CommentLogic.getSubtreeEnd(mcl, 2));
+    assertEquals(4, CommentLogic.getSubtreeEnd(mcl, 3));
+    assertEquals(6, CommentLogic.getSubtreeEnd(mcl, 5));
+
+    SubtreeIndex index = new SubtreeIndex();
+    index.build(mcl);
+    assertEquals(5, CommentLogic.getSubtreeEndId(mcl, index, 1));
+    assertEquals(4, CommentLogic.getSubtreeEndId(mcl, index, 2));
+    assertEquals(CommentLogic.NO_ID,
+        CommentLogic.getSubtreeEndId(mcl, index, 5));
+
+    assertTrue(Arrays.equals(new long[] {2, 3, 4},
+        CommentLogic.getChildren(mcl, 1)));
+    assertNull(CommentLogic.getChildren(mcl, 3));
+  }
+
+  public void testSubtreeIndex() {
+    // mc0
+    // mc1
+    // +--mc2
+    // |  +--mc3
+    // +--mc4
+    // mc5
+    MockCommentList mcl = MockCommentList.of(
+        MockComment.of(0, 0, 0),
+        MockComment.of(1, 1024, 0),
+        MockComment.of(2, 2048, 1),
+        MockComment.of(3, 3072, 2),
+        MockComment.of(4, 4096, 1),
+        MockComment.of(5, 5120, 0));
+    SubtreeIndex index = new SubtreeIndex();
+    index.build(mcl);
+    assertIndex(mcl, index);
+
+    // Reply to mc2 after mc3 and then remove it again.
+    int p = index.getInsertPosition(2);
+    int nesting = CommentLogic.getInsertNesting(mcl, 2);
+    mcl.comments.add(p, MockComment.of(6, -1, nesting));
+    index.insert(p, nesting);
+    assertEquals(4, p);
+    assertIndex(mcl, index);
+
+    mcl.comments.remove(p);
+    index.remove(p);
+    assertIndex(mcl, index);
+
+    // Reply to the header and then to that reply.
+    for (int i = 0; i < 2; i++) {
+      int position = i == 0 ? 0 : mcl.getCommentCount() - 1;
+      p = index.getInsertPosition(position);
+      nesting = CommentLogic.getInsertNesting(mcl, position);
+      mcl.comments.add(p, MockComment.of(7 + i, -1, nesting));
+      index.insert(p, nesting);
+      assertIndex(mcl, index);
+    }
+  }
+
+  /** Asserts the index matches the scanning queries over the list. */
+  private static void assertIndex(MockCommentList mcl, SubtreeIndex index) {
+    int count = mcl.getCommentCount();
+    assertEquals(count, index.getCount());
+    for (int i = 0; i < count; i++) {
+      assertEquals(CommentLogic.getSubtreeEnd(mcl, i),
+          index.getSubtreeEnd(i));
+      assertEquals(CommentLogic.getInsertPosition(mcl, i),
+          index.getInsertPosition(i));
+      assertEquals(CommentLogic.hasChildren(mcl, i), index.hasChildren(i));
+    }
+  }
+
+  public void testSubtreeIndex_benchmark() {
+    benchmarkSubtreeIndex("deep", newCursorCommentList(BENCHMARK_COMMENTS,
+        BENCHMARK_COMMENTS));
+    benchmarkSubtreeIndex("wide", newCursorCommentList(BENCHMARK_COMMENTS,
+        1));
+    benchmarkSubtreeIndex("mixed", newCursorCommentList(BENCHMARK_COMMENTS,
+        8));
+  }
+
+  private static void benchmarkSubtreeIndex(String label, CommentList list) {
+    int count = list.getCommentCount();
+    SubtreeIndex index = new SubtreeIndex();
+    for (int i = 0; i < BENCHMARK_WARMUPS; i++) {
+      scanAll(list);
+      indexAll(list, index);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_RUNS; i++) {
+      scanAll(list);
+    }
+    long scanUs = (System.nanoTime() - start) / 1000 / BENCHMARK_RUNS;
+
+    start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_RUNS; i++) {
+      indexAll(list, index);
+    }
+    long indexUs = (System.nanoTime() - start) / 1000 / BENCHMARK_RUNS;
+
+    Log.i(TAG, "subtrees " + label + " comments: " + count
+        + " us/scan: " + scanUs + " us/index: " + indexUs);
+  }
+
+  /** Asks for the insert position and children of every comment. */
+  private static int scanAll(CommentList list) {
+    int sum = 0;
+    for (int i = 0, count = list.getCommentCount(); i < count; i++) {
+      sum += CommentLogic.getInsertPosition(list, i);
+      sum += CommentLogic.hasChildren(list, i) ? 1 : 0;
+    }
+    return sum;
+  }
+
+  /** Builds the index and asks it the same questions as scanAll. */
+  private static int indexAll(CommentList list, SubtreeIndex index) {
+    index.build(list);
+    int sum = 0;
+    for (int i = 0, count = index.getCount(); i < count; i++) {
+      sum += index.getInsertPosition(i);
+      sum += index.hasChildren(i) ? 1 : 0;
+    }
+    return sum;
+  }
+
+  /**
+   * Returns a header and top level comments whose replies each reply to the
+   * one before until they reach the depth, like a long chain when the depth
+   * is the count or a flat list of top level comments when it is 1.
+   */
+  private static CommentList newCursorCommentList(int count, int depth) {
+    MatrixCursor c = new MatrixCursor(new String[] {
+        Comments._ID,
+        Comments.COLUMN_NESTING,
+        Comments.COLUMN_SEQUENCE,
+    }, count);
+    for (int i = 0; i < count; i++) {
+      int nesting = i == 0 ? 0 : (i - 1) % depth;
+      c.addRow(new Object[] {i, nesting, CommentLogic.getSpacedSequence(i)});
+    }
+    return new CursorCommentList(c, 0, 1, 2);
+  }
+
+  public void testGetSpacedSequence() {
+    assertEquals(0, CommentLogic.getSpacedSequence(0));
+    assertEquals(2048, CommentLogic.getSpacedSequence(2));
+  }
+
+  public void testSortReplies() {
+    int[] depths = new int[8];
+    int[] ranks = CommentLogic.sortReplies(
+        Arrays.asList("t1_a", "t1_b", "t1_c", "t1_d", "t1_e", "t1_f",
+            "t1_g", "t1_h"),
+        Arrays.asList("t1_x", "t1_x", "t1_a", "t1_c", "t1_b", "t1_a",
+            "t1_h", "t1_g"),
+        depths);
+    assertTrue(Arrays.equals(new int[] {0, 4, 1, 2, 5, 3, 6, 7}, ranks));
+    assertTrue(Arrays.equals(new int[] {0, 0, 1, 2, 1, 1, 0, 1}, depths));
+  }
+
   static class MockComment {
     long id;
     int nesting;
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.btmura.android.reddit.util.Array;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Tests that queries made outside of a transaction like in
+ * {@link com.btmura.android.reddit.provider.ThingProvider} don't wait for
+ * session inserts when using write-ahead logging.
+ */
+public class DbHelperContentionTest extends AndroidTestCase {
+
+  private static final String TAG = "DbHelperContentionTest";
+
+  private static final int READERS = 4;
+  private static final int PAGES = 20;
+  private static final int PAGE_SIZE = 25;
+
+  private static final String[] PROJECTION = {
+      Things._ID,
+      Things.COLUMN_TITLE,
+  };
+
+  private DbHelper helper;
+  private ExecutorService executor;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    mContext.deleteDatabase(DbHelper.DATABASE_TEST);
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    executor.shutdownNow();
+    if (helper != null) {
+      helper.close();
+    }
+    mContext.deleteDatabase(DbHelper.DATABASE_TEST);
+  }
+
+  public void testQuery_duringWriteTransaction() throws Exception {
+    helper = createHelper(true);
+    assertTrue(helper.isWriteAheadLoggingEnabled());
+
+    final CountDownLatch inTransaction = new CountDownLatch(1);
+    final CountDownLatch finishTransaction = new CountDownLatch(1);
+    Future<?> writer = executor.submit(new Callable<Void>() {
+      @Override
+      public Void call() throws Exception {
+        SQLiteDatabase db = helper.getWritableDatabase();
+        db.beginTransaction();
+        try {
+          insertPage(db, 1);
+          inTransaction.countDown();
+          finishTransaction.await();
+          db.setTransactionSuccessful();
+        } finally {
+          db.endTransaction();
+        }
+        return null;
+      }
+    });
+
+    assertTrue(inTransaction.await(5, TimeUnit.SECONDS));
+    Future<Integer> reader = executor.submit(new Callable<Integer>() {
+      @Override
+      public Integer call() {
+        return queryPage(helper.getReadableDatabase(), 1);
+      }
+    });
+
+    // The reader sees the last commit without waiting for the writer.
+    try {
+      assertEquals(0, reader.get(5, TimeUnit.SECONDS).intValue());
+    } finally {
+      finishTransaction.countDown();
+    }
+    writer.get(5, TimeUnit.SECONDS);
+    assertEquals(PAGE_SIZE, queryPage(helper.getReadableDatabase(), 1));
+  }
+
+  public void testContention_benchmark() throws Exception {
+    helper = createHelper(false);
+    assertFalse(helper.isWriteAheadLoggingEnabled());
+    long[] withoutWal = runReadersWithWriter();
+    helper.close();
+    mContext.deleteDatabase(DbHelper.DATABASE_TEST);
+
+    helper = createHelper(true);
+    assertTrue(helper.isWriteAheadLoggingEnabled());
+    long[] withWal = runReadersWithWriter();
+
+    Log.d(TAG, "without wal: reads: " + withoutWal[0]
+        + " max read ms: " + withoutWal[1]);
+    Log.d(TAG, "with wal: reads: " + withWal[0]
+        + " max read ms: " + withWal[1]);
+  }
+
+  /**
+   * Runs readers that query a page over and over while a writer inserts pages
+   * in separate transactions.
+   *
+   * @return number of reads and the longest read in milliseconds
+   */
+  private long[] runReadersWithWriter() throws Exception {
+    final SQLiteDatabase db = helper.getWritableDatabase();
+    insertPage(db, 0);
+
+    final AtomicBoolean writing = new AtomicBoolean(true);
+    Future<?>[] readers = new Future<?>[READERS];
+    for (int i = 0; i < READERS; i++) {
+      readers[i] = executor.submit(new Callable<long[]>() {
+        @Override
+        public long[] call() {
+          long reads = 0;
+          long maxMs = 0;
+          while (writing.get()) {
+            long start = SystemClock.elapsedRealtime();
+            assertEquals(PAGE_SIZE, queryPage(db, 0));
+            maxMs = Math.max(maxMs, SystemClock.elapsedRealtime() - start);
+            reads++;
+          }
+          return new long[] {reads, maxMs};
+        }
+      });
+    }
+
+    try {
+      for (int page = 1; page <= PAGES; page++) {
+        db.beginTransaction();
+        try {
+          insertPage(db, page);
+          db.setTransactionSuccessful();
+        } finally {
+          db.endTransaction();
+        }
+      }
+    } finally {
+      writing.set(false);
+    }
+
+    long[] result = new long[2];
+    for (Future<?> reader : readers) {
+      long[] r = (long[]) reader.get(30, TimeUnit.SECONDS);
+      result[0] += r[0];
+      result[1] = Math.max(result[1], r[1]);
+    }
+    return result;
+  }
+
+  private DbHelper createHelper(boolean writeAheadLogging) {
+    return new DbHelper(mContext, DbHelper.DATABASE_TEST,
+        DbHelper.LATEST_VERSION, writeAheadLogging);
+  }
+
+  private static void insertPage(SQLiteDatabase db, long sessionId) {
+    ContentValues v = new ContentValues(4);
+    for (int i = 0; i < PAGE_SIZE; i++) {
+      v.put(Things.COLUMN_ACCOUNT, "account");
+      v.put(Things.COLUMN_SESSION_ID, sessionId);
+      v.put(Things.COLUMN_THING_ID, "t3_" + sessionId + "_" + i);
+      v.put(Things.COLUMN_TITLE, "title " + i);
+      db.insert(Things.TABLE_NAME, null, v);
+    }
+  }
+
+  private static int queryPage(SQLiteDatabase db, long sessionId) {
+    Cursor c = db.query(Things.TABLE_NAME, PROJECTION,
+        Things.SELECT_NOT_HIDDEN_BY_SESSION_ID, Array.of(sessionId),
+        null, null, null);
+    try {
+      return c.getCount();
+    } finally {
+      c.close();
+    }
+  }
+}
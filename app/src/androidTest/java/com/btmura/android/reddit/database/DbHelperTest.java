@@ -82,6 +82,15 @@ public class DbHelperTest extends AndroidTestCase {
       AccountActions.TABLE_NAME,
   };
 
+  private static final String[] INDEXES_V5 = {
+      Things.INDEX_SESSION_ID_AND_HIDDEN,
+      Things.INDEX_ACCOUNT_AND_THING_ID,
+      Comments.INDEX_SESSION_ID_AND_SEQUENCE,
+      Comments.INDEX_ACCOUNT_AND_THING_ID,
+      Messages.INDEX_SESSION_ID,
+      Messages.INDEX_ACCOUNT_AND_THING_ID,
+  };
+
   @Override
   protected void setUp() throws Exception {
     super.setUp();
@@ -118,6 +127,13 @@ public class DbHelperTest extends AndroidTestCase {
     helper.close();
   }
 
+  public void testOnCreate_v5() {
+    DbHelper helper = createHelperVersion(5);
+    assertTablesExist(helper.getReadableDatabase(), TABLES_V4);
+    assertIndexesExist(helper.getReadableDatabase(), INDEXES_V5);
+    helper.close();
+  }
+
   public void testOnUpgrade() {
     DbHelper helper = createHelperVersion(1);
     assertTablesExist(helper.getReadableDatabase(), TABLES_V1);
@@ -134,6 +150,38 @@ public class DbHelperTest extends AndroidTestCase {
     helper = createHelperVersion(4);
     assertTablesExist(helper.getReadableDatabase(), TABLES_V4);
     helper.close();
+
+    helper = createHelperVersion(5);
+    assertTablesExist(helper.getReadableDatabase(), TABLES_V4);
+    assertIndexesExist(helper.getReadableDatabase(), INDEXES_V5);
+    helper.close();
+  }
+
+  public void testQueryPlans() {
+    DbHelper helper = createHelperVersion(5);
+    SQLiteDatabase db = helper.getReadableDatabase();
+
+    assertQueryPlan(db, Things.INDEX_SESSION_ID_AND_HIDDEN,
+        "SELECT * FROM " + Things.TABLE_NAME
+            + " WHERE " + Things.SELECT_NOT_HIDDEN_BY_SESSION_ID);
+    assertQueryPlan(db, Things.INDEX_ACCOUNT_AND_THING_ID,
+        "SELECT * FROM " + Things.TABLE_NAME
+            + " WHERE " + Things.SELECT_BY_ACCOUNT_AND_THING_ID);
+    assertQueryPlan(db, Comments.INDEX_SESSION_ID_AND_SEQUENCE,
+        "SELECT * FROM " + Comments.TABLE_NAME
+            + " WHERE " + Comments.SELECT_VISIBLE_BY_SESSION_ID
+            + " ORDER BY " + Comments.SORT_BY_SEQUENCE_AND_ID);
+    assertQueryPlan(db, Comments.INDEX_ACCOUNT_AND_THING_ID,
+        "SELECT * FROM " + Comments.TABLE_NAME
+            + " WHERE " + Comments.SELECT_BY_ACCOUNT_AND_THING_ID);
+    assertQueryPlan(db, Messages.INDEX_SESSION_ID,
+        "SELECT * FROM " + Messages.TABLE_NAME
+            + " WHERE " + Messages.SELECT_BY_SESSION_ID);
+    assertQueryPlan(db, Messages.INDEX_ACCOUNT_AND_THING_ID,
+        "SELECT * FROM " + Messages.TABLE_NAME
+            + " WHERE " + Messages.SELECT_BY_ACCOUNT_AND_THING_ID);
+
+    helper.close();
   }
 
   public void testSubreddits_defaults() {
@@ -229,4 +277,40 @@ public class DbHelperTest extends AndroidTestCase {
     assertNotNull("Missing table: " + table,
         db.query(table, null, null, null, null, null, null));
   }
+
+  private void assertIndexesExist(SQLiteDatabase db, String[] indexes) {
+    for (String index : indexes) {
+      Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master"
+          + " WHERE type='index' AND name=?", Array.of(index));
+      try {
+        assertTrue("Missing index: " + index, cursor.moveToNext());
+      } finally {
+        cursor.close();
+      }
+    }
+  }
+
+  /** Asserts the query searches the index and doesn't sort separately. */
+  private void assertQueryPlan(SQLiteDatabase db, String index, String sql) {
+    // Bind dummy arguments since the plan doesn't depend on their values.
+    String[] args = new String[sql.length() - sql.replace("?", "").length()];
+    for (int i = 0; i < args.length; i++) {
+      args[i] = "1";
+    }
+
+    StringBuilder plan = new StringBuilder();
+    Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+    try {
+      int detail = cursor.getColumnIndexOrThrow("detail");
+      while (cursor.moveToNext()) {
+        plan.append(cursor.getString(detail)).append('\n');
+      }
+    } finally {
+      cursor.close();
+    }
+
+    String detail = plan.toString();
+    assertTrue(sql + "\n" + detail, detail.contains("INDEX " + index));
+    assertFalse(sql + "\n" + detail, detail.contains("TEMP B-TREE"));
+  }
 }
@@ -0,0 +1,236 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.net;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+
+public class HttpCacheTest extends TestCase {
+
+  private static final String ACCOUNT = "account";
+  private static final String BODY = "{\"kind\": \"t5\", \"data\": {}}";
+  private static final String ETAG = "\"v1\"";
+  private static final String MUST_REVALIDATE =
+      "private, max-age=0, must-revalidate";
+
+  private LocalHttpServer server;
+  private HttpTransport transport;
+  private File dir;
+  private HttpCache cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    server = new LocalHttpServer();
+    server.setResponse(200, BODY);
+    transport = new HttpTransport(5000, 5000);
+    dir = File.createTempFile("HttpCacheTest", "");
+    assertTrue(dir.delete());
+    cache = new HttpCache(dir, 1024 * 1024);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    server.close();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  public void testGet_revalidate() throws Exception {
+    server.setCacheHeaders(ETAG, MUST_REVALIDATE);
+    assertEquals(BODY, get(ACCOUNT, "/r/android/about"));
+    assertNull(server.getIfNoneMatch());
+
+    // The server says nothing changed so the body comes from the cache.
+    assertEquals(BODY, get(ACCOUNT, "/r/android/about"));
+    assertEquals(ETAG, server.getIfNoneMatch());
+    assertEquals(2, server.getRequestCount());
+    assertCounts(0, 1, 1);
+  }
+
+  public void testGet_changed() throws Exception {
+    server.setCacheHeaders(ETAG, MUST_REVALIDATE);
+    get(ACCOUNT, "/r/android/about");
+
+    server.setCacheHeaders("\"v2\"", MUST_REVALIDATE);
+    server.setResponse(200, "{}");
+    assertEquals("{}", get(ACCOUNT, "/r/android/about"));
+    assertEquals("{}", get(ACCOUNT, "/r/android/about"));
+    assertCounts(0, 2, 1);
+  }
+
+  public void testGet_fresh() throws Exception {
+    server.setCacheHeaders(ETAG, "private, max-age=60");
+    for (int i = 0; i < 3; i++) {
+      assertEquals(BODY, get(ACCOUNT, "/r/android/about"));
+    }
+    assertEquals(1, server.getRequestCount());
+    assertCounts(2, 1, 0);
+  }
+
+  public void testGet_noStore() throws Exception {
+    server.setCacheHeaders(ETAG, "no-store");
+    get(ACCOUNT, "/r/android/about");
+    assertNull(cache.get(ACCOUNT, server.getUrl("/r/android/about")));
+  }
+
+  public void testGet_noValidators() throws Exception {
+    server.setCacheHeaders(null, MUST_REVALIDATE);
+    get(ACCOUNT, "/r/android/about");
+    assertNull(cache.get(ACCOUNT, server.getUrl("/r/android/about")));
+  }
+
+  public void testGet_keyedByAccount() throws Exception {
+    server.setCacheHeaders(ETAG, "private, max-age=60");
+    get(ACCOUNT, "/r/android/about");
+    assertNotNull(cache.get(ACCOUNT, server.getUrl("/r/android/about")));
+    assertNull(cache.get("other", server.getUrl("/r/android/about")));
+    assertNull(cache.get(ACCOUNT, server.getUrl("/r/pics/about")));
+  }
+
+  public void testGet_partialRead() throws Exception {
+    server.setCacheHeaders(ETAG, MUST_REVALIDATE);
+    InputStream in = open(ACCOUNT, "/r/android/about");
+    assertEquals('{', in.read());
+    in.close();
+
+    // Closing read the rest of the body into the cache.
+    assertEquals(BODY, get(ACCOUNT, "/r/android/about"));
+    assertCounts(0, 1, 1);
+  }
+
+  public void testGet_bodyRemoved() throws Exception {
+    server.setCacheHeaders(ETAG, "private, max-age=60");
+    get(ACCOUNT, "/r/android/about");
+    HttpCache.Entry entry = cache.get(ACCOUNT,
+        server.getUrl("/r/android/about"));
+    deleteBodies();
+
+    // The body is downloaded again instead of failing to open.
+    assertNull(cache.replay(entry));
+    assertEquals(BODY, get(ACCOUNT, "/r/android/about"));
+    assertEquals(2, server.getRequestCount());
+    assertCounts(0, 2, 0);
+  }
+
+  public void testGet_bodyRemovedWhileRevalidating() throws Exception {
+    server.setCacheHeaders(ETAG, MUST_REVALIDATE);
+    get(ACCOUNT, "/r/android/about");
+    String url = server.getUrl("/r/android/about");
+    HttpCache.Entry entry = cache.get(ACCOUNT, url);
+    deleteBodies();
+
+    HttpURLConnection conn = transport.open(url);
+    HttpCache.addValidators(conn, entry);
+    assertEquals(HttpURLConnection.HTTP_NOT_MODIFIED, conn.getResponseCode());
+    transport.getInputStream(conn).close();
+    transport.release(conn);
+    assertNull(cache.revalidate(url, entry, conn));
+    assertNull(cache.get(ACCOUNT, url));
+  }
+
+  public void testStore_trimsLeastRecentlyUsed() throws Exception {
+    cache = new HttpCache(dir, BODY.length() * 8);
+    server.setCacheHeaders(ETAG, "private, max-age=60");
+    for (int i = 1; i <= 8; i++) {
+      get(ACCOUNT, "/r/" + i + "/about");
+    }
+    get(ACCOUNT, "/r/1/about");
+    get(ACCOUNT, "/r/9/about");
+
+    assertNotNull(cache.get(ACCOUNT, server.getUrl("/r/1/about")));
+    assertNull(cache.get(ACCOUNT, server.getUrl("/r/2/about")));
+    for (int i = 3; i <= 9; i++) {
+      assertNotNull(cache.get(ACCOUNT, server.getUrl("/r/" + i + "/about")));
+    }
+  }
+
+  public void testStore_tooLarge() throws Exception {
+    cache = new HttpCache(dir, BODY.length() * 4);
+    server.setCacheHeaders(ETAG, "private, max-age=60");
+    assertEquals(BODY, get(ACCOUNT, "/r/android/about"));
+    assertNull(cache.get(ACCOUNT, server.getUrl("/r/android/about")));
+  }
+
+  private void deleteBodies() {
+    for (File file : dir.listFiles()) {
+      if (file.getName().endsWith(".1")) {
+        assertTrue(file.delete());
+      }
+    }
+  }
+
+  private void assertCounts(int hits, int misses, int revalidates) {
+    assertEquals(hits, cache.getHitCount());
+    assertEquals(misses, cache.getMissCount());
+    assertEquals(revalidates, cache.getRevalidateCount());
+  }
+
+  /** Does what {@link RedditApi#get} does without needing an account. */
+  private InputStream open(String accountName, String path)
+      throws IOException {
+    String url = server.getUrl(path);
+    HttpCache.Entry entry = cache.get(accountName, url);
+    if (entry != null && entry.isFresh()) {
+      InputStream in = cache.replay(entry);
+      if (in != null) {
+        return in;
+      }
+      entry = null;
+    }
+
+    HttpURLConnection conn = transport.open(url);
+    if (entry != null) {
+      HttpCache.addValidators(conn, entry);
+    }
+    if (entry != null
+        && conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+      transport.getInputStream(conn).close();
+      transport.release(conn);
+      InputStream in = cache.revalidate(url, entry, conn);
+      if (in != null) {
+        return in;
+      }
+      conn = transport.open(url);
+    }
+    return cache.store(accountName, url, conn, transport.getInputStream(conn));
+  }
+
+  private String get(String accountName, String path) throws IOException {
+    InputStream in = open(accountName, path);
+    try {
+      StringBuilder sb = new StringBuilder();
+      byte[] buffer = new byte[1024];
+      for (int read; (read = in.read(buffer)) != -1; ) {
+        sb.append(new String(buffer, 0, read, "UTF-8"));
+      }
+      return sb.toString();
+    } finally {
+      in.close();
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.net;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+public class HttpTransportTest extends TestCase {
+
+  private static final int REQUESTS = 5;
+
+  private LocalHttpServer server;
+  private HttpTransport transport;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    server = new LocalHttpServer();
+    server.setResponse(200, "{\"kind\": \"Listing\", \"data\": {}}");
+    transport = new HttpTransport(5000, 5000);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    server.close();
+  }
+
+  public void testGet_reusesConnection() throws Exception {
+    for (int i = 0; i < REQUESTS; i++) {
+      assertEquals("{\"kind\": \"Listing\", \"data\": {}}", get("/r/all"));
+    }
+    assertEquals(REQUESTS, server.getRequestCount());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testGet_disconnectHandshakesEveryRequest() throws Exception {
+    // Parsers stop at the end of the JSON, which may be short of the end of
+    // the response, and disconnect() closes the socket when data is unread.
+    server.setResponse(200, newLargeBody());
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpURLConnection conn = transport.open(server.getUrl("/r/all"));
+      InputStream in = conn.getInputStream();
+      assertEquals('d', in.read());
+      conn.disconnect();
+      in.close();
+    }
+    assertEquals(REQUESTS, server.getRequestCount());
+    assertEquals(REQUESTS, server.getConnectionCount());
+  }
+
+  public void testGet_partialRead() throws Exception {
+    server.setResponse(200, newLargeBody());
+
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpURLConnection conn = transport.open(server.getUrl("/r/all"));
+      InputStream in = transport.getInputStream(conn);
+      assertEquals('d', in.read());
+      in.close();
+      transport.release(conn);
+    }
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testGet_errorResponse() throws Exception {
+    server.setResponse(404, "{\"error\": 404}");
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpURLConnection conn = transport.open(server.getUrl("/r/missing"));
+      try {
+        transport.getInputStream(conn);
+        fail();
+      } catch (FileNotFoundException e) {
+        // Expected for 404 responses.
+      } finally {
+        transport.release(conn);
+      }
+    }
+    assertEquals(REQUESTS, server.getRequestCount());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testPost_reusesConnection() throws Exception {
+    byte[] data = "id=t3_abc&dir=1".getBytes("UTF-8");
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpURLConnection conn = transport.open(server.getUrl("/api/vote"));
+      conn.setDoOutput(true);
+      conn.setFixedLengthStreamingMode(data.length);
+      OutputStream out = conn.getOutputStream();
+      out.write(data);
+      out.close();
+      readFully(transport.getInputStream(conn));
+      transport.release(conn);
+    }
+    assertEquals(REQUESTS, server.getRequestCount());
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testGet_acceptEncoding() throws Exception {
+    get("/r/all");
+    assertEquals("gzip, deflate", server.getAcceptEncoding());
+  }
+
+  public void testGet_gzip() throws Exception {
+    String body = newLargeBody();
+    byte[] gzipped = gzip(body);
+    server.setResponse(200, gzipped, "gzip");
+
+    ByteCounter counter = new ByteCounter();
+    transport.setResponseListener(counter);
+    for (int i = 0; i < REQUESTS; i++) {
+      assertEquals(body, get("/comments/abc.json"));
+      assertEquals("gzip", counter.encoding);
+      assertEquals(gzipped.length, counter.encodedBytes);
+      assertEquals(body.length(), counter.decodedBytes);
+    }
+    assertTrue(counter.encodedBytes < counter.decodedBytes);
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testGet_deflate() throws Exception {
+    String body = newLargeBody();
+    byte[] zlib = deflate(body, false);
+    server.setResponse(200, zlib, "deflate");
+
+    ByteCounter counter = new ByteCounter();
+    transport.setResponseListener(counter);
+    assertEquals(body, get("/comments/abc.json"));
+    assertEquals("deflate", counter.encoding);
+    assertEquals(zlib.length, counter.encodedBytes);
+    assertEquals(body.length(), counter.decodedBytes);
+  }
+
+  public void testGet_rawDeflate() throws Exception {
+    String body = newLargeBody();
+    server.setResponse(200, deflate(body, true), "deflate");
+    assertEquals(body, get("/comments/abc.json"));
+  }
+
+  public void testGet_gzipPartialRead() throws Exception {
+    server.setResponse(200, gzip(newLargeBody()), "gzip");
+    for (int i = 0; i < REQUESTS; i++) {
+      HttpURLConnection conn = transport.open(server.getUrl("/r/all"));
+      InputStream in = transport.getInputStream(conn);
+      assertEquals('d', in.read());
+      in.close();
+      transport.release(conn);
+    }
+    assertEquals(1, server.getConnectionCount());
+  }
+
+  public void testGet_emptyGzip() throws Exception {
+    server.setResponse(200, new byte[0], "gzip");
+    ByteCounter counter = new ByteCounter();
+    transport.setResponseListener(counter);
+    assertEquals("", get("/r/random"));
+    assertNull(counter.encoding);
+    assertEquals(0, counter.decodedBytes);
+  }
+
+  public void testGet_identity() throws Exception {
+    ByteCounter counter = new ByteCounter();
+    transport.setResponseListener(counter);
+    String body = get("/r/all");
+    assertNull(counter.encoding);
+    assertEquals(body.length(), counter.encodedBytes);
+    assertEquals(body.length(), counter.decodedBytes);
+  }
+
+  public void testReadTimeout() throws Exception {
+    server.setResponseDelayMs(2000);
+    transport = new HttpTransport(5000, 100);
+    HttpURLConnection conn = transport.open(server.getUrl("/r/all"));
+    try {
+      transport.getInputStream(conn);
+      fail();
+    } catch (SocketTimeoutException e) {
+      // Expected since the server is slower than the timeout.
+    } finally {
+      transport.release(conn);
+    }
+  }
+
+  /** Returns a body too large to be skipped when closed early. */
+  private static String newLargeBody() {
+    StringBuilder body = new StringBuilder();
+    for (int i = 0; i < 4096; i++) {
+      body.append("data");
+    }
+    return body.toString();
+  }
+
+  private static byte[] gzip(String body) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(body.getBytes("UTF-8"));
+    gzip.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] deflate(String body, boolean raw) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+    DeflaterOutputStream deflate = new DeflaterOutputStream(out, deflater);
+    deflate.write(body.getBytes("UTF-8"));
+    deflate.close();
+    deflater.end();
+    return out.toByteArray();
+  }
+
+  private String get(String path) throws IOException {
+    HttpURLConnection conn = transport.open(server.getUrl(path));
+    try {
+      return readFully(transport.getInputStream(conn));
+    } finally {
+      transport.release(conn);
+    }
+  }
+
+  private static String readFully(InputStream in) throws IOException {
+    try {
+      StringBuilder sb = new StringBuilder();
+      byte[] buffer = new byte[1024];
+      for (int read; (read = in.read(buffer)) != -1; ) {
+        sb.append(new String(buffer, 0, read, "UTF-8"));
+      }
+      return sb.toString();
+    } finally {
+      in.close();
+    }
+  }
+
+  static class ByteCounter implements HttpTransport.ResponseListener {
+
+    String encoding;
+    long encodedBytes;
+    long decodedBytes;
+
+    @Override
+    public void onResponseClosed(
+        URL url,
+        String contentEncoding,
+        long encodedBytes,
+        long decodedBytes) {
+      this.encoding = contentEncoding;
+      this.encodedBytes = encodedBytes;
+      this.decodedBytes = decodedBytes;
+    }
+  }
+}
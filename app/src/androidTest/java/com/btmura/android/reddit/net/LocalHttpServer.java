@@ -0,0 +1,228 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.net;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link LocalHttpServer} is a keep-alive HTTP/1.1 server on localhost that
+ * stands in for reddit in tests. It counts accepted connections, which each
+ * cost a handshake, separately from requests.
+ */
+class LocalHttpServer implements Closeable {
+
+  private final ServerSocket serverSocket;
+  private final List<Socket> sockets = new ArrayList<Socket>();
+  private final AtomicInteger connectionCount = new AtomicInteger();
+  private final AtomicInteger requestCount = new AtomicInteger();
+
+  private volatile int responseCode = 200;
+  private volatile byte[] responseBody = new byte[0];
+  private volatile String contentEncoding;
+  private volatile long responseDelayMs;
+  private volatile String acceptEncoding;
+  private volatile String etag;
+  private volatile String cacheControl;
+  private volatile String ifNoneMatch;
+
+  LocalHttpServer() throws IOException {
+    serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+    Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        acceptConnections();
+      }
+    }, "LocalHttpServer");
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  String getUrl(String path) {
+    return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+  }
+
+  void setResponse(int code, String body) throws IOException {
+    setResponse(code, body.getBytes("UTF-8"), null);
+  }
+
+  /** Sets a response with a body that is already encoded. */
+  void setResponse(int code, byte[] body, String encoding) {
+    responseCode = code;
+    responseBody = body;
+    contentEncoding = encoding;
+  }
+
+  /**
+   * Sets the ETag and Cache-Control headers of the response. Requests with a
+   * matching If-None-Match header get a 304 response without a body.
+   */
+  void setCacheHeaders(String etag, String cacheControl) {
+    this.etag = etag;
+    this.cacheControl = cacheControl;
+  }
+
+  void setResponseDelayMs(long delayMs) {
+    responseDelayMs = delayMs;
+  }
+
+  /** Returns the number of accepted connections. */
+  int getConnectionCount() {
+    return connectionCount.get();
+  }
+
+  /** Returns the Accept-Encoding header of the last request. */
+  String getAcceptEncoding() {
+    return acceptEncoding;
+  }
+
+  /** Returns the If-None-Match header of the last request. */
+  String getIfNoneMatch() {
+    return ifNoneMatch;
+  }
+
+  /** Returns the number of responses written. */
+  int getRequestCount() {
+    return requestCount.get();
+  }
+
+  @Override
+  public void close() throws IOException {
+    serverSocket.close();
+    synchronized (sockets) {
+      for (Socket socket : sockets) {
+        socket.close();
+      }
+    }
+  }
+
+  private void acceptConnections() {
+    try {
+      while (true) {
+        final Socket socket = serverSocket.accept();
+        connectionCount.incrementAndGet();
+        synchronized (sockets) {
+          sockets.add(socket);
+        }
+        Thread thread = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            serve(socket);
+          }
+        }, "LocalHttpServer-" + connectionCount.get());
+        thread.setDaemon(true);
+        thread.start();
+      }
+    } catch (IOException e) {
+      // Server socket closed.
+    }
+  }
+
+  private void serve(Socket socket) {
+    try {
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      OutputStream out = socket.getOutputStream();
+      while (readRequest(in)) {
+        if (responseDelayMs > 0) {
+          Thread.sleep(responseDelayMs);
+        }
+        byte[] body = responseBody;
+        String encoding = contentEncoding;
+        int code = responseCode;
+        if (etag != null && etag.equals(ifNoneMatch)) {
+          code = 304;
+          body = new byte[0];
+        }
+        String headers = "HTTP/1.1 " + code + " Status\r\n"
+            + "Content-Type: application/json; charset=UTF-8\r\n"
+            + (encoding != null
+            ? "Content-Encoding: " + encoding + "\r\n"
+            : "")
+            + (etag != null ? "ETag: " + etag + "\r\n" : "")
+            + (cacheControl != null
+            ? "Cache-Control: " + cacheControl + "\r\n"
+            : "")
+            + "Content-Length: " + body.length + "\r\n"
+            + "\r\n";
+        out.write(headers.getBytes("US-ASCII"));
+        out.write(body);
+        out.flush();
+        requestCount.incrementAndGet();
+      }
+    } catch (IOException e) {
+      // Client closed the connection.
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      try {
+        socket.close();
+      } catch (IOException e) {
+        // Already closed.
+      }
+    }
+  }
+
+  /** Reads a request and its body returning false at end of stream. */
+  private boolean readRequest(InputStream in) throws IOException {
+    String line = readLine(in);
+    if (line == null) {
+      return false;
+    }
+    int contentLength = 0;
+    ifNoneMatch = null;
+    while ((line = readLine(in)) != null && !line.isEmpty()) {
+      String header = line.toLowerCase(Locale.US);
+      if (header.startsWith("content-length:")) {
+        contentLength = Integer.parseInt(header.substring(15).trim());
+      } else if (header.startsWith("accept-encoding:")) {
+        acceptEncoding = line.substring(16).trim();
+      } else if (header.startsWith("if-none-match:")) {
+        ifNoneMatch = line.substring(14).trim();
+      }
+    }
+    for (int i = 0; i < contentLength; i++) {
+      if (in.read() == -1) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String readLine(InputStream in) throws IOException {
+    ByteArrayOutputStream line = new ByteArrayOutputStream();
+    for (int b; (b = in.read()) != '\n'; ) {
+      if (b == -1) {
+        return null;
+      }
+      if (b != '\r') {
+        line.write(b);
+      }
+    }
+    return line.toString("US-ASCII");
+  }
+}
@@ -69,6 +69,19 @@ public class UrlsTest extends TestCase {
 
   // TODO(btmura): add test for comment URLs
 
+  public void testMoreChildren() {
+    assertCharSequenceEquals(
+        "https://www.reddit.com/api/morechildren.json?api_type=json"
+            + "&link_id=t3_linkId&children=abc%2Cdef",
+        Urls.moreChildren(NO_ACCOUNT, "t3_linkId", "abc,def", NO_FILTER));
+
+    assertCharSequenceEquals(
+        "https://oauth.reddit.com/api/morechildren?api_type=json"
+            + "&link_id=t3_linkId&children=abc&sort=new",
+        Urls.moreChildren(ACCOUNT, "t3_linkId", "abc",
+            Filter.COMMENTS_NEW));
+  }
+
   public void testProfile() {
     assertCharSequenceEquals(
         "https://www.reddit.com/user/btmura/overview.json",
@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.provider;
+
+import junit.framework.TestCase;
+
+public class RowBatchTest extends TestCase {
+
+  private static final RowBatch.Columns COLUMNS = new RowBatch.Columns(
+      "things",
+      new String[] {"score", "kind"},
+      new long[] {0, RowBatch.NULL},
+      new String[] {"thing_id"});
+
+  public void testAdd() {
+    RowBatch rows = new RowBatch(COLUMNS, 1);
+    assertTrue(rows.isEmpty());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i, rows.add());
+      rows.setLong(i, 0, i);
+      rows.setString(i, 0, "t" + i);
+    }
+    assertEquals(5, rows.size());
+    for (int i = 0; i < 5; i++) {
+      assertEquals(i, rows.getLong(i, 0));
+      assertEquals(RowBatch.NULL, rows.getLong(i, 1));
+      assertEquals("t" + i, rows.getString(i, 0));
+    }
+  }
+
+  public void testInsert() {
+    RowBatch rows = newRows("a", "c");
+    rows.insert(1);
+    assertEquals(3, rows.size());
+    assertNull(rows.getString(1, 0));
+    assertEquals(RowBatch.NULL, rows.getLong(1, 1));
+    rows.setString(1, 0, "b");
+    assertRows(rows, "a", "b", "c");
+  }
+
+  public void testRemove() {
+    RowBatch rows = newRows("a", "b", "c");
+    rows.remove(1);
+    assertRows(rows, "a", "c");
+    rows.remove(1);
+    assertRows(rows, "a");
+  }
+
+  public void testIndexOf() {
+    RowBatch rows = newRows("a", "b", "a");
+    assertEquals(0, rows.indexOf(0, "a"));
+    assertEquals(1, rows.indexOf(0, "b"));
+    assertEquals(-1, rows.indexOf(0, "c"));
+  }
+
+  public void testColumns() {
+    assertEquals(0, COLUMNS.longIndex("score"));
+    assertEquals(1, COLUMNS.longIndex("kind"));
+    assertEquals(-1, COLUMNS.longIndex("thing_id"));
+    assertEquals(0, COLUMNS.stringIndex("thing_id"));
+  }
+
+  private static RowBatch newRows(String... thingIds) {
+    RowBatch rows = new RowBatch(COLUMNS, 2);
+    for (String thingId : thingIds) {
+      rows.setString(rows.add(), 0, thingId);
+    }
+    return rows;
+  }
+
+  private static void assertRows(RowBatch rows, String... thingIds) {
+    assertEquals(thingIds.length, rows.size());
+    for (int i = 0; i < thingIds.length; i++) {
+      assertEquals(thingIds[i], rows.getString(i, 0));
+    }
+  }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.provider;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+public class ValueQueueTest extends TestCase {
+
+  public void testTake() throws Exception {
+    ValueQueue queue = new ValueQueue(2);
+    RowBatch v1 = newBatch();
+    RowBatch v2 = newBatch();
+    queue.put(v1);
+    queue.put(v2);
+
+    assertSame(v1, queue.take());
+    queue.close();
+    assertSame(v2, queue.take());
+    assertNull(queue.take());
+  }
+
+  public void testTake_fail() throws Exception {
+    ValueQueue queue = new ValueQueue(1);
+    IOException error = new IOException();
+    queue.fail(error);
+    try {
+      queue.take();
+      fail();
+    } catch (IOException e) {
+      assertSame(error, e);
+    }
+  }
+
+  public void testTake_failError() throws Exception {
+    ValueQueue queue = new ValueQueue(1);
+    StackOverflowError error = new StackOverflowError();
+    queue.fail(error);
+    try {
+      queue.take();
+      fail();
+    } catch (StackOverflowError e) {
+      assertSame(error, e);
+    }
+  }
+
+  public void testPut_cancel() throws Exception {
+    ValueQueue queue = new ValueQueue(1);
+    queue.put(newBatch());
+    queue.cancel();
+    try {
+      queue.put(newBatch());
+      fail();
+    } catch (InterruptedIOException e) {
+      // Expected since nobody will take the value.
+    }
+  }
+
+  private static RowBatch newBatch() {
+    return new RowBatch(new RowBatch.Columns("things",
+        new String[0], new long[0], new String[0]), 1);
+  }
+}
@@ -45,6 +45,12 @@ public class VoteMergerTest extends AndroidTestCase {
   private static final int INDEX_UPS = 3;
   private static final int INDEX_DOWNS = 4;
 
+  private static final RowBatch.Columns COLUMNS = new RowBatch.Columns(
+      Things.TABLE_NAME,
+      new String[] {COLUMN_SCORE, COLUMN_LIKES, COLUMN_UPS, COLUMN_DOWNS},
+      new long[] {0, 0, 0, 0},
+      new String[] {Things.COLUMN_THING_ID});
+
   private static final String SELECTION = Things._ID + "=?";
 
   private SQLiteDatabase db;
@@ -65,26 +71,26 @@ public class VoteMergerTest extends AndroidTestCase {
     mContext.deleteDatabase(DbHelper.DATABASE_TEST);
   }
 
-  public void testUpdateContentValues() {
-    ContentValues thingValues = newThingValues();
+  public void testUpdateRow() {
+    RowBatch rows = newThingRows();
 
-    VoteMerger.updateContentValues(thingValues, ACTION_VOTE_UP);
-    assertContentValues(thingValues, 1, ACTION_VOTE_UP, 1, 0);
+    updateRow(rows, ACTION_VOTE_UP);
+    assertRow(rows, 1, ACTION_VOTE_UP, 1, 0);
 
-    VoteMerger.updateContentValues(thingValues, ACTION_VOTE_UP);
-    assertContentValues(thingValues, 2, ACTION_VOTE_UP, 2, 0);
+    updateRow(rows, ACTION_VOTE_UP);
+    assertRow(rows, 2, ACTION_VOTE_UP, 2, 0);
 
-    VoteMerger.updateContentValues(thingValues, ACTION_VOTE_DOWN);
-    assertContentValues(thingValues, 1, ACTION_VOTE_DOWN, 2, 1);
+    updateRow(rows, ACTION_VOTE_DOWN);
+    assertRow(rows, 1, ACTION_VOTE_DOWN, 2, 1);
 
-    VoteMerger.updateContentValues(thingValues, ACTION_VOTE_NEUTRAL);
-    assertContentValues(thingValues, 2, ACTION_VOTE_NEUTRAL, 2, 0);
+    updateRow(rows, ACTION_VOTE_NEUTRAL);
+    assertRow(rows, 2, ACTION_VOTE_NEUTRAL, 2, 0);
 
-    VoteMerger.updateContentValues(thingValues, ACTION_VOTE_UP);
-    assertContentValues(thingValues, 3, ACTION_VOTE_UP, 3, 0);
+    updateRow(rows, ACTION_VOTE_UP);
+    assertRow(rows, 3, ACTION_VOTE_UP, 3, 0);
 
-    VoteMerger.updateContentValues(thingValues, ACTION_VOTE_NEUTRAL);
-    assertContentValues(thingValues, 2, ACTION_VOTE_NEUTRAL, 2, 0);
+    updateRow(rows, ACTION_VOTE_NEUTRAL);
+    assertRow(rows, 2, ACTION_VOTE_NEUTRAL, 2, 0);
   }
 
   public void testUpdateDatabase() {
@@ -113,6 +119,13 @@ public class VoteMergerTest extends AndroidTestCase {
     assertTable(thingId, 2, VoteActions.ACTION_VOTE_NEUTRAL, 2, 0);
   }
 
+  private RowBatch newThingRows() {
+    RowBatch rows = new RowBatch(COLUMNS, 1);
+    rows.add();
+    rows.setString(0, 0, THING_ID);
+    return rows;
+  }
+
   private ContentValues newThingValues() {
     ContentValues v = new ContentValues();
     v.put(Things.COLUMN_ACCOUNT, ACCOUNT_NAME);
@@ -120,6 +133,10 @@ public class VoteMergerTest extends AndroidTestCase {
     return v;
   }
 
+  private static void updateRow(RowBatch rows, int action) {
+    VoteMerger.updateRow(rows, 0, action, 0, 1, 2, 3);
+  }
+
   private ContentValues newCommentValues() {
     ContentValues v = new ContentValues();
     v.put(Comments.COLUMN_ACCOUNT, ACCOUNT_NAME);
@@ -127,21 +144,16 @@ public class VoteMergerTest extends AndroidTestCase {
     return v;
   }
 
-  private void assertContentValues(
-      ContentValues v,
+  private void assertRow(
+      RowBatch rows,
       int score,
       int likes,
       int ups,
       int downs) {
-    assertValue(score, v, COLUMN_SCORE);
-    assertValue(likes, v, COLUMN_LIKES);
-    assertValue(ups, v, COLUMN_UPS);
-    assertValue(downs, v, COLUMN_DOWNS);
-  }
-
-  private void assertValue(int expected, ContentValues v, String key) {
-    assertEquals(expected,
-        v.containsKey(key) ? v.getAsInteger(key).intValue() : 0);
+    assertEquals(score, rows.getLong(0, 0));
+    assertEquals(likes, rows.getLong(0, 1));
+    assertEquals(ups, rows.getLong(0, 2));
+    assertEquals(downs, rows.getLong(0, 3));
   }
 
   private long insertThing() {
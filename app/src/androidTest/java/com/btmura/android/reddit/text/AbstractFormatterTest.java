@@ -18,6 +18,7 @@ package com.btmura.android.reddit.text;
 
 import android.test.AndroidTestCase;
 import android.text.SpannableStringBuilder;
+import android.text.Spanned;
 import android.text.style.BulletSpan;
 import android.text.style.ImageSpan;
 import android.text.style.StrikethroughSpan;
@@ -25,9 +26,7 @@ import android.text.style.StyleSpan;
 import android.text.style.TypefaceSpan;
 
 import com.btmura.android.reddit.text.MarkdownFormatter.Escaped;
-import com.btmura.android.reddit.text.MarkdownFormatter.RawLinks;
-import com.btmura.android.reddit.text.MarkdownFormatter.RelativeLinks;
-import com.btmura.android.reddit.text.MarkdownFormatter.Styles;
+import com.btmura.android.reddit.text.style.MarkdownTableSpan;
 import com.btmura.android.reddit.text.style.SubredditSpan;
 import com.btmura.android.reddit.text.style.URLSpan;
 import com.btmura.android.reddit.text.style.UserSpan;
@@ -42,66 +41,18 @@ abstract class AbstractFormatterTest extends AndroidTestCase {
   @Override
   protected void setUp() throws Exception {
     super.setUp();
-    matcher = RawLinks.PATTERN.matcher("");
+    matcher = MarkdownLexer.URL_PATTERN.matcher("");
   }
 
   void assertEscapedFormat(String input, String expected) {
-    String actual = Escaped.format(matcher, input).toString();
+    String actual = Escaped.format(new StringBuilder(), input).toString();
     assertEquals("Expected: " + expected + " Actual: " + actual, expected,
         actual);
   }
 
-  CharSequence assertStyleFormat(int style, String input, String expected) {
-    CharSequence cs = Styles.format(matcher, input, style);
-    String actual = cs.toString();
-    assertEquals("Expected: " + expected + " Actual: " + actual, expected,
-        actual);
-    return cs;
-  }
-
-  CharSequence assertBulletFormat(String input, String expected) {
-    CharSequence cs = MarkdownFormatter.Bullets.format(matcher, input);
-    String actual = cs.toString();
-    assertEquals("Expected: " + expected + " Actual: " + actual, expected,
-        actual);
-    return cs;
-  }
-
-  CharSequence assertCodeBlockFormat(String input, String expected) {
-    CharSequence cs = MarkdownFormatter.CodeBlock.format(matcher, input);
-    String actual = cs.toString();
-    assertEquals("Expected: " + expected + " Actual: " + actual, expected,
-        actual);
-    return cs;
-  }
-
-  CharSequence assertRawLinksFormat(String input, String expected) {
-    CharSequence cs = MarkdownFormatter.RawLinks.format(matcher, input);
-    String actual = cs.toString();
-    assertEquals("Expected: " + expected + " Actual: " + actual, expected,
-        actual);
-    return cs;
-  }
-
-  CharSequence assertNamedLinksFormat(String input, String expected) {
-    CharSequence cs = MarkdownFormatter.NamedLinks.format(input,
-        new StringBuilder());
-    String actual = cs.toString();
-    assertEquals("Expected: " + expected + " Actual: " + actual, expected,
-        actual);
-    return cs;
-  }
-
-  CharSequence assertSubredditFormat(String input, String expected) {
-    CharSequence cs = RelativeLinks.format(matcher, input);
-    String actual = cs.toString();
-    assertEquals("Expected: " + expected + " Actual: " + actual, expected,
-        actual);
-    return cs;
-  }
-
-  CharSequence assertHeadingFormat(String input, String expected) {
-    CharSequence cs = MarkdownFormatter.Heading.format(matcher, input);
+  /** Formats the input with all the spans and checks the plain text. */
+  CharSequence assertFormat(String input, String expected) {
+    CharSequence cs = new MarkdownLexer().format(getContext(), input);
     String actual = cs.toString();
     assertEquals("Expected: " + expected + " Actual: " + actual, expected,
         actual);
@@ -113,9 +64,10 @@ abstract class AbstractFormatterTest extends AndroidTestCase {
       int start,
       int end,
       Class<T> spanClass) {
-    SpannableStringBuilder b = (SpannableStringBuilder) cs;
-    T[] spans = b.getSpans(start, end, spanClass);
-    assertTrue(Array.isEmpty(spans));
+    if (cs instanceof Spanned) {
+      T[] spans = ((Spanned) cs).getSpans(start, end, spanClass);
+      assertTrue(Array.isEmpty(spans));
+    }
   }
 
   static void assertStyleSpan(
@@ -185,6 +137,12 @@ abstract class AbstractFormatterTest extends AndroidTestCase {
         expectedUrl, spans[0].getURL());
   }
 
+  static void assertTableSpan(CharSequence cs, int start, int end) {
+    SpannableStringBuilder b = (SpannableStringBuilder) cs;
+    MarkdownTableSpan[] spans = b.getSpans(start, end, MarkdownTableSpan.class);
+    assertEquals(1, spans.length);
+  }
+
   static void assertImageSpan(CharSequence cs, int start, int end) {
     SpannableStringBuilder b = (SpannableStringBuilder) cs;
     ImageSpan[] spans = b.getSpans(start, end, ImageSpan.class);
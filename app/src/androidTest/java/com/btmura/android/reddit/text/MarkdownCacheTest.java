@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.text;
+
+import android.content.ComponentCallbacks2;
+
+import junit.framework.TestCase;
+
+public class MarkdownCacheTest extends TestCase {
+
+  private static final int THEME = 1;
+
+  private final MarkdownFormatter formatter = new MarkdownFormatter();
+  private final MarkdownCache cache = new MarkdownCache(1000);
+
+  public void testFormatSpans_hit() {
+    CharSequence first = format("t1_a", "some **bold** text", THEME);
+    assertEquals("some bold text", first.toString());
+    assertSame(first, format("t1_a", "some **bold** text", THEME));
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+  }
+
+  public void testFormatSpans_missOnEditOrTheme() {
+    format("t1_a", "body", THEME);
+    format("t1_a", "edited body", THEME);
+    format("t1_a", "body", THEME + 1);
+    format("t1_b", "body", THEME);
+    assertEquals(0, cache.getHitCount());
+    assertEquals(4, cache.getMissCount());
+  }
+
+  public void testOnTrimMemory() {
+    for (int i = 0; i < 10; i++) {
+      format("t1_" + i, newBody(100), THEME);
+    }
+    assertEquals(1000, cache.size());
+
+    cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+    assertEquals(500, cache.size());
+    assertEquals(0, cache.getHitCount());
+    format("t1_9", newBody(100), THEME);
+    assertEquals(1, cache.getHitCount());
+
+    cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    assertEquals(0, cache.size());
+  }
+
+  private CharSequence format(String thingId, String body, int theme) {
+    return cache.formatSpans(null, thingId, body, theme, formatter);
+  }
+
+  private static String newBody(int length) {
+    StringBuilder sb = new StringBuilder(length);
+    for (int i = 0; i < length; i++) {
+      sb.append('a');
+    }
+    return sb.toString();
+  }
+}
@@ -16,8 +16,16 @@
 
 package com.btmura.android.reddit.text;
 
+import android.util.Log;
+
 public class MarkdownFormatterTest extends AbstractFormatterTest {
 
+  private static final String TAG = "MarkdownFormatterTest";
+
+  private static final int BENCHMARK_PARAGRAPHS = 40;
+  private static final int BENCHMARK_WARMUPS = 5;
+  private static final int BENCHMARK_RUNS = 20;
+
   protected MarkdownFormatter formatter;
 
   @Override
@@ -38,6 +46,43 @@ public class MarkdownFormatterTest extends AbstractFormatterTest {
         "**bullet1\n[hello](http://hello.com)\n### HEADING");
   }
 
+  /** Measures formatting time of a long self post and a short comment. */
+  public void testFormatSpans_benchmark() {
+    benchmarkFormatSpans("selfText", newBody(BENCHMARK_PARAGRAPHS));
+    benchmarkFormatSpans("comment", newBody(2));
+  }
+
+  private void benchmarkFormatSpans(String label, String body) {
+    for (int i = 0; i < BENCHMARK_WARMUPS; i++) {
+      formatter.formatSpans(mContext, body);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_RUNS; i++) {
+      formatter.formatSpans(mContext, body);
+    }
+    long elapsedUs = (System.nanoTime() - start) / 1000 / BENCHMARK_RUNS;
+    Log.i(TAG, "formatSpans " + label + " chars: " + body.length()
+        + " us/format: " + elapsedUs);
+  }
+
+  /** Returns a body with the markdown that self posts and comments use. */
+  private static String newBody(int paragraphs) {
+    StringBuilder sb = new StringBuilder(paragraphs * 400);
+    for (int i = 0; i < paragraphs; i++) {
+      sb.append("### Part ").append(i).append("\n\n")
+          .append("Some **bold** and *italic* text with ~~struck~~ words, ")
+          .append("a [named link](http://www.example.com/").append(i)
+          .append(") and a raw one at www.reddit.com/r/androiddev too. ")
+          .append("Ask /u/btmura or see /r/android for more.\n\n")
+          .append("* first bullet with ***emphasis***\n")
+          .append("* second bullet\n\n")
+          .append("    int x = ").append(i).append(";\n")
+          .append("    return x * 2;\n\n");
+    }
+    return sb.toString();
+  }
+
   private void assertFormatAll(String input, String expected) {
     CharSequence formatted = formatter.formatAll(mContext, input);
     String actual = formatted.toString();
@@ -19,7 +19,7 @@ package com.btmura.android.reddit.text;
 public class MarkdownFormatter_BulletsTest extends AbstractFormatterTest {
 
   public void testFormat_bullet() {
-    CharSequence cs = assertBulletFormat("* bullet1\n+ bullet2\n- bullet3",
+    CharSequence cs = assertFormat("* bullet1\n+ bullet2\n- bullet3",
         "bullet1\nbullet2\nbullet3");
     assertBulletSpan(cs, 0, 7);
     assertBulletSpan(cs, 8, 15);
@@ -27,6 +27,6 @@ public class MarkdownFormatter_BulletsTest extends AbstractFormatterTest {
   }
 
   public void testFormat_bulletBadFormat() {
-    assertBulletFormat("1* bullet1\n2* bullet2", "1* bullet1\n2* bullet2");
+    assertFormat("1* bullet1\n2* bullet2", "1* bullet1\n2* bullet2");
   }
 }
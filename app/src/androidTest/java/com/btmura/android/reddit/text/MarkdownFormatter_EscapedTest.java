@@ -16,6 +16,8 @@
 
 package com.btmura.android.reddit.text;
 
+import com.btmura.android.reddit.text.MarkdownFormatter.Escaped;
+
 public class MarkdownFormatter_EscapedTest extends AbstractFormatterTest {
 
   public void testFormat_noEscapes() {
@@ -66,4 +68,19 @@ public class MarkdownFormatter_EscapedTest extends AbstractFormatterTest {
   public void testFormat_escapedEscapes() {
     assertEscapedFormat("&amp;gt;", ">");
   }
+
+  public void testFormat_doubleEscapedAmp() {
+    assertEscapedFormat("&amp;amp; &amp;amp;amp;", "& &amp;");
+  }
+
+  public void testFormat_notEntities() {
+    assertEscapedFormat("a & b &amp; &foo; &gt", "a & b & &foo; &gt");
+    assertEscapedFormat("&#; &#x; &#xZZ; &#99999999999;",
+        "&#; &#x; &#xZZ; &#99999999999;");
+  }
+
+  public void testFormat_noEntitiesReturnsText() {
+    String text = "a & b";
+    assertSame(text, Escaped.format(new StringBuilder(), text));
+  }
 }
@@ -19,9 +19,9 @@ package com.btmura.android.reddit.text;
 public class MarkdownFormatter_HeadingTest extends AbstractFormatterTest {
 
   public void testFormat() {
-    assertHeadingFormat("#Hello", "Hello");
-    assertHeadingFormat("##Hello", "Hello");
-    assertHeadingFormat("#Hello#", "Hello");
-    assertHeadingFormat("##Hello##", "Hello");
+    assertFormat("#Hello", "Hello");
+    assertFormat("##Hello", "Hello");
+    assertFormat("#Hello#", "Hello");
+    assertFormat("##Hello##", "Hello");
   }
 }
@@ -19,53 +19,53 @@ package com.btmura.android.reddit.text;
 public class MarkdownFormatter_NamedLinksTest extends AbstractFormatterTest {
 
   public void testFormat() {
-    CharSequence cs = assertNamedLinksFormat("[foo](abc)", "foo");
+    CharSequence cs = assertFormat("[foo](abc)", "foo");
     assertUrlSpan(cs, 0, 3, "http://abc");
 
-    cs = assertNamedLinksFormat("[foo] (abc)", "foo");
+    cs = assertFormat("[foo] (abc)", "foo");
     assertUrlSpan(cs, 0, 3, "http://abc");
 
-    cs = assertNamedLinksFormat("[foo] (abc desc)", "foo");
+    cs = assertFormat("[foo] (abc desc)", "foo");
     assertUrlSpan(cs, 0, 3, "http://abc");
 
-    cs = assertNamedLinksFormat("[foo]\n(abc desc)", "foo");
+    cs = assertFormat("[foo]\n(abc desc)", "foo");
     assertUrlSpan(cs, 0, 3, "http://abc");
 
-    cs = assertNamedLinksFormat("[foo\n](abc desc)", "foo\n");
+    cs = assertFormat("[foo\n](abc desc)", "foo\n");
     assertUrlSpan(cs, 0, 3, "http://abc");
   }
 
   public void testFormat_nestedBrackets() {
-    CharSequence cs = assertNamedLinksFormat("[[link]](/abc)", "[link]");
+    CharSequence cs = assertFormat("[[link]](/abc)", "[link]");
     assertUrlSpan(cs, 0, 6, "https://www.reddit.com/abc");
   }
 
   public void testFormat_nestedBrackets2() {
-    CharSequence cs = assertNamedLinksFormat("[[a]](/a) [[b]](/b)", "[a] [b]");
+    CharSequence cs = assertFormat("[[a]](/a) [[b]](/b)", "[a] [b]");
     assertUrlSpan(cs, 0, 3, "https://www.reddit.com/a");
     assertUrlSpan(cs, 4, 7, "https://www.reddit.com/b");
   }
 
   public void testFormat_nestedBrackets3() {
-    CharSequence cs = assertNamedLinksFormat("[[a](/a)]", "[a]");
+    CharSequence cs = assertFormat("[[a](/a)]", "[a]");
     assertUrlSpan(cs, 0, 3, "https://www.reddit.com/a");
   }
 
   public void testFormat_nestedParens() {
-    CharSequence cs = assertNamedLinksFormat(
+    CharSequence cs = assertFormat(
         "Here is a [link](/abc (123) (456)).",
         "Here is a link.");
     assertUrlSpan(cs, 10, 14, "https://www.reddit.com/abc");
   }
 
   public void testFormat_nestedParens2() {
-    CharSequence cs = assertNamedLinksFormat("[abc (def)](/abc (123) (456))",
+    CharSequence cs = assertFormat("[abc (def)](/abc (123) (456))",
         "abc (def)");
     assertUrlSpan(cs, 0, 9, "https://www.reddit.com/abc");
   }
 
   public void testFormat_multiple() {
-    CharSequence cs = assertNamedLinksFormat(
+    CharSequence cs = assertFormat(
         "[Link 1](/a (123)) and [Link 2](/b (456))",
         "Link 1 and Link 2");
     assertUrlSpan(cs, 0, 6, "https://www.reddit.com/a");
@@ -73,7 +73,7 @@ public class MarkdownFormatter_NamedLinksTest extends AbstractFormatterTest {
   }
 
   public void testFormat_nestedParensMultipleLines() {
-    CharSequence cs = assertNamedLinksFormat(
+    CharSequence cs = assertFormat(
         "[Link 1](/a (123))\n[Link 2](/b (456))",
         "Link 1\nLink 2");
     assertUrlSpan(cs, 0, 6, "https://www.reddit.com/a");
@@ -16,8 +16,6 @@
 
 package com.btmura.android.reddit.text;
 
-import com.btmura.android.reddit.text.MarkdownFormatter.RawLinks;
-
 public class MarkdownFormatter_RawLinksTest extends AbstractFormatterTest {
 
   public void testPattern() {
@@ -30,39 +28,39 @@ public class MarkdownFormatter_RawLinksTest extends AbstractFormatterTest {
   }
 
   public void testFormat() {
-    CharSequence cs = assertRawLinksFormat("http://abcd.com",
+    CharSequence cs = assertFormat("http://abcd.com",
         "http://abcd.com");
     assertUrlSpan(cs, 0, 11, "http://abcd.com");
 
-    cs = assertRawLinksFormat("https://abcd.com", "https://abcd.com");
+    cs = assertFormat("https://abcd.com", "https://abcd.com");
     assertUrlSpan(cs, 0, 12, "https://abcd.com");
   }
 
   public void testFormat_multipleLine() {
-    CharSequence cs = assertRawLinksFormat("http://abcd.net\ndef",
+    CharSequence cs = assertFormat("http://abcd.net\ndef",
         "http://abcd.net\ndef");
     assertUrlSpan(cs, 0, 11, "http://abcd.net");
   }
 
   public void testFormat_endings() {
-    CharSequence cs = assertRawLinksFormat("(http://abcd.org)",
+    CharSequence cs = assertFormat("(http://abcd.org)",
         "(http://abcd.org)");
     assertUrlSpan(cs, 1, 12, "http://abcd.org");
 
-    cs = assertRawLinksFormat("end paren: http://abcd.org)",
+    cs = assertFormat("end paren: http://abcd.org)",
         "end paren: http://abcd.org)");
     assertUrlSpan(cs, 11, 22, "http://abcd.org");
 
-    cs = assertRawLinksFormat("look at http://abcd.org?",
+    cs = assertFormat("look at http://abcd.org?",
         "look at http://abcd.org?");
     assertUrlSpan(cs, 8, 19, "http://abcd.org");
 
-    cs = assertRawLinksFormat("see diagram (http://abcd.org)",
+    cs = assertFormat("see diagram (http://abcd.org)",
         "see diagram (http://abcd.org)");
     assertUrlSpan(cs, 13, 24, "http://abcd.org");
   }
 
   private void assertMatch(String input) {
-    assertTrue(input, RawLinks.PATTERN.matcher(input).matches());
+    assertTrue(input, MarkdownLexer.URL_PATTERN.matcher(input).matches());
   }
 }
@@ -19,24 +19,24 @@ package com.btmura.android.reddit.text;
 public class MarkdownFormatter_RelativeLinksTest extends AbstractFormatterTest {
 
   public void testFormat_subreddit() {
-    CharSequence s = assertSubredditFormat("/r/food", "/r/food");
+    CharSequence s = assertFormat("/r/food", "/r/food");
     assertSubredditSpan(s, 0, 7, "food");
 
-    s = assertSubredditFormat("/r/food/", "/r/food/");
+    s = assertFormat("/r/food/", "/r/food/");
     assertSubredditSpan(s, 0, 8, "food");
 
-    s = assertSubredditFormat("/r/under_score/", "/r/under_score/");
+    s = assertFormat("/r/under_score/", "/r/under_score/");
     assertSubredditSpan(s, 0, 15, "under_score");
 
-    s = assertSubredditFormat("/r/plus+minus/", "/r/plus+minus/");
+    s = assertFormat("/r/plus+minus/", "/r/plus+minus/");
     assertSubredditSpan(s, 0, 15, "plus+minus");
   }
 
   public void testFormat_user() {
-    CharSequence s = assertSubredditFormat("/u/dude", "/u/dude");
+    CharSequence s = assertFormat("/u/dude", "/u/dude");
     assertUserSpan(s, 0, 7, "dude");
 
-    s = assertSubredditFormat("/u/dude/", "/u/dude/");
+    s = assertFormat("/u/dude/", "/u/dude/");
     assertUserSpan(s, 0, 8, "dude");
   }
 }
@@ -17,46 +17,76 @@
 package com.btmura.android.reddit.text;
 
 import android.graphics.Typeface;
-
-import com.btmura.android.reddit.text.MarkdownFormatter.Styles;
+import android.text.Spanned;
+import android.text.style.StyleSpan;
 
 public class MarkdownFormatter_StylesTest extends AbstractFormatterTest {
 
   public void testFormatComment_bold() {
-    CharSequence cs = assertStyleFormat(Styles.STYLE_BOLD, "**bold**", "bold");
+    CharSequence cs = assertFormat("**bold**", "bold");
     assertStyleSpan(cs, 0, 4, Typeface.BOLD);
   }
 
   public void testFormatComment_boldBadFormat() {
-    assertStyleFormat(Styles.STYLE_BOLD, "**bold\n**bold", "**bold\n**bold");
+    assertFormat("**bold\n**bold", "**bold\n**bold");
   }
 
   public void testFormatComment_italic() {
-    CharSequence cs = assertStyleFormat(Styles.STYLE_ITALIC, "*italic*",
-        "italic");
+    CharSequence cs = assertFormat("*italic*", "italic");
     assertStyleSpan(cs, 0, 6, Typeface.ITALIC);
   }
 
   public void testFormatComment_strikethrough() {
-    CharSequence cs = assertStyleFormat(Styles.STYLE_STRIKETHROUGH,
-        "~~strikethrough~~",
+    CharSequence cs = assertFormat("~~strikethrough~~",
         "strikethrough");
     assertStrikethroughSpan(cs, 0, 13);
   }
 
   public void testFormat_bold() {
-    CharSequence cs = assertStyleFormat(Styles.STYLE_BOLD, "**bold**", "bold");
+    CharSequence cs = assertFormat("**bold**", "bold");
     assertStyleSpan(cs, 0, 4, Typeface.BOLD);
   }
 
   public void testFormat_boldMultiple() {
-    CharSequence cs = assertStyleFormat(Styles.STYLE_BOLD, "**yes** no **yes**",
-        "yes no yes");
+    CharSequence cs = assertFormat("**yes** no **yes**", "yes no yes");
     assertStyleSpan(cs, 0, 3, Typeface.BOLD);
     assertStyleSpan(cs, 7, 10, Typeface.BOLD);
   }
 
   public void testFormat_boldBadFormat() {
-    assertStyleFormat(Styles.STYLE_BOLD, "**bold\n**bold", "**bold\n**bold");
+    assertFormat("**bold\n**bold", "**bold\n**bold");
+  }
+
+  public void testFormat_boldItalic() {
+    CharSequence cs = assertFormat("***both***", "both");
+    assertStyleSpans(cs, 0, 4, Typeface.BOLD, Typeface.ITALIC);
+  }
+
+  public void testFormat_boldInsideItalic() {
+    CharSequence cs = assertFormat("*a **b** c*", "a b c");
+    assertStyleSpans(cs, 0, 1, Typeface.ITALIC);
+    assertStyleSpans(cs, 2, 3, Typeface.ITALIC, Typeface.BOLD);
+  }
+
+  public void testFormat_italicInsideStrikethrough() {
+    CharSequence cs = assertFormat("~~a *b*~~", "a b");
+    assertStrikethroughSpan(cs, 0, 3);
+    assertStyleSpan(cs, 2, 3, Typeface.ITALIC);
+  }
+
+  public void testFormat_unclosed() {
+    assertFormat("2 * 3 ~ 4", "2 * 3 ~ 4");
+  }
+
+  private static void assertStyleSpans(
+      CharSequence cs,
+      int start,
+      int end,
+      int... expectedStyles) {
+    StyleSpan[] spans = ((Spanned) cs).getSpans(start, end, StyleSpan.class);
+    assertEquals(expectedStyles.length, spans.length);
+    for (int i = 0; i < spans.length; i++) {
+      assertEquals(expectedStyles[i], spans[i].getStyle());
+    }
   }
 }
@@ -16,41 +16,50 @@
 
 package com.btmura.android.reddit.text;
 
-import com.btmura.android.reddit.text.MarkdownFormatter.Tables;
+import com.btmura.android.reddit.R;
 
 public class MarkdownFormatter_TablesTest extends AbstractFormatterTest {
 
-  public void testPattern_singleLine() {
-    matcher = Tables.PATTERN.matcher("a|b|c");
-    assertFalse(matcher.find());
+  public void testFindTableEnd_singleLine() {
+    assertEquals(-1, findTableEnd("a|b|c", 0));
   }
 
-  public void testPattern_emptyLastColumn() {
-    matcher = Tables.PATTERN.matcher("h1|h2|h3\n-|-|-\na|b|");
-    assertTrue(matcher.find());
-    assertEquals(0, matcher.start());
-    assertEquals(19, matcher.end());
-    assertFalse(matcher.find());
+  public void testFindTableEnd_emptyLastColumn() {
+    assertEquals(19, findTableEnd("h1|h2|h3\n-|-|-\na|b|", 0));
   }
 
-  public void testPattern_surrounded() {
-    matcher = Tables.PATTERN.matcher("hello\nh1|h2|h3\n-|-|-\na|b|c\nbye");
-    assertTrue(matcher.find());
-    assertEquals(6, matcher.start());
-    assertEquals(27, matcher.end());
-    assertFalse(matcher.find());
+  public void testFindTableEnd_surrounded() {
+    String text = "hello\nh1|h2|h3\n-|-|-\na|b|c\nbye";
+    assertEquals(-1, findTableEnd(text, 0));
+    assertEquals(27, findTableEnd(text, 6));
   }
 
-  public void testPattern_noJustificationDashes() {
-    matcher = Tables.PATTERN.matcher("h1|h2|h3\n||\na|b|c");
-    assertTrue(matcher.find());
-    assertEquals(0, matcher.start());
-    assertEquals(17, matcher.end());
-    assertFalse(matcher.find());
+  public void testFindTableEnd_noJustificationDashes() {
+    assertEquals(17, findTableEnd("h1|h2|h3\n||\na|b|c", 0));
   }
 
-  public void testPattern_missingJustificationRow() {
-    matcher = Tables.PATTERN.matcher("h1|h2|h3\na|b|c\nd|e|f");
-    assertFalse(matcher.find());
+  public void testFindTableEnd_missingJustificationRow() {
+    String text = "h1|h2|h3\na|b|c\nd|e|f";
+    assertEquals(-1, findTableEnd(text, 0));
+    assertEquals(-1, findTableEnd(text, 9));
+  }
+
+  public void testFindTableEnd_stopsAtCode() {
+    assertEquals(14, findTableEnd("h1|h2\n-|-\na|b\n    c|d", 0));
+  }
+
+  public void testFormat_surrounded() {
+    String label = getContext().getString(R.string.view_table);
+    CharSequence cs = assertFormat("hello\nh1|h2|h3\n-|-|-\na|b|c\nbye",
+        "hello\n" + label + "\nbye");
+    assertTableSpan(cs, 6, 6 + label.length());
+  }
+
+  private static int findTableEnd(String text, int start) {
+    int lineEnd = text.indexOf('\n', start);
+    if (lineEnd == -1) {
+      lineEnd = text.length();
+    }
+    return MarkdownLexer.findTableEnd(text, start, lineEnd, text.length());
   }
 }
@@ -2,11 +2,16 @@ package com.btmura.android.reddit.text;
 
 import android.content.res.Resources;
 import android.test.AndroidTestCase;
-
-import java.util.Formatter;
+import android.util.Log;
 
 public class RelativeTimeTest extends AndroidTestCase {
 
+  private static final String TAG = "RelativeTimeTest";
+
+  private static final int BENCHMARK_TIMES = 1000;
+  private static final int BENCHMARK_WARMUPS = 5;
+  private static final int BENCHMARK_RUNS = 20;
+
   private static final int MINUTE_SECONDS = 60;
   private static final int HOUR_SECONDS = MINUTE_SECONDS * 60;
   private static final int DAY_SECONDS = HOUR_SECONDS * 24;
@@ -16,15 +21,11 @@ public class RelativeTimeTest extends AndroidTestCase {
   private static final long NOW_MS = NOW * 1000;
 
   private Resources resources;
-  private StringBuilder formatterData;
-  private Formatter formatter;
 
   @Override
   protected void setUp() throws Exception {
     super.setUp();
     resources = mContext.getResources();
-    formatterData = new StringBuilder();
-    formatter = new Formatter(formatterData);
   }
 
   public void testFormat_seconds() {
@@ -32,6 +33,7 @@ public class RelativeTimeTest extends AndroidTestCase {
     assertFormat("1 second ago", NOW_MS, NOW - 1);
     assertFormat("20 seconds ago", NOW_MS, NOW - 20);
     assertFormat("59 seconds ago", NOW_MS, NOW - 59);
+    assertFormat("0 seconds ago", NOW_MS, NOW + 5);
   }
 
   public void testFormat_minutes() {
@@ -62,9 +64,45 @@ public class RelativeTimeTest extends AndroidTestCase {
   }
 
   private void assertFormat(String expected, long nowMs, long timeSec) {
-    formatterData.delete(0, formatterData.length());
-    assertEquals(expected,
-        RelativeTime.format(resources, formatter, nowMs, timeSec)
-            .toString());
+    assertEquals(expected, RelativeTime.format(resources, nowMs, timeSec));
+  }
+
+  public void testFormat_cached() {
+    long[] times = {
+        NOW, NOW - 1, NOW - MINUTE_SECONDS * 20, NOW - HOUR_SECONDS * 23,
+        NOW - DAY_SECONDS * 29, NOW - MONTH_SECONDS, NOW - YEAR_SECONDS * 2,
+        NOW + 5,
+    };
+    for (long time : times) {
+      assertSame(RelativeTime.format(resources, NOW_MS, time),
+          RelativeTime.format(resources, NOW_MS, time));
+    }
+  }
+
+  /** Measures formatting times of comments posted over the last few days. */
+  public void testFormat_benchmark() {
+    long[] times = new long[BENCHMARK_TIMES];
+    for (int i = 0; i < BENCHMARK_TIMES; i++) {
+      times[i] = NOW - (long) i * i * 7;
+    }
+
+    for (int i = 0; i < BENCHMARK_WARMUPS; i++) {
+      formatAll(times);
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_RUNS; i++) {
+      formatAll(times);
+    }
+    long cachedNs = (System.nanoTime() - start) / BENCHMARK_RUNS;
+
+    Log.i(TAG, "format times: " + BENCHMARK_TIMES
+        + " cached ns/format: " + cachedNs / BENCHMARK_TIMES);
+  }
+
+  private void formatAll(long[] times) {
+    for (long time : times) {
+      RelativeTime.format(resources, NOW_MS, time);
+    }
   }
 }
@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.util;
+
+import android.util.Log;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+
+public class JsonParserTest extends TestCase {
+
+  private static final String TAG = "JsonParserTest";
+
+  private static final int BENCHMARK_COMMENTS = 500;
+  private static final int BENCHMARK_WARMUPS = 5;
+  private static final int BENCHMARK_RUNS = 20;
+
+  public void testParseListingArray() throws Exception {
+    CountingParser parser = new CountingParser();
+    parser.parseListingArray(newReader(newCommentsJson(10)));
+    assertEquals(18, parser.entityCount);
+    assertEquals(18, parser.nameCount);
+    assertEquals(10, parser.bodyCount);
+    assertEquals(11, parser.scoreCount);
+    assertEquals(1, parser.titleCount);
+    assertEquals(1, parser.overCount);
+    assertEquals(17, parser.parentIdCount);
+  }
+
+  public void testParseThingsResponse() throws Exception {
+    CountingParser parser = new CountingParser();
+    parser.parseThingsResponse(newReader(newMoreChildrenJson(10)));
+    assertEquals(11, parser.entityCount);
+    assertEquals(11, parser.nameCount);
+    assertEquals(10, parser.bodyCount);
+    assertEquals(10, parser.scoreCount);
+    assertEquals(0, parser.titleCount);
+    assertEquals(11, parser.parentIdCount);
+  }
+
+  /** Measures parsing time of a comment page similar to what reddit returns. */
+  public void testParseListingArray_benchmark() throws Exception {
+    String json = newCommentsJson(BENCHMARK_COMMENTS);
+    for (int i = 0; i < BENCHMARK_WARMUPS; i++) {
+      new CountingParser().parseListingArray(newReader(json));
+    }
+
+    long start = System.nanoTime();
+    for (int i = 0; i < BENCHMARK_RUNS; i++) {
+      new CountingParser().parseListingArray(newReader(json));
+    }
+    long elapsedUs = (System.nanoTime() - start) / 1000 / BENCHMARK_RUNS;
+    Log.i(TAG, "parseListingArray comments: " + BENCHMARK_COMMENTS
+        + " bytes: " + json.length() + " us/parse: " + elapsedUs);
+  }
+
+  private static Utf8JsonReader newReader(String json) throws IOException {
+    return new Utf8JsonReader(new ByteArrayInputStream(json.getBytes("UTF-8")));
+  }
+
+  /** Returns a comments page with a link and nested replies like reddit's. */
+  static String newCommentsJson(int commentCount) {
+    StringBuilder sb = new StringBuilder(commentCount * 1200);
+    sb.append("[{\"kind\": \"Listing\", \"data\": {\"modhash\": \"\", \"children\": [");
+    appendLink(sb);
+    sb.append("], \"after\": null, \"before\": null}}, ");
+    sb.append("{\"kind\": \"Listing\", \"data\": {\"modhash\": \"\", \"children\": [");
+    for (int i = 0; i < commentCount; i++) {
+      if (i > 0) {
+        sb.append(", ");
+      }
+      appendComment(sb, i, i % 4 != 0);
+    }
+    sb.append("], \"after\": null, \"before\": null}}]");
+    return sb.toString();
+  }
+
+  /** Returns a response to loading more replies like reddit's. */
+  static String newMoreChildrenJson(int commentCount) {
+    StringBuilder sb = new StringBuilder(commentCount * 1200);
+    sb.append("{\"json\": {\"errors\": [], \"data\": {\"things\": [");
+    for (int i = 0; i < commentCount; i++) {
+      appendComment(sb, i, false);
+      sb.append(", ");
+    }
+    appendReply(sb, commentCount);
+    sb.append("]}}}");
+    return sb.toString();
+  }
+
+  private static void appendLink(StringBuilder sb) {
+    sb.append("{\"kind\": \"t3\", \"data\": {")
+        .append("\"domain\": \"self.Android\", \"banned_by\": null, ")
+        .append("\"media_embed\": {}, \"subreddit\": \"Android\", ")
+        .append("\"selftext_html\": \"&lt;p&gt;Some text&lt;/p&gt;\", ")
+        .append("\"selftext\": \"Some **text** about [phones](http://example.com)\", ")
+        .append("\"likes\": null, \"suggested_sort\": null, \"user_reports\": [], ")
+        .append("\"secure_media\": null, \"link_flair_text\": null, \"id\": \"abc123\", ")
+        .append("\"gilded\": 0, \"archived\": false, \"clicked\": false, ")
+        .append("\"report_reasons\": null, \"author\": \"someone\", ")
+        .append("\"media\": null, \"score\": 1234, \"approved_by\": null, ")
+        .append("\"over_18\": false, \"hidden\": false, \"num_comments\": 500, ")
+        .append("\"thumbnail\": \"self\", \"subreddit_id\": \"t5_2qlqh\", ")
+        .append("\"hide_score\": false, \"edited\": false, ")
+        .append("\"link_flair_css_class\": null, \"author_flair_css_class\": null, ")
+        .append("\"downs\": 0, \"secure_media_embed\": {}, \"saved\": false, ")
+        .append("\"removal_reason\": null, \"stickied\": false, \"is_self\": true, ")
+        .append("\"permalink\": \"/r/Android/comments/abc123/title/\", ")
+        .append("\"locked\": false, \"name\": \"t3_abc123\", ")
+        .append("\"created\": 1460000000.0, \"url\": \"https://www.reddit.com/r/Android/\", ")
+        .append("\"author_flair_text\": null, \"quarantine\": false, ")
+        .append("\"title\": \"A title &amp; more\", \"created_utc\": 1460000000, ")
+        .append("\"distinguished\": null, \"mod_reports\": [], \"visited\": false, ")
+        .append("\"num_reports\": null, \"ups\": 1234}}");
+  }
+
+  private static void appendComment(StringBuilder sb, int i, boolean hasReply) {
+    sb.append("{\"kind\": \"t1\", \"data\": {")
+        .append("\"subreddit_id\": \"t5_2qlqh\", \"banned_by\": null, ")
+        .append("\"removal_reason\": null, \"link_id\": \"t3_abc123\", ")
+        .append("\"likes\": null, \"replies\": ");
+    if (hasReply) {
+      sb.append("{\"kind\": \"Listing\", \"data\": {\"children\": [");
+      appendReply(sb, i);
+      sb.append("], \"after\": null}}");
+    } else {
+      sb.append("\"\"");
+    }
+    sb.append(", \"user_reports\": [], \"saved\": false, \"id\": \"c").append(i)
+        .append("\", \"gilded\": 0, \"archived\": false, \"report_reasons\": null, ")
+        .append("\"author\": \"user").append(i).append("\", ")
+        .append("\"parent_id\": \"t3_abc123\", \"score\": ").append(i)
+        .append(", \"approved_by\": null, \"controversiality\": 0, ")
+        .append("\"body\": \"This is comment number ").append(i)
+        .append(" with some *emphasis* and a [link](https://example.com/").append(i)
+        .append(") &amp; an entity.\", \"edited\": false, ")
+        .append("\"author_flair_css_class\": null, \"downs\": 0, ")
+        .append("\"body_html\": \"&lt;div class=\\\"md\\\"&gt;&lt;p&gt;This is comment")
+        .append("&lt;/p&gt;&lt;/div&gt;\", \"stickied\": false, ")
+        .append("\"subreddit\": \"Android\", \"score_hidden\": false, ")
+        .append("\"name\": \"t1_c").append(i).append("\", \"created\": 1460003600.0, ")
+        .append("\"author_flair_text\": null, \"created_utc\": 1460000000, ")
+        .append("\"distinguished\": null, \"mod_reports\": [], ")
+        .append("\"num_reports\": null, \"ups\": ").append(i).append("}}");
+  }
+
+  private static void appendReply(StringBuilder sb, int i) {
+    sb.append("{\"kind\": \"more\", \"data\": {\"count\": 3, ")
+        .append("\"parent_id\": \"t1_c").append(i).append("\", ")
+        .append("\"id\": \"r").append(i).append("\", \"name\": \"t1_r").append(i)
+        .append("\", \"children\": [\"r").append(i).append("\"]}}");
+  }
+
+  /** Parser that reads the same fields as comment listings. */
+  static class CountingParser extends JsonParser {
+
+    private static final int[] PARSED_FIELDS = {
+        FIELD_AUTHOR,
+        FIELD_BODY,
+        FIELD_CREATED_UTC,
+        FIELD_DOWNS,
+        FIELD_LIKES,
+        FIELD_NAME,
+        FIELD_OVER_18,
+        FIELD_PARENT_ID,
+        FIELD_REPLIES,
+        FIELD_SCORE,
+        FIELD_SUBREDDIT,
+        FIELD_TITLE,
+        FIELD_UPS,
+    };
+
+    int entityCount;
+    int nameCount;
+    int bodyCount;
+    int scoreCount;
+    int titleCount;
+    int overCount;
+    int parentIdCount;
+
+    CountingParser() {
+      super(PARSED_FIELDS);
+    }
+
+    @Override
+    public void onEntityStart(int i) {
+      entityCount++;
+    }
+
+    @Override
+    public void onAuthor(Utf8JsonReader r, int i) throws IOException {
+      readString(r, "");
+    }
+
+    @Override
+    public void onBody(Utf8JsonReader r, int i) throws IOException {
+      readString(r, "");
+      bodyCount++;
+    }
+
+    @Override
+    public void onCreatedUtc(Utf8JsonReader r, int i) throws IOException {
+      readLong(r, 0);
+    }
+
+    @Override
+    public void onDowns(Utf8JsonReader r, int i) throws IOException {
+      readInt(r, 0);
+    }
+
+    @Override
+    public void onLikes(Utf8JsonReader r, int i) throws IOException {
+      r.skipValue();
+    }
+
+    @Override
+    public void onName(Utf8JsonReader r, int i) throws IOException {
+      readString(r, "");
+      nameCount++;
+    }
+
+    @Override
+    public void onOver18(Utf8JsonReader r, int i) throws IOException {
+      readBoolean(r, false);
+      overCount++;
+    }
+
+    @Override
+    public void onParentId(Utf8JsonReader r, int i) throws IOException {
+      readString(r, "");
+      parentIdCount++;
+    }
+
+    @Override
+    public void onScore(Utf8JsonReader r, int i) throws IOException {
+      readInt(r, 0);
+      scoreCount++;
+    }
+
+    @Override
+    public void onSubreddit(Utf8JsonReader r, int i) throws IOException {
+      readString(r, "");
+    }
+
+    @Override
+    public void onTitle(Utf8JsonReader r, int i) throws IOException {
+      readString(r, "");
+      titleCount++;
+    }
+
+    @Override
+    public void onUps(Utf8JsonReader r, int i) throws IOException {
+      readInt(r, 0);
+    }
+
+    @Override
+    protected boolean shouldParseReplies() {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.util;
+
+import junit.framework.TestCase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SingleFlightTest extends TestCase {
+
+  private static final int CALLERS = 4;
+
+  private final SingleFlight<String> flight = new SingleFlight<String>();
+  private final AtomicInteger callCount = new AtomicInteger();
+  private final CountDownLatch finishCall = new CountDownLatch(1);
+  private ExecutorService executor;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    executor.shutdownNow();
+  }
+
+  public void testExecute_sharesResult() throws Exception {
+    List<Future<String>> results = executeConcurrently("GET a /r/all", null);
+    for (Future<String> result : results) {
+      assertEquals("result", result.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(1, callCount.get());
+    assertEquals(0, flight.getInFlightCount());
+  }
+
+  public void testExecute_sharesException() throws Exception {
+    List<Future<String>> results =
+        executeConcurrently("GET a /r/all", new IOException("failed"));
+    for (Future<String> result : results) {
+      try {
+        result.get(5, TimeUnit.SECONDS);
+        fail();
+      } catch (ExecutionException e) {
+        assertTrue(e.getCause() instanceof IOException);
+      }
+    }
+    assertEquals(1, callCount.get());
+    assertEquals(0, flight.getInFlightCount());
+  }
+
+  public void testExecute_differentKeys() throws Exception {
+    finishCall.countDown();
+    flight.execute("GET a /r/all", newCall(null));
+    flight.execute("GET b /r/all", newCall(null));
+    flight.execute("GET a /r/all", newCall(null));
+    assertEquals(3, callCount.get());
+  }
+
+  /** Runs callers with the same key while the first call is blocked. */
+  private List<Future<String>> executeConcurrently(
+      final String key,
+      final Exception exception)
+      throws Exception {
+    List<Future<String>> results = new ArrayList<Future<String>>(CALLERS);
+    for (int i = 0; i < CALLERS; i++) {
+      results.add(executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return flight.execute(key, newCall(exception));
+        }
+      }));
+    }
+
+    // Give the other callers time to join the call in flight.
+    long deadline = System.currentTimeMillis() + 5000;
+    while (callCount.get() == 0 && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Thread.sleep(100);
+    assertEquals(1, flight.getInFlightCount());
+    finishCall.countDown();
+    return results;
+  }
+
+  private Callable<String> newCall(final Exception exception) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        callCount.incrementAndGet();
+        assertTrue(finishCall.await(5, TimeUnit.SECONDS));
+        if (exception != null) {
+          throw exception;
+        }
+        return "result";
+      }
+    };
+  }
+}
@@ -29,6 +29,12 @@ public class StringsTest extends TestCase {
     assertEquals(null, ellipsize(null, 7));
   }
 
+  public void testToMd5Hex() throws Exception {
+    assertEquals("d41d8cd98f00b204e9800998ecf8427e", Strings.toMd5Hex(""));
+    assertEquals("cbd44f8b5b48a51f7dab98abcdf45d4e",
+        Strings.toMd5Hex("brian"));
+  }
+
   private String ellipsize(String text, int maxLength) {
     return Strings.toString(Strings.ellipsize(text, maxLength));
   }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.util;
+
+import android.util.JsonToken;
+
+import junit.framework.TestCase;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+public class Utf8JsonReaderTest extends TestCase {
+
+  public void testNextString() throws Exception {
+    Utf8JsonReader r = newReader("[\"plain\", \"tab\\tquote\\\"slash\\/\","
+        + " \"\\u00e9t\\u00E9\", \"café ☃ 😀\", \"\"]");
+    r.beginArray();
+    assertEquals("plain", r.nextString());
+    assertEquals("tab\tquote\"slash/", r.nextString());
+    assertEquals("été", r.nextString());
+    assertEquals("café ☃ 😀", r.nextString());
+    assertEquals("", r.nextString());
+    r.endArray();
+    assertEquals(JsonToken.END_DOCUMENT, r.peek());
+    r.close();
+  }
+
+  public void testNextString_acrossBuffers() throws Exception {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      sb.append("éa☃");
+    }
+    String value = sb.toString();
+    Utf8JsonReader r = newReader(new OneByteInputStream(
+        ("{\"value\": \"" + value + "\"}").getBytes("UTF-8")));
+    r.beginObject();
+    assertEquals("value", r.nextName());
+    assertEquals(value, r.nextString());
+    r.endObject();
+    r.close();
+  }
+
+  public void testNumbers() throws Exception {
+    Utf8JsonReader r = newReader("[1, -2, 1460000000, 1460003600.0, 0.5,"
+        + " 1e3, \"42\"]");
+    r.beginArray();
+    assertEquals(JsonToken.NUMBER, r.peek());
+    assertEquals(1, r.nextInt());
+    assertEquals(-2, r.nextInt());
+    assertEquals(1460000000L, r.nextLong());
+    assertEquals(1460003600L, r.nextLong());
+    assertEquals(0.5, r.nextDouble());
+    assertEquals("1e3", r.nextString());
+    assertEquals(42, r.nextInt());
+    r.endArray();
+    r.close();
+  }
+
+  public void testNextInt_fraction() throws Exception {
+    Utf8JsonReader r = newReader("[1.5]");
+    r.beginArray();
+    try {
+      r.nextInt();
+      fail();
+    } catch (NumberFormatException e) {
+      // Expected.
+    }
+    r.close();
+  }
+
+  public void testLiterals() throws Exception {
+    Utf8JsonReader r = newReader("{\"a\": true, \"b\": false, \"c\": null}");
+    r.beginObject();
+    assertEquals("a", r.nextName());
+    assertEquals(JsonToken.BOOLEAN, r.peek());
+    assertTrue(r.nextBoolean());
+    assertEquals("b", r.nextName());
+    assertFalse(r.nextBoolean());
+    assertEquals("c", r.nextName());
+    assertEquals(JsonToken.NULL, r.peek());
+    r.nextNull();
+    assertFalse(r.hasNext());
+    r.endObject();
+    r.close();
+  }
+
+  public void testSkipValue() throws Exception {
+    Utf8JsonReader r = newReader("{\"skip\": {\"a\": [1, \"x\\\"]\", {}],"
+        + " \"b\": \"☃\"}, \"keep\": \"yes\"}");
+    r.beginObject();
+    assertEquals("skip", r.nextName());
+    r.skipValue();
+    assertEquals("keep", r.nextName());
+    assertEquals("yes", r.nextString());
+    r.endObject();
+    r.close();
+  }
+
+  public void testNextName_names() throws Exception {
+    Utf8JsonReader.Names names = new Utf8JsonReader.Names(2);
+    names.put("kind", 1);
+    names.put("data", 2);
+
+    Utf8JsonReader r = newReader("{\"kind\": 0, \"other\": 0,"
+        + " \"d\\u0061ta\": 0, \"dat\": 0}");
+    r.beginObject();
+    assertEquals(1, r.nextName(names));
+    r.skipValue();
+    assertEquals(-1, r.nextName(names));
+    r.skipValue();
+    assertEquals(2, r.nextName(names));
+    r.skipValue();
+    assertEquals(-1, r.nextName(names));
+    r.skipValue();
+    r.endObject();
+    r.close();
+  }
+
+  public void testMalformed() throws Exception {
+    Utf8JsonReader r = newReader("{\"a\" 1}");
+    r.beginObject();
+    r.nextName();
+    try {
+      r.nextInt();
+      fail();
+    } catch (IOException e) {
+      // Expected.
+    }
+    r.close();
+  }
+
+  public void testNestedReaders() throws Exception {
+    Utf8JsonReader outer = newReader("[\"outer\"]");
+    Utf8JsonReader inner = newReader("[\"inner\"]");
+    outer.beginArray();
+    inner.beginArray();
+    assertEquals("inner", inner.nextString());
+    assertEquals("outer", outer.nextString());
+    inner.close();
+    outer.close();
+  }
+
+  private static Utf8JsonReader newReader(String json) throws IOException {
+    return newReader(new ByteArrayInputStream(json.getBytes("UTF-8")));
+  }
+
+  private static Utf8JsonReader newReader(InputStream in) {
+    return new Utf8JsonReader(in);
+  }
+
+  /** Stream that returns one byte per read to split every token. */
+  static class OneByteInputStream extends ByteArrayInputStream {
+
+    OneByteInputStream(byte[] buf) {
+      super(buf);
+    }
+
+    @Override
+    public synchronized int read(byte[] b, int off, int len) {
+      return super.read(b, off, Math.min(len, 1));
+    }
+  }
+}
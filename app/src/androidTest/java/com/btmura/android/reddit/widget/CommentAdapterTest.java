@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.content.Context;
+import android.database.MatrixCursor;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.graphics.Canvas;
+import android.os.SystemClock;
+import android.test.InstrumentationTestCase;
+import android.test.UiThreadTest;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.widget.FrameLayout;
+
+import com.btmura.android.reddit.accounts.AccountUtils;
+import com.btmura.android.reddit.content.CommentLoader;
+import com.btmura.android.reddit.content.ThemePrefs;
+import com.btmura.android.reddit.database.Kinds;
+
+import java.util.Arrays;
+
+public class CommentAdapterTest extends InstrumentationTestCase {
+
+  private static final String TAG = "CommentAdapterTest";
+
+  private static final int BENCHMARK_COMMENTS = 500;
+  private static final int BENCHMARK_VISIBLE_ROWS = 8;
+  private static final int BENCHMARK_WIDTH = 720;
+  private static final int BENCHMARK_HEIGHT = 1280;
+  private static final long FRAME_MS = 16;
+
+  /**
+   * Measures frame times of scrolling down a comment thread one row per
+   * frame and back up again. Each frame binds, measures and draws the row
+   * coming into view and draws the others, then waits out the rest of the
+   * frame like the list would, which gives background work time to run.
+   * Runs on the UI thread like the list, since the rows need its looper.
+   */
+  @UiThreadTest
+  public void testScroll_benchmark() throws Exception {
+    Context targetCtx = getInstrumentation().getTargetContext();
+    Context ctx = new ContextThemeWrapper(targetCtx,
+        ThemePrefs.getTheme(targetCtx));
+    CommentAdapter adapter = new CommentAdapter(ctx, AccountUtils.NO_ACCOUNT,
+        null);
+    adapter.swapCursor(newCommentsCursor(BENCHMARK_COMMENTS));
+    FrameLayout parent = new FrameLayout(ctx);
+    View[] rows = new View[BENCHMARK_VISIBLE_ROWS];
+    Canvas canvas = new Canvas(Bitmap.createBitmap(BENCHMARK_WIDTH,
+        BENCHMARK_HEIGHT, Config.RGB_565));
+
+    long[] downMs = new long[BENCHMARK_COMMENTS];
+    for (int i = 0; i < BENCHMARK_COMMENTS; i++) {
+      downMs[i] = scrollTo(adapter, parent, rows, canvas, i);
+    }
+    long[] upMs = new long[BENCHMARK_COMMENTS];
+    for (int i = BENCHMARK_COMMENTS - 1; i >= 0; i--) {
+      upMs[i] = scrollTo(adapter, parent, rows, canvas, i);
+    }
+
+    logFrames("down", downMs);
+    logFrames("up", upMs);
+  }
+
+  /** Shows the row at the position and returns the frame's time. */
+  private static long scrollTo(
+      CommentAdapter adapter,
+      FrameLayout parent,
+      View[] rows,
+      Canvas canvas,
+      int position) {
+    long start = SystemClock.elapsedRealtime();
+    int slot = position % rows.length;
+    rows[slot] = adapter.getView(position, rows[slot], parent);
+    rows[slot].measure(
+        MeasureSpec.makeMeasureSpec(BENCHMARK_WIDTH, MeasureSpec.EXACTLY),
+        MeasureSpec.makeMeasureSpec(0, MeasureSpec.UNSPECIFIED));
+    rows[slot].layout(0, 0, rows[slot].getMeasuredWidth(),
+        rows[slot].getMeasuredHeight());
+    for (View row : rows) {
+      if (row != null) {
+        row.draw(canvas);
+      }
+    }
+    long elapsedMs = SystemClock.elapsedRealtime() - start;
+    if (elapsedMs < FRAME_MS) {
+      SystemClock.sleep(FRAME_MS - elapsedMs);
+    }
+    return elapsedMs;
+  }
+
+  private static void logFrames(String direction, long[] frameMs) {
+    long[] sorted = frameMs.clone();
+    Arrays.sort(sorted);
+    long total = 0;
+    int janky = 0;
+    for (long ms : sorted) {
+      total += ms;
+      if (ms > FRAME_MS) {
+        janky++;
+      }
+    }
+    Log.i(TAG, "scroll " + direction
+        + " comments: " + frameMs.length
+        + " ms/frame: " + total / frameMs.length
+        + " p90: " + sorted[sorted.length * 9 / 10]
+        + " max: " + sorted[sorted.length - 1]
+        + " janky: " + janky);
+  }
+
+  /** Returns comments with bodies of varying length and nesting. */
+  private static MatrixCursor newCommentsCursor(int commentCount) {
+    String[] columns = new String[CommentLoader.INDEX_URL + 1];
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = "c" + i;
+    }
+    MatrixCursor c = new MatrixCursor(columns, commentCount);
+    long createdUtc = System.currentTimeMillis() / 1000 - 3600;
+    for (int i = 0; i < commentCount; i++) {
+      Object[] row = new Object[columns.length];
+      row[CommentLoader.INDEX_ID] = i;
+      row[CommentLoader.INDEX_AUTHOR] = "author" + i % 37;
+      row[CommentLoader.INDEX_BODY] = newBody(i);
+      row[CommentLoader.INDEX_CREATED_UTC] = createdUtc - i * 60;
+      row[CommentLoader.INDEX_DOWNS] = i % 7;
+      row[CommentLoader.INDEX_EXPANDED] = 1;
+      row[CommentLoader.INDEX_KIND] = Kinds.KIND_COMMENT;
+      row[CommentLoader.INDEX_LIKES] = 0;
+      row[CommentLoader.INDEX_NESTING] = i % 6;
+      row[CommentLoader.INDEX_NUM_COMMENTS] = 0;
+      row[CommentLoader.INDEX_OVER_18] = 0;
+      row[CommentLoader.INDEX_THING_ID] = "t1_c" + Integer.toString(i, 36);
+      row[CommentLoader.INDEX_UPS] = i % 101;
+      c.addRow(row);
+    }
+    return c;
+  }
+
+  private static String newBody(int i) {
+    StringBuilder sb = new StringBuilder();
+    for (int p = 0; p <= i % 5; p++) {
+      sb.append("Some **bold** and *italic* words in comment ").append(i)
+          .append(" with a [link](http://www.example.com/").append(p)
+          .append(") and a mention of /r/android that goes on for a while ")
+          .append("so that it wraps over a few lines on a phone.\n\n");
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+public class ImageExecutorTest extends TestCase {
+
+  private static final int TASKS = 5;
+
+  private final List<Integer> order =
+      Collections.synchronizedList(new ArrayList<Integer>());
+
+  public void testExecute_lastInFirstOut() throws Exception {
+    ImageExecutor executor = new ImageExecutor(1);
+    executor.pause(true);
+    CountDownLatch done = new CountDownLatch(TASKS);
+    for (int i = 0; i < TASKS; i++) {
+      executor.execute(newTask(i, done));
+    }
+    executor.pause(false);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(list(4, 3, 2, 1, 0), order);
+  }
+
+  public void testExecute_prefetchRunsLast() throws Exception {
+    ImageExecutor executor = new ImageExecutor(1);
+    executor.pause(true);
+    CountDownLatch done = new CountDownLatch(TASKS);
+    executor.getPrefetchExecutor().execute(newTask(0, done));
+    executor.getPrefetchExecutor().execute(newTask(1, done));
+    executor.execute(newTask(2, done));
+    executor.execute(newTask(3, done));
+    executor.getPrefetchExecutor().execute(newTask(4, done));
+    executor.pause(false);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(list(3, 2, 0, 1, 4), order);
+  }
+
+  public void testPromote() throws Exception {
+    ImageExecutor executor = new ImageExecutor(1);
+    executor.pause(true);
+    CountDownLatch done = new CountDownLatch(3);
+    Runnable promoted = newTask(1, done);
+    executor.getPrefetchExecutor().execute(newTask(0, done));
+    executor.getPrefetchExecutor().execute(promoted);
+    executor.execute(newTask(2, done));
+    executor.promote(promoted);
+    executor.pause(false);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(list(1, 2, 0), order);
+  }
+
+  public void testPause() throws Exception {
+    ImageExecutor executor = new ImageExecutor(2);
+    executor.pause(true);
+    CountDownLatch done = new CountDownLatch(1);
+    executor.execute(newTask(0, done));
+
+    assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+    assertEquals(1, executor.getQueuedCount());
+
+    executor.pause(false);
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(0, executor.getQueuedCount());
+  }
+
+  public void testPurge_skipsCancelled() throws Exception {
+    ImageExecutor executor = new ImageExecutor(1);
+    executor.pause(true);
+    CountDownLatch done = new CountDownLatch(1);
+    FutureTask<Void> cancelled = new FutureTask<Void>(newTask(1, done), null);
+    executor.execute(newTask(0, done));
+    executor.execute(cancelled);
+    cancelled.cancel(true);
+
+    executor.purge();
+    assertEquals(1, executor.getQueuedCount());
+    executor.pause(false);
+
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(list(0), order);
+  }
+
+  public void testCancel_running() throws Exception {
+    ImageExecutor executor = new ImageExecutor(1);
+    final CountDownLatch started = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    FutureTask<Void> running = new FutureTask<Void>(new Runnable() {
+      @Override
+      public void run() {
+        started.countDown();
+        // Spin like a blocking read that ignores being interrupted.
+        while (release.getCount() > 0) {
+          Thread.yield();
+        }
+      }
+    }, null);
+    executor.execute(running);
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    running.cancel(true);
+    release.countDown();
+
+    // Let the thread go back to waiting before giving it more tasks.
+    Thread.sleep(200);
+    CountDownLatch done = new CountDownLatch(1);
+    executor.execute(newTask(0, done));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+
+    Thread.sleep(200);
+    done = new CountDownLatch(1);
+    executor.execute(newTask(1, done));
+    assertTrue(done.await(5, TimeUnit.SECONDS));
+    assertEquals(list(0, 1), order);
+  }
+
+  private Runnable newTask(final int id, final CountDownLatch done) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        order.add(id);
+        done.countDown();
+      }
+    };
+  }
+
+  private static List<Integer> list(Integer... values) {
+    List<Integer> list = new ArrayList<Integer>();
+    Collections.addAll(list, values);
+    return list;
+  }
+}
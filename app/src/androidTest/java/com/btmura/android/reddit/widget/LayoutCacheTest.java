@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.text.SpannableStringBuilder;
+import android.text.TextPaint;
+
+import com.btmura.android.reddit.widget.LayoutCache.Key;
+
+import junit.framework.TestCase;
+
+public class LayoutCacheTest extends TestCase {
+
+  private final TextPaint paint = new TextPaint();
+
+  public void testKey_plainTextMatchesByCharacters() {
+    Key key = new Key("some title", paint, 100);
+    assertEquals(key, new Key(new StringBuilder("some title"), paint, 100));
+    assertEquals(key.hashCode(),
+        new Key(new StringBuilder("some title"), paint, 100).hashCode());
+    assertFalse(key.equals(new Key("other title", paint, 100)));
+  }
+
+  public void testKey_spannedTextMatchesByIdentity() {
+    SpannableStringBuilder body = new SpannableStringBuilder("body");
+    assertEquals(new Key(body, paint, 100), new Key(body, paint, 100));
+    assertFalse(new Key(body, paint, 100).equals(
+        new Key(new SpannableStringBuilder("body"), paint, 100)));
+    assertFalse(new Key(body, paint, 100).equals(new Key("body", paint, 100)));
+  }
+
+  public void testKey_widthAndPaint() {
+    Key key = new Key("title", paint, 100);
+    assertFalse(key.equals(new Key("title", paint, 101)));
+    assertFalse(key.equals(new Key("title", new TextPaint(), 100)));
+  }
+}
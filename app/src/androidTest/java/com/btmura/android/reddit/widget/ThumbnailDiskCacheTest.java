@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class ThumbnailDiskCacheTest extends TestCase {
+
+  private static final String URL = "https://b.thumbs.redditmedia.com/";
+  private static final int SIZE = 100;
+
+  private File dir;
+  private ThumbnailDiskCache cache;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    dir = File.createTempFile("ThumbnailDiskCacheTest", "");
+    assertTrue(dir.delete());
+    cache = new ThumbnailDiskCache(dir, SIZE * 8);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    super.tearDown();
+    cache.close();
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        file.delete();
+      }
+    }
+    dir.delete();
+  }
+
+  public void testPutGet() {
+    assertNull(cache.get(URL + 1));
+    cache.put(URL + 1, newData(1));
+    assertTrue(Arrays.equals(newData(1), cache.get(URL + 1)));
+    assertEquals(SIZE, cache.size());
+  }
+
+  public void testPut_tooLarge() {
+    cache.put(URL + 1, new byte[SIZE + 1]);
+    assertNull(cache.get(URL + 1));
+  }
+
+  public void testPut_evictsLeastRecentlyUsed() {
+    for (int i = 1; i <= 8; i++) {
+      cache.put(URL + i, newData(i));
+    }
+    cache.get(URL + 1);
+    cache.put(URL + 9, newData(9));
+
+    assertNotNull(cache.get(URL + 1));
+    assertNull(cache.get(URL + 2));
+    assertNotNull(cache.get(URL + 9));
+    assertEquals(SIZE * 8, cache.size());
+    assertFalse(new File(dir, ThumbnailDiskCache.key(URL + 2)).exists());
+  }
+
+  public void testReopen_keepsOrderFromJournal() {
+    for (int i = 1; i <= 8; i++) {
+      cache.put(URL + i, newData(i));
+    }
+    cache.get(URL + 1);
+    cache.close();
+
+    // A new process reads the journal to know what to evict next.
+    cache = new ThumbnailDiskCache(dir, SIZE * 8);
+    assertEquals(SIZE * 8, cache.size());
+    cache.put(URL + 9, newData(9));
+    assertTrue(Arrays.equals(newData(1), cache.get(URL + 1)));
+    assertNull(cache.get(URL + 2));
+  }
+
+  public void testReopen_deletesUnjournaledFiles() throws IOException {
+    cache.put(URL + 1, newData(1));
+    cache.close();
+
+    File orphan = new File(dir, ThumbnailDiskCache.key(URL + 2));
+    FileOutputStream out = new FileOutputStream(orphan);
+    out.write(newData(2));
+    out.close();
+    assertTrue(new File(dir, ThumbnailDiskCache.key(URL + 1)).delete());
+
+    cache = new ThumbnailDiskCache(dir, SIZE * 8);
+    assertEquals(0, cache.size());
+    assertNull(cache.get(URL + 1));
+    assertNull(cache.get(URL + 2));
+    assertFalse(orphan.exists());
+  }
+
+  public void testReopen_keepsTempFilesOfPuts() throws IOException {
+    cache.put(URL + 1, newData(1));
+    cache.close();
+
+    // A put that is still writing when the same cache opens again.
+    File temp = File.createTempFile("inflight", ".tmp", dir);
+    assertEquals(SIZE, cache.size());
+    assertTrue(temp.exists());
+
+    // Another process only finds it left over from this one.
+    cache.close();
+    cache = new ThumbnailDiskCache(dir, SIZE * 8);
+    assertEquals(SIZE, cache.size());
+    assertFalse(temp.exists());
+  }
+
+  public void testJournal_compacts() {
+    cache.put(URL + 1, newData(1));
+    for (int i = 0; i < 5000; i++) {
+      cache.get(URL + 1);
+    }
+    File journal = new File(dir, ThumbnailDiskCache.JOURNAL);
+    assertTrue(journal.length() < 2000 * 40);
+  }
+
+  private static byte[] newData(int value) {
+    byte[] data = new byte[SIZE];
+    Arrays.fill(data, (byte) value);
+    return data;
+  }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import junit.framework.TestCase;
+
+public class ThumbnailLoaderTest extends TestCase {
+
+  public void testGetSampleSize_smallerThanView() {
+    assertEquals(1, ThumbnailLoader.getSampleSize(70, 70, 140, 140));
+  }
+
+  public void testGetSampleSize_exactMultiple() {
+    assertEquals(4, ThumbnailLoader.getSampleSize(560, 560, 140, 140));
+  }
+
+  public void testGetSampleSize_keepsAtLeastViewSize() {
+    assertEquals(2, ThumbnailLoader.getSampleSize(559, 559, 140, 140));
+  }
+
+  public void testGetSampleSize_limitedBySmallerSide() {
+    assertEquals(2, ThumbnailLoader.getSampleSize(1000, 300, 140, 140));
+  }
+
+  public void testGetSampleSize_unknownViewSize() {
+    assertEquals(1, ThumbnailLoader.getSampleSize(1000, 1000, 0, 0));
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import junit.framework.TestCase;
+
+import static com.btmura.android.reddit.widget.ThumbnailPrefetcher.METERED_DEPTH;
+import static com.btmura.android.reddit.widget.ThumbnailPrefetcher.MIN_SAMPLES;
+import static com.btmura.android.reddit.widget.ThumbnailPrefetcher.UNMETERED_DEPTH;
+
+public class ThumbnailPrefetcherTest extends TestCase {
+
+  public void testGetDepth_connection() {
+    assertEquals(UNMETERED_DEPTH, ThumbnailPrefetcher.getDepth(true, 0, 0));
+    assertEquals(METERED_DEPTH, ThumbnailPrefetcher.getDepth(false, 0, 0));
+  }
+
+  public void testGetDepth_tooFewSamples() {
+    assertEquals(UNMETERED_DEPTH,
+        ThumbnailPrefetcher.getDepth(true, MIN_SAMPLES - 1, 0));
+  }
+
+  public void testGetDepth_halfShownIsFullDepth() {
+    assertEquals(UNMETERED_DEPTH, ThumbnailPrefetcher.getDepth(true, 100, 50));
+    assertEquals(UNMETERED_DEPTH, ThumbnailPrefetcher.getDepth(true, 100, 90));
+  }
+
+  public void testGetDepth_scalesWithHitRate() {
+    assertEquals(METERED_DEPTH / 2,
+        ThumbnailPrefetcher.getDepth(false, 100, 25));
+  }
+
+  public void testGetDepth_neverBelowQuarter() {
+    assertEquals(UNMETERED_DEPTH / 4,
+        ThumbnailPrefetcher.getDepth(true, 100, 0));
+  }
+}
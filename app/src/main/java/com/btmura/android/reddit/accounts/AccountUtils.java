@@ -23,7 +23,6 @@ import android.accounts.OperationCanceledException;
 import android.content.Context;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
-import android.util.Log;
 
 import com.btmura.android.reddit.R;
 
@@ -31,8 +30,6 @@ import java.io.IOException;
 
 public class AccountUtils {
 
-  private static final String TAG = "AccountUtils";
-
   public static final String NO_ACCOUNT = "";
 
   public static boolean isAccount(String accountName) {
@@ -82,29 +79,17 @@ public class AccountUtils {
   public static boolean hasCredentials(Context ctx, String accountName)
       throws AuthenticatorException, OperationCanceledException, IOException {
     return !isAccount(accountName)
-        || getAccessToken(ctx, accountName) != null
-        && getRefreshToken(ctx, accountName) != null;
+        || CredentialCache.getInstance(ctx).peek(accountName) != null;
   }
 
   public static boolean hasExpiredCredentials(Context ctx, String accountName)
       throws AuthenticatorException, OperationCanceledException, IOException {
-    if (!isAccount(accountName) || !hasCredentials(ctx, accountName)) {
+    if (!isAccount(accountName)) {
       return false;
     }
-    Account a = getAccount(ctx, accountName);
-    AccountManager am = AccountManager.get(ctx);
-    String expValue = am.getUserData(a, AccountAuthenticator.EXPIRATION_MS);
-    if (TextUtils.isEmpty(expValue)) {
-      Log.wtf(TAG, "expiration is missing");
-      return true;
-    }
-    try {
-      long expirationMs = Long.valueOf(expValue);
-      return System.currentTimeMillis() >= expirationMs;
-    } catch (NumberFormatException e) {
-      Log.wtf(TAG, e);
-      return true;
-    }
+    CredentialCache.Credentials c =
+        CredentialCache.getInstance(ctx).peek(accountName);
+    return c != null && System.currentTimeMillis() >= c.expirationMs;
   }
 
   public static boolean addAccount(
@@ -126,6 +111,7 @@ public class AccountUtils {
     am.setUserData(a, AccountAuthenticator.EXPIRATION_MS,
         Long.toString(expirationMs));
     am.setUserData(a, AccountAuthenticator.SCOPES, scopes);
+    CredentialCache.getInstance(ctx).invalidate(accountName);
 
     return exists;
   }
@@ -142,6 +128,7 @@ public class AccountUtils {
     am.setUserData(a, AccountAuthenticator.EXPIRATION_MS,
         Long.toString(expirationMs));
     am.setUserData(a, AccountAuthenticator.SCOPES, scopes);
+    CredentialCache.getInstance(ctx).invalidate(accountName);
   }
 
   private AccountUtils() {
@@ -0,0 +1,284 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.accounts;
+
+import android.accounts.Account;
+import android.accounts.AccountManager;
+import android.accounts.AuthenticatorException;
+import android.accounts.OperationCanceledException;
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+import android.util.Log;
+
+import com.btmura.android.reddit.util.SingleFlight;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link CredentialCache} keeps the tokens of each account in memory, so that
+ * requests don't make several calls to the {@link AccountManager} service
+ * before connecting. It refreshes access tokens in the background shortly
+ * before they expire, and lets only one refresh per account run at a time.
+ */
+public class CredentialCache {
+
+  private static final String TAG = "CredentialCache";
+
+  /** Refresh the access token in the background this long before expiring. */
+  static final long REFRESH_AHEAD_MS = 5 * 60 * 1000;
+
+  /** Tokens of an account and when the access token expires. */
+  public static class Credentials {
+
+    public final String accessToken;
+    public final String refreshToken;
+    public final long expirationMs;
+
+    public Credentials(
+        String accessToken,
+        String refreshToken,
+        long expirationMs) {
+      this.accessToken = accessToken;
+      this.refreshToken = refreshToken;
+      this.expirationMs = expirationMs;
+    }
+  }
+
+  /** Loads credentials that aren't in the cache. */
+  public interface Loader {
+
+    /** Returns the credentials of the account or null if there are none. */
+    @Nullable
+    Credentials load(String accountName)
+        throws AuthenticatorException, OperationCanceledException, IOException;
+  }
+
+  /** Gets and saves a new access token using the refresh token. */
+  public interface Refresher {
+
+    Credentials refresh(String accountName, String refreshToken)
+        throws AuthenticatorException, OperationCanceledException, IOException;
+  }
+
+  private static CredentialCache INSTANCE;
+
+  public static CredentialCache getInstance(Context ctx) {
+    synchronized (CredentialCache.class) {
+      if (INSTANCE == null) {
+        INSTANCE = new CredentialCache(
+            new AccountManagerLoader(ctx.getApplicationContext()),
+            Executors.newSingleThreadExecutor());
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final Loader loader;
+  private final Executor executor;
+  private final Map<String, Credentials> credentials =
+      new HashMap<String, Credentials>();
+  private final Set<String> backgroundRefreshes = new HashSet<String>();
+  private final SingleFlight<String> loads = new SingleFlight<String>();
+  private final SingleFlight<String> refreshes = new SingleFlight<String>();
+
+  /** Test constructor. Use {@link #getInstance(Context)}. */
+  public CredentialCache(Loader loader, Executor executor) {
+    this.loader = loader;
+    this.executor = executor;
+  }
+
+  /**
+   * Returns the account's credentials without refreshing them or null if the
+   * account has none.
+   */
+  @Nullable
+  public Credentials peek(final String accountName)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    synchronized (credentials) {
+      Credentials c = credentials.get(accountName);
+      if (c != null) {
+        return c;
+      }
+    }
+    return execute(loads, accountName, new Callable<Credentials>() {
+      @Override
+      public Credentials call() throws Exception {
+        Credentials c = loader.load(accountName);
+        if (c != null) {
+          put(accountName, c);
+        }
+        return c;
+      }
+    });
+  }
+
+  /**
+   * Returns credentials with an access token that hasn't expired or null if
+   * the account has none. Refreshes the token in the background if it is
+   * about to expire.
+   */
+  @Nullable
+  public Credentials get(String accountName, Refresher refresher)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    Credentials c = peek(accountName);
+    if (c == null) {
+      return null;
+    }
+    long nowMs = System.currentTimeMillis();
+    if (nowMs >= c.expirationMs) {
+      return refresh(accountName, c.accessToken, refresher);
+    }
+    if (nowMs >= c.expirationMs - REFRESH_AHEAD_MS) {
+      refreshInBackground(accountName, c.accessToken, refresher);
+    }
+    return c;
+  }
+
+  /**
+   * Returns credentials with a new access token after the given one was
+   * rejected. Callers whose token was rejected at the same time share one
+   * refresh, and callers with a token that was already replaced get the
+   * replacement without another refresh.
+   */
+  public Credentials refresh(
+      final String accountName,
+      final String staleAccessToken,
+      final Refresher refresher)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    return execute(refreshes, accountName, new Callable<Credentials>() {
+      @Override
+      public Credentials call() throws Exception {
+        Credentials c = peek(accountName);
+        if (c == null) {
+          throw new AuthenticatorException("missing credentials");
+        }
+        if (!TextUtils.equals(c.accessToken, staleAccessToken)) {
+          return c;
+        }
+        Credentials refreshed = refresher.refresh(accountName, c.refreshToken);
+        put(accountName, refreshed);
+        return refreshed;
+      }
+    });
+  }
+
+  /** Removes the account's credentials so they are loaded again. */
+  public void invalidate(String accountName) {
+    synchronized (credentials) {
+      credentials.remove(accountName);
+    }
+  }
+
+  private void put(String accountName, Credentials c) {
+    synchronized (credentials) {
+      credentials.put(accountName, c);
+    }
+  }
+
+  private void refreshInBackground(
+      final String accountName,
+      final String accessToken,
+      final Refresher refresher) {
+    synchronized (backgroundRefreshes) {
+      if (!backgroundRefreshes.add(accountName)) {
+        return;
+      }
+    }
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          refresh(accountName, accessToken, refresher);
+        } catch (Exception e) {
+          // Requests will refresh the token themselves once it expires.
+          Log.e(TAG, e.getMessage(), e);
+        } finally {
+          synchronized (backgroundRefreshes) {
+            backgroundRefreshes.remove(accountName);
+          }
+        }
+      }
+    });
+  }
+
+  private static Credentials execute(
+      SingleFlight<String> flight,
+      String accountName,
+      Callable<Credentials> call)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    try {
+      return flight.execute(accountName, call);
+    } catch (AuthenticatorException e) {
+      throw e;
+    } catch (OperationCanceledException e) {
+      throw e;
+    } catch (IOException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (Exception e) {
+      throw new IOException(e);
+    }
+  }
+
+  /** {@link Loader} that reads the credentials from the account manager. */
+  static class AccountManagerLoader implements Loader {
+
+    private final Context ctx;
+
+    AccountManagerLoader(Context ctx) {
+      this.ctx = ctx;
+    }
+
+    @Override
+    public Credentials load(String accountName)
+        throws AuthenticatorException, OperationCanceledException, IOException {
+      String accessToken = AccountUtils.getAccessToken(ctx, accountName);
+      String refreshToken = AccountUtils.getRefreshToken(ctx, accountName);
+      if (accessToken == null || refreshToken == null) {
+        return null;
+      }
+
+      Account a = AccountUtils.getAccount(ctx, accountName);
+      String expValue = AccountManager.get(ctx)
+          .getUserData(a, AccountAuthenticator.EXPIRATION_MS);
+      long expirationMs = 0;
+      if (TextUtils.isEmpty(expValue)) {
+        Log.wtf(TAG, "expiration is missing");
+      } else {
+        try {
+          expirationMs = Long.valueOf(expValue);
+        } catch (NumberFormatException e) {
+          Log.wtf(TAG, e);
+        }
+      }
+      return new Credentials(accessToken, refreshToken, expirationMs);
+    }
+  }
+}
@@ -29,8 +29,10 @@ import android.widget.ListView;
 import com.btmura.android.reddit.R;
 import com.btmura.android.reddit.accounts.AccountUtils;
 import com.btmura.android.reddit.app.CommentLogic.CommentList;
+import com.btmura.android.reddit.app.CommentLogic.SubtreeIndex;
 import com.btmura.android.reddit.content.AccountPrefs;
 import com.btmura.android.reddit.content.CommentLoader;
+import com.btmura.android.reddit.database.Kinds;
 import com.btmura.android.reddit.database.Things;
 import com.btmura.android.reddit.net.Urls;
 import com.btmura.android.reddit.provider.Provider;
@@ -56,6 +58,7 @@ class CommentListController
   private final String thingId;
   private final String linkId;
   private final CommentAdapter adapter;
+  private final SubtreeIndex subtreeIndex = new SubtreeIndex();
   private int filter;
   private Bundle cursorExtras;
 
@@ -94,6 +97,7 @@ class CommentListController
   @Override
   public void swapCursor(Cursor cursor) {
     adapter.swapCursor(cursor);
+    subtreeIndex.build(this);
     cursorExtras = cursor != null ? cursor.getExtras() : null;
   }
 
@@ -148,7 +152,7 @@ class CommentListController
     for (int i = 0; i < count; i++) {
       if (checkedPositions.get(i)) {
         checkedThingIds[j] = getThingId(i);
-        hasChildren[j] = CommentLogic.hasChildren(this, i);
+        hasChildren[j] = subtreeIndex.hasChildren(i);
         j++;
       }
     }
@@ -186,15 +190,32 @@ class CommentListController
       return; // Don't allow expanding or collapsing on the header comment.
     }
 
+    // Replies are the comments after this one up to the next comment that
+    // isn't a reply, so they can be updated by the range between the two.
+    // Pass ids rather than sequences, since the session might have been
+    // renumbered since the cursor was loaded.
+    long sessionId = getSessionId(pos);
+    long endId = CommentLogic.getSubtreeEndId(this, subtreeIndex, pos);
     if (isExpanded(pos)) {
-      long[] childIds = CommentLogic.getChildren(this, pos);
-      Provider.collapseCommentAsync(context, id, childIds);
+      Provider.collapseCommentAsync(context, id, sessionId, endId);
     } else {
-      long sessionId = getSessionId(pos);
-      Provider.expandCommentAsync(context, id, sessionId);
+      Provider.expandCommentAsync(context, id, sessionId, endId);
     }
   }
 
+  public boolean isLoadMore(int pos) {
+    return getKind(pos) == Kinds.KIND_MORE;
+  }
+
+  public void loadMore(int pos) {
+    Provider.loadMoreCommentsAsync(context,
+        accountName,
+        getId(pos),
+        getSessionId(pos),
+        getThingId(0),
+        filter);
+  }
+
   public void reply(int pos) {
     String messageDestination = getAuthor(pos);
     String title = Strings.toString(getCommentLabel(pos));
@@ -112,6 +112,13 @@ public class CommentListFragment extends ListFragment implements
     controller.swapCursor(null);
   }
 
+  @Override
+  public void onListItemClick(ListView l, View v, int position, long id) {
+    if (controller.isLoadMore(position)) {
+      controller.loadMore(position);
+    }
+  }
+
   @Override
   public void onStatusClick(View view) {
     int position = getListView().getPositionForView(view);
@@ -194,6 +201,14 @@ public class CommentListFragment extends ListFragment implements
       int position,
       long id,
       boolean checked) {
+    // Rows to load more replies have no actions, so don't let them be chosen.
+    if (checked && controller.isLoadMore(position)) {
+      getListView().setItemChecked(position, false);
+      if (getListView().getCheckedItemCount() == 0) {
+        mode.finish();
+      }
+      return;
+    }
     mode.invalidate();
   }
 
@@ -19,6 +19,13 @@ package com.btmura.android.reddit.app;
 import android.database.Cursor;
 import android.database.CursorWrapper;
 
+import com.btmura.android.reddit.database.Comments;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * Class containing logic for inserting and deleting new comments.
  */
@@ -82,6 +89,112 @@ public class CommentLogic {
     }
   }
 
+  /**
+   * {@link SubtreeIndex} keeps where the replies of every comment end, so
+   * subtree queries read an array instead of comparing nesting levels one
+   * row at a time, which through a cursor is a move and read per row. Build
+   * it once when the comments change, like when a new cursor is swapped in.
+   */
+  public static class SubtreeIndex {
+
+    private int[] ends = new int[0];
+    private int[] nestings = new int[0];
+    private int count;
+
+    /** Rebuilds the index from the comments in the list. */
+    public void build(CommentList list) {
+      count = list.getCommentCount();
+      if (ends.length < count) {
+        ends = new int[count];
+        nestings = new int[count];
+      }
+      for (int i = 0; i < count; i++) {
+        nestings[i] = list.getCommentNesting(i);
+      }
+
+      // Work backwards and skip over whole subtrees of replies already
+      // indexed, so each comment is only visited again by its parent.
+      for (int i = count - 1; i >= 0; i--) {
+        int end = i + 1;
+        while (end < count && nestings[end] > nestings[i]) {
+          end = ends[end];
+        }
+        ends[i] = end;
+      }
+    }
+
+    /** @return number of comments indexed */
+    public int getCount() {
+      return count;
+    }
+
+    /**
+     * @return position after the last reply under the comment at the given
+     * position, which is the next position if it has no replies
+     */
+    public int getSubtreeEnd(int position) {
+      return ends[position];
+    }
+
+    /** @return whether the comment at the given position has replies */
+    public boolean hasChildren(int position) {
+      return ends[position] > position + 1;
+    }
+
+    /** @return position to insert a new response to the given position */
+    public int getInsertPosition(int position) {
+      // Responses to the header comment go at the end of the list.
+      return position == 0 ? count : ends[position];
+    }
+
+    /**
+     * Adds a comment inserted at a position from {@link #getInsertPosition}
+     * with the nesting from {@link #getInsertNesting}.
+     */
+    public void insert(int position, int nesting) {
+      ensureCapacity(count + 1);
+      for (int i = 0; i < position; i++) {
+        if (ends[i] > position
+            || ends[i] == position && nestings[i] < nesting) {
+          ends[i]++;
+        }
+      }
+      for (int i = count; i > position; i--) {
+        ends[i] = ends[i - 1] + 1;
+        nestings[i] = nestings[i - 1];
+      }
+      ends[position] = position + 1;
+      nestings[position] = nesting;
+      count++;
+    }
+
+    /** Removes a comment without replies at the given position. */
+    public void remove(int position) {
+      for (int i = 0; i < position; i++) {
+        if (ends[i] > position) {
+          ends[i]--;
+        }
+      }
+      for (int i = position + 1; i < count; i++) {
+        ends[i - 1] = ends[i] - 1;
+        nestings[i - 1] = nestings[i];
+      }
+      count--;
+    }
+
+    private void ensureCapacity(int capacity) {
+      if (ends.length < capacity) {
+        int newLength = Math.max(capacity, ends.length * 2);
+        int[] newEnds = new int[newLength];
+        int[] newNestings = new int[newLength];
+        System.arraycopy(ends, 0, newEnds, 0, count);
+        System.arraycopy(nestings, 0, newNestings, 0, count);
+        ends = newEnds;
+        nestings = newNestings;
+      }
+    }
+  }
+
   /**
    * @return nesting for a new comment that is a response to the comment at the
    * given position
@@ -95,13 +208,33 @@ public class CommentLogic {
     return nesting;
   }
 
+  /** Sequence returned when there is no room left to insert a comment. */
+  public static final int NO_SEQUENCE = -1;
+
   /**
    * @return sequence for a new comment that is a response to the comment at the
-   * given position
+   * given position or {@link #NO_SEQUENCE} if the comments around it have no
+   * room left between their sequences and need to be renumbered
    */
   public static int getInsertSequence(CommentList list, int position) {
     int insertPosition = getInsertPosition(list, position);
-    return list.getCommentSequence(insertPosition - 1) + 1;
+    int before = list.getCommentSequence(insertPosition - 1);
+    if (insertPosition == list.getCommentCount()) {
+      return before + Comments.SEQUENCE_GAP;
+    }
+    int after = list.getCommentSequence(insertPosition);
+    if (after - before < 2) {
+      return NO_SEQUENCE;
+    }
+    return before + (after - before) / 2;
+  }
+
+  /**
+   * @return sequence of the comment at the given position after renumbering
+   * the comments {@link Comments#SEQUENCE_GAP} apart
+   */
+  public static int getSpacedSequence(int position) {
+    return position * Comments.SEQUENCE_GAP;
   }
 
   /**
@@ -112,19 +245,8 @@ public class CommentLogic {
     // Sequence in response to comment should be the last in responses.
     if (position == 0) {
       return list.getCommentCount();
-    } else {
-      int nesting = list.getCommentNesting(position);
-      int count = list.getCommentCount();
-      for (int i = position + 1; i < count; i++) {
-        int nextNesting = list.getCommentNesting(i);
-        if (nextNesting > nesting) {
-          position = i;
-        } else {
-          break;
-        }
-      }
-      return position + 1;
     }
+    return getSubtreeEnd(list, position);
   }
 
   /**
@@ -161,30 +283,142 @@ public class CommentLogic {
   public static long[] getChildren(CommentList list, int position) {
     // First, figure out how many consecutive children there are to avoid
     // unnecessary array resizing allocations...
-    int nesting = list.getCommentNesting(position);
-    int numChildren = 0;
-    int count = list.getCommentCount();
-    for (int i = position + 1; i < count; i++) {
-      int nextNesting = list.getCommentNesting(i);
-      if (nextNesting > nesting) {
-        numChildren++;
-        continue;
-      }
-      break;
-    }
+    int numChildren = getSubtreeEnd(list, position) - position - 1;
 
     // Now fill up the array with the ids if there are any children.
     long[] childIds = null;
     if (numChildren > 0) {
       childIds = new long[numChildren];
-      int j = 0;
-      for (int i = position + 1; i < count && j < numChildren; i++, j++) {
-        childIds[j] = list.getCommentId(i);
+      for (int j = 0; j < numChildren; j++) {
+        childIds[j] = list.getCommentId(position + 1 + j);
       }
     }
     return childIds;
   }
 
+  /**
+   * @return position after the last reply under the comment at the given
+   * position, which is the next position if it has no replies
+   */
+  public static int getSubtreeEnd(CommentList list, int position) {
+    int nesting = list.getCommentNesting(position);
+    int count = list.getCommentCount();
+    int end = position + 1;
+    while (end < count && list.getCommentNesting(end) > nesting) {
+      end++;
+    }
+    return end;
+  }
+
+  /** Id returned when there is no comment after a comment's replies. */
+  public static final long NO_ID = -1;
+
+  /**
+   * @return id of the first comment after the replies under the comment at
+   * the given position or {@link #NO_ID} if there is none, so the comment
+   * and its replies are the ones from the comment up to but not including
+   * this one
+   */
+  public static long getSubtreeEndId(
+      CommentList list,
+      SubtreeIndex index,
+      int position) {
+    int end = index.getSubtreeEnd(position);
+    return end < list.getCommentCount() ? list.getCommentId(end) : NO_ID;
+  }
+
+  /**
+   * Orders replies that were loaded as a flat list, like the ones from the
+   * morechildren API, so parents come before their replies and siblings keep
+   * the order they were loaded in.
+   *
+   * @param thingIds of the replies
+   * @param parentIds of the replies' parents in the same order
+   * @param depths filled with how many levels each reply is nested below the
+   * replies whose parents weren't loaded with them
+   * @return position of each reply in the order to show them
+   */
+  public static int[] sortReplies(
+      List<String> thingIds,
+      List<String> parentIds,
+      int[] depths) {
+    int count = thingIds.size();
+    Map<String, Integer> positions = new HashMap<String, Integer>(count * 2);
+    for (int i = 0; i < count; i++) {
+      positions.put(thingIds.get(i), i);
+    }
+
+    // Link each reply into its parent's replies in the order they came.
+    int[] parents = new int[count];
+    int[] firstReplies = new int[count];
+    int[] lastReplies = new int[count];
+    int[] nextSiblings = new int[count];
+    Arrays.fill(firstReplies, -1);
+    Arrays.fill(nextSiblings, -1);
+    for (int i = 0; i < count; i++) {
+      Integer parent = positions.get(parentIds.get(i));
+      parents[i] = parent != null && parent != i ? parent : -1;
+      if (parents[i] != -1) {
+        if (firstReplies[parents[i]] == -1) {
+          firstReplies[parents[i]] = i;
+        } else {
+          nextSiblings[lastReplies[parents[i]]] = i;
+        }
+        lastReplies[parents[i]] = i;
+      }
+    }
+
+    int[] ranks = new int[count];
+    Arrays.fill(ranks, -1);
+    int rank = 0;
+    for (int i = 0; i < count; i++) {
+      if (parents[i] == -1) {
+        rank = rankReplies(i, rank, parents, firstReplies, nextSiblings,
+            ranks, depths);
+      }
+    }
+    // Replies whose parents loop back to them have no root, so put them last.
+    for (int i = 0; i < count; i++) {
+      if (ranks[i] == -1) {
+        rank = rankReplies(i, rank, parents, firstReplies, nextSiblings,
+            ranks, depths);
+      }
+    }
+    return ranks;
+  }
+
+  /** Ranks the root and its replies in order and returns the next rank. */
+  private static int rankReplies(
+      int root,
+      int rank,
+      int[] parents,
+      int[] firstReplies,
+      int[] nextSiblings,
+      int[] ranks,
+      int[] depths) {
+    int i = root;
+    depths[i] = 0;
+    while (true) {
+      ranks[i] = rank++;
+      int reply = firstReplies[i];
+      if (reply != -1 && ranks[reply] == -1) {
+        depths[reply] = depths[i] + 1;
+        i = reply;
+        continue;
+      }
+
+      // Go back up until there is a sibling that hasn't been ranked yet.
+      while (i != root && nextSiblings[i] == -1) {
+        i = parents[i];
+      }
+      if (i == root) {
+        return rank;
+      }
+      depths[nextSiblings[i]] = depths[i];
+      i = nextSiblings[i];
+    }
+  }
+
   private CommentLogic() {
   }
 }
@@ -32,6 +32,7 @@ import android.view.ViewGroup;
 import android.widget.AbsListView;
 import android.widget.AbsListView.MultiChoiceModeListener;
 import android.widget.AbsListView.OnScrollListener;
+import android.widget.AbsListView.RecyclerListener;
 import android.widget.ListView;
 
 import com.btmura.android.reddit.R;
@@ -108,6 +109,14 @@ abstract class ThingListFragment<C extends ThingListController<?>, MC extends Me
     lv.setOnTouchListener(touchListener);
 
     ThumbnailLoader.lock(false);
+    lv.setRecyclerListener(new RecyclerListener() {
+      @Override
+      public void onMovedToScrapHeap(View view) {
+        if (view instanceof ThingView) {
+          ThumbnailLoader.cancel((ThingView) view);
+        }
+      }
+    });
     final OnScrollListener scrollListener = touchListener.makeScrollListener();
     lv.setOnScrollListener(new OnScrollListener() {
       @Override
@@ -56,6 +56,8 @@ public class RandomSubredditLoader extends BaseAsyncTaskLoader<String> {
           Filter.SUBREDDIT_HOT, Urls.NO_MORE, Urls.NO_COUNT);
       conn = RedditApi.connect(getContext(), accountName, url);
       if (conn.getResponseCode() == 302) {
+        // Read the redirect's body, so the connection can be reused.
+        RedditApi.getInputStream(conn).close();
         String location = conn.getHeaderField("Location");
         return UriHelper.getSubreddit(Uri.parse(location));
       }
@@ -66,9 +68,7 @@ public class RandomSubredditLoader extends BaseAsyncTaskLoader<String> {
     } catch (AuthenticatorException e) {
       Log.e(TAG, e.getMessage(), e);
     } finally {
-      if (conn != null) {
-        conn.disconnect();
-      }
+      RedditApi.release(conn);
     }
     return null;
   }
@@ -31,7 +31,10 @@ public class Comments implements BaseThingColumns, BaseColumns {
   /** Column with the account name of the user viewing the comments. */
   public static final String COLUMN_ACCOUNT = SharedColumns.COLUMN_ACCOUNT;
 
-  /** Column with the body of a comment. Empty for the header comment. */
+  /**
+   * Column with the body of a comment. Empty for the header comment. For
+   * more rows, the comma-separated ids of the replies left to load.
+   */
   public static final String COLUMN_BODY = "body";
 
   /** Column with the {@link CommentActions} row ID for a pending comment. */
@@ -49,7 +52,11 @@ public class Comments implements BaseThingColumns, BaseColumns {
   /** Column with the self text of the comment. Only for header comments. */
   public static final String COLUMN_SELF_TEXT = "selfText";
 
-  /** Column with the sequence used to order existing and pending comments. */
+  /**
+   * Column with the sequence used to order existing and pending comments.
+   * Loaded comments are {@link #SEQUENCE_GAP} apart, so pending comments can
+   * take a sequence between two others without renumbering later comments.
+   */
   public static final String COLUMN_SEQUENCE = "sequence";
 
   /** Column with the session ID that groups comments of a thing together. */
@@ -71,6 +78,9 @@ public class Comments implements BaseThingColumns, BaseColumns {
   /** String shown instead of body when a comment is deleted. */
   public static final String DELETED_BODY = Things.DELETED_BODY;
 
+  /** Spacing between the sequences of loaded comments. */
+  public static final int SEQUENCE_GAP = 1024;
+
   public static final String SELECT_BY_ACCOUNT =
       SharedColumns.SELECT_BY_ACCOUNT;
 
@@ -89,6 +99,13 @@ public class Comments implements BaseThingColumns, BaseColumns {
   public static final String SORT_BY_SEQUENCE_AND_ID =
       COLUMN_SEQUENCE + " ASC, " + _ID + " ASC";
 
+  /** Index for loading a session's comments in sequence order. */
+  static final String INDEX_SESSION_ID_AND_SEQUENCE =
+      "comments_sessionId_sequence";
+
+  /** Index for updating a comment across sessions when an action is taken. */
+  static final String INDEX_ACCOUNT_AND_THING_ID = "comments_account_thingId";
+
   static void create(SQLiteDatabase db) {
     db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
         + _ID + " INTEGER PRIMARY KEY,"
@@ -105,4 +122,14 @@ public class Comments implements BaseThingColumns, BaseColumns {
         + COLUMN_VISIBLE + " INTEGER DEFAULT 1,"
         + CREATE_THING_COLUMNS_V2 + ")");
   }
+
+  /** Creates the indexes added in database version 5. */
+  static void createIndexesV5(SQLiteDatabase db) {
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SESSION_ID_AND_SEQUENCE
+        + " ON " + TABLE_NAME + " (" + COLUMN_SESSION_ID + ", "
+        + COLUMN_SEQUENCE + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_ACCOUNT_AND_THING_ID
+        + " ON " + TABLE_NAME + " (" + COLUMN_ACCOUNT + ", "
+        + COLUMN_THING_ID + ")");
+  }
 }
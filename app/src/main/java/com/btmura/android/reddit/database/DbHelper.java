@@ -16,15 +16,18 @@
 
 package com.btmura.android.reddit.database;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 
 public class DbHelper extends SQLiteOpenHelper {
 
   public static final String DATABASE_REDDIT = "reddit";
   public static final String DATABASE_TEST = "test";
-  public static final int LATEST_VERSION = 4;
+  public static final int LATEST_VERSION = 5;
 
   /**
    * Singleton instances accessible via {@link #getInstance(Context)}.
@@ -52,16 +55,61 @@ public class DbHelper extends SQLiteOpenHelper {
    */
   private final int version;
 
+  /**
+   * Whether write-ahead logging is used, so that queries can read from a pool
+   * of connections while another thread holds a write transaction.
+   */
+  private final boolean writeAheadLogging;
+
   /**
    * Test constructor. Use {@link #getInstance(Context)}.
    */
   public DbHelper(Context context, String name, int version) {
+    this(context, name, version, true);
+  }
+
+  /**
+   * Test constructor for comparing with and without write-ahead logging. Use
+   * {@link #getInstance(Context)}.
+   */
+  public DbHelper(
+      Context context,
+      String name,
+      int version,
+      boolean writeAheadLogging) {
     super(context, name, null, version);
     this.version = version;
+    this.writeAheadLogging = writeAheadLogging;
+    if (writeAheadLogging
+        && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+      enableWriteAheadLoggingJellyBean();
+    }
+  }
+
+  @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+  private void enableWriteAheadLoggingJellyBean() {
+    setWriteAheadLoggingEnabled(true);
+  }
+
+  /**
+   * Returns true if queries outside of a transaction can run concurrently with
+   * a write transaction on another thread. Asks the open database for its
+   * journal mode, since SQLite falls back to the rollback journal when it
+   * can't use write-ahead logging, like for in-memory databases.
+   */
+  public boolean isWriteAheadLoggingEnabled() {
+    return "wal".equalsIgnoreCase(DatabaseUtils.stringForQuery(
+        getWritableDatabase(), "PRAGMA journal_mode", null));
   }
 
   @Override
   public void onOpen(SQLiteDatabase db) {
+    // Older versions can only enable it once the database is open.
+    if (writeAheadLogging
+        && !db.isReadOnly()
+        && Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN) {
+      db.enableWriteAheadLogging();
+    }
     if (!db.isReadOnly() && version == 2) {
       Sessions.createTempTableV2(db);
       Things.createTempTableV2(db);
@@ -73,6 +121,10 @@ public class DbHelper extends SQLiteOpenHelper {
   @Override
   public void onCreate(SQLiteDatabase db) {
     switch (version) {
+      case 5:
+        createDatabaseV5(db);
+        break;
+
       case 4:
         createDatabaseV4(db);
         break;
@@ -103,6 +155,9 @@ public class DbHelper extends SQLiteOpenHelper {
     if (needsUpgrade(oldVersion, newVersion, 4)) {
       upgradeToDatabaseV4(db);
     }
+    if (needsUpgrade(oldVersion, newVersion, 5)) {
+      upgradeToDatabaseV5(db);
+    }
   }
 
   private static boolean needsUpgrade(
@@ -112,6 +167,25 @@ public class DbHelper extends SQLiteOpenHelper {
     return oldVersion < upgrade && newVersion >= upgrade;
   }
 
+  /**
+   * Creates the tables for database version 5. It adds indexes for looking up
+   * rows by session and by thing ID, since those tables can grow to thousands
+   * of rows between cleanups.
+   */
+  private static void createDatabaseV5(SQLiteDatabase db) {
+    createDatabaseV4(db);
+    upgradeToDatabaseV5(db);
+  }
+
+  /**
+   * Upgrade database to version 5 from version 4.
+   */
+  private static void upgradeToDatabaseV5(SQLiteDatabase db) {
+    Comments.createIndexesV5(db);
+    Messages.createIndexesV5(db);
+    Things.createIndexesV5(db);
+  }
+
   private static void createDatabaseV4(SQLiteDatabase db) {
     AccountActions.create(db);
 
@@ -53,6 +53,12 @@ public class Messages implements BaseColumns {
   public static final String SELECT_BY_SESSION_ID =
       SharedColumns.SELECT_BY_SESSION_ID;
 
+  /** Index for loading a session's messages. */
+  static final String INDEX_SESSION_ID = "messages_sessionId";
+
+  /** Index for updating a message across sessions when an action is taken. */
+  static final String INDEX_ACCOUNT_AND_THING_ID = "messages_account_thingId";
+
   static void create(SQLiteDatabase db) {
     db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
         + _ID + " INTEGER PRIMARY KEY,"
@@ -73,6 +79,15 @@ public class Messages implements BaseColumns {
         + COLUMN_WAS_COMMENT + " INTEGER DEFAULT 0)");
   }
 
+  /** Creates the indexes added in database version 5. */
+  static void createIndexesV5(SQLiteDatabase db) {
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SESSION_ID
+        + " ON " + TABLE_NAME + " (" + COLUMN_SESSION_ID + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_ACCOUNT_AND_THING_ID
+        + " ON " + TABLE_NAME + " (" + COLUMN_ACCOUNT + ", "
+        + COLUMN_THING_ID + ")");
+  }
+
   /** Creates the temporary table used in v2. Kept for testing upgrades. */
   static void createTempTableV2(SQLiteDatabase db) {
     db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + TABLE_NAME + " ("
@@ -84,6 +84,12 @@ public class Things implements BaseColumns {
   public static final String SELECT_NOT_HIDDEN_BY_SESSION_ID =
       SharedColumns.SELECT_BY_SESSION_ID + " AND " + COLUMN_HIDDEN + "=0";
 
+  /** Index for loading a session's things with or without hidden ones. */
+  static final String INDEX_SESSION_ID_AND_HIDDEN = "things_sessionId_hidden";
+
+  /** Index for updating a thing across sessions when an action is taken. */
+  static final String INDEX_ACCOUNT_AND_THING_ID = "things_account_thingId";
+
   static void create(SQLiteDatabase db) {
     db.execSQL("CREATE TABLE " + TABLE_NAME + " ("
         + _ID + " INTEGER PRIMARY KEY,"
@@ -113,6 +119,16 @@ public class Things implements BaseColumns {
         + COLUMN_URL + " TEXT)");
   }
 
+  /** Creates the indexes added in database version 5. */
+  static void createIndexesV5(SQLiteDatabase db) {
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_SESSION_ID_AND_HIDDEN
+        + " ON " + TABLE_NAME + " (" + COLUMN_SESSION_ID + ", "
+        + COLUMN_HIDDEN + ")");
+    db.execSQL("CREATE INDEX IF NOT EXISTS " + INDEX_ACCOUNT_AND_THING_ID
+        + " ON " + TABLE_NAME + " (" + COLUMN_ACCOUNT + ", "
+        + COLUMN_THING_ID + ")");
+  }
+
   /** Creates the temporary table used in version 2. Kept for testing upgrades. */
   static void createTempTableV2(SQLiteDatabase db) {
     db.execSQL("CREATE TEMP TABLE IF NOT EXISTS " + TABLE_NAME + " ("
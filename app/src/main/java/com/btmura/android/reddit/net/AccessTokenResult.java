@@ -16,9 +16,8 @@
 
 package com.btmura.android.reddit.net;
 
-import android.util.JsonReader;
-
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
 import java.io.IOException;
 import java.util.concurrent.TimeUnit;
@@ -34,7 +33,7 @@ public class AccessTokenResult extends JsonParser {
   /** Expiration time in milliseconds of the access token. */
   public long expirationMs;
 
-  static AccessTokenResult getAccessToken(JsonReader r, long retrievalTimeMs)
+  static AccessTokenResult getAccessToken(Utf8JsonReader r, long retrievalTimeMs)
       throws IOException {
     AccessTokenResult result = new AccessTokenResult();
     r.beginObject();
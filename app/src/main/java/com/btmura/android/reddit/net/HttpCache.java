@@ -0,0 +1,530 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.net;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.text.TextUtils;
+
+import com.btmura.android.reddit.util.Strings;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link HttpCache} is a size bounded disk cache of GET response bodies keyed
+ * by account and URL. Fresh bodies are replayed without a request and stale
+ * ones are revalidated using their ETag or Last-Modified date, so that a 304
+ * response replays the cached body.
+ */
+public class HttpCache {
+
+  private static final String DIRECTORY = "http";
+  private static final long MAX_SIZE = 4 * 1024 * 1024;
+
+  private static final String SUFFIX_META = ".0";
+  private static final String SUFFIX_BODY = ".1";
+  private static final String SUFFIX_TEMP = ".tmp";
+
+  private static final int META_VERSION = 1;
+
+  private static HttpCache INSTANCE;
+
+  public static HttpCache getInstance(Context ctx) {
+    synchronized (HttpCache.class) {
+      if (INSTANCE == null) {
+        File dir = new File(ctx.getApplicationContext().getCacheDir(),
+            DIRECTORY);
+        INSTANCE = new HttpCache(dir, MAX_SIZE);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final File dir;
+  private final long maxSize;
+
+  /** Sizes of the entries by key from least to most recently used. */
+  private final LinkedHashMap<String, Long> sizes =
+      new LinkedHashMap<String, Long>(16, 0.75f, true);
+  private long size = -1;
+
+  private final AtomicInteger hitCount = new AtomicInteger();
+  private final AtomicInteger missCount = new AtomicInteger();
+  private final AtomicInteger revalidateCount = new AtomicInteger();
+
+  /** Test constructor. Use {@link #getInstance(Context)}. */
+  public HttpCache(File dir, long maxSize) {
+    this.dir = dir;
+    this.maxSize = maxSize;
+  }
+
+  /** Returns the number of bodies replayed without a request. */
+  public int getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of bodies that had to be downloaded. */
+  public int getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the number of bodies replayed after a 304 response. */
+  public int getRevalidateCount() {
+    return revalidateCount.get();
+  }
+
+  /** Returns the cached entry or null if there is none. */
+  @Nullable
+  public Entry get(@Nullable String accountName, CharSequence url) {
+    String key = key(accountName, url);
+    if (!file(key, SUFFIX_BODY).exists()) {
+      removeOrphan(key); // Drop metadata that outlived its body.
+      return null;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(file(key, SUFFIX_META)));
+      if (in.readInt() != META_VERSION
+          || !url.toString().equals(in.readUTF())) {
+        return null;
+      }
+      return new Entry(key, in.readUTF(), in.readUTF(), in.readLong());
+    } catch (IOException e) {
+      return null;
+    } finally {
+      close(in);
+    }
+  }
+
+  /**
+   * Returns the body of an entry that is still fresh or null if the body
+   * was removed since getting the entry and it must be downloaded again.
+   */
+  @Nullable
+  public InputStream replay(Entry entry) {
+    InputStream in = open(entry);
+    if (in != null) {
+      hitCount.incrementAndGet();
+    }
+    return in;
+  }
+
+  /** Adds headers to make a request only return a body if it changed. */
+  public static void addValidators(HttpURLConnection conn, Entry entry) {
+    if (!TextUtils.isEmpty(entry.etag)) {
+      conn.setRequestProperty("If-None-Match", entry.etag);
+    }
+    if (!TextUtils.isEmpty(entry.lastModified)) {
+      conn.setRequestProperty("If-Modified-Since", entry.lastModified);
+    }
+  }
+
+  /**
+   * Returns the cached body after the server responded with a 304, and
+   * updates how long the entry is fresh for. Returns null if the body was
+   * removed since getting the entry and it must be requested again without
+   * validators.
+   */
+  @Nullable
+  public InputStream revalidate(
+      CharSequence url,
+      Entry entry,
+      HttpURLConnection conn)
+      throws IOException {
+    InputStream in = open(entry);
+    if (in == null) {
+      return null;
+    }
+    long expirationMs = getExpirationMs(conn, System.currentTimeMillis());
+    if (expirationMs != -1) {
+      writeMeta(entry.key, url, entry.etag, entry.lastModified, expirationMs);
+    }
+    revalidateCount.incrementAndGet();
+    return in;
+  }
+
+  /**
+   * Returns a stream of the downloaded body that stores the body in the
+   * cache once it has been read to the end.
+   */
+  public InputStream store(
+      @Nullable String accountName,
+      CharSequence url,
+      HttpURLConnection conn,
+      InputStream body) {
+    missCount.incrementAndGet();
+    long expirationMs = getExpirationMs(conn, System.currentTimeMillis());
+    if (expirationMs == -1) {
+      return body;
+    }
+    String etag = conn.getHeaderField("ETag");
+    String lastModified = conn.getHeaderField("Last-Modified");
+    if (expirationMs == 0 && etag == null && lastModified == null) {
+      return body; // Nothing to revalidate with, so it can never be used.
+    }
+    String key = key(accountName, url);
+    return new StoringInputStream(body, key, url,
+        etag != null ? etag : "",
+        lastModified != null ? lastModified : "",
+        expirationMs);
+  }
+
+  /**
+   * Returns when the response expires, 0 if it must always be revalidated,
+   * or -1 if it must not be stored.
+   */
+  static long getExpirationMs(HttpURLConnection conn, long nowMs) {
+    String cacheControl = conn.getHeaderField("Cache-Control");
+    if (cacheControl != null) {
+      String value = cacheControl.toLowerCase(Locale.US);
+      if (value.contains("no-store")) {
+        return -1;
+      }
+      if (value.contains("no-cache")) {
+        return 0;
+      }
+      int i = value.indexOf("max-age=");
+      if (i != -1) {
+        int start = i + "max-age=".length();
+        int end = start;
+        while (end < value.length() && Character.isDigit(value.charAt(end))) {
+          end++;
+        }
+        try {
+          long maxAgeSec = Long.parseLong(value.substring(start, end));
+          return maxAgeSec > 0 ? nowMs + maxAgeSec * 1000 : 0;
+        } catch (NumberFormatException e) {
+          return 0;
+        }
+      }
+    }
+    long expires = conn.getExpiration();
+    return expires > nowMs ? expires : 0;
+  }
+
+  /** Returns the entry's body or null after dropping an entry without one. */
+  @Nullable
+  private InputStream open(Entry entry) {
+    File body = file(entry.key, SUFFIX_BODY);
+    InputStream in;
+    try {
+      in = new BufferedInputStream(new FileInputStream(body));
+    } catch (FileNotFoundException e) {
+      removeOrphan(entry.key);
+      return null;
+    }
+    synchronized (sizes) {
+      sizes.get(entry.key); // Mark as recently used.
+    }
+    return in;
+  }
+
+  private void writeMeta(
+      String key,
+      CharSequence url,
+      String etag,
+      String lastModified,
+      long expirationMs)
+      throws IOException {
+    File temp = newTempFile(key);
+    DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(temp)));
+    try {
+      out.writeInt(META_VERSION);
+      out.writeUTF(url.toString());
+      out.writeUTF(etag);
+      out.writeUTF(lastModified);
+      out.writeLong(expirationMs);
+    } finally {
+      out.close();
+    }
+    rename(temp, file(key, SUFFIX_META));
+  }
+
+  private void commit(
+      String key,
+      CharSequence url,
+      String etag,
+      String lastModified,
+      long expirationMs,
+      File temp)
+      throws IOException {
+    synchronized (sizes) {
+      File body = file(key, SUFFIX_BODY);
+      rename(temp, body);
+      writeMeta(key, url, etag, lastModified, expirationMs);
+      Long oldSize = sizes.put(key, body.length());
+      size += body.length() - (oldSize != null ? oldSize : 0);
+      trim();
+    }
+  }
+
+  private File newTempFile(String key) throws IOException {
+    synchronized (sizes) {
+      // Load before creating temporary files since it deletes stale ones.
+      loadSizes();
+      dir.mkdirs();
+      return File.createTempFile(key, SUFFIX_TEMP, dir);
+    }
+  }
+
+  private void loadSizes() {
+    if (size != -1) {
+      return;
+    }
+    size = 0;
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (name.endsWith(SUFFIX_BODY)) {
+          String key = name.substring(0, name.length() - SUFFIX_BODY.length());
+          sizes.put(key, file.length());
+          size += file.length();
+        } else if (name.endsWith(SUFFIX_TEMP)) {
+          file.delete(); // Left over from a previous process.
+        }
+      }
+    }
+  }
+
+  /** Removes the metadata of an entry whose body is gone. */
+  private void removeOrphan(String key) {
+    synchronized (sizes) {
+      // A body might have been committed since it was found to be missing.
+      if (file(key, SUFFIX_BODY).exists()) {
+        return;
+      }
+      file(key, SUFFIX_META).delete();
+      Long oldSize = sizes.remove(key);
+      if (oldSize != null) {
+        size -= oldSize;
+      }
+    }
+  }
+
+  private void trim() {
+    Iterator<Map.Entry<String, Long>> i = sizes.entrySet().iterator();
+    while (size > maxSize && i.hasNext()) {
+      Map.Entry<String, Long> e = i.next();
+      file(e.getKey(), SUFFIX_META).delete();
+      file(e.getKey(), SUFFIX_BODY).delete();
+      size -= e.getValue();
+      i.remove();
+    }
+  }
+
+  private File file(String key, String suffix) {
+    return new File(dir, key + suffix);
+  }
+
+  private static void rename(File from, File to) throws IOException {
+    if (!from.renameTo(to)) {
+      from.delete();
+      throw new IOException("rename failed: " + to);
+    }
+  }
+
+  private static String key(@Nullable String accountName, CharSequence url) {
+    return Strings.toMd5Hex(accountName + " " + url);
+  }
+
+  private static void close(@Nullable InputStream in) {
+    if (in != null) {
+      try {
+        in.close();
+      } catch (IOException e) {
+        // Nothing was written, so there is nothing to clean up.
+      }
+    }
+  }
+
+  /** Metadata of a cached response. */
+  public static class Entry {
+
+    final String key;
+    final String etag;
+    final String lastModified;
+    final long expirationMs;
+
+    Entry(String key, String etag, String lastModified, long expirationMs) {
+      this.key = key;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.expirationMs = expirationMs;
+    }
+
+    /** Returns true if the body can be used without revalidating it. */
+    public boolean isFresh() {
+      return System.currentTimeMillis() < expirationMs;
+    }
+  }
+
+  /**
+   * {@link InputStream} that copies the body into a temporary file and adds
+   * it to the cache when the body is closed after being read to the end.
+   */
+  class StoringInputStream extends FilterInputStream {
+
+    private final String key;
+    private final CharSequence url;
+    private final String etag;
+    private final String lastModified;
+    private final long expirationMs;
+    private File temp;
+    private OutputStream out;
+    private long written;
+    private boolean ended;
+
+    StoringInputStream(
+        InputStream in,
+        String key,
+        CharSequence url,
+        String etag,
+        String lastModified,
+        long expirationMs) {
+      super(in);
+      this.key = key;
+      this.url = url;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.expirationMs = expirationMs;
+      try {
+        temp = newTempFile(key);
+        out = new BufferedOutputStream(new FileOutputStream(temp));
+      } catch (IOException e) {
+        abort();
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b != -1) {
+        write(new byte[] {(byte) b}, 0, 1);
+      } else {
+        ended = true;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read != -1) {
+        write(b, off, read);
+      } else {
+        ended = true;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      // Read skipped bytes so they are stored too.
+      byte[] buffer = new byte[(int) Math.min(n, 4096)];
+      long skipped = 0;
+      while (skipped < n) {
+        int read = read(buffer, 0, (int) Math.min(n - skipped, buffer.length));
+        if (read == -1) {
+          break;
+        }
+        skipped += read;
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        // Parsers stop at the end of the JSON, so read any whitespace left.
+        if (out != null && !ended) {
+          byte[] buffer = new byte[4096];
+          while (out != null && read(buffer, 0, buffer.length) != -1) {
+          }
+        }
+      } catch (IOException e) {
+        abort();
+      } finally {
+        in.close();
+      }
+
+      if (out != null && ended) {
+        try {
+          out.close();
+          out = null;
+          commit(key, url, etag, lastModified, expirationMs, temp);
+        } catch (IOException e) {
+          abort();
+        }
+      } else {
+        abort();
+      }
+    }
+
+    private void write(byte[] b, int off, int len) {
+      if (out != null) {
+        try {
+          out.write(b, off, len);
+          written += len;
+          if (written > maxSize / 8) {
+            abort(); // Too big to be worth caching.
+          }
+        } catch (IOException e) {
+          abort();
+        }
+      }
+    }
+
+    private void abort() {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // Deleting the file below anyway.
+        }
+        out = null;
+      }
+      if (temp != null) {
+        temp.delete();
+        temp = null;
+      }
+    }
+  }
+}
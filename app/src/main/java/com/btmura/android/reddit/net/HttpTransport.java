@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.net;
+
+import android.support.annotation.Nullable;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link HttpTransport} opens HTTP connections with shared timeouts and
+ * releases them without disconnecting, so that the platform's connection pool
+ * can reuse the socket for the next request to the same host rather than
+ * doing another TCP and TLS handshake.
+ *
+ * <p>It asks for gzip or deflate compressed responses and decodes them while
+ * they are read, so parsers consume the body as it arrives.
+ */
+public class HttpTransport {
+
+  private static final int CONNECT_TIMEOUT_MS = 15 * 1000;
+  private static final int READ_TIMEOUT_MS = 30 * 1000;
+
+  /** Idle connections kept alive per host by the connection pool. */
+  private static final int MAX_CONNECTIONS_PER_HOST = 5;
+
+  /** Most bytes read off an unfinished response to keep its connection. */
+  private static final int MAX_DRAIN_BYTES = 64 * 1024;
+
+  private static final int BUFFER_SIZE = 8192;
+
+  static final String ACCEPT_ENCODING = "gzip, deflate";
+  static final String ENCODING_GZIP = "gzip";
+  static final String ENCODING_DEFLATE = "deflate";
+
+  /** Receives the size of each response body for instrumentation. */
+  public interface ResponseListener {
+
+    /**
+     * Called when a response body is closed.
+     *
+     * @param url of the request
+     * @param contentEncoding of the response or null if it wasn't compressed
+     * @param encodedBytes read off the network
+     * @param decodedBytes read after decompressing
+     */
+    void onResponseClosed(
+        URL url,
+        @Nullable String contentEncoding,
+        long encodedBytes,
+        long decodedBytes);
+  }
+
+  private static HttpTransport INSTANCE;
+
+  /** Returns the singleton that all network calls should go through. */
+  public static HttpTransport getInstance() {
+    synchronized (HttpTransport.class) {
+      if (INSTANCE == null) {
+        // Read by HttpURLConnection when it creates its connection pool.
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections",
+            Integer.toString(MAX_CONNECTIONS_PER_HOST));
+        INSTANCE = new HttpTransport(CONNECT_TIMEOUT_MS, READ_TIMEOUT_MS);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final int connectTimeoutMs;
+  private final int readTimeoutMs;
+  private volatile ResponseListener listener;
+
+  /** Test constructor. Use {@link #getInstance()}. */
+  public HttpTransport(int connectTimeoutMs, int readTimeoutMs) {
+    this.connectTimeoutMs = connectTimeoutMs;
+    this.readTimeoutMs = readTimeoutMs;
+  }
+
+  public void setResponseListener(@Nullable ResponseListener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Returns a new connection with the timeouts set but not yet connected.
+   *
+   * @throws java.net.MalformedURLException if the url is invalid
+   */
+  public HttpURLConnection open(CharSequence url) throws IOException {
+    HttpURLConnection conn =
+        (HttpURLConnection) new URL(url.toString()).openConnection();
+    conn.setConnectTimeout(connectTimeoutMs);
+    conn.setReadTimeout(readTimeoutMs);
+
+    // Setting this turns off HttpURLConnection's own gzip handling, which
+    // doesn't support deflate, so getInputStream decodes the response.
+    conn.setRequestProperty("Accept-Encoding", ACCEPT_ENCODING);
+    return conn;
+  }
+
+  /**
+   * Returns the decoded response body. Closing it reads whatever the caller
+   * left unread, so that the connection can be reused.
+   */
+  public InputStream getInputStream(HttpURLConnection conn) throws IOException {
+    CountingInputStream encoded =
+        new CountingInputStream(conn.getInputStream());
+    String encoding = conn.getContentEncoding();
+    InputStream decoded = decode(encoded, encoding);
+    return new ResponseInputStream(decoded, encoded, conn.getURL(),
+        decoded != encoded ? encoding : null, listener);
+  }
+
+  /** Returns a stream that decompresses the body if it's encoded. */
+  static InputStream decode(InputStream in, @Nullable String encoding)
+      throws IOException {
+    boolean gzip = ENCODING_GZIP.equalsIgnoreCase(encoding);
+    boolean deflate = ENCODING_DEFLATE.equalsIgnoreCase(encoding);
+    if (!gzip && !deflate) {
+      return in;
+    }
+
+    // Peek at the body since empty ones like redirects have no gzip header.
+    PushbackInputStream pin = new PushbackInputStream(in, 2);
+    int b0 = pin.read();
+    if (b0 == -1) {
+      return in;
+    }
+    int b1 = pin.read();
+    if (b1 != -1) {
+      pin.unread(b1);
+    }
+    pin.unread(b0);
+
+    if (gzip) {
+      return new GZIPInputStream(pin, BUFFER_SIZE);
+    }
+
+    // Deflate should be zlib wrapped, but some servers send raw data.
+    boolean zlib = b1 != -1 && (b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0;
+    final Inflater inflater = new Inflater(!zlib);
+    return new InflaterInputStream(pin, inflater, BUFFER_SIZE) {
+      @Override
+      public void close() throws IOException {
+        try {
+          super.close();
+        } finally {
+          inflater.end();
+        }
+      }
+    };
+  }
+
+  /**
+   * Releases the connection for reuse after the response body is closed. Use
+   * this instead of {@link HttpURLConnection#disconnect()}, which closes the
+   * socket.
+   */
+  public void release(@Nullable HttpURLConnection conn) {
+    if (conn != null) {
+      // Error responses come from a separate stream that must be read too.
+      InputStream es = conn.getErrorStream();
+      if (es != null) {
+        drainAndClose(es);
+      }
+    }
+  }
+
+  private static void drainAndClose(InputStream in) {
+    try {
+      try {
+        drain(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      // The connection won't be reused, but there is nothing else to do.
+    }
+  }
+
+  private static void drain(InputStream in) throws IOException {
+    byte[] buffer = new byte[4096];
+    int total = 0;
+    for (int read; total < MAX_DRAIN_BYTES
+        && (read = in.read(buffer)) != -1; ) {
+      total += read;
+    }
+  }
+
+  /**
+   * {@link InputStream} of a response body that drains itself on close and
+   * reports how many bytes were read.
+   */
+  static class ResponseInputStream extends CountingInputStream {
+
+    private final CountingInputStream encoded;
+    private final URL url;
+    private final String encoding;
+    private final ResponseListener listener;
+    private boolean closed;
+
+    ResponseInputStream(
+        InputStream decoded,
+        CountingInputStream encoded,
+        URL url,
+        @Nullable String encoding,
+        @Nullable ResponseListener listener) {
+      super(decoded);
+      this.encoded = encoded;
+      this.url = url;
+      this.encoding = encoding;
+      this.listener = listener;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        try {
+          drain(this);
+        } catch (IOException e) {
+          // The caller is done reading, so only the connection is lost.
+        } finally {
+          in.close();
+        }
+        if (listener != null) {
+          listener.onResponseClosed(url, encoding, encoded.getCount(),
+              getCount());
+        }
+      }
+    }
+  }
+
+  /** {@link InputStream} that counts the bytes read through it. */
+  static class CountingInputStream extends FilterInputStream {
+
+    private long count;
+
+    CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    long getCount() {
+      return count;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = in.read();
+      if (b != -1) {
+        count++;
+      }
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = in.read(b, off, len);
+      if (read != -1) {
+        count += read;
+      }
+      return read;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+      long skipped = in.skip(n);
+      count += skipped;
+      return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+      return false;
+    }
+  }
+}
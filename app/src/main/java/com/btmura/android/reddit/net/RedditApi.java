@@ -24,26 +24,30 @@ import android.graphics.BitmapFactory;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
 import android.util.Base64;
-import android.util.JsonReader;
 import android.util.Log;
 
 import com.btmura.android.reddit.BuildConfig;
 import com.btmura.android.reddit.R;
 import com.btmura.android.reddit.accounts.AccountUtils;
+import com.btmura.android.reddit.accounts.CredentialCache;
 import com.btmura.android.reddit.app.ThingBundle;
 import com.btmura.android.reddit.text.MarkdownFormatter;
+import com.btmura.android.reddit.util.SingleFlight;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.util.concurrent.Callable;
 import java.util.Scanner;
 
 public class RedditApi {
@@ -59,6 +63,12 @@ public class RedditApi {
 
   private static final int HTTP_UNAUTHORIZED = 401;
 
+  public static final String METHOD_GET = "GET";
+
+  /** GET requests in flight so that duplicates share one response. */
+  private static final SingleFlight<String> IN_FLIGHT =
+      new SingleFlight<String>();
+
   // GET requests
 
   public static AccessTokenResult getAccessToken(Context ctx, CharSequence code)
@@ -71,7 +81,7 @@ public class RedditApi {
     InputStream is = null;
     try {
       conn = noAuthConnect(url);
-      is = conn.getInputStream();
+      is = getInputStream(conn);
       return BitmapFactory.decodeStream(is);
     } finally {
       close(is, conn);
@@ -85,10 +95,10 @@ public class RedditApi {
   public static AccountInfoResult getMyInfo(Context ctx, String accountName)
       throws AuthenticatorException, OperationCanceledException, IOException {
     HttpURLConnection conn = null;
-    JsonReader r = null;
+    Utf8JsonReader r = null;
     try {
       conn = connect(ctx, accountName, Urls.myInfo());
-      r = newJsonReader(conn.getInputStream());
+      r = newJsonReader(getInputStream(conn));
       return AccountInfoResult.getMyInfo(r);
     } finally {
       close(r, conn);
@@ -96,20 +106,24 @@ public class RedditApi {
   }
 
   public static ThingBundle getThingInfo(
-      Context ctx,
-      String accountName,
+      final Context ctx,
+      final String accountName,
       String thingId,
-      MarkdownFormatter formatter)
+      final MarkdownFormatter formatter)
       throws AuthenticatorException, OperationCanceledException, IOException {
-    HttpURLConnection conn = null;
-    JsonReader r = null;
-    try {
-      conn = connect(ctx, accountName, Urls.thingInfo(accountName, thingId));
-      r = newJsonReader(conn.getInputStream());
-      return ThingBundle.fromJsonReader(r, formatter);
-    } finally {
-      close(r, conn);
-    }
+    final CharSequence url = Urls.thingInfo(accountName, thingId);
+    return coalesce(accountName, url, new Callable<ThingBundle>() {
+      @Override
+      public ThingBundle call() throws Exception {
+        Utf8JsonReader r = null;
+        try {
+          r = newJsonReader(get(ctx, accountName, url));
+          return ThingBundle.fromJsonReader(r, formatter);
+        } finally {
+          close(r);
+        }
+      }
+    });
   }
 
   public static SubredditResult getMySubreddits(
@@ -117,14 +131,14 @@ public class RedditApi {
       String accountName)
       throws AuthenticatorException, OperationCanceledException, IOException {
     HttpURLConnection conn = null;
-    JsonReader r = null;
+    Utf8JsonReader r = null;
     SubredditResult sr = null;
     String after = null;
     int count = 0;
     do {
       try {
         conn = connect(ctx, accountName, Urls.mySubreddits(after, count));
-        r = newJsonReader(conn.getInputStream());
+        r = newJsonReader(getInputStream(conn));
         sr = SubredditResult.getSubreddits(sr, r);
         after = sr.after;
         count = sr.subreddits.size();
@@ -136,34 +150,80 @@ public class RedditApi {
   }
 
   public static SidebarResult getSidebar(
-      Context ctx,
-      String accountName,
+      final Context ctx,
+      final String accountName,
       String subreddit)
       throws AuthenticatorException, OperationCanceledException, IOException {
-    HttpURLConnection conn = null;
-    JsonReader r = null;
-    try {
-      conn = connect(ctx, accountName, Urls.sidebar(accountName, subreddit));
-      r = newJsonReader(conn.getInputStream());
-      return SidebarResult.getSidebar(ctx, r);
-    } finally {
-      close(r, conn);
-    }
+    final CharSequence url = Urls.sidebar(accountName, subreddit);
+    return coalesce(accountName, url, new Callable<SidebarResult>() {
+      @Override
+      public SidebarResult call() throws Exception {
+        Utf8JsonReader r = null;
+        try {
+          r = newJsonReader(get(ctx, accountName, url));
+          return SidebarResult.getSidebar(ctx, r);
+        } finally {
+          close(r);
+        }
+      }
+    });
   }
 
   public static AccountInfoResult getUserInfo(
-      Context ctx,
-      String accountName,
+      final Context ctx,
+      final String accountName,
       String user)
       throws AuthenticatorException, OperationCanceledException, IOException {
-    HttpURLConnection conn = null;
-    JsonReader r = null;
+    final CharSequence url = Urls.userInfo(accountName, user);
+    return coalesce(accountName, url, new Callable<AccountInfoResult>() {
+      @Override
+      public AccountInfoResult call() throws Exception {
+        HttpURLConnection conn = null;
+        Utf8JsonReader r = null;
+        try {
+          conn = connect(ctx, accountName, url);
+          r = newJsonReader(getInputStream(conn));
+          return AccountInfoResult.getUserInfo(r);
+        } finally {
+          close(r, conn);
+        }
+      }
+    });
+  }
+
+  /** Returns a key identifying duplicate requests that can be coalesced. */
+  public static String getRequestKey(
+      String method,
+      String accountName,
+      CharSequence url) {
+    return method + " " + accountName + " " + url;
+  }
+
+  /**
+   * Returns the result of the call or of an identical GET request that is
+   * already in flight, so that concurrent loaders share one response.
+   */
+  private static <V> V coalesce(
+      String accountName,
+      CharSequence url,
+      Callable<V> call)
+      throws AuthenticatorException, OperationCanceledException, IOException {
     try {
-      conn = connect(ctx, accountName, Urls.userInfo(accountName, user));
-      r = newJsonReader(conn.getInputStream());
-      return AccountInfoResult.getUserInfo(r);
-    } finally {
-      close(r, conn);
+      return IN_FLIGHT.execute(getRequestKey(METHOD_GET, accountName, url),
+          call);
+    } catch (AuthenticatorException e) {
+      throw e;
+    } catch (OperationCanceledException e) {
+      throw e;
+    } catch (IOException e) {
+      throw e;
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    } catch (Exception e) {
+      throw new IOException(e);
     }
   }
 
@@ -290,46 +350,95 @@ public class RedditApi {
       CharSequence data)
       throws AuthenticatorException, OperationCanceledException, IOException {
     HttpURLConnection conn = null;
-    JsonReader r = null;
+    Utf8JsonReader r = null;
     try {
-      conn = newConnection(ctx, accountName, url, data);
-      r = newJsonReader(conn.getInputStream());
+      conn = newConnection(ctx, accountName, url, data, null);
+      r = newJsonReader(getInputStream(conn));
       return Result.getResult(r);
     } finally {
       close(r, conn);
     }
   }
 
+  /**
+   * Returns the response body of a GET request from the {@link HttpCache} if
+   * it is still fresh or if the server says it hasn't changed. Otherwise the
+   * body is downloaded and stored in the cache once it has been read.
+   */
+  public static InputStream get(
+      Context ctx,
+      String accountName,
+      CharSequence url)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    HttpCache cache = HttpCache.getInstance(ctx);
+    HttpCache.Entry entry = cache.get(accountName, url);
+    if (entry != null && entry.isFresh()) {
+      InputStream in = cache.replay(entry);
+      if (in != null) {
+        return in;
+      }
+      entry = null; // The body is gone, so download it like a miss.
+    }
+
+    HttpURLConnection conn = newConnection(ctx, accountName, url, null, entry);
+    try {
+      if (entry != null
+          && conn.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+        close(getInputStream(conn), conn);
+        InputStream in = cache.revalidate(url, entry, conn);
+        if (in != null) {
+          return in;
+        }
+        // The body was removed after sending the validators, so request it
+        // again without them.
+        conn = newConnection(ctx, accountName, url, null, null);
+      }
+      return new ReleasingInputStream(
+          cache.store(accountName, url, conn, getInputStream(conn)), conn);
+    } catch (IOException e) {
+      release(conn);
+      throw e;
+    }
+  }
+
+  /**
+   * Returns a connection to the url that has been authorized for the account.
+   * Read it with {@link #getInputStream(HttpURLConnection)} and finish with
+   * {@link #release(HttpURLConnection)}, so that the connection is reused.
+   */
   public static HttpURLConnection connect(
       Context ctx,
       String accountName,
       CharSequence url)
       throws AuthenticatorException, OperationCanceledException, IOException {
-    return newConnection(ctx, accountName, url, null);
+    return newConnection(ctx, accountName, url, null, null);
   }
 
   private static HttpURLConnection newConnection(
       Context ctx,
       String accountName,
       CharSequence url,
-      @Nullable CharSequence data)
+      @Nullable CharSequence data,
+      @Nullable HttpCache.Entry entry)
       throws AuthenticatorException, OperationCanceledException, IOException {
-    // Check that the account has required and not-expired credentials.
-    checkCredentials(ctx, accountName);
+    // Get credentials that haven't expired from the cache.
+    String accessToken = getAccessToken(ctx, accountName);
 
     // Setup connection and write data making it a POST if necessary.
-    HttpURLConnection conn = authConnect(ctx, accountName, url);
+    HttpURLConnection conn = authConnect(accessToken, url, entry);
     if (!TextUtils.isEmpty(data)) {
       writePostData(conn, data);
     }
 
     // Connect. If unauthorized, try again to refresh credentials.
     if (isUnauthorized(accountName, conn)) {
-      conn.disconnect();
-      updateToken(ctx, accountName);
+      release(conn);
+      accessToken = CredentialCache.getInstance(ctx)
+          .refresh(accountName, accessToken, newRefresher(ctx))
+          .accessToken;
 
       // Setup connection once more and rite data makig it a POST if necessary.
-      conn = authConnect(ctx, accountName, url);
+      conn = authConnect(accessToken, url, entry);
       if (!TextUtils.isEmpty(data)) {
         writePostData(conn, data);
       }
@@ -338,34 +447,39 @@ public class RedditApi {
     return conn;
   }
 
-  private static void checkCredentials(Context ctx, String accountName)
+  /** Returns the account's access token or null if there is no account. */
+  @Nullable
+  private static String getAccessToken(Context ctx, String accountName)
       throws AuthenticatorException, IOException, OperationCanceledException {
-    if (!AccountUtils.hasCredentials(ctx, accountName)) {
-      throw new AuthenticatorException("missing credentials");
+    if (!AccountUtils.isAccount(accountName)) {
+      return null;
     }
-
-    if (AccountUtils.hasExpiredCredentials(ctx, accountName)) {
-      updateToken(ctx, accountName);
+    CredentialCache.Credentials c = CredentialCache.getInstance(ctx)
+        .get(accountName, newRefresher(ctx));
+    if (c == null) {
+      throw new AuthenticatorException("missing credentials");
     }
+    return c.accessToken;
   }
 
   private static HttpURLConnection authConnect(
-      Context ctx,
-      String accountName,
-      CharSequence url)
-      throws AuthenticatorException, IOException, OperationCanceledException {
-    HttpURLConnection conn =
-        (HttpURLConnection) Urls.newUrl(url).openConnection();
+      @Nullable String accessToken,
+      CharSequence url,
+      @Nullable HttpCache.Entry entry)
+      throws IOException {
+    HttpURLConnection conn = HttpTransport.getInstance().open(url);
     conn.setInstanceFollowRedirects(false);
     setCommonHeaders(conn);
-    setOAuthHeader(ctx, accountName, conn);
+    setOAuthHeader(conn, accessToken);
+    if (entry != null) {
+      HttpCache.addValidators(conn, entry);
+    }
     return conn;
   }
 
   private static HttpURLConnection noAuthConnect(CharSequence url)
       throws IOException {
-    HttpURLConnection conn =
-        (HttpURLConnection) Urls.newUrl(url).openConnection();
+    HttpURLConnection conn = HttpTransport.getInstance().open(url);
     conn.setInstanceFollowRedirects(false);
     setCommonHeaders(conn);
     return conn;
@@ -379,15 +493,22 @@ public class RedditApi {
         && conn.getResponseCode() == HTTP_UNAUTHORIZED;
   }
 
-  private static void updateToken(Context ctx, String accountName)
-      throws AuthenticatorException, OperationCanceledException, IOException {
-    // TODO(btmura): put refresh token code in separate method
-    // TODO(btmura): handle empty refresh token
-    // TODO(btmura): validate access token result
-    String rt = AccountUtils.getRefreshToken(ctx, accountName);
-    AccessTokenResult atr = refreshToken(ctx, rt);
-    AccountUtils.updateAccount(ctx, accountName, atr.accessToken,
-        atr.expirationMs, atr.scope);
+  private static CredentialCache.Refresher newRefresher(final Context ctx) {
+    return new CredentialCache.Refresher() {
+      @Override
+      public CredentialCache.Credentials refresh(
+          String accountName,
+          String refreshToken)
+          throws IOException {
+        // TODO(btmura): handle empty refresh token
+        // TODO(btmura): validate access token result
+        AccessTokenResult atr = refreshToken(ctx, refreshToken);
+        AccountUtils.updateAccount(ctx, accountName, atr.accessToken,
+            atr.expirationMs, atr.scope);
+        return new CredentialCache.Credentials(atr.accessToken, refreshToken,
+            atr.expirationMs);
+      }
+    };
   }
 
   private static AccessTokenResult refreshToken(
@@ -403,7 +524,7 @@ public class RedditApi {
       throws IOException {
     long retrievalTimeMs = System.currentTimeMillis();
     HttpURLConnection conn = null;
-    JsonReader r = null;
+    Utf8JsonReader r = null;
     try {
       conn = noAuthConnect(Urls.accessToken());
       setBasicAuthHeader(ctx, conn);
@@ -420,7 +541,7 @@ public class RedditApi {
       }
       writePostData(conn, sb);
 
-      r = newJsonReader(conn.getInputStream());
+      r = newJsonReader(getInputStream(conn));
       return AccessTokenResult.getAccessToken(r, retrievalTimeMs);
     } finally {
       close(r, conn);
@@ -446,14 +567,10 @@ public class RedditApi {
   }
 
   private static void setOAuthHeader(
-      Context ctx,
-      String accountName,
-      HttpURLConnection conn)
-      throws AuthenticatorException, OperationCanceledException, IOException {
-    if (AccountUtils.isAccount(accountName)) {
-      String at = AccountUtils.getAccessToken(ctx, accountName);
-      // TODO(btmura): handle empty access token
-      conn.setRequestProperty("Authorization", "bearer " + at);
+      HttpURLConnection conn,
+      @Nullable String accessToken) {
+    if (accessToken != null) {
+      conn.setRequestProperty("Authorization", "bearer " + accessToken);
     }
   }
 
@@ -473,8 +590,19 @@ public class RedditApi {
     }
   }
 
-  protected static JsonReader newJsonReader(InputStream in) {
-    return new JsonReader(new InputStreamReader(new BufferedInputStream(in)));
+  /** Returns the response body that leaves the connection reusable on close. */
+  public static InputStream getInputStream(HttpURLConnection conn)
+      throws IOException {
+    return HttpTransport.getInstance().getInputStream(conn);
+  }
+
+  /** Releases the connection after its response body has been closed. */
+  public static void release(@Nullable HttpURLConnection conn) {
+    HttpTransport.getInstance().release(conn);
+  }
+
+  protected static Utf8JsonReader newJsonReader(InputStream in) {
+    return new Utf8JsonReader(in);
   }
 
   private static InputStream logResponse(InputStream is) throws IOException {
@@ -506,9 +634,7 @@ public class RedditApi {
       @Nullable Closeable cs,
       @Nullable HttpURLConnection conn) {
     close(cs);
-    if (conn != null) {
-      conn.disconnect();
-    }
+    release(conn);
   }
 
   private static void close(@Nullable Closeable cs) {
@@ -521,6 +647,26 @@ public class RedditApi {
     }
   }
 
+  /** {@link InputStream} that releases its connection when closed. */
+  static class ReleasingInputStream extends FilterInputStream {
+
+    private final HttpURLConnection conn;
+
+    ReleasingInputStream(InputStream in, HttpURLConnection conn) {
+      super(in);
+      this.conn = conn;
+    }
+
+    @Override
+    public void close() throws IOException {
+      try {
+        super.close();
+      } finally {
+        release(conn);
+      }
+    }
+  }
+
   private RedditApi() {
   }
 }
@@ -19,10 +19,10 @@ package com.btmura.android.reddit.net;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.text.TextUtils;
-import android.util.JsonReader;
 
 import com.btmura.android.reddit.text.MarkdownFormatter;
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
 import java.io.IOException;
 
@@ -38,7 +38,7 @@ public class SidebarResult extends JsonParser {
   private final MarkdownFormatter formatter = new MarkdownFormatter();
   private final Context ctx;
 
-  static SidebarResult getSidebar(Context ctx, JsonReader r)
+  static SidebarResult getSidebar(Context ctx, Utf8JsonReader r)
       throws IOException {
     SidebarResult result = new SidebarResult(ctx);
     result.parseEntity(r);
@@ -60,27 +60,27 @@ public class SidebarResult extends JsonParser {
   }
 
   @Override
-  public void onDisplayName(JsonReader r, int i) throws IOException {
+  public void onDisplayName(Utf8JsonReader r, int i) throws IOException {
     subreddit = readString(r, "");
   }
 
   @Override
-  public void onHeaderImage(JsonReader r, int i) throws IOException {
+  public void onHeaderImage(Utf8JsonReader r, int i) throws IOException {
     headerImage = readString(r, "");
   }
 
   @Override
-  public void onTitle(JsonReader r, int i) throws IOException {
+  public void onTitle(Utf8JsonReader r, int i) throws IOException {
     title = formatter.formatNoSpans(readString(r, ""));
   }
 
   @Override
-  public void onDescription(JsonReader r, int i) throws IOException {
+  public void onDescription(Utf8JsonReader r, int i) throws IOException {
     description = formatter.formatAll(ctx, readString(r, ""));
   }
 
   @Override
-  public void onSubscribers(JsonReader r, int i) throws IOException {
+  public void onSubscribers(Utf8JsonReader r, int i) throws IOException {
     subscribers = readInt(r, 0);
   }
 }
\ No newline at end of file
@@ -18,9 +18,9 @@ package com.btmura.android.reddit.net;
 
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
-import android.util.JsonReader;
 
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
 import java.io.IOException;
 import java.text.Collator;
@@ -33,7 +33,7 @@ public class SubredditResult extends JsonParser {
       new TreeSet<String>(Collator.getInstance());
   @Nullable String after;
 
-  static SubredditResult getSubreddits(SubredditResult sr, JsonReader r)
+  static SubredditResult getSubreddits(SubredditResult sr, Utf8JsonReader r)
       throws IOException {
     if (sr == null) {
       sr = new SubredditResult();
@@ -49,7 +49,7 @@ public class SubredditResult extends JsonParser {
   }
 
   @Override
-  public void onDisplayName(JsonReader r, int i) throws IOException {
+  public void onDisplayName(Utf8JsonReader r, int i) throws IOException {
     String subreddit = readString(r, "");
     if (!TextUtils.isEmpty(subreddit)) {
       this.subreddits.add(subreddit);
@@ -57,7 +57,7 @@ public class SubredditResult extends JsonParser {
   }
 
   @Override
-  public void onAfter(JsonReader r) throws IOException {
+  public void onAfter(Utf8JsonReader r) throws IOException {
     String after = readString(r, "");
     if (!TextUtils.isEmpty(after)) {
       this.after = after;
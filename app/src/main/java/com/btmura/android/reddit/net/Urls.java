@@ -66,6 +66,7 @@ public class Urls {
   private static final String COMMENTS_PATH = "/comments/";
   private static final String INFO_PATH = "/api/info";
   private static final String MESSAGES_PATH = "/message";
+  private static final String MORE_CHILDREN_PATH = "/api/morechildren";
   private static final String MESSAGE_THREAD_PATH = "/message/messages/";
   private static final String SUBREDDITS_PATH = "/subreddits";
   private static final String R_PATH = "/r/";
@@ -239,49 +240,74 @@ public class Urls {
     if (hasLinkId) {
       sb.append("&comment=").append(encode(thingId)).append("&context=3");
     } else if (hasFilter) {
-      switch (filter) {
-        case Filter.COMMENTS_BEST:
-          sb.append("&sort=confidence");
-          break;
+      appendCommentSort(sb, filter);
+    }
 
-        case Filter.COMMENTS_CONTROVERSIAL:
-          sb.append("&sort=controversial");
-          break;
+    if (hasLimit) {
+      sb.append("&limit=").append(limit);
+    }
 
-        case Filter.COMMENTS_HOT:
-          sb.append("&sort=hot");
-          break;
+    return sb;
+  }
 
-        case Filter.COMMENTS_NEW:
-          sb.append("&sort=new");
-          break;
+  public static CharSequence moreChildren(
+      String accountName,
+      String linkId,
+      String children,
+      int filter) {
+    StringBuilder sb = new StringBuilder(getBaseUrl(accountName))
+        .append(MORE_CHILDREN_PATH);
 
-        case Filter.COMMENTS_OLD:
-          sb.append("&sort=old");
-          break;
+    if (needsJsonExtension(accountName, FORMAT_JSON)) {
+      sb.append(".json");
+    }
 
-        case Filter.COMMENTS_TOP:
-          sb.append("&sort=top");
-          break;
+    sb.append("?api_type=json&link_id=").append(encode(linkId))
+        .append("&children=").append(encode(children));
 
-        case Filter.COMMENTS_RANDOM:
-          sb.append("&sort=random");
-          break;
+    if (filter != NO_FILTER) {
+      appendCommentSort(sb, filter);
+    }
+    return sb;
+  }
 
-        case Filter.COMMENTS_QA:
-          sb.append("&sort=qa");
-          break;
+  private static void appendCommentSort(StringBuilder sb, int filter) {
+    switch (filter) {
+      case Filter.COMMENTS_BEST:
+        sb.append("&sort=confidence");
+        break;
 
-        default:
-          break;
-      }
-    }
+      case Filter.COMMENTS_CONTROVERSIAL:
+        sb.append("&sort=controversial");
+        break;
 
-    if (hasLimit) {
-      sb.append("&limit=").append(limit);
-    }
+      case Filter.COMMENTS_HOT:
+        sb.append("&sort=hot");
+        break;
 
-    return sb;
+      case Filter.COMMENTS_NEW:
+        sb.append("&sort=new");
+        break;
+
+      case Filter.COMMENTS_OLD:
+        sb.append("&sort=old");
+        break;
+
+      case Filter.COMMENTS_TOP:
+        sb.append("&sort=top");
+        break;
+
+      case Filter.COMMENTS_RANDOM:
+        sb.append("&sort=random");
+        break;
+
+      case Filter.COMMENTS_QA:
+        sb.append("&sort=qa");
+        break;
+
+      default:
+        break;
+    }
   }
 
   public static CharSequence messages(
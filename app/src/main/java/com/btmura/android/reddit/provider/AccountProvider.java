@@ -30,6 +30,7 @@ import android.util.Log;
 
 import com.btmura.android.reddit.BuildConfig;
 import com.btmura.android.reddit.accounts.AccountUtils;
+import com.btmura.android.reddit.accounts.CredentialCache;
 import com.btmura.android.reddit.database.AccountActions;
 import com.btmura.android.reddit.database.Accounts;
 import com.btmura.android.reddit.database.CommentActions;
@@ -240,6 +241,7 @@ public class AccountProvider extends BaseProvider {
       if (!am.removeAccount(account, null, null).getResult()) {
         return null;
       }
+      CredentialCache.getInstance(ctx).invalidate(accountName);
     } catch (OperationCanceledException e) {
       Log.e(TAG, e.getMessage(), e);
       return null;
@@ -78,18 +78,15 @@ abstract class BaseProvider extends ContentProvider {
       Uri uri, String[] projection, String selection, String[] args,
       String sortOrder) {
     String table = getTable(uri);
-    SQLiteDatabase db = helper.getWritableDatabase();
-
-    Cursor c = null;
-    db.beginTransaction();
-    try {
-      c = db.query(table, projection, selection, args, null, null, sortOrder);
-      if (c != null) {
-        c.setNotificationUri(getContext().getContentResolver(), uri);
-      }
-      db.setTransactionSuccessful();
-    } finally {
-      db.endTransaction();
+    SQLiteDatabase db = helper.getReadableDatabase();
+
+    // Query outside of a transaction, so that with write-ahead logging the
+    // cursor is filled using a read connection and doesn't wait for writers
+    // like getListingSession to finish inserting.
+    Cursor c = db.query(table, projection, selection, args, null, null,
+        sortOrder);
+    if (c != null) {
+      c.setNotificationUri(getContext().getContentResolver(), uri);
     }
 
     if (BuildConfig.DEBUG) {
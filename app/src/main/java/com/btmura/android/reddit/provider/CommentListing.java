@@ -18,16 +18,16 @@ package com.btmura.android.reddit.provider;
 
 import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.text.TextUtils;
-import android.util.JsonReader;
 
 import com.btmura.android.reddit.app.CommentLogic;
 import com.btmura.android.reddit.app.CommentLogic.CommentList;
+import com.btmura.android.reddit.app.CommentLogic.SubtreeIndex;
 import com.btmura.android.reddit.database.CommentActions;
 import com.btmura.android.reddit.database.Comments;
 import com.btmura.android.reddit.database.Kinds;
@@ -37,17 +37,16 @@ import com.btmura.android.reddit.net.Urls;
 import com.btmura.android.reddit.text.MarkdownFormatter;
 import com.btmura.android.reddit.util.Array;
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-class CommentListing extends JsonParser implements Listing, CommentList {
+class CommentListing extends JsonParser
+    implements StreamingListing, CommentList {
 
   public static final String TAG = "CommentListing";
 
@@ -65,6 +64,114 @@ class CommentListing extends JsonParser implements Listing, CommentList {
   private static final int INDEX_THING_ID = 3;
   private static final int INDEX_TEXT = 4;
 
+  // Columns of the rows inserted into the comments table.
+
+  private static final int LONG_COMMENT_ACTION_ID = 0;
+  private static final int LONG_CREATED_UTC = 1;
+  private static final int LONG_DOWNS = 2;
+  private static final int LONG_HIDDEN = 3;
+  private static final int LONG_KIND = 4;
+  private static final int LONG_LIKES = 5;
+  private static final int LONG_NESTING = 6;
+  private static final int LONG_NUM_COMMENTS = 7;
+  private static final int LONG_OVER_18 = 8;
+  private static final int LONG_SAVED = 9;
+  private static final int LONG_SCORE = 10;
+  private static final int LONG_SELF = 11;
+  private static final int LONG_SEQUENCE = 12;
+  private static final int LONG_UPS = 13;
+
+  private static final int STRING_ACCOUNT = 0;
+  private static final int STRING_AUTHOR = 1;
+  private static final int STRING_BODY = 2;
+  private static final int STRING_DOMAIN = 3;
+  private static final int STRING_PERMA_LINK = 4;
+  private static final int STRING_SUBREDDIT = 5;
+  private static final int STRING_THING_ID = 6;
+  private static final int STRING_THUMBNAIL_URL = 7;
+  private static final int STRING_TITLE = 8;
+  private static final int STRING_URL = 9;
+
+  private static final RowBatch.Columns COLUMNS = new RowBatch.Columns(
+      Comments.TABLE_NAME,
+      new String[] {
+          Comments.COLUMN_COMMENT_ACTION_ID,
+          Comments.COLUMN_CREATED_UTC,
+          Comments.COLUMN_DOWNS,
+          Comments.COLUMN_HIDDEN,
+          Comments.COLUMN_KIND,
+          Comments.COLUMN_LIKES,
+          Comments.COLUMN_NESTING,
+          Comments.COLUMN_NUM_COMMENTS,
+          Comments.COLUMN_OVER_18,
+          Comments.COLUMN_SAVED,
+          Comments.COLUMN_SCORE,
+          Comments.COLUMN_SELF,
+          Comments.COLUMN_SEQUENCE,
+          Comments.COLUMN_UPS,
+      },
+      new long[] {
+          RowBatch.NULL, // comment_action_id
+          0, // created_utc
+          0, // downs
+          0, // hidden
+          RowBatch.NULL, // kind
+          0, // likes
+          RowBatch.NULL, // nesting
+          0, // num_comments
+          0, // over_18
+          0, // saved
+          0, // score
+          0, // self
+          RowBatch.NULL, // sequence
+          0, // ups
+      },
+      new String[] {
+          Comments.COLUMN_ACCOUNT,
+          Comments.COLUMN_AUTHOR,
+          Comments.COLUMN_BODY,
+          Comments.COLUMN_DOMAIN,
+          Comments.COLUMN_PERMA_LINK,
+          Comments.COLUMN_SUBREDDIT,
+          Comments.COLUMN_THING_ID,
+          Comments.COLUMN_THUMBNAIL_URL,
+          Comments.COLUMN_TITLE,
+          Comments.COLUMN_URL,
+      });
+
+  /** Separator of the reply ids kept in the body of more rows. */
+  static final String MORE_CHILDREN_SEPARATOR = ",";
+
+  /** Number of rows to parse before handing them off when streaming. */
+  private static final int STREAM_BATCH_SIZE = 16;
+
+  /** Fields read by this listing. Others are skipped while parsing. */
+  private static final int[] PARSED_FIELDS = {
+      FIELD_AUTHOR,
+      FIELD_BODY,
+      FIELD_CHILDREN,
+      FIELD_CREATED_UTC,
+      FIELD_DOMAIN,
+      FIELD_DOWNS,
+      FIELD_HIDDEN,
+      FIELD_IS_SELF,
+      FIELD_LIKES,
+      FIELD_NAME,
+      FIELD_NUM_COMMENTS,
+      FIELD_OVER_18,
+      FIELD_PARENT_ID,
+      FIELD_PERMA_LINK,
+      FIELD_REPLIES,
+      FIELD_SAVED,
+      FIELD_SCORE,
+      FIELD_SELF_TEXT,
+      FIELD_SUBREDDIT,
+      FIELD_THUMBNAIL,
+      FIELD_TITLE,
+      FIELD_UPS,
+      FIELD_URL,
+  };
+
   private final Context ctx;
   private final SQLiteOpenHelper dbHelper;
   private final String accountName;
@@ -72,13 +179,35 @@ class CommentListing extends JsonParser implements Listing, CommentList {
   private final String linkId;
   private final int filter;
   private final int limit;
+
+  /** Comma separated ids of the replies to load instead of the thread. */
+  private final String moreChildren;
+
+  /** Nesting of the replies that were left out where they are loaded. */
+  private final int moreNesting;
   private final MarkdownFormatter formatter = new MarkdownFormatter();
 
+  /** Index of the rows' replies kept up to date while merging actions. */
+  private final SubtreeIndex subtreeIndex = new SubtreeIndex();
+
   // TODO: Pass estimate of size to CommentListing rather than doing this.
-  private final ArrayList<ContentValues> values = new ArrayList<ContentValues>(360);
-  private final HashMap<String, ContentValues> valueMap = new HashMap<String, ContentValues>();
+  private RowBatch rows = new RowBatch(COLUMNS, 360);
   private Map<String, Integer> saveActionMap;
   private Map<String, Integer> voteActionMap;
+  private ValueQueue queue;
+
+  /** Index of the entity in the first row of the batch when streaming. */
+  private int rowOffset;
+
+  /** Next row of the batch to merge when streaming. */
+  private int streamRow;
+  private int streamSequence;
+
+  /** Parent ids of the rows when loading more replies. */
+  private List<String> parentIds;
+
+  /** Order of the rows when loading more replies. */
+  private int[] ranks;
 
   static CommentListing newInstance(
       Context ctx,
@@ -95,7 +224,37 @@ class CommentListing extends JsonParser implements Listing, CommentList {
         thingId,
         linkId,
         filter,
-        limit);
+        limit,
+        null,
+        0);
+  }
+
+  /**
+   * Returns a listing of replies left out of a thread that were replaced by
+   * a more row, which are spliced into the session where that row was.
+   *
+   * @param linkId of the thread's link
+   * @param children comma separated ids of the replies to load
+   * @param nesting of the more row
+   */
+  static CommentListing newMoreInstance(
+      Context ctx,
+      SQLiteOpenHelper dbHelper,
+      String accountName,
+      String linkId,
+      int filter,
+      String children,
+      int nesting) {
+    return new CommentListing(
+        ctx,
+        dbHelper,
+        accountName,
+        linkId,
+        linkId,
+        filter,
+        Urls.NO_LIMIT,
+        children,
+        nesting);
   }
 
   private CommentListing(
@@ -105,7 +264,10 @@ class CommentListing extends JsonParser implements Listing, CommentList {
       String thingId,
       String linkId,
       int filter,
-      int limit) {
+      int limit,
+      String moreChildren,
+      int moreNesting) {
+    super(PARSED_FIELDS);
     this.ctx = ctx;
     this.dbHelper = dbHelper;
     this.accountName = accountName;
@@ -113,6 +275,11 @@ class CommentListing extends JsonParser implements Listing, CommentList {
     this.linkId = linkId;
     this.filter = filter;
     this.limit = limit;
+    this.moreChildren = moreChildren;
+    this.moreNesting = moreNesting;
+    if (moreChildren != null) {
+      parentIds = new ArrayList<String>();
+    }
   }
 
   @Override
@@ -126,29 +293,73 @@ class CommentListing extends JsonParser implements Listing, CommentList {
   }
 
   @Override
-  public ArrayList<ContentValues> getValues()
+  public RowBatch getValues()
       throws AuthenticatorException, OperationCanceledException, IOException {
-    CharSequence url = Urls.comments(
-        accountName,
-        thingId,
-        linkId,
-        filter,
-        limit);
-    HttpURLConnection conn = RedditApi.connect(ctx, accountName, url);
-    InputStream input = null;
-    try {
-      input = new BufferedInputStream(conn.getInputStream());
-      saveActionMap = SaveMerger.getActionMap(dbHelper, accountName);
-      voteActionMap = VoteMerger.getActionMap(dbHelper, accountName);
+    loadActionMaps();
+    parseListing();
+    return rows;
+  }
+
+  @Override
+  public boolean prepareStream() {
+    // Replies loaded for a more row are nested and spliced in after parsing.
+    if (moreChildren != null) {
+      return false;
+    }
+
+    // Pending comment actions are inserted relative to their parents' replies,
+    // so they need the whole thread before inserting anything.
+    SQLiteDatabase db = dbHelper.getReadableDatabase();
+    long actionCount = DatabaseUtils.queryNumEntries(db,
+        CommentActions.TABLE_NAME,
+        CommentActions.SELECT_BY_PARENT_THING_ID,
+        Array.of(thingId));
+    if (actionCount > 0) {
+      return false;
+    }
+    loadActionMaps();
+    return true;
+  }
 
-      JsonReader reader = new JsonReader(new InputStreamReader(input));
-      parseListingArray(reader);
-      return values;
+  @Override
+  public void streamValues(ValueQueue queue)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    this.queue = queue;
+    parseListing();
+    if (!rows.isEmpty()) {
+      queue.put(rows);
+    }
+  }
+
+  private void loadActionMaps() {
+    saveActionMap = SaveMerger.getActionMap(dbHelper, accountName);
+    voteActionMap = VoteMerger.getActionMap(dbHelper, accountName);
+  }
+
+  @Override
+  public CharSequence getUrl() {
+    if (moreChildren != null) {
+      return Urls.moreChildren(accountName, linkId, moreChildren, filter);
+    }
+    return Urls.comments(accountName, thingId, linkId, filter, limit);
+  }
+
+  private void parseListing()
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    HttpURLConnection conn = RedditApi.connect(ctx, accountName, getUrl());
+    Utf8JsonReader reader = null;
+    try {
+      reader = new Utf8JsonReader(RedditApi.getInputStream(conn));
+      if (moreChildren != null) {
+        parseThingsResponse(reader);
+      } else {
+        parseListingArray(reader);
+      }
     } finally {
-      if (input != null) {
-        input.close();
+      if (reader != null) {
+        reader.close();
       }
-      conn.disconnect();
+      RedditApi.release(conn);
     }
   }
 
@@ -169,136 +380,200 @@ class CommentListing extends JsonParser implements Listing, CommentList {
 
   @Override
   public void onEntityStart(int i) {
-    ContentValues v = new ContentValues(20);
-    v.put(Comments.COLUMN_ACCOUNT, accountName);
-    values.add(v);
+    int row = rows.add();
+    rows.setString(row, STRING_ACCOUNT, accountName);
+    if (parentIds != null) {
+      parentIds.add(null);
+    }
   }
 
   @Override
-  public void onAuthor(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_AUTHOR, readString(r, ""));
+  public void onAuthor(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_AUTHOR, readString(r, ""));
   }
 
   @Override
-  public void onBody(JsonReader r, int i) throws IOException {
+  public void onBody(Utf8JsonReader r, int i) throws IOException {
     CharSequence body = formatter.formatNoSpans(readString(r, ""));
-    values.get(i).put(Comments.COLUMN_BODY, body.toString());
+    rows.setString(row(i), STRING_BODY, body.toString());
   }
 
   @Override
-  public void onCreatedUtc(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_CREATED_UTC, readLong(r, 0));
+  public void onChildren(Utf8JsonReader r, int i) throws IOException {
+    // Only more rows have children, which are the ids of the replies left
+    // out. Keep them in the body to load them later.
+    if (!isNextArray(r)) {
+      r.skipValue();
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    int count = 0;
+    r.beginArray();
+    while (r.hasNext()) {
+      if (count++ > 0) {
+        sb.append(MORE_CHILDREN_SEPARATOR);
+      }
+      sb.append(readString(r, ""));
+    }
+    r.endArray();
+    int row = row(i);
+    rows.setString(row, STRING_BODY, sb.toString());
+    rows.setLong(row, LONG_NUM_COMMENTS, count);
   }
 
   @Override
-  public void onDomain(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_DOMAIN, readString(r, ""));
+  public void onCreatedUtc(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_CREATED_UTC, readLong(r, 0));
   }
 
   @Override
-  public void onDowns(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_DOWNS, readInt(r, 0));
+  public void onDomain(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_DOMAIN, readString(r, ""));
   }
 
   @Override
-  public void onHidden(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_HIDDEN, readBoolean(r, false));
+  public void onDowns(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_DOWNS, readInt(r, 0));
   }
 
   @Override
-  public void onIsSelf(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_SELF, readBoolean(r, false));
+  public void onHidden(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_HIDDEN, readBoolean(r, false));
   }
 
   @Override
-  public void onKind(JsonReader r, int i) throws IOException {
-    ContentValues v = values.get(i);
-    v.put(Comments.COLUMN_NESTING, replyNesting);
-    v.put(Comments.COLUMN_KIND, Kinds.parseKind(readString(r, "")));
+  public void onIsSelf(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_SELF, readBoolean(r, false));
   }
 
   @Override
-  public void onLikes(JsonReader r, int i) throws IOException {
+  public void onKind(Utf8JsonReader r, int i) throws IOException {
+    int row = row(i);
+    rows.setLong(row, LONG_NESTING, replyNesting);
+    rows.setLong(row, LONG_KIND, Kinds.parseKind(readString(r, "")));
+  }
+
+  @Override
+  public void onLikes(Utf8JsonReader r, int i) throws IOException {
     int likes = 0;
     if (isNextBoolean(r)) {
       likes = readBoolean(r, false) ? 1 : -1;
     } else {
       r.skipValue();
     }
-    values.get(i).put(Comments.COLUMN_LIKES, likes);
+    rows.setLong(row(i), LONG_LIKES, likes);
+  }
+
+  @Override
+  public void onName(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_THING_ID, readString(r, ""));
   }
 
   @Override
-  public void onName(JsonReader r, int i) throws IOException {
-    String id = readString(r, "");
-    ContentValues v = values.get(i);
-    v.put(Comments.COLUMN_THING_ID, id);
-    valueMap.put(id, v);
+  public void onNumComments(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_NUM_COMMENTS, readInt(r, 0));
   }
 
   @Override
-  public void onNumComments(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_NUM_COMMENTS, readInt(r, 0));
+  public void onOver18(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_OVER_18, readBoolean(r, false));
   }
 
   @Override
-  public void onOver18(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_OVER_18, readBoolean(r, false));
+  public void onParentId(Utf8JsonReader r, int i) throws IOException {
+    if (parentIds != null) {
+      parentIds.set(row(i), readString(r, ""));
+    } else {
+      r.skipValue();
+    }
   }
 
   @Override
-  public void onPermaLink(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_PERMA_LINK, readString(r, ""));
+  public void onPermaLink(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_PERMA_LINK, readString(r, ""));
   }
 
   @Override
-  public void onSaved(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_SAVED, readBoolean(r, false));
+  public void onSaved(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_SAVED, readBoolean(r, false));
   }
 
   @Override
-  public void onScore(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_SCORE, readInt(r, 0));
+  public void onScore(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_SCORE, readInt(r, 0));
   }
 
   @Override
-  public void onSelfText(JsonReader r, int i) throws IOException {
+  public void onSelfText(Utf8JsonReader r, int i) throws IOException {
     CharSequence body = formatter.formatNoSpans(readString(r, ""));
-    values.get(i).put(Comments.COLUMN_BODY, body.toString());
+    rows.setString(row(i), STRING_BODY, body.toString());
   }
 
   @Override
-  public void onSubreddit(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_SUBREDDIT, readString(r, ""));
+  public void onSubreddit(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_SUBREDDIT, readString(r, ""));
   }
 
   @Override
-  public void onTitle(JsonReader r, int i) throws IOException {
+  public void onTitle(Utf8JsonReader r, int i) throws IOException {
     CharSequence title = formatter.formatNoSpans(readString(r, ""));
-    values.get(i).put(Comments.COLUMN_TITLE, title.toString());
+    rows.setString(row(i), STRING_TITLE, title.toString());
   }
 
   @Override
-  public void onUps(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_UPS, readInt(r, 0));
+  public void onUps(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_UPS, readInt(r, 0));
   }
 
   @Override
-  public void onUrl(JsonReader r, int i) throws IOException {
-    values.get(i).put(Comments.COLUMN_URL, readString(r, ""));
+  public void onUrl(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_URL, readString(r, ""));
   }
 
   @Override
-  public void onThumbnail(JsonReader r, int i) throws IOException {
+  public void onThumbnail(Utf8JsonReader r, int i) throws IOException {
     // TODO: Remove code duplication with ThingListing.
     String thumbnail = readString(r, null);
     if (!TextUtils.isEmpty(thumbnail) && thumbnail.startsWith("http")) {
-      values.get(i).put(Comments.COLUMN_THUMBNAIL_URL, thumbnail);
+      rows.setString(row(i), STRING_THUMBNAIL_URL, thumbnail);
+    }
+  }
+
+  @Override
+  public void onEntityEnd(int i) throws IOException {
+    // Replies end before their parents, so wait until a top level comment
+    // ends before putting it and its replies into the queue in order.
+    if (queue != null && replyNesting == 0) {
+      while (streamRow < rows.size()) {
+        if (isLoadingMore(streamRow) && !hasMoreChildren(streamRow)) {
+          // Later entities move up a row since all earlier ones have ended.
+          rows.remove(streamRow);
+          rowOffset++;
+        } else {
+          mergeValues(streamRow++, streamSequence++);
+        }
+      }
+      if (rows.size() >= STREAM_BATCH_SIZE) {
+        queue.put(rows);
+        rows = new RowBatch(COLUMNS, STREAM_BATCH_SIZE * 2);
+        rowOffset = i + 1;
+        streamRow = 0;
+      }
     }
   }
 
   @Override
   public void onParseEnd() {
+    // Streamed values have already been merged and handed off.
+    if (queue != null) {
+      return;
+    }
+
+    if (moreChildren != null) {
+      doMoreMerge();
+      return;
+    }
+
     // Merge local inserts and deletes that haven't been synced yet.
     mergeActions();
 
@@ -307,6 +582,7 @@ class CommentListing extends JsonParser implements Listing, CommentList {
 
   private void mergeActions() {
     SQLiteDatabase db = dbHelper.getReadableDatabase();
+    subtreeIndex.build(this);
 
     // Select by parent ID to see changes by all accounts, since the user can
     // pick what account to use when making a comment. Do the same for edits
@@ -350,10 +626,9 @@ class CommentListing extends JsonParser implements Listing, CommentList {
   private boolean insertThing(
       long actionId, String actionAccountName, String actionThingId,
       String body) {
-    int size = values.size();
+    int size = rows.size();
     for (int i = 0; i < size; i++) {
-      ContentValues v = values.get(i);
-      String id = v.getAsString(Comments.COLUMN_THING_ID);
+      String id = rows.getString(i, STRING_THING_ID);
 
       // This thing could be a placeholder we previously inserted.
       if (TextUtils.isEmpty(id)) {
@@ -361,17 +636,16 @@ class CommentListing extends JsonParser implements Listing, CommentList {
       }
 
       if (id.equals(actionThingId)) {
-        ContentValues p = new ContentValues(7 + 1); // +1 for session id.
-        p.put(Comments.COLUMN_ACCOUNT, actionAccountName);
-        p.put(Comments.COLUMN_AUTHOR, actionAccountName);
-        p.put(Comments.COLUMN_BODY, body);
-        p.put(Comments.COLUMN_COMMENT_ACTION_ID, actionId);
-        p.put(Comments.COLUMN_KIND, Kinds.KIND_COMMENT);
-        p.put(Comments.COLUMN_NESTING, CommentLogic.getInsertNesting(this, i));
-
-        values.add(CommentLogic.getInsertPosition(this, i), p);
-        size++;
-
+        int nesting = CommentLogic.getInsertNesting(this, i);
+        int p = subtreeIndex.getInsertPosition(i);
+        rows.insert(p);
+        subtreeIndex.insert(p, nesting);
+        rows.setString(p, STRING_ACCOUNT, actionAccountName);
+        rows.setString(p, STRING_AUTHOR, actionAccountName);
+        rows.setString(p, STRING_BODY, body);
+        rows.setLong(p, LONG_COMMENT_ACTION_ID, actionId);
+        rows.setLong(p, LONG_KIND, Kinds.KIND_COMMENT);
+        rows.setLong(p, LONG_NESTING, nesting);
         return true;
       }
     }
@@ -379,84 +653,123 @@ class CommentListing extends JsonParser implements Listing, CommentList {
   }
 
   private boolean deleteThing(String actionThingId) {
-    int size = values.size();
-    for (int i = 0; i < size; i++) {
-      ContentValues v = values.get(i);
-      String id = v.getAsString(Comments.COLUMN_THING_ID);
-      if (actionThingId.equals(id)) {
-        // Mark the header comment or comment with children as
-        // [deleted] instead of completely removing it.
-        if (i == 0) {
-          v.put(Comments.COLUMN_AUTHOR, Comments.DELETED_AUTHOR);
-          return false;
-        } else if (CommentLogic.hasChildren(this, i)) {
-          v.put(Comments.COLUMN_AUTHOR, Comments.DELETED_AUTHOR);
-          v.put(Comments.COLUMN_BODY, Comments.DELETED_BODY);
-          return false;
-        } else {
-          values.remove(i);
-          size--;
-          return true;
-        }
+    int i = rows.indexOf(STRING_THING_ID, actionThingId);
+    if (i != -1) {
+      // Mark the header comment or comment with children as
+      // [deleted] instead of completely removing it.
+      if (i == 0) {
+        rows.setString(i, STRING_AUTHOR, Comments.DELETED_AUTHOR);
+        return false;
+      } else if (subtreeIndex.hasChildren(i)) {
+        rows.setString(i, STRING_AUTHOR, Comments.DELETED_AUTHOR);
+        rows.setString(i, STRING_BODY, Comments.DELETED_BODY);
+        return false;
+      } else {
+        rows.remove(i);
+        subtreeIndex.remove(i);
+        return true;
       }
     }
     return false;
   }
 
   private void editThing(long actionId, String actionThingId, String text) {
-    ContentValues v = valueMap.get(actionThingId);
-    if (v != null) {
-      v.put(Comments.COLUMN_BODY, text);
-      v.put(Comments.COLUMN_COMMENT_ACTION_ID, actionId);
+    int i = rows.indexOf(STRING_THING_ID, actionThingId);
+    if (i != -1) {
+      rows.setString(i, STRING_BODY, text);
+      rows.setLong(i, LONG_COMMENT_ACTION_ID, actionId);
     }
   }
 
   private void doFinalMerge() {
-    int count = values.size();
+    int count = rows.size();
     for (int i = 0; i < count; i++) {
-      ContentValues v = values.get(i);
-
-      // Remove any load more rows. We don't support them yet.
-      if (isLoadingMore(v)) {
-        values.remove(i--);
+      // Remove load more rows with nothing to load like the ones that
+      // continue a deep thread on another page.
+      if (isLoadingMore(i) && !hasMoreChildren(i)) {
+        rows.remove(i--);
         count--;
         continue;
       }
 
-      SaveMerger.updateContentValues(v, saveActionMap);
-      VoteMerger.updateContentValues(v, voteActionMap);
-      applySequenceNumber(v, i);
+      mergeValues(i, i);
+    }
+  }
+
+  private void doMoreMerge() {
+    for (int i = 0; i < rows.size(); i++) {
+      if (isLoadingMore(i) && !hasMoreChildren(i)) {
+        rows.remove(i);
+        parentIds.remove(i--);
+      }
+    }
+
+    // Replies come back flat, so nest them under the parents they name.
+    int count = rows.size();
+    List<String> thingIds = new ArrayList<String>(count);
+    for (int i = 0; i < count; i++) {
+      thingIds.add(rows.getString(i, STRING_THING_ID));
+    }
+    int[] depths = new int[count];
+    ranks = CommentLogic.sortReplies(thingIds, parentIds, depths);
+    for (int i = 0; i < count; i++) {
+      rows.setLong(i, LONG_NESTING, moreNesting + depths[i]);
+      mergeValues(i, ranks[i]);
+    }
+  }
+
+  /**
+   * Places the replies loaded by a listing from {@link #newMoreInstance} in
+   * order at sequences from start and step apart.
+   */
+  void placeReplies(int start, int step) {
+    for (int i = 0; i < rows.size(); i++) {
+      rows.setLong(i, LONG_SEQUENCE, start + (long) ranks[i] * step);
     }
   }
 
-  private boolean isLoadingMore(ContentValues v) {
-    return ((Integer) v.get(Comments.COLUMN_KIND)) == Kinds.KIND_MORE;
+  private void mergeValues(int row, int sequence) {
+    SaveMerger.updateRow(rows, row, saveActionMap, STRING_THING_ID,
+        LONG_SAVED);
+    VoteMerger.updateRow(rows, row, voteActionMap, STRING_THING_ID,
+        LONG_SCORE, LONG_LIKES, LONG_UPS, LONG_DOWNS);
+    applySequenceNumber(row, sequence);
+  }
+
+  private boolean isLoadingMore(int row) {
+    return rows.getLong(row, LONG_KIND) == Kinds.KIND_MORE;
+  }
+
+  private boolean hasMoreChildren(int row) {
+    return !TextUtils.isEmpty(rows.getString(row, STRING_BODY));
+  }
+
+  private void applySequenceNumber(int row, int sequence) {
+    rows.setLong(row, LONG_SEQUENCE, CommentLogic.getSpacedSequence(sequence));
   }
 
-  private void applySequenceNumber(ContentValues v, int sequence) {
-    v.put(Comments.COLUMN_SEQUENCE, sequence);
+  private int row(int entityIndex) {
+    return entityIndex - rowOffset;
   }
 
   @Override
   public int getCommentCount() {
-    return values.size();
+    return rows.size();
   }
 
   @Override
   public long getCommentId(int pos) {
-    // Cast to avoid auto-boxing in the getAsLong method.
-    return ((Long) values.get(pos).get(Comments._ID));
+    // Rows are not inserted yet, so they don't have IDs.
+    return -1;
   }
 
   @Override
   public int getCommentNesting(int pos) {
-    // Cast to avoid auto-boxing in the getAsInteger method.
-    return ((Integer) values.get(pos).get(Comments.COLUMN_NESTING));
+    return (int) rows.getLong(pos, LONG_NESTING);
   }
 
   @Override
   public int getCommentSequence(int pos) {
-    // Cast to avoid auto-boxing in the getAsInteger method.
-    return ((Integer) values.get(pos).get(Comments.COLUMN_SEQUENCE));
+    return (int) rows.getLong(pos, LONG_SEQUENCE);
   }
 }
\ No newline at end of file
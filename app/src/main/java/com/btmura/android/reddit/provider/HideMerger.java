@@ -32,7 +32,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static android.provider.BaseColumns._ID;
-import static com.btmura.android.reddit.database.BaseThingColumns.COLUMN_HIDDEN;
 import static com.btmura.android.reddit.database.HideActions.ACTION_HIDE;
 import static com.btmura.android.reddit.database.HideActions.ACTION_UNHIDE;
 import static com.btmura.android.reddit.database.HideActions.COLUMN_ACTION;
@@ -77,26 +76,32 @@ class HideMerger {
     }
   }
 
-  static void updateContentValues(
-      ContentValues v,
-      Map<String, Integer> actionMap) {
+  static void updateRow(
+      RowBatch rows,
+      int row,
+      Map<String, Integer> actionMap,
+      int thingIdColumn,
+      int hiddenColumn) {
     if (!actionMap.isEmpty()) {
-      String thingId = (String) v.get(SharedColumns.COLUMN_THING_ID);
-      Integer action = actionMap.remove(thingId);
+      Integer action = actionMap.remove(rows.getString(row, thingIdColumn));
       if (action != null) {
-        updateContentValues(v, action);
+        updateRow(rows, row, hiddenColumn, action);
       }
     }
   }
 
-  private static void updateContentValues(ContentValues v, int action) {
+  private static void updateRow(
+      RowBatch rows,
+      int row,
+      int column,
+      int action) {
     switch (action) {
       case ACTION_HIDE:
-        v.put(COLUMN_HIDDEN, 1);
+        rows.setLong(row, column, 1);
         break;
 
       case ACTION_UNHIDE:
-        v.put(COLUMN_HIDDEN, 0);
+        rows.setLong(row, column, 0);
         break;
     }
   }
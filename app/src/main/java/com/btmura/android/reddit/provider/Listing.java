@@ -16,11 +16,6 @@
 
 package com.btmura.android.reddit.provider;
 
-import android.content.ContentValues;
-import android.content.Context;
-
-import java.util.List;
-
 /**
  * {@link Listing} is an internal interface to enforce some uniformity on
  * grabbing values to present to the user.
@@ -33,8 +28,11 @@ interface Listing {
   /** Returns the thing ID that may be used to identify a session. */
   String getSessionThingId();
 
-  /** Get the values for this listing possibly using the network. */
-  List<ContentValues> getValues() throws Exception;
+  /** Returns the url of the request, which identifies duplicate requests. */
+  CharSequence getUrl();
+
+  /** Get the rows for this listing possibly using the network. */
+  RowBatch getValues() throws Exception;
 
   /** Return the name of the table where the values should be inserted. */
   String getTargetTable();
@@ -18,14 +18,12 @@ package com.btmura.android.reddit.provider;
 
 import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
-import android.util.JsonReader;
 
 import com.btmura.android.reddit.database.Kinds;
 import com.btmura.android.reddit.database.MessageActions;
@@ -36,16 +34,13 @@ import com.btmura.android.reddit.net.RedditApi;
 import com.btmura.android.reddit.net.Urls;
 import com.btmura.android.reddit.util.Array;
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.util.ArrayList;
 import java.util.Map;
 
-class MessageListing extends JsonParser implements Listing {
+class MessageListing extends JsonParser implements StreamingListing {
 
   public static final String TAG = "MessageListing";
 
@@ -63,6 +58,71 @@ class MessageListing extends JsonParser implements Listing {
       MessageActions.COLUMN_ACCOUNT + "=? AND "
       + MessageActions.COLUMN_PARENT_THING_ID + "=?";
 
+  // Columns of the rows inserted into the messages table.
+
+  private static final int LONG_CREATED_UTC = 0;
+  private static final int LONG_KIND = 1;
+  private static final int LONG_MESSAGE_ACTION_ID = 2;
+  private static final int LONG_NEW = 3;
+  private static final int LONG_WAS_COMMENT = 4;
+
+  private static final int STRING_ACCOUNT = 0;
+  private static final int STRING_AUTHOR = 1;
+  private static final int STRING_BODY = 2;
+  private static final int STRING_CONTEXT = 3;
+  private static final int STRING_DESTINATION = 4;
+  private static final int STRING_LINK_TITLE = 5;
+  private static final int STRING_SUBJECT = 6;
+  private static final int STRING_SUBREDDIT = 7;
+  private static final int STRING_THING_ID = 8;
+
+  private static final RowBatch.Columns COLUMNS = new RowBatch.Columns(
+      Messages.TABLE_NAME,
+      new String[] {
+          Messages.COLUMN_CREATED_UTC,
+          Messages.COLUMN_KIND,
+          Messages.COLUMN_MESSAGE_ACTION_ID,
+          Messages.COLUMN_NEW,
+          Messages.COLUMN_WAS_COMMENT,
+      },
+      new long[] {
+          0, // created_utc
+          RowBatch.NULL, // kind
+          RowBatch.NULL, // message_action_id
+          0, // new
+          0, // was_comment
+      },
+      new String[] {
+          Messages.COLUMN_ACCOUNT,
+          Messages.COLUMN_AUTHOR,
+          Messages.COLUMN_BODY,
+          Messages.COLUMN_CONTEXT,
+          Messages.COLUMN_DESTINATION,
+          Messages.COLUMN_LINK_TITLE,
+          Messages.COLUMN_SUBJECT,
+          Messages.COLUMN_SUBREDDIT,
+          Messages.COLUMN_THING_ID,
+      });
+
+  /** Number of rows to parse before handing them off when streaming. */
+  private static final int STREAM_BATCH_SIZE = 8;
+
+  /** Fields read by this listing. Others are skipped while parsing. */
+  private static final int[] PARSED_FIELDS = {
+      FIELD_AUTHOR,
+      FIELD_BODY,
+      FIELD_CONTEXT,
+      FIELD_CREATED_UTC,
+      FIELD_DESTINATION,
+      FIELD_LINK_TITLE,
+      FIELD_NAME,
+      FIELD_NEW,
+      FIELD_REPLIES,
+      FIELD_SUBJECT,
+      FIELD_SUBREDDIT,
+      FIELD_WAS_COMMENT,
+  };
+
   private final Context ctx;
   private final SQLiteOpenHelper dbHelper;
   private final int sessionType;
@@ -72,10 +132,16 @@ class MessageListing extends JsonParser implements Listing {
   private final String more;
   private final int count;
 
-  private final ArrayList<ContentValues> values =
-      new ArrayList<ContentValues>(30);
+  private RowBatch rows = new RowBatch(COLUMNS, 30);
   private Map<String, Integer> readActionMap;
   private String moreThingId;
+  private ValueQueue queue;
+
+  /** Index of the entity in the first row of the batch when streaming. */
+  private int rowOffset;
+
+  /** Next row of the batch to merge when streaming. */
+  private int streamRow;
 
   /** Returns a listing of messages for inbox or sent. */
   static MessageListing newInstance(
@@ -122,6 +188,7 @@ class MessageListing extends JsonParser implements Listing {
       int filter,
       String more,
       int count) {
+    super(PARSED_FIELDS);
     this.ctx = ctx;
     this.dbHelper = dbHelper;
     this.sessionType = sessionType;
@@ -143,26 +210,52 @@ class MessageListing extends JsonParser implements Listing {
   }
 
   @Override
-  public ArrayList<ContentValues> getValues()
+  public RowBatch getValues()
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    readActionMap = ReadMerger.getActionMap(dbHelper, accountName);
+    parseListing();
+    return rows;
+  }
+
+  @Override
+  public boolean prepareStream() {
+    // Message threads look up pending replies using the first message
+    // after parsing, so only inbox and sent listings can be streamed.
+    if (sessionType != Sessions.TYPE_MESSAGES) {
+      return false;
+    }
+    readActionMap = ReadMerger.getActionMap(dbHelper, accountName);
+    return true;
+  }
+
+  @Override
+  public void streamValues(ValueQueue queue)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    this.queue = queue;
+    parseListing();
+    appendLoadingMore();
+    if (!rows.isEmpty()) {
+      queue.put(rows);
+    }
+  }
+
+  private void parseListing()
       throws AuthenticatorException, OperationCanceledException, IOException {
     HttpURLConnection conn = RedditApi.connect(ctx, accountName, getUrl());
-    InputStream input = null;
+    Utf8JsonReader reader = null;
     try {
-      input = new BufferedInputStream(conn.getInputStream());
-      readActionMap = ReadMerger.getActionMap(dbHelper, accountName);
-
-      JsonReader reader = new JsonReader(new InputStreamReader(input));
+      reader = new Utf8JsonReader(RedditApi.getInputStream(conn));
       parseListingObject(reader);
-      return values;
     } finally {
-      if (input != null) {
-        input.close();
+      if (reader != null) {
+        reader.close();
       }
-      conn.disconnect();
+      RedditApi.release(conn);
     }
   }
 
-  private CharSequence getUrl() {
+  @Override
+  public CharSequence getUrl() {
     switch (sessionType) {
       case Sessions.TYPE_MESSAGES:
         return Urls.messages(filter, more, count);
@@ -187,73 +280,68 @@ class MessageListing extends JsonParser implements Listing {
 
   @Override
   public void onEntityStart(int i) {
-    values.add(newContentValues(14));
-  }
-
-  private ContentValues newContentValues(int capacity) {
-    ContentValues values = new ContentValues(capacity);
-    values.put(Messages.COLUMN_ACCOUNT, accountName);
-    return values;
+    int row = rows.add();
+    rows.setString(row, STRING_ACCOUNT, accountName);
   }
 
   @Override
-  public void onAuthor(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_AUTHOR, r.nextString());
+  public void onAuthor(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_AUTHOR, r.nextString());
   }
 
   @Override
-  public void onBody(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_BODY, r.nextString());
+  public void onBody(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_BODY, r.nextString());
   }
 
   @Override
-  public void onContext(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_CONTEXT, r.nextString());
+  public void onContext(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_CONTEXT, r.nextString());
   }
 
   @Override
-  public void onCreatedUtc(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_CREATED_UTC, r.nextLong());
+  public void onCreatedUtc(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_CREATED_UTC, r.nextLong());
   }
 
   @Override
-  public void onDestination(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_DESTINATION, r.nextString());
+  public void onDestination(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_DESTINATION, r.nextString());
   }
 
   @Override
-  public void onKind(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_KIND, Kinds.parseKind(r.nextString()));
+  public void onKind(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_KIND, Kinds.parseKind(r.nextString()));
   }
 
   @Override
-  public void onLinkTitle(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_LINK_TITLE, r.nextString());
+  public void onLinkTitle(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_LINK_TITLE, r.nextString());
   }
 
   @Override
-  public void onName(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_THING_ID, r.nextString());
+  public void onName(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_THING_ID, r.nextString());
   }
 
   @Override
-  public void onNew(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_NEW, r.nextBoolean());
+  public void onNew(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_NEW, r.nextBoolean());
   }
 
   @Override
-  public void onSubject(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_SUBJECT, r.nextString());
+  public void onSubject(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_SUBJECT, r.nextString());
   }
 
   @Override
-  public void onSubreddit(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_SUBREDDIT, readString(r, null));
+  public void onSubreddit(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_SUBREDDIT, readString(r, null));
   }
 
   @Override
-  public void onWasComment(JsonReader r, int i) throws IOException {
-    values.get(i).put(Messages.COLUMN_WAS_COMMENT, r.nextBoolean());
+  public void onWasComment(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_WAS_COMMENT, r.nextBoolean());
   }
 
   @Override
@@ -262,12 +350,39 @@ class MessageListing extends JsonParser implements Listing {
   }
 
   @Override
-  public void onAfter(JsonReader r) throws IOException {
+  public void onAfter(Utf8JsonReader r) throws IOException {
     moreThingId = readString(r, null);
   }
 
+  @Override
+  public void onEntityEnd(int i) throws IOException {
+    // Replies end before their parents, so wait until a top level message
+    // ends before putting it and its replies into the queue in order.
+    if (queue != null && replyNesting == 0) {
+      for (; streamRow < rows.size(); streamRow++) {
+        ReadMerger.updateRow(rows, streamRow, readActionMap, STRING_THING_ID,
+            LONG_NEW);
+      }
+      if (rows.size() >= STREAM_BATCH_SIZE) {
+        queue.put(rows);
+        rows = new RowBatch(COLUMNS, STREAM_BATCH_SIZE * 2);
+        rowOffset = i + 1;
+        streamRow = 0;
+      }
+    }
+  }
+
+  private int row(int entityIndex) {
+    return entityIndex - rowOffset;
+  }
+
   @Override
   public void onParseEnd() {
+    // Streamed values have already been merged and handed off.
+    if (queue != null) {
+      return;
+    }
+
     if (sessionType == Sessions.TYPE_MESSAGE_THREAD) {
       mergeThreadActions();
     }
@@ -276,14 +391,14 @@ class MessageListing extends JsonParser implements Listing {
   }
 
   private void mergeThreadActions() {
-    if (values.isEmpty()) {
+    if (rows.isEmpty()) {
       return; // Something went wrong.
     }
 
     // Message threads are odd in that the thing ID doesn't refer to the
     // topmost message, so the actions may not match up with that ID.
     // So get the parent id from the first element.
-    String parentId = values.get(0).getAsString(Messages.COLUMN_THING_ID);
+    String parentId = rows.getString(0, STRING_THING_ID);
 
     SQLiteDatabase db = dbHelper.getReadableDatabase();
     Cursor c = db.query(MessageActions.TABLE_NAME,
@@ -307,23 +422,21 @@ class MessageListing extends JsonParser implements Listing {
   }
 
   private void insertMessage(Cursor c) {
-    ContentValues v = new ContentValues(5 + 1); // +1 for session id.
-    v.put(Messages.COLUMN_ACCOUNT, accountName);
-    v.put(Messages.COLUMN_AUTHOR, accountName);
-    v.put(Messages.COLUMN_BODY, c.getString(MERGE_TEXT));
-    v.put(Messages.COLUMN_KIND, Kinds.KIND_MESSAGE);
-    v.put(Messages.COLUMN_MESSAGE_ACTION_ID, c.getLong(MERGE_ID));
-
     // Just append to the bottom for messages.
-    values.add(v);
+    int row = rows.add();
+    rows.setString(row, STRING_ACCOUNT, accountName);
+    rows.setString(row, STRING_AUTHOR, accountName);
+    rows.setString(row, STRING_BODY, c.getString(MERGE_TEXT));
+    rows.setLong(row, LONG_KIND, Kinds.KIND_MESSAGE);
+    rows.setLong(row, LONG_MESSAGE_ACTION_ID, c.getLong(MERGE_ID));
   }
 
   private void doFinalMerge() {
     if (sessionType == Sessions.TYPE_MESSAGES) {
-      int count = values.size();
+      int count = rows.size();
       for (int i = 0; i < count; i++) {
-        ContentValues v = values.get(i);
-        ReadMerger.updateContentValues(v, readActionMap);
+        ReadMerger.updateRow(rows, i, readActionMap, STRING_THING_ID,
+            LONG_NEW);
       }
     }
     appendLoadingMore();
@@ -331,11 +444,10 @@ class MessageListing extends JsonParser implements Listing {
 
   private void appendLoadingMore() {
     if (!TextUtils.isEmpty(moreThingId)) {
-      ContentValues v = new ContentValues(3 + 1); // 1 for session id.
-      v.put(Messages.COLUMN_ACCOUNT, accountName);
-      v.put(Messages.COLUMN_KIND, Kinds.KIND_MORE);
-      v.put(Messages.COLUMN_THING_ID, moreThingId);
-      values.add(v);
+      int row = rows.add();
+      rows.setString(row, STRING_ACCOUNT, accountName);
+      rows.setLong(row, LONG_KIND, Kinds.KIND_MORE);
+      rows.setString(row, STRING_THING_ID, moreThingId);
     }
   }
 }
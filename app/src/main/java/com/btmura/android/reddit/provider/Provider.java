@@ -63,12 +63,13 @@ public class Provider {
   public static void expandCommentAsync(
       Context ctx,
       final long id,
-      final long sessionId) {
+      final long sessionId,
+      final long endId) {
     final Context appCtx = ctx.getApplicationContext();
     AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
       @Override
       public void run() {
-        ThingProvider.expandComment(appCtx, id, sessionId);
+        ThingProvider.expandComment(appCtx, id, sessionId, endId);
       }
     });
   }
@@ -76,12 +77,13 @@ public class Provider {
   public static void collapseCommentAsync(
       Context ctx,
       final long id,
-      final long[] childIds) {
+      final long sessionId,
+      final long endId) {
     final Context appCtx = ctx.getApplicationContext();
     AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
       @Override
       public void run() {
-        ThingProvider.collapseComment(appCtx, id, childIds);
+        ThingProvider.collapseComment(appCtx, id, sessionId, endId);
       }
     });
   }
@@ -102,6 +104,23 @@ public class Provider {
     });
   }
 
+  public static void loadMoreCommentsAsync(
+      Context ctx,
+      final String accountName,
+      final long id,
+      final long sessionId,
+      final String linkId,
+      final int filter) {
+    final Context appCtx = ctx.getApplicationContext();
+    AsyncTask.SERIAL_EXECUTOR.execute(new Runnable() {
+      @Override
+      public void run() {
+        ThingProvider.loadMoreComments(appCtx, accountName, id, sessionId,
+            linkId, filter);
+      }
+    });
+  }
+
   public static void editCommentAsync(
       Context ctx,
       final String accountName,
@@ -31,7 +31,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static android.provider.BaseColumns._ID;
-import static com.btmura.android.reddit.database.Messages.COLUMN_NEW;
 import static com.btmura.android.reddit.database.ReadActions.ACTION_READ;
 import static com.btmura.android.reddit.database.ReadActions.ACTION_UNREAD;
 import static com.btmura.android.reddit.database.ReadActions.COLUMN_ACTION;
@@ -76,26 +75,32 @@ class ReadMerger {
     }
   }
 
-  static void updateContentValues(
-      ContentValues v,
-      Map<String, Integer> actionMap) {
+  static void updateRow(
+      RowBatch rows,
+      int row,
+      Map<String, Integer> actionMap,
+      int thingIdColumn,
+      int newColumn) {
     if (!actionMap.isEmpty()) {
-      String thingId = (String) v.get(SharedColumns.COLUMN_THING_ID);
-      Integer action = actionMap.remove(thingId);
+      Integer action = actionMap.remove(rows.getString(row, thingIdColumn));
       if (action != null) {
-        updateContentValues(v, action);
+        updateRow(rows, row, newColumn, action);
       }
     }
   }
 
-  private static void updateContentValues(ContentValues v, int action) {
+  private static void updateRow(
+      RowBatch rows,
+      int row,
+      int column,
+      int action) {
     switch (action) {
       case ACTION_READ:
-        v.put(COLUMN_NEW, 0);
+        rows.setLong(row, column, 0);
         break;
 
       case ACTION_UNREAD:
-        v.put(COLUMN_NEW, 1);
+        rows.setLong(row, column, 1);
         break;
     }
   }
@@ -0,0 +1,259 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.provider;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import com.btmura.android.reddit.database.SharedColumns;
+
+/**
+ * {@link RowBatch} holds rows parsed by a {@link Listing} in primitive arrays
+ * with one array per column, so filling and merging rows does not box values
+ * into a {@link android.content.ContentValues} per row.
+ */
+class RowBatch {
+
+  /** Value of a long column that is inserted as NULL. */
+  static final long NULL = Long.MIN_VALUE;
+
+  private final Columns columns;
+  private final long[][] longs;
+  private final String[][] strings;
+  private int capacity;
+  private int size;
+
+  RowBatch(Columns columns, int capacity) {
+    this.columns = columns;
+    this.capacity = Math.max(capacity, 1);
+    this.longs = new long[columns.longNames.length][this.capacity];
+    this.strings = new String[columns.stringNames.length][this.capacity];
+  }
+
+  Columns getColumns() {
+    return columns;
+  }
+
+  int size() {
+    return size;
+  }
+
+  boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Adds a row with default values to the end and returns its index. */
+  int add() {
+    ensureCapacity(size + 1);
+    setDefaults(size);
+    return size++;
+  }
+
+  /** Inserts a row with default values at the given index. */
+  void insert(int row) {
+    ensureCapacity(size + 1);
+    int count = size - row;
+    for (long[] column : longs) {
+      System.arraycopy(column, row, column, row + 1, count);
+    }
+    for (String[] column : strings) {
+      System.arraycopy(column, row, column, row + 1, count);
+    }
+    size++;
+    setDefaults(row);
+  }
+
+  /** Removes the row at the given index. */
+  void remove(int row) {
+    int count = size - row - 1;
+    for (long[] column : longs) {
+      System.arraycopy(column, row + 1, column, row, count);
+    }
+    for (String[] column : strings) {
+      System.arraycopy(column, row + 1, column, row, count);
+      column[size - 1] = null;
+    }
+    size--;
+  }
+
+  /** Removes all the rows. */
+  void clear() {
+    for (String[] column : strings) {
+      for (int i = 0; i < size; i++) {
+        column[i] = null;
+      }
+    }
+    size = 0;
+  }
+
+  long getLong(int row, int column) {
+    return longs[column][row];
+  }
+
+  void setLong(int row, int column, long value) {
+    longs[column][row] = value;
+  }
+
+  void setBoolean(int row, int column, boolean value) {
+    longs[column][row] = value ? 1 : 0;
+  }
+
+  String getString(int row, int column) {
+    return strings[column][row];
+  }
+
+  void setString(int row, int column, String value) {
+    strings[column][row] = value;
+  }
+
+  /** Returns the index of the first row with the value or -1 if none. */
+  int indexOf(int column, String value) {
+    String[] values = strings[column];
+    for (int i = 0; i < size; i++) {
+      if (value.equals(values[i])) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Binds a row to a statement compiled by {@link Columns#compileInsert}.
+   *
+   * @param sessionId of the session that the row belongs to
+   */
+  void bind(SQLiteStatement sql, int row, long sessionId) {
+    int index = 1;
+    sql.bindLong(index++, sessionId);
+    for (long[] column : longs) {
+      long value = column[row];
+      if (value == NULL) {
+        sql.bindNull(index++);
+      } else {
+        sql.bindLong(index++, value);
+      }
+    }
+    for (String[] column : strings) {
+      String value = column[row];
+      if (value == null) {
+        sql.bindNull(index++);
+      } else {
+        sql.bindString(index++, value);
+      }
+    }
+  }
+
+  private void setDefaults(int row) {
+    long[] defaults = columns.longDefaults;
+    for (int i = 0; i < defaults.length; i++) {
+      longs[i][row] = defaults[i];
+    }
+    for (String[] column : strings) {
+      column[row] = null;
+    }
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    if (minCapacity <= capacity) {
+      return;
+    }
+    int newCapacity = Math.max(minCapacity, capacity * 2);
+    for (int i = 0; i < longs.length; i++) {
+      long[] column = new long[newCapacity];
+      System.arraycopy(longs[i], 0, column, 0, size);
+      longs[i] = column;
+    }
+    for (int i = 0; i < strings.length; i++) {
+      String[] column = new String[newCapacity];
+      System.arraycopy(strings[i], 0, column, 0, size);
+      strings[i] = column;
+    }
+    capacity = newCapacity;
+  }
+
+  /**
+   * {@link Columns} describes the columns of a table that a {@link RowBatch}
+   * fills. Columns are referred to by their index within the long or String
+   * columns. Table columns that are left out get their default values.
+   */
+  static class Columns {
+
+    private final String table;
+    private final String[] longNames;
+    private final long[] longDefaults;
+    private final String[] stringNames;
+
+    /**
+     * @param longDefaults default values of the long columns which should
+     *                     match the table's defaults or be {@link #NULL}
+     */
+    Columns(
+        String table,
+        String[] longNames,
+        long[] longDefaults,
+        String[] stringNames) {
+      if (longNames.length != longDefaults.length) {
+        throw new IllegalArgumentException();
+      }
+      this.table = table;
+      this.longNames = longNames;
+      this.longDefaults = longDefaults;
+      this.stringNames = stringNames;
+    }
+
+    String getTable() {
+      return table;
+    }
+
+    /** Returns the index of the long column or -1 if there is none. */
+    int longIndex(String name) {
+      return indexOf(longNames, name);
+    }
+
+    /** Returns the index of the String column or -1 if there is none. */
+    int stringIndex(String name) {
+      return indexOf(stringNames, name);
+    }
+
+    /** Compiles an insert statement for {@link RowBatch#bind}. */
+    SQLiteStatement compileInsert(SQLiteDatabase db) {
+      StringBuilder sb = new StringBuilder("INSERT INTO ").append(table)
+          .append(" (").append(SharedColumns.COLUMN_SESSION_ID);
+      for (String name : longNames) {
+        sb.append(',').append(name);
+      }
+      for (String name : stringNames) {
+        sb.append(',').append(name);
+      }
+      sb.append(") VALUES (?");
+      int count = longNames.length + stringNames.length;
+      for (int i = 0; i < count; i++) {
+        sb.append(",?");
+      }
+      return db.compileStatement(sb.append(')').toString());
+    }
+
+    private static int indexOf(String[] names, String name) {
+      for (int i = 0; i < names.length; i++) {
+        if (names[i].equals(name)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
@@ -33,7 +33,6 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static android.provider.BaseColumns._ID;
-import static com.btmura.android.reddit.database.BaseThingColumns.COLUMN_SAVED;
 import static com.btmura.android.reddit.database.SaveActions.ACTION_SAVE;
 import static com.btmura.android.reddit.database.SaveActions.ACTION_UNSAVE;
 import static com.btmura.android.reddit.database.SaveActions.COLUMN_ACTION;
@@ -78,26 +77,32 @@ class SaveMerger {
     }
   }
 
-  static void updateContentValues(
-      ContentValues v,
-      Map<String, Integer> actionMap) {
+  static void updateRow(
+      RowBatch rows,
+      int row,
+      Map<String, Integer> actionMap,
+      int thingIdColumn,
+      int savedColumn) {
     if (!actionMap.isEmpty()) {
-      String thingId = (String) v.get(SharedColumns.COLUMN_THING_ID);
-      Integer action = actionMap.remove(thingId);
+      Integer action = actionMap.remove(rows.getString(row, thingIdColumn));
       if (action != null) {
-        updateContentValues(v, action);
+        updateRow(rows, row, savedColumn, action);
       }
     }
   }
 
-  private static void updateContentValues(ContentValues v, int action) {
+  private static void updateRow(
+      RowBatch rows,
+      int row,
+      int column,
+      int action) {
     switch (action) {
       case ACTION_SAVE:
-        v.put(COLUMN_SAVED, 1);
+        rows.setLong(row, column, 1);
         break;
 
       case ACTION_UNSAVE:
-        v.put(COLUMN_SAVED, 0);
+        rows.setLong(row, column, 0);
         break;
     }
   }
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.provider;
+
+/**
+ * {@link StreamingListing} is a {@link Listing} that can hand off its values
+ * as they are parsed off the network instead of all at once.
+ */
+interface StreamingListing extends Listing {
+
+  /**
+   * Prepare to stream values and return whether this listing supports it.
+   * Any database reads needed for merging must happen here, since
+   * {@link #streamValues(ValueQueue)} runs while the session is being
+   * inserted in a transaction.
+   */
+  boolean prepareStream() throws Exception;
+
+  /** Put batches of rows into the queue as they are parsed off the network. */
+  void streamValues(ValueQueue queue) throws Exception;
+}
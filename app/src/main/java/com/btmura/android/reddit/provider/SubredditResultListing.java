@@ -18,34 +18,57 @@ package com.btmura.android.reddit.provider;
 
 import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
-import android.content.ContentValues;
 import android.content.Context;
-import android.util.JsonReader;
 
 import com.btmura.android.reddit.database.Sessions;
 import com.btmura.android.reddit.database.SubredditResults;
-import com.btmura.android.reddit.database.Things;
 import com.btmura.android.reddit.net.RedditApi;
 import com.btmura.android.reddit.net.Urls;
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.util.ArrayList;
 
 class SubredditResultListing extends JsonParser implements Listing {
 
   public static final String TAG = "SubredditResultListing";
 
+  // Columns of the rows inserted into the subreddit results table.
+
+  private static final int LONG_OVER_18 = 0;
+  private static final int LONG_SUBSCRIBERS = 1;
+
+  private static final int STRING_ACCOUNT = 0;
+  private static final int STRING_NAME = 1;
+
+  private static final RowBatch.Columns COLUMNS = new RowBatch.Columns(
+      SubredditResults.TABLE_NAME,
+      new String[] {
+          SubredditResults.COLUMN_OVER_18,
+          SubredditResults.COLUMN_SUBSCRIBERS,
+      },
+      new long[] {
+          0, // over_18
+          RowBatch.NULL, // subscribers
+      },
+      new String[] {
+          SubredditResults.COLUMN_ACCOUNT,
+          SubredditResults.COLUMN_NAME,
+      });
+
+  /** Fields read by this listing. Others are skipped while parsing. */
+  private static final int[] PARSED_FIELDS = {
+      FIELD_DISPLAY_NAME,
+      FIELD_OVER_18,
+      FIELD_SUBSCRIBERS,
+  };
+
   private final Context ctx;
   private final String accountName;
   private final String query;
 
-  private final ArrayList<ContentValues> values =
-      new ArrayList<ContentValues>(25);
+  private final RowBatch rows = new RowBatch(COLUMNS, 25);
 
   static SubredditResultListing newInstance(
       Context ctx,
@@ -55,6 +78,7 @@ class SubredditResultListing extends JsonParser implements Listing {
   }
 
   SubredditResultListing(Context ctx, String accountName, String query) {
+    super(PARSED_FIELDS);
     this.ctx = ctx.getApplicationContext();
     this.accountName = accountName;
     this.query = query;
@@ -71,21 +95,24 @@ class SubredditResultListing extends JsonParser implements Listing {
   }
 
   @Override
-  public ArrayList<ContentValues> getValues()
+  public CharSequence getUrl() {
+    return Urls.subredditSearch(accountName, query);
+  }
+
+  @Override
+  public RowBatch getValues()
       throws AuthenticatorException, OperationCanceledException, IOException {
-    CharSequence url = Urls.subredditSearch(accountName, query);
-    HttpURLConnection conn = RedditApi.connect(ctx, accountName, url);
-    InputStream input = null;
+    HttpURLConnection conn = RedditApi.connect(ctx, accountName, getUrl());
+    Utf8JsonReader reader = null;
     try {
-      input = new BufferedInputStream(conn.getInputStream());
-      JsonReader reader = new JsonReader(new InputStreamReader(input));
+      reader = new Utf8JsonReader(RedditApi.getInputStream(conn));
       parseListingObject(reader);
-      return values;
+      return rows;
     } finally {
-      if (input != null) {
-        input.close();
+      if (reader != null) {
+        reader.close();
       }
-      conn.disconnect();
+      RedditApi.release(conn);
     }
   }
 
@@ -101,23 +128,22 @@ class SubredditResultListing extends JsonParser implements Listing {
 
   @Override
   public void onEntityStart(int i) {
-    ContentValues v = new ContentValues(5);
-    v.put(Things.COLUMN_ACCOUNT, accountName);
-    values.add(v);
+    int row = rows.add();
+    rows.setString(row, STRING_ACCOUNT, accountName);
   }
 
   @Override
-  public void onDisplayName(JsonReader r, int i) throws IOException {
-    values.get(i).put(SubredditResults.COLUMN_NAME, readString(r, ""));
+  public void onDisplayName(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(i, STRING_NAME, readString(r, ""));
   }
 
   @Override
-  public void onOver18(JsonReader r, int i) throws IOException {
-    values.get(i).put(SubredditResults.COLUMN_OVER_18, readBoolean(r, false));
+  public void onOver18(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(i, LONG_OVER_18, readBoolean(r, false));
   }
 
   @Override
-  public void onSubscribers(JsonReader r, int i) throws IOException {
-    values.get(i).put(SubredditResults.COLUMN_SUBSCRIBERS, readInt(r, 0));
+  public void onSubscribers(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(i, LONG_SUBSCRIBERS, readInt(r, 0));
   }
 }
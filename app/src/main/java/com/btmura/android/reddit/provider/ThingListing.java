@@ -18,14 +18,12 @@ package com.btmura.android.reddit.provider;
 
 import android.accounts.AuthenticatorException;
 import android.accounts.OperationCanceledException;
-import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import android.support.annotation.Nullable;
 import android.text.TextUtils;
-import android.util.JsonReader;
 import android.util.JsonToken;
 
 import com.btmura.android.reddit.app.Filter;
@@ -40,17 +38,12 @@ import com.btmura.android.reddit.net.Urls;
 import com.btmura.android.reddit.text.MarkdownFormatter;
 import com.btmura.android.reddit.util.Array;
 import com.btmura.android.reddit.util.JsonParser;
+import com.btmura.android.reddit.util.Utf8JsonReader;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
-class ThingListing extends JsonParser implements Listing {
+class ThingListing extends JsonParser implements StreamingListing {
 
   public static final String TAG = "ThingListing";
 
@@ -171,6 +164,104 @@ class ThingListing extends JsonParser implements Listing {
   private static final int VOTE_UPS = 16;
   private static final int VOTE_URL = 17;
 
+  // Columns of the rows inserted into the things table.
+
+  private static final int LONG_CREATED_UTC = 0;
+  private static final int LONG_DOWNS = 1;
+  private static final int LONG_HIDDEN = 2;
+  private static final int LONG_KIND = 3;
+  private static final int LONG_LIKES = 4;
+  private static final int LONG_NUM_COMMENTS = 5;
+  private static final int LONG_OVER_18 = 6;
+  private static final int LONG_SAVED = 7;
+  private static final int LONG_SCORE = 8;
+  private static final int LONG_SELF = 9;
+  private static final int LONG_UPS = 10;
+
+  private static final int STRING_ACCOUNT = 0;
+  private static final int STRING_AUTHOR = 1;
+  private static final int STRING_BODY = 2;
+  private static final int STRING_DOMAIN = 3;
+  private static final int STRING_LINK_ID = 4;
+  private static final int STRING_LINK_TITLE = 5;
+  private static final int STRING_PERMA_LINK = 6;
+  private static final int STRING_SUBREDDIT = 7;
+  private static final int STRING_THING_ID = 8;
+  private static final int STRING_TITLE = 9;
+  private static final int STRING_THUMBNAIL_URL = 10;
+  private static final int STRING_URL = 11;
+
+  private static final RowBatch.Columns COLUMNS = new RowBatch.Columns(
+      Things.TABLE_NAME,
+      new String[] {
+          Things.COLUMN_CREATED_UTC,
+          Things.COLUMN_DOWNS,
+          Things.COLUMN_HIDDEN,
+          Things.COLUMN_KIND,
+          Things.COLUMN_LIKES,
+          Things.COLUMN_NUM_COMMENTS,
+          Things.COLUMN_OVER_18,
+          Things.COLUMN_SAVED,
+          Things.COLUMN_SCORE,
+          Things.COLUMN_SELF,
+          Things.COLUMN_UPS,
+      },
+      new long[] {
+          0, // created_utc
+          0, // downs
+          0, // hidden
+          RowBatch.NULL, // kind
+          0, // likes
+          0, // num_comments
+          0, // over_18
+          0, // saved
+          0, // score
+          0, // self
+          0, // ups
+      },
+      new String[] {
+          Things.COLUMN_ACCOUNT,
+          Things.COLUMN_AUTHOR,
+          Things.COLUMN_BODY,
+          Things.COLUMN_DOMAIN,
+          Things.COLUMN_LINK_ID,
+          Things.COLUMN_LINK_TITLE,
+          Things.COLUMN_PERMA_LINK,
+          Things.COLUMN_SUBREDDIT,
+          Things.COLUMN_THING_ID,
+          Things.COLUMN_TITLE,
+          Things.COLUMN_THUMBNAIL_URL,
+          Things.COLUMN_URL,
+      });
+
+  /** Number of rows to parse before handing them off when streaming. */
+  private static final int STREAM_BATCH_SIZE = 8;
+
+  /** Fields read by this listing. Others are skipped while parsing. */
+  private static final int[] PARSED_FIELDS = {
+      FIELD_AUTHOR,
+      FIELD_BODY,
+      FIELD_CREATED_UTC,
+      FIELD_DOMAIN,
+      FIELD_DOWNS,
+      FIELD_HIDDEN,
+      FIELD_IS_SELF,
+      FIELD_LIKES,
+      FIELD_LINK_ID,
+      FIELD_LINK_TITLE,
+      FIELD_NAME,
+      FIELD_NUM_COMMENTS,
+      FIELD_OVER_18,
+      FIELD_PERMA_LINK,
+      FIELD_SAVED,
+      FIELD_SCORE,
+      FIELD_SUBREDDIT,
+      FIELD_THUMBNAIL,
+      FIELD_TITLE,
+      FIELD_UPS,
+      FIELD_URL,
+  };
+
   private final Context ctx;
   private final SQLiteOpenHelper dbHelper;
   private final int sessionType;
@@ -183,12 +274,15 @@ class ThingListing extends JsonParser implements Listing {
   private final int count;
   private final MarkdownFormatter formatter = new MarkdownFormatter();
 
-  private final ArrayList<ContentValues> values = new ArrayList<ContentValues>(
-      30);
+  private RowBatch rows = new RowBatch(COLUMNS, 30);
   private Map<String, Integer> hideActionMap;
   private Map<String, Integer> saveActionMap;
   private Map<String, Integer> voteActionMap;
   private String moreThingId;
+  private ValueQueue queue;
+
+  /** Index of the entity in the first row of the batch when streaming. */
+  private int rowOffset;
 
   static ThingListing newSearchInstance(
       Context context,
@@ -262,6 +356,7 @@ class ThingListing extends JsonParser implements Listing {
       int filter,
       String more,
       int count) {
+    super(PARSED_FIELDS);
     this.ctx = context;
     this.dbHelper = dbHelper;
     this.sessionType = sessionType;
@@ -285,28 +380,69 @@ class ThingListing extends JsonParser implements Listing {
   }
 
   @Override
-  public List<ContentValues> getValues()
+  public RowBatch getValues()
       throws AuthenticatorException, OperationCanceledException, IOException {
-    HttpURLConnection conn = RedditApi.connect(ctx, accountName, getUrl());
-    InputStream input = null;
-    try {
-      input = new BufferedInputStream(conn.getInputStream());
-      hideActionMap = HideMerger.getActionMap(dbHelper, accountName);
-      saveActionMap = SaveMerger.getActionMap(dbHelper, accountName);
-      voteActionMap = VoteMerger.getActionMap(dbHelper, accountName);
+    loadActionMaps();
+    parseListing();
+    return rows;
+  }
+
+  @Override
+  public boolean prepareStream() {
+    // Profile listings add and remove rows across the whole page when merging
+    // pending actions, so they need all the values before inserting them.
+    if (hasPageMerge()) {
+      return false;
+    }
+    loadActionMaps();
+    return true;
+  }
+
+  @Override
+  public void streamValues(ValueQueue queue)
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    this.queue = queue;
+    parseListing();
+    appendLoadingMore();
+    if (!rows.isEmpty()) {
+      queue.put(rows);
+    }
+  }
+
+  private void loadActionMaps() {
+    hideActionMap = HideMerger.getActionMap(dbHelper, accountName);
+    saveActionMap = SaveMerger.getActionMap(dbHelper, accountName);
+    voteActionMap = VoteMerger.getActionMap(dbHelper, accountName);
+  }
 
-      JsonReader reader = new JsonReader(new InputStreamReader(input));
+  private void parseListing()
+      throws AuthenticatorException, OperationCanceledException, IOException {
+    Utf8JsonReader reader = null;
+    try {
+      reader = new Utf8JsonReader(RedditApi.get(ctx, accountName, getUrl()));
       parseListingObject(reader);
-      return values;
     } finally {
-      if (input != null) {
-        input.close();
+      if (reader != null) {
+        reader.close();
       }
-      conn.disconnect();
     }
   }
 
-  private CharSequence getUrl() {
+  private boolean hasPageMerge() {
+    if (!TextUtils.isEmpty(profileUser)) {
+      switch (filter) {
+        case Filter.PROFILE_HIDDEN:
+        case Filter.PROFILE_SAVED:
+        case Filter.PROFILE_UPVOTED:
+        case Filter.PROFILE_DOWNVOTED:
+          return true;
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public CharSequence getUrl() {
     if (!TextUtils.isEmpty(profileUser)) {
       return Urls.profile(accountName, profileUser, filter, more, count);
     }
@@ -329,147 +465,165 @@ class ThingListing extends JsonParser implements Listing {
   @Override
   public void onEntityStart(int i) {
     // Pass -1 and null since we don't know those until later
-    values.add(newContentValues(-1, null, 19));
+    addRow(-1, null);
   }
 
   @Override
-  public void onAuthor(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_AUTHOR, readString(r, ""));
+  public void onAuthor(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_AUTHOR, readString(r, ""));
   }
 
   @Override
-  public void onBody(JsonReader r, int i) throws IOException {
+  public void onBody(Utf8JsonReader r, int i) throws IOException {
     CharSequence body = readFormattedString(r);
-    values.get(i).put(Things.COLUMN_BODY, body.toString());
+    rows.setString(row(i), STRING_BODY, body.toString());
   }
 
   @Override
-  public void onCreatedUtc(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_CREATED_UTC, r.nextLong());
+  public void onCreatedUtc(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_CREATED_UTC, r.nextLong());
   }
 
   @Override
-  public void onDomain(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_DOMAIN, readString(r, ""));
+  public void onDomain(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_DOMAIN, readString(r, ""));
   }
 
   @Override
-  public void onDowns(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_DOWNS, r.nextInt());
+  public void onDowns(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_DOWNS, r.nextInt());
   }
 
   @Override
-  public void onHidden(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_HIDDEN, r.nextBoolean());
+  public void onHidden(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_HIDDEN, r.nextBoolean());
   }
 
   @Override
-  public void onKind(JsonReader r, int i) throws IOException {
+  public void onKind(Utf8JsonReader r, int i) throws IOException {
     int kindValue = Kinds.parseKind(r.nextString());
-    values.get(i).put(Things.COLUMN_KIND, kindValue);
+    rows.setLong(row(i), LONG_KIND, kindValue);
   }
 
   @Override
-  public void onLikes(JsonReader r, int i) throws IOException {
+  public void onLikes(Utf8JsonReader r, int i) throws IOException {
     int likes = 0;
     if (r.peek() == JsonToken.BOOLEAN) {
       likes = r.nextBoolean() ? 1 : -1;
     } else {
       r.skipValue();
     }
-    values.get(i).put(Things.COLUMN_LIKES, likes);
+    rows.setLong(row(i), LONG_LIKES, likes);
   }
 
   @Override
-  public void onLinkId(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_LINK_ID, r.nextString());
+  public void onLinkId(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_LINK_ID, r.nextString());
   }
 
   @Override
-  public void onLinkTitle(JsonReader r, int i) throws IOException {
+  public void onLinkTitle(Utf8JsonReader r, int i) throws IOException {
     CharSequence title = readFormattedString(r);
-    values.get(i).put(Things.COLUMN_LINK_TITLE, title.toString());
+    rows.setString(row(i), STRING_LINK_TITLE, title.toString());
   }
 
   @Override
-  public void onName(JsonReader r, int i) throws IOException {
+  public void onName(Utf8JsonReader r, int i) throws IOException {
     String name = readString(r, "");
-    values.get(i).put(Things.COLUMN_THING_ID, name);
+    rows.setString(row(i), STRING_THING_ID, name);
   }
 
   @Override
-  public void onNumComments(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_NUM_COMMENTS, r.nextInt());
+  public void onNumComments(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_NUM_COMMENTS, r.nextInt());
   }
 
   @Override
-  public void onOver18(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_OVER_18, r.nextBoolean());
+  public void onOver18(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_OVER_18, r.nextBoolean());
   }
 
   @Override
-  public void onPermaLink(JsonReader r, int i) throws IOException {
+  public void onPermaLink(Utf8JsonReader r, int i) throws IOException {
     String url = readFormattedString(r).toString();
-    values.get(i).put(Things.COLUMN_PERMA_LINK, url);
+    rows.setString(row(i), STRING_PERMA_LINK, url);
   }
 
   @Override
-  public void onSaved(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_SAVED, r.nextBoolean());
+  public void onSaved(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_SAVED, r.nextBoolean());
   }
 
   @Override
-  public void onScore(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_SCORE, r.nextInt());
+  public void onScore(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_SCORE, r.nextInt());
   }
 
   @Override
-  public void onIsSelf(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_SELF, r.nextBoolean());
+  public void onIsSelf(Utf8JsonReader r, int i) throws IOException {
+    rows.setBoolean(row(i), LONG_SELF, r.nextBoolean());
   }
 
   @Override
-  public void onSubreddit(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_SUBREDDIT, readString(r, ""));
+  public void onSubreddit(Utf8JsonReader r, int i) throws IOException {
+    rows.setString(row(i), STRING_SUBREDDIT, readString(r, ""));
   }
 
   @Override
-  public void onTitle(JsonReader r, int i) throws IOException {
+  public void onTitle(Utf8JsonReader r, int i) throws IOException {
     CharSequence title = readFormattedString(r);
-    values.get(i).put(Things.COLUMN_TITLE, title.toString());
+    rows.setString(row(i), STRING_TITLE, title.toString());
   }
 
   @Override
-  public void onThumbnail(JsonReader r, int i) throws IOException {
+  public void onThumbnail(Utf8JsonReader r, int i) throws IOException {
     String thumbnail = readString(r, null);
     if (!TextUtils.isEmpty(thumbnail) && thumbnail.startsWith("http")) {
-      values.get(i).put(Things.COLUMN_THUMBNAIL_URL, thumbnail);
+      rows.setString(row(i), STRING_THUMBNAIL_URL, thumbnail);
     }
   }
 
   @Override
-  public void onUrl(JsonReader r, int i) throws IOException {
+  public void onUrl(Utf8JsonReader r, int i) throws IOException {
     String url = readFormattedString(r).toString();
-    values.get(i).put(Things.COLUMN_URL, url);
+    rows.setString(row(i), STRING_URL, url);
   }
 
   @Override
-  public void onUps(JsonReader r, int i) throws IOException {
-    values.get(i).put(Things.COLUMN_UPS, r.nextInt());
+  public void onUps(Utf8JsonReader r, int i) throws IOException {
+    rows.setLong(row(i), LONG_UPS, r.nextInt());
   }
 
-  private CharSequence readFormattedString(JsonReader reader)
+  private CharSequence readFormattedString(Utf8JsonReader reader)
       throws IOException {
     return formatter.formatNoSpans(readString(reader, ""));
   }
 
   @Override
-  public void onAfter(JsonReader r) throws IOException {
+  public void onAfter(Utf8JsonReader r) throws IOException {
     moreThingId = readString(r, null);
   }
 
+  @Override
+  public void onEntityEnd(int i) throws IOException {
+    if (queue != null) {
+      mergeValues(row(i));
+      if (rows.size() == STREAM_BATCH_SIZE) {
+        // Hand off the batch and start a new one for the following entities.
+        queue.put(rows);
+        rows = new RowBatch(COLUMNS, STREAM_BATCH_SIZE);
+        rowOffset = i + 1;
+      }
+    }
+  }
+
   @Override
   public void onParseEnd() {
+    // Streamed values have already been merged and handed off.
+    if (queue != null) {
+      return;
+    }
+
     // TODO: Get the cursor for these operations when connecting to the
     // network to do things in parallel.
     if (!TextUtils.isEmpty(profileUser)) {
@@ -492,15 +646,15 @@ class ThingListing extends JsonParser implements Listing {
     doFinalMerge();
   }
 
-  private ContentValues newContentValues(
-      int kind,
-      String thingId,
-      int extraCapacity) {
-    ContentValues v = new ContentValues(3 + extraCapacity);
-    v.put(Things.COLUMN_ACCOUNT, accountName);
-    v.put(Things.COLUMN_KIND, kind);
-    v.put(Things.COLUMN_THING_ID, thingId);
-    return v;
+  private int row(int entityIndex) {
+    return entityIndex - rowOffset;
+  }
+
+  private void addRow(int kind, String thingId) {
+    int row = rows.add();
+    rows.setString(row, STRING_ACCOUNT, accountName);
+    rows.setLong(row, LONG_KIND, kind);
+    rows.setString(row, STRING_THING_ID, thingId);
   }
 
   private void mergeHideAction() {
@@ -595,100 +749,99 @@ class ThingListing extends JsonParser implements Listing {
   }
 
   private void addHide(Cursor c) {
-    ContentValues v = new ContentValues(20);
-    v.put(Things.COLUMN_ACCOUNT, accountName);
-    v.put(Things.COLUMN_AUTHOR, c.getString(HIDE_AUTHOR));
-    v.put(Things.COLUMN_CREATED_UTC, c.getLong(HIDE_CREATED_UTC));
-    v.put(Things.COLUMN_DOMAIN, c.getString(HIDE_DOMAIN));
-    v.put(Things.COLUMN_DOWNS, c.getString(HIDE_DOWNS));
-    v.put(Things.COLUMN_HIDDEN, true);
-    v.put(Things.COLUMN_KIND, Kinds.KIND_LINK);
-    v.put(Things.COLUMN_LIKES, c.getInt(HIDE_LIKES));
-    v.put(Things.COLUMN_NUM_COMMENTS, c.getInt(HIDE_NUM_COMMENTS));
-    v.put(Things.COLUMN_OVER_18, c.getInt(HIDE_OVER_18) != 0);
-    v.put(Things.COLUMN_PERMA_LINK, c.getString(HIDE_PERMA_LINK));
-    v.put(Things.COLUMN_SCORE, c.getInt(HIDE_SCORE));
-    v.put(Things.COLUMN_SELF, c.getInt(HIDE_SELF));
-    v.put(Things.COLUMN_SUBREDDIT, c.getString(HIDE_SUBREDDIT));
-    v.put(Things.COLUMN_TITLE, c.getString(HIDE_TITLE));
-    v.put(Things.COLUMN_THING_ID, c.getString(HIDE_THING_ID));
-    v.put(Things.COLUMN_THUMBNAIL_URL, c.getString(HIDE_THUMBNAIL_URL));
-    v.put(Things.COLUMN_UPS, c.getInt(HIDE_UPS));
-    v.put(Things.COLUMN_URL, c.getString(HIDE_URL));
-    values.add(0, v);
+    rows.insert(0);
+    rows.setString(0, STRING_ACCOUNT, accountName);
+    rows.setString(0, STRING_AUTHOR, c.getString(HIDE_AUTHOR));
+    rows.setLong(0, LONG_CREATED_UTC, c.getLong(HIDE_CREATED_UTC));
+    rows.setString(0, STRING_DOMAIN, c.getString(HIDE_DOMAIN));
+    rows.setLong(0, LONG_DOWNS, c.getInt(HIDE_DOWNS));
+    rows.setBoolean(0, LONG_HIDDEN, true);
+    rows.setLong(0, LONG_KIND, Kinds.KIND_LINK);
+    rows.setLong(0, LONG_LIKES, c.getInt(HIDE_LIKES));
+    rows.setLong(0, LONG_NUM_COMMENTS, c.getInt(HIDE_NUM_COMMENTS));
+    rows.setBoolean(0, LONG_OVER_18, c.getInt(HIDE_OVER_18) != 0);
+    rows.setString(0, STRING_PERMA_LINK, c.getString(HIDE_PERMA_LINK));
+    rows.setLong(0, LONG_SCORE, c.getInt(HIDE_SCORE));
+    rows.setLong(0, LONG_SELF, c.getInt(HIDE_SELF));
+    rows.setString(0, STRING_SUBREDDIT, c.getString(HIDE_SUBREDDIT));
+    rows.setString(0, STRING_TITLE, c.getString(HIDE_TITLE));
+    rows.setString(0, STRING_THING_ID, c.getString(HIDE_THING_ID));
+    rows.setString(0, STRING_THUMBNAIL_URL, c.getString(HIDE_THUMBNAIL_URL));
+    rows.setLong(0, LONG_UPS, c.getInt(HIDE_UPS));
+    rows.setString(0, STRING_URL, c.getString(HIDE_URL));
   }
 
   private void addSave(Cursor c) {
-    ContentValues v = new ContentValues(20);
-    v.put(Things.COLUMN_ACCOUNT, accountName);
-    v.put(Things.COLUMN_AUTHOR, c.getString(SAVE_AUTHOR));
-    v.put(Things.COLUMN_CREATED_UTC, c.getLong(SAVE_CREATED_UTC));
-    v.put(Things.COLUMN_DOMAIN, c.getString(SAVE_DOMAIN));
-    v.put(Things.COLUMN_DOWNS, c.getString(SAVE_DOWNS));
-    v.put(Things.COLUMN_KIND, Kinds.KIND_LINK);
-    v.put(Things.COLUMN_LIKES, c.getInt(SAVE_LIKES));
-    v.put(Things.COLUMN_NUM_COMMENTS, c.getInt(SAVE_NUM_COMMENTS));
-    v.put(Things.COLUMN_OVER_18, c.getInt(SAVE_OVER_18) != 0);
-    v.put(Things.COLUMN_PERMA_LINK, c.getString(SAVE_PERMA_LINK));
-    v.put(Things.COLUMN_SCORE, c.getInt(SAVE_SCORE));
-    v.put(Things.COLUMN_SELF, c.getInt(SAVE_SELF));
-    v.put(Things.COLUMN_SUBREDDIT, c.getString(SAVE_SUBREDDIT));
-    v.put(Things.COLUMN_TITLE, c.getString(SAVE_TITLE));
-    v.put(Things.COLUMN_THING_ID, c.getString(SAVE_THING_ID));
-    v.put(Things.COLUMN_THUMBNAIL_URL, c.getString(SAVE_THUMBNAIL_URL));
-    v.put(Things.COLUMN_UPS, c.getInt(SAVE_UPS));
-    v.put(Things.COLUMN_URL, c.getString(SAVE_URL));
-    values.add(0, v);
+    rows.insert(0);
+    rows.setString(0, STRING_ACCOUNT, accountName);
+    rows.setString(0, STRING_AUTHOR, c.getString(SAVE_AUTHOR));
+    rows.setLong(0, LONG_CREATED_UTC, c.getLong(SAVE_CREATED_UTC));
+    rows.setString(0, STRING_DOMAIN, c.getString(SAVE_DOMAIN));
+    rows.setLong(0, LONG_DOWNS, c.getInt(SAVE_DOWNS));
+    rows.setLong(0, LONG_KIND, Kinds.KIND_LINK);
+    rows.setLong(0, LONG_LIKES, c.getInt(SAVE_LIKES));
+    rows.setLong(0, LONG_NUM_COMMENTS, c.getInt(SAVE_NUM_COMMENTS));
+    rows.setBoolean(0, LONG_OVER_18, c.getInt(SAVE_OVER_18) != 0);
+    rows.setString(0, STRING_PERMA_LINK, c.getString(SAVE_PERMA_LINK));
+    rows.setLong(0, LONG_SCORE, c.getInt(SAVE_SCORE));
+    rows.setLong(0, LONG_SELF, c.getInt(SAVE_SELF));
+    rows.setString(0, STRING_SUBREDDIT, c.getString(SAVE_SUBREDDIT));
+    rows.setString(0, STRING_TITLE, c.getString(SAVE_TITLE));
+    rows.setString(0, STRING_THING_ID, c.getString(SAVE_THING_ID));
+    rows.setString(0, STRING_THUMBNAIL_URL, c.getString(SAVE_THUMBNAIL_URL));
+    rows.setLong(0, LONG_UPS, c.getInt(SAVE_UPS));
+    rows.setString(0, STRING_URL, c.getString(SAVE_URL));
   }
 
   private void addVote(Cursor c) {
-    ContentValues v = new ContentValues(20);
-    v.put(Things.COLUMN_ACCOUNT, accountName);
-    v.put(Things.COLUMN_AUTHOR, c.getString(VOTE_AUTHOR));
-    v.put(Things.COLUMN_CREATED_UTC, c.getLong(VOTE_CREATED_UTC));
-    v.put(Things.COLUMN_DOMAIN, c.getString(VOTE_DOMAIN));
-    v.put(Things.COLUMN_DOWNS, c.getString(VOTE_DOWNS));
-    v.put(Things.COLUMN_KIND, Kinds.KIND_LINK);
-    v.put(Things.COLUMN_LIKES, c.getInt(VOTE_LIKES));
-    v.put(Things.COLUMN_NUM_COMMENTS, c.getInt(VOTE_NUM_COMMENTS));
-    v.put(Things.COLUMN_OVER_18, c.getInt(VOTE_OVER_18) != 0);
-    v.put(Things.COLUMN_PERMA_LINK, c.getString(VOTE_PERMA_LINK));
-    v.put(Things.COLUMN_SCORE, c.getInt(VOTE_SCORE));
-    v.put(Things.COLUMN_SELF, c.getInt(VOTE_SELF) != 0);
-    v.put(Things.COLUMN_SUBREDDIT, c.getString(VOTE_SUBREDDIT));
-    v.put(Things.COLUMN_TITLE, c.getString(VOTE_TITLE));
-    v.put(Things.COLUMN_THING_ID, c.getString(VOTE_THING_ID));
-    v.put(Things.COLUMN_THUMBNAIL_URL, c.getString(VOTE_THUMBNAIL_URL));
-    v.put(Things.COLUMN_UPS, c.getInt(VOTE_UPS));
-    v.put(Things.COLUMN_URL, c.getString(VOTE_URL));
-    values.add(0, v);
+    rows.insert(0);
+    rows.setString(0, STRING_ACCOUNT, accountName);
+    rows.setString(0, STRING_AUTHOR, c.getString(VOTE_AUTHOR));
+    rows.setLong(0, LONG_CREATED_UTC, c.getLong(VOTE_CREATED_UTC));
+    rows.setString(0, STRING_DOMAIN, c.getString(VOTE_DOMAIN));
+    rows.setLong(0, LONG_DOWNS, c.getInt(VOTE_DOWNS));
+    rows.setLong(0, LONG_KIND, Kinds.KIND_LINK);
+    rows.setLong(0, LONG_LIKES, c.getInt(VOTE_LIKES));
+    rows.setLong(0, LONG_NUM_COMMENTS, c.getInt(VOTE_NUM_COMMENTS));
+    rows.setBoolean(0, LONG_OVER_18, c.getInt(VOTE_OVER_18) != 0);
+    rows.setString(0, STRING_PERMA_LINK, c.getString(VOTE_PERMA_LINK));
+    rows.setLong(0, LONG_SCORE, c.getInt(VOTE_SCORE));
+    rows.setBoolean(0, LONG_SELF, c.getInt(VOTE_SELF) != 0);
+    rows.setString(0, STRING_SUBREDDIT, c.getString(VOTE_SUBREDDIT));
+    rows.setString(0, STRING_TITLE, c.getString(VOTE_TITLE));
+    rows.setString(0, STRING_THING_ID, c.getString(VOTE_THING_ID));
+    rows.setString(0, STRING_THUMBNAIL_URL, c.getString(VOTE_THUMBNAIL_URL));
+    rows.setLong(0, LONG_UPS, c.getInt(VOTE_UPS));
+    rows.setString(0, STRING_URL, c.getString(VOTE_URL));
   }
 
   private void removeByThingId(String targetThingId) {
-    int size = values.size();
-    for (int i = 0; i < size; i++) {
-      String thingId = values.get(i).getAsString(Things.COLUMN_THING_ID);
-      if (thingId.equals(targetThingId)) {
-        values.remove(i);
-        break;
-      }
+    int row = rows.indexOf(STRING_THING_ID, targetThingId);
+    if (row != -1) {
+      rows.remove(row);
     }
   }
 
   private void doFinalMerge() {
-    int count = values.size();
+    int count = rows.size();
     for (int i = 0; i < count; i++) {
-      ContentValues v = values.get(i);
-      HideMerger.updateContentValues(v, hideActionMap);
-      SaveMerger.updateContentValues(v, saveActionMap);
-      VoteMerger.updateContentValues(v, voteActionMap);
+      mergeValues(i);
     }
     appendLoadingMore();
   }
 
+  private void mergeValues(int row) {
+    HideMerger.updateRow(rows, row, hideActionMap, STRING_THING_ID,
+        LONG_HIDDEN);
+    SaveMerger.updateRow(rows, row, saveActionMap, STRING_THING_ID,
+        LONG_SAVED);
+    VoteMerger.updateRow(rows, row, voteActionMap, STRING_THING_ID,
+        LONG_SCORE, LONG_LIKES, LONG_UPS, LONG_DOWNS);
+  }
+
   private void appendLoadingMore() {
     if (!TextUtils.isEmpty(moreThingId)) {
-      values.add(newContentValues(Kinds.KIND_MORE, moreThingId, 1));
+      addRow(Kinds.KIND_MORE, moreThingId);
     }
   }
 }
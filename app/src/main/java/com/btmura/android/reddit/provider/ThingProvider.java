@@ -24,7 +24,6 @@ import android.content.Context;
 import android.content.UriMatcher;
 import android.database.Cursor;
 import android.database.DatabaseUtils;
-import android.database.DatabaseUtils.InsertHelper;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
@@ -51,11 +50,19 @@ import com.btmura.android.reddit.database.SharedColumns;
 import com.btmura.android.reddit.database.SubredditResults;
 import com.btmura.android.reddit.database.Things;
 import com.btmura.android.reddit.database.VoteActions;
+import com.btmura.android.reddit.net.RedditApi;
 import com.btmura.android.reddit.util.Array;
 import com.btmura.android.reddit.util.Objects;
+import com.btmura.android.reddit.util.SingleFlight;
+import com.btmura.android.reddit.widget.ThumbnailPrefetcher;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 /**
  * URI MATCHING PATTERNS:
@@ -146,6 +153,7 @@ public class ThingProvider extends BaseProvider {
   private static final String METHOD_CLEAN_SESSIONS = "cleanSessions";
   private static final String METHOD_EXPAND_COMMENT = "expandComment";
   private static final String METHOD_COLLAPSE_COMMENT = "collapseComment";
+  private static final String METHOD_LOAD_MORE_COMMENTS = "loadMoreComments";
   private static final String METHOD_INSERT_COMMENT = "insertComment";
   private static final String METHOD_EDIT_COMMENT = "editComment";
   private static final String METHOD_DELETE_COMMENT = "deleteComment";
@@ -160,6 +168,7 @@ public class ThingProvider extends BaseProvider {
   private static final String EXTRA_ACTION = "action";
   private static final String EXTRA_BODY = "body";
   private static final String EXTRA_COUNT = "count";
+  private static final String EXTRA_END_ID = "endId";
   private static final String EXTRA_FILTER = "filter";
   private static final String EXTRA_HAS_CHILDREN = "hasChildren";
   private static final String EXTRA_ID = "id";
@@ -188,12 +197,6 @@ public class ThingProvider extends BaseProvider {
   private static final String CLEAN_SORT = Sessions._ID + " DESC";
   private static final String CLEAN_OFFSET_LIMIT = "10, 1000"; // offset, limit
 
-  private static final String[] EXPAND_PROJECTION = {
-      Comments._ID,
-      Comments.COLUMN_EXPANDED,
-      Comments.COLUMN_NESTING,
-  };
-
   private static final String[] SESSION_ID_PROJECTION = {
       Sessions._ID,
   };
@@ -210,13 +213,97 @@ public class ThingProvider extends BaseProvider {
   private static final int INSERT_COMMENT_INDEX_SEQUENCE = 2;
   private static final int INSERT_COMMENT_INDEX_THING = 3;
 
-  private static final String UPDATE_SEQUENCE_STATEMENT = "UPDATE " + Comments.TABLE_NAME
-      + " SET " + Comments.COLUMN_SEQUENCE + "=" + Comments.COLUMN_SEQUENCE + "+1"
-      + " WHERE " + Comments.COLUMN_SESSION_ID + "=? AND " + Comments.COLUMN_SEQUENCE + ">=?";
+  private static final String SELECT_SEQUENCE_BY_ID = "(SELECT "
+      + Comments.COLUMN_SEQUENCE + " FROM " + Comments.TABLE_NAME
+      + " WHERE " + Comments._ID + "=?)";
+
+  // Selects the comment and its replies up to the comment after them by
+  // their ids, since sequences change when the session is renumbered. An
+  // end id of NO_ID selects up to the end of the session.
+  private static final String SELECT_SUBTREE = Comments.COLUMN_SESSION_ID
+      + "=? AND " + Comments.COLUMN_SEQUENCE + ">=" + SELECT_SEQUENCE_BY_ID
+      + " AND (?=" + CommentLogic.NO_ID + " OR "
+      + Comments.COLUMN_SEQUENCE + "<" + SELECT_SEQUENCE_BY_ID + ")";
+
+  private static final String EXPAND_STATEMENT = "UPDATE " + Comments.TABLE_NAME
+      + " SET " + Comments.COLUMN_EXPANDED + "=1, "
+      + Comments.COLUMN_VISIBLE + "=1 WHERE " + SELECT_SUBTREE;
+
+  // Collapses the comment and hides its replies. The comment is the only
+  // one with its id, so it stays visible but not expanded.
+  private static final String COLLAPSE_STATEMENT =
+      "UPDATE " + Comments.TABLE_NAME
+      + " SET " + Comments.COLUMN_EXPANDED + "=" + Comments._ID + "<>?, "
+      + Comments.COLUMN_VISIBLE + "=" + Comments._ID + "=? WHERE "
+      + SELECT_SUBTREE;
+
+  private static final String RENUMBER_SEQUENCE_STATEMENT =
+      "UPDATE " + Comments.TABLE_NAME + " SET " + Comments.COLUMN_SEQUENCE + "=? WHERE " + Comments._ID + "=?";
+
+  private static final String[] MORE_PROJECTION = {
+      Comments.COLUMN_BODY,
+      Comments.COLUMN_NESTING,
+      Comments.COLUMN_SEQUENCE,
+  };
+  private static final int MORE_INDEX_BODY = 0;
+  private static final int MORE_INDEX_NESTING = 1;
+  private static final int MORE_INDEX_SEQUENCE = 2;
+
+  /** Most replies of a more row to load at a time. */
+  private static final int MORE_CHILDREN_BATCH_SIZE = 20;
+
+  private static final String[] RENUMBER_PROJECTION = {
+      Comments._ID,
+  };
+  private static final int RENUMBER_INDEX_ID = 0;
+
+  /** Index passed when renumbering shouldn't leave room after any comment. */
+  private static final int NO_ROOM_INDEX = -1;
+
+  private static final String SELECT_NEXT_SEQUENCE = "SELECT IFNULL(MIN("
+      + Comments.COLUMN_SEQUENCE + "), -1) FROM " + Comments.TABLE_NAME
+      + " WHERE " + Comments.COLUMN_SESSION_ID + "=? AND "
+      + Comments.COLUMN_SEQUENCE + ">?";
+
+  private static final String SELECT_COUNT_BEFORE_SEQUENCE = "SELECT COUNT(*)"
+      + " FROM " + Comments.TABLE_NAME
+      + " WHERE " + Comments.COLUMN_SESSION_ID + "=? AND "
+      + Comments.COLUMN_SEQUENCE + "<?";
 
   private static final String SELECT_MORE_WITH_SESSION_ID = Kinds.COLUMN_KIND + "="
       + Kinds.KIND_MORE + " AND " + SharedColumns.COLUMN_SESSION_ID + "=?";
 
+  private static final String SELECT_LAST_THING_ID = "SELECT MAX("
+      + Things._ID + ") FROM " + Things.TABLE_NAME
+      + " WHERE " + Things.COLUMN_SESSION_ID + "=?";
+
+  private static final String[] PREFETCH_PROJECTION = {
+      Things.COLUMN_THUMBNAIL_URL,
+  };
+  private static final int PREFETCH_INDEX_THUMBNAIL_URL = 0;
+
+  private static final String SELECT_PREFETCH = Things.COLUMN_SESSION_ID
+      + "=? AND " + Things._ID + ">? AND "
+      + Things.COLUMN_THUMBNAIL_URL + " IS NOT NULL";
+
+  /** Maximum number of parsed batches waiting to be inserted when streaming. */
+  private static final int STREAM_QUEUE_CAPACITY = 8;
+
+  /** Maximum number of listings parsing their values at the same time. */
+  private static final int STREAM_THREADS = 2;
+
+  /**
+   * Executor running listings that stream their values to the provider.
+   * Loads beyond its threads wait for a thread before their transactions
+   * begin, so they never hold up the ones that are running.
+   */
+  private static final Executor STREAM_EXECUTOR =
+      Executors.newFixedThreadPool(STREAM_THREADS);
+
+  /** Listing sessions being loaded by request so duplicates share them. */
+  private static final SingleFlight<String> LISTING_SESSIONS =
+      new SingleFlight<String>();
+
   private final SessionManager sessionManager = new SessionManager();
 
   public ThingProvider() {
@@ -392,22 +479,53 @@ public class ThingProvider extends BaseProvider {
         extras);
   }
 
-  static Bundle expandComment(Context ctx, long id, long sessionId) {
-    Bundle extras = new Bundle(2);
-    extras.putLong(EXTRA_ID, id);
-    extras.putLong(EXTRA_SESSION_ID, sessionId);
+  static Bundle expandComment(
+      Context ctx,
+      long id,
+      long sessionId,
+      long endId) {
+    Bundle extras = newSubtreeExtras(id, sessionId, endId);
     return Provider.call(ctx, COMMENTS_URI, METHOD_EXPAND_COMMENT, null,
         extras);
   }
 
-  static Bundle collapseComment(Context ctx, long id, long[] childIds) {
-    Bundle extras = new Bundle(2);
-    extras.putLong(EXTRA_ID, id);
-    extras.putLongArray(EXTRA_ID_ARRAY, childIds);
+  static Bundle collapseComment(
+      Context ctx,
+      long id,
+      long sessionId,
+      long endId) {
+    Bundle extras = newSubtreeExtras(id, sessionId, endId);
     return Provider.call(ctx, COMMENTS_URI, METHOD_COLLAPSE_COMMENT, null,
         extras);
   }
 
+  static Bundle loadMoreComments(
+      Context ctx,
+      String accountName,
+      long id,
+      long sessionId,
+      String linkId,
+      int filter) {
+    Bundle extras = new Bundle(4);
+    extras.putLong(EXTRA_ID, id);
+    extras.putLong(EXTRA_SESSION_ID, sessionId);
+    extras.putString(EXTRA_LINK_ID, linkId);
+    extras.putInt(EXTRA_FILTER, filter);
+    return Provider.call(ctx, COMMENTS_URI, METHOD_LOAD_MORE_COMMENTS,
+        accountName, extras);
+  }
+
+  private static Bundle newSubtreeExtras(
+      long id,
+      long sessionId,
+      long endId) {
+    Bundle extras = new Bundle(3);
+    extras.putLong(EXTRA_ID, id);
+    extras.putLong(EXTRA_SESSION_ID, sessionId);
+    extras.putLong(EXTRA_END_ID, endId);
+    return extras;
+  }
+
   static Bundle insertComment(
       Context ctx,
       String accountName,
@@ -543,6 +661,8 @@ public class ThingProvider extends BaseProvider {
         return expandComment(extras);
       } else if (METHOD_COLLAPSE_COMMENT.equals(method)) {
         return collapseComment(extras);
+      } else if (METHOD_LOAD_MORE_COMMENTS.equals(method)) {
+        return loadMoreComments(accountName, extras);
       } else if (METHOD_INSERT_COMMENT.equals(method)) {
         return insertComment(accountName, extras);
       } else if (METHOD_EDIT_COMMENT.equals(method)) {
@@ -695,6 +815,77 @@ public class ThingProvider extends BaseProvider {
   }
 
   private Bundle getListingSession(
+      final String accountName,
+      final Listing listing,
+      final Bundle sessionData)
+      throws Exception {
+    // Loaders may ask for the same page twice like when scrolling triggers
+    // another append, so wait for the first request and share its session.
+    long sessionId = sessionData != null ? sessionData.getLong(
+        EXTRA_SESSION_ID) : 0;
+    String key = RedditApi.getRequestKey(RedditApi.METHOD_GET, accountName,
+        listing.getUrl()) + " " + sessionId;
+    return LISTING_SESSIONS.execute(key, new Callable<Bundle>() {
+      @Override
+      public Bundle call() throws Exception {
+        long lastThingId = getLastThingId(listing, sessionData);
+        Bundle newSessionData =
+            loadListingSession(accountName, listing, sessionData);
+        prefetchThumbnails(listing, newSessionData, lastThingId);
+        return newSessionData;
+      }
+    });
+  }
+
+  /** Returns the id of the last row before appending or 0 if there is none. */
+  private long getLastThingId(Listing listing, Bundle sessionData) {
+    long sessionId = sessionData != null ? sessionData.getLong(
+        EXTRA_SESSION_ID) : 0;
+    if (sessionId == 0 || !Things.TABLE_NAME.equals(listing.getTargetTable())) {
+      return 0;
+    }
+    SQLiteDatabase db = helper.getReadableDatabase();
+    return DatabaseUtils.longForQuery(db, SELECT_LAST_THING_ID,
+        Array.of(sessionId));
+  }
+
+  /** Queues the thumbnails of the rows that were just added to load. */
+  private void prefetchThumbnails(
+      Listing listing,
+      Bundle sessionData,
+      long lastThingId) {
+    if (!Things.TABLE_NAME.equals(listing.getTargetTable())) {
+      return;
+    }
+    int depth = ThumbnailPrefetcher.getDepth(getContext());
+    if (depth == 0) {
+      return;
+    }
+
+    long sessionId = sessionData.getLong(EXTRA_SESSION_ID);
+    SQLiteDatabase db = helper.getReadableDatabase();
+    Cursor c = db.query(Things.TABLE_NAME,
+        PREFETCH_PROJECTION,
+        SELECT_PREFETCH,
+        Array.of(String.valueOf(sessionId), String.valueOf(lastThingId)),
+        null,
+        null,
+        Things._ID,
+        String.valueOf(depth));
+    try {
+      List<String> urls = new ArrayList<String>(c.getCount());
+      while (c.moveToNext()) {
+        urls.add(c.getString(PREFETCH_INDEX_THUMBNAIL_URL));
+      }
+      if (!urls.isEmpty()) {
+        ThumbnailPrefetcher.prefetch(getContext(), urls);
+      }
+    } finally {
+      c.close();
+    }
+  }
+
+  private Bundle loadListingSession(
       String accountName,
       Listing listing,
       Bundle sessionData)
@@ -703,58 +894,155 @@ public class ThingProvider extends BaseProvider {
       Log.d(TAG, "getListingSession accountName: " + accountName
           + " sessionData: " + sessionData);
     }
+    if (listing instanceof StreamingListing
+        && ((StreamingListing) listing).prepareStream()) {
+      return getStreamingListingSession(accountName,
+          (StreamingListing) listing, sessionData);
+    }
+
     long sessionId = sessionData != null ? sessionData.getLong(
         EXTRA_SESSION_ID) : 0;
 
     // Get new values over the network.
-    List<ContentValues> values = listing.getValues();
+    RowBatch rows = listing.getValues();
 
     SQLiteDatabase db = helper.getWritableDatabase();
     db.beginTransaction();
     try {
-      // Delete any existing "Loading..." signs if appending.
-      if (listing.isAppend()) {
-        // Appending requires an existing session to append the data.
-        if (sessionId == 0) {
-          throw new IllegalStateException();
+      sessionId = startListingSession(db, accountName, listing, sessionId);
+      if (sessionId == 0) {
+        return sessionData;
+      }
+
+      // Insert the rows into the database with the session id.
+      SQLiteStatement insert = rows.getColumns().compileInsert(db);
+      try {
+        insertRows(insert, rows, sessionId);
+      } finally {
+        insert.close();
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+    return finishListingSession(listing, sessionId);
+  }
+
+  /**
+   * Inserts values while the listing is still parsing them off the network
+   * rather than waiting for the whole listing to be parsed first.
+   */
+  private Bundle getStreamingListingSession(
+      String accountName,
+      final StreamingListing listing,
+      Bundle sessionData)
+      throws Exception {
+    long sessionId = sessionData != null ? sessionData.getLong(
+        EXTRA_SESSION_ID) : 0;
+
+    // Parse values on another thread and insert them as they come in.
+    final ValueQueue queue = new ValueQueue(STREAM_QUEUE_CAPACITY);
+    STREAM_EXECUTOR.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          listing.streamValues(queue);
+          queue.close();
+        } catch (Throwable t) {
+          // Catch errors too, since the inserting thread waits for the end
+          // of the queue while holding the database's transaction.
+          queue.fail(t);
         }
+      }
+    });
+
+    try {
+      // Wait for the first batch before starting the transaction, so we don't
+      // block other writers while connecting.
+      RowBatch rows = queue.take();
 
-        // Delete the row for this append. If there is no such row, then
-        // this might be a duplicate append that got triggered, so just
-        // return the existing session id and hope for the best.
-        int count = db.delete(listing.getTargetTable(),
-            SELECT_MORE_WITH_SESSION_ID, Array.of(sessionId));
-        if (count == 0) {
+      SQLiteDatabase db = helper.getWritableDatabase();
+      db.beginTransaction();
+      try {
+        sessionId = startListingSession(db, accountName, listing, sessionId);
+        if (sessionId == 0) {
           return sessionData;
         }
+
+        // Insert the rows into the database as they are parsed.
+        if (rows != null) {
+          SQLiteStatement insert = rows.getColumns().compileInsert(db);
+          try {
+            for (; rows != null; rows = queue.take()) {
+              insertRows(insert, rows, sessionId);
+            }
+          } finally {
+            insert.close();
+          }
+        }
+        db.setTransactionSuccessful();
+      } finally {
+        db.endTransaction();
       }
+    } finally {
+      // Unblock the parsing thread if we bailed out early.
+      queue.cancel();
+    }
+    return finishListingSession(listing, sessionId);
+  }
 
-      // Create a new session if there is no id.
+  /**
+   * Prepares the session that a listing's rows go into within a transaction
+   * and returns its id or 0 if the listing was a duplicate append.
+   */
+  private static long startListingSession(
+      SQLiteDatabase db,
+      String accountName,
+      Listing listing,
+      long sessionId) {
+    // Delete any existing "Loading..." signs if appending.
+    if (listing.isAppend()) {
+      // Appending requires an existing session to append the data.
       if (sessionId == 0) {
-        ContentValues v = new ContentValues(4);
-        v.put(Sessions.COLUMN_ACCOUNT, accountName);
-        v.put(Sessions.COLUMN_TYPE, listing.getSessionType());
-        v.put(Sessions.COLUMN_THING_ID, listing.getSessionThingId());
-        v.put(Sessions.COLUMN_TIMESTAMP, System.currentTimeMillis());
-        sessionId = db.insert(Sessions.TABLE_NAME, null, v);
+        throw new IllegalStateException();
       }
 
-      // Add the session id to the data rows.
-      int count = values.size();
-      for (int i = 0; i < count; i++) {
-        values.get(i).put(SharedColumns.COLUMN_SESSION_ID, sessionId);
+      // Delete the row for this append. If there is no such row, then
+      // this might be a duplicate append that got triggered, so just
+      // return the existing session id and hope for the best.
+      int count = db.delete(listing.getTargetTable(),
+          SELECT_MORE_WITH_SESSION_ID, Array.of(sessionId));
+      if (count == 0) {
+        return 0;
       }
+    }
 
-      // Insert the rows into the database.
-      InsertHelper helper = new InsertHelper(db, listing.getTargetTable());
-      for (int i = 0; i < count; i++) {
-        helper.insert(values.get(i));
-      }
-      db.setTransactionSuccessful();
-    } finally {
-      db.endTransaction();
+    // Create a new session if there is no id.
+    if (sessionId == 0) {
+      ContentValues v = new ContentValues(4);
+      v.put(Sessions.COLUMN_ACCOUNT, accountName);
+      v.put(Sessions.COLUMN_TYPE, listing.getSessionType());
+      v.put(Sessions.COLUMN_THING_ID, listing.getSessionThingId());
+      v.put(Sessions.COLUMN_TIMESTAMP, System.currentTimeMillis());
+      sessionId = db.insert(Sessions.TABLE_NAME, null, v);
+    }
+    return sessionId;
+  }
+
+  /** Inserts the rows with a statement from {@link RowBatch#getColumns}. */
+  private static void insertRows(
+      SQLiteStatement insert,
+      RowBatch rows,
+      long sessionId) {
+    int count = rows.size();
+    for (int i = 0; i < count; i++) {
+      rows.bind(insert, i, sessionId);
+      insert.executeInsert();
     }
+  }
 
+  /** Returns the data of a session that the listing's rows went into. */
+  private Bundle finishListingSession(Listing listing, long sessionId) {
     // Start cleaning service on separate thread after the latest session was made.
     sessionManager.cleanIfNecessary(getContext(), listing.getSessionType());
 
@@ -833,49 +1121,13 @@ public class ThingProvider extends BaseProvider {
   }
 
   private Bundle expandComment(Bundle extras) {
-    Cursor c = null;
     SQLiteDatabase db = helper.getWritableDatabase();
-    db.beginTransaction();
+    SQLiteStatement expand = db.compileStatement(EXPAND_STATEMENT);
     try {
-      long sessionId = extras.getLong(EXTRA_SESSION_ID);
-      c = db.query(Comments.TABLE_NAME,
-          EXPAND_PROJECTION,
-          Comments.SELECT_BY_SESSION_ID,
-          Array.of(sessionId),
-          null,
-          null,
-          Comments.SORT_BY_SEQUENCE_AND_ID);
-
-      long id = extras.getLong(EXTRA_ID);
-      long[] childIds = null;
-      CursorCommentList cl = new CursorCommentList(c, 0, 2, -1);
-      int count = cl.getCommentCount();
-      for (int i = 0; i < count; i++) {
-        if (cl.getCommentId(i) == id) {
-          childIds = CommentLogic.getChildren(cl, i);
-          break;
-        }
-      }
-
-      ContentValues values = new ContentValues(2);
-      values.put(Comments.COLUMN_EXPANDED, true);
-      db.update(Comments.TABLE_NAME, values, ID_SELECTION, Array.of(id));
-
-      values.clear();
-      values.put(Comments.COLUMN_EXPANDED, true);
-      values.put(Comments.COLUMN_VISIBLE, true);
-      int childCount = childIds != null ? childIds.length : 0;
-      for (int i = 0; i < childCount; i++) {
-        db.update(Comments.TABLE_NAME, values, ID_SELECTION,
-            Array.of(childIds[i]));
-      }
-
-      db.setTransactionSuccessful();
+      bindSubtree(expand, 1, extras);
+      expand.executeUpdateDelete();
     } finally {
-      db.endTransaction();
-      if (c != null) {
-        c.close();
-      }
+      expand.close();
     }
 
     ContentResolver cr = getContext().getContentResolver();
@@ -885,26 +1137,15 @@ public class ThingProvider extends BaseProvider {
 
   private Bundle collapseComment(Bundle extras) {
     SQLiteDatabase db = helper.getWritableDatabase();
-    db.beginTransaction();
+    SQLiteStatement collapse = db.compileStatement(COLLAPSE_STATEMENT);
     try {
-      ContentValues values = new ContentValues(2);
-      values.put(Comments.COLUMN_EXPANDED, false);
       long id = extras.getLong(EXTRA_ID);
-      db.update(Comments.TABLE_NAME, values, ID_SELECTION, Array.of(id));
-
-      values.clear();
-      values.put(Comments.COLUMN_EXPANDED, true);
-      values.put(Comments.COLUMN_VISIBLE, false);
-      long[] childIds = extras.getLongArray(EXTRA_ID_ARRAY);
-      int childCount = childIds != null ? childIds.length : 0;
-      for (int i = 0; i < childCount; i++) {
-        db.update(Comments.TABLE_NAME, values, ID_SELECTION,
-            Array.of(childIds[i]));
-      }
-
-      db.setTransactionSuccessful();
+      collapse.bindLong(1, id);
+      collapse.bindLong(2, id);
+      bindSubtree(collapse, 3, extras);
+      collapse.executeUpdateDelete();
     } finally {
-      db.endTransaction();
+      collapse.close();
     }
 
     ContentResolver cr = getContext().getContentResolver();
@@ -912,14 +1153,24 @@ public class ThingProvider extends BaseProvider {
     return null;
   }
 
+  /** Binds the arguments of {@link #SELECT_SUBTREE} starting at the index. */
+  private static void bindSubtree(
+      SQLiteStatement statement,
+      int index,
+      Bundle extras) {
+    long endId = extras.getLong(EXTRA_END_ID);
+    statement.bindLong(index, extras.getLong(EXTRA_SESSION_ID));
+    statement.bindLong(index + 1, extras.getLong(EXTRA_ID));
+    statement.bindLong(index + 2, endId);
+    statement.bindLong(index + 3, endId);
+  }
+
   private Bundle insertComment(String accountName, Bundle extras) {
     String body = getBodyExtra(extras);
     String parentThingId = getParentThingIdExtra(extras);
     String thingId = getThingIdExtra(extras);
 
     SQLiteDatabase db = helper.getWritableDatabase();
-    SQLiteStatement updateSequence = db.compileStatement(
-        UPDATE_SEQUENCE_STATEMENT);
     db.beginTransaction();
     try {
       // Queue an action to sync back the comment to the server.
@@ -951,6 +1202,7 @@ public class ThingProvider extends BaseProvider {
           int position = -1;
           int nesting = -1;
           int sequence = -1;
+          int insertPosition = -1;
           Cursor c = db.query(Comments.TABLE_NAME,
               INSERT_COMMENT_PROJECTION,
               Comments.SELECT_BY_SESSION_ID,
@@ -979,14 +1231,20 @@ public class ThingProvider extends BaseProvider {
                 INSERT_COMMENT_INDEX_SEQUENCE);
             nesting = CommentLogic.getInsertNesting(cl, position);
             sequence = CommentLogic.getInsertSequence(cl, position);
+            if (sequence == CommentLogic.NO_SEQUENCE) {
+              insertPosition = CommentLogic.getInsertPosition(cl, position);
+            }
           } finally {
             c.close();
           }
 
-          // Increment the sequence numbers to make room for our comment
-          updateSequence.bindLong(1, sessionId);
-          updateSequence.bindLong(2, sequence);
-          updateSequence.executeUpdateDelete();
+          // Spread the session's comments apart again only when replies have
+          // used up the gap, so most inserts leave the other rows alone.
+          if (sequence == CommentLogic.NO_SEQUENCE) {
+            renumberSequences(db, sessionId, NO_ROOM_INDEX, 0);
+            sequence = CommentLogic.getSpacedSequence(insertPosition - 1)
+                + Comments.SEQUENCE_GAP / 2;
+          }
 
           // Insert the placeholder comment with the proper sequence number.
           values.clear();
@@ -1018,6 +1276,180 @@ public class ThingProvider extends BaseProvider {
     return Bundle.EMPTY;
   }
 
+  private Bundle loadMoreComments(String accountName, Bundle extras)
+      throws Exception {
+    long id = extras.getLong(EXTRA_ID);
+    long sessionId = extras.getLong(EXTRA_SESSION_ID);
+    String linkId = extras.getString(EXTRA_LINK_ID);
+    int filter = extras.getInt(EXTRA_FILTER, -1);
+
+    // Read the replies the row has left before going to the network.
+    SQLiteDatabase db = helper.getWritableDatabase();
+    String children;
+    int nesting;
+    Cursor c = db.query(Comments.TABLE_NAME,
+        MORE_PROJECTION,
+        ID_SELECTION,
+        Array.of(id),
+        null,
+        null,
+        null);
+    try {
+      if (!c.moveToFirst()) {
+        return null;
+      }
+      children = c.getString(MORE_INDEX_BODY);
+      nesting = c.getInt(MORE_INDEX_NESTING);
+    } finally {
+      c.close();
+    }
+    if (TextUtils.isEmpty(children)) {
+      return null;
+    }
+
+    // Load a batch of the replies and leave the rest for the next time.
+    String[] childIds = children.split(
+        CommentListing.MORE_CHILDREN_SEPARATOR);
+    int batchSize = Math.min(childIds.length, MORE_CHILDREN_BATCH_SIZE);
+    String batch = TextUtils.join(CommentListing.MORE_CHILDREN_SEPARATOR,
+        Arrays.copyOfRange(childIds, 0, batchSize));
+    String remaining = TextUtils.join(CommentListing.MORE_CHILDREN_SEPARATOR,
+        Arrays.copyOfRange(childIds, batchSize, childIds.length));
+
+    CommentListing listing = CommentListing.newMoreInstance(getContext(),
+        helper, accountName, linkId, filter, batch, nesting);
+    RowBatch rows = listing.getValues();
+
+    db.beginTransaction();
+    try {
+      // Check the row again, since it might have been loaded by another tap
+      // or moved by a reply while the replies were loading.
+      c = db.query(Comments.TABLE_NAME,
+          MORE_PROJECTION,
+          ID_SELECTION,
+          Array.of(id),
+          null,
+          null,
+          null);
+      int sequence;
+      try {
+        if (!c.moveToFirst()
+            || !children.equals(c.getString(MORE_INDEX_BODY))) {
+          return null;
+        }
+        sequence = c.getInt(MORE_INDEX_SEQUENCE);
+      } finally {
+        c.close();
+      }
+
+      // Fit the replies and the row if it has more between the row's
+      // sequence and the next one. Otherwise spread the session apart with
+      // room for all of them after the row, since a batch of ids can bring
+      // back whole subtrees that outnumber the gap.
+      int slots = rows.size() + (remaining.length() > 0 ? 1 : 0);
+      int start = sequence;
+      int step = getMoreStep(db, sessionId, start, slots);
+      if (step < 1) {
+        int index = (int) DatabaseUtils.longForQuery(db,
+            SELECT_COUNT_BEFORE_SEQUENCE,
+            Array.of(sessionId, Integer.toString(start)));
+        renumberSequences(db, sessionId, index, slots * Comments.SEQUENCE_GAP);
+        start = CommentLogic.getSpacedSequence(index);
+        step = getMoreStep(db, sessionId, start, slots);
+      }
+
+      listing.placeReplies(start, step);
+      SQLiteStatement insert = rows.getColumns().compileInsert(db);
+      try {
+        insertRows(insert, rows, sessionId);
+      } finally {
+        insert.close();
+      }
+
+      if (remaining.length() > 0) {
+        ContentValues values = new ContentValues(3);
+        values.put(Comments.COLUMN_BODY, remaining);
+        values.put(Comments.COLUMN_NUM_COMMENTS,
+            childIds.length - batchSize);
+        values.put(Comments.COLUMN_SEQUENCE, start + rows.size() * step);
+        db.update(Comments.TABLE_NAME, values, ID_SELECTION, Array.of(id));
+      } else {
+        db.delete(Comments.TABLE_NAME, ID_SELECTION, Array.of(id));
+      }
+      db.setTransactionSuccessful();
+    } finally {
+      db.endTransaction();
+    }
+
+    ContentResolver cr = getContext().getContentResolver();
+    cr.notifyChange(COMMENTS_URI, null, NO_SYNC);
+    return Bundle.EMPTY;
+  }
+
+  /**
+   * Returns how far apart the slots can be from the start up to the next
+   * comment in the session or less than 1 if they don't fit.
+   */
+  private static int getMoreStep(
+      SQLiteDatabase db,
+      long sessionId,
+      int start,
+      int slots) {
+    if (slots == 0) {
+      return Comments.SEQUENCE_GAP;
+    }
+    long next = DatabaseUtils.longForQuery(db, SELECT_NEXT_SEQUENCE,
+        Array.of(sessionId, Integer.toString(start)));
+    if (next == -1) {
+      return Comments.SEQUENCE_GAP;
+    }
+    return (int) ((next - start) / slots);
+  }
+
+  /**
+   * Spreads the sequences of the session's comments {@link
+   * Comments#SEQUENCE_GAP} apart again in their current order.
+   *
+   * @param roomIndex of the comment to leave extra room after or {@link
+   * #NO_ROOM_INDEX} for none
+   * @param room to add to the gap after that comment
+   */
+  private static void renumberSequences(
+      SQLiteDatabase db,
+      long sessionId,
+      int roomIndex,
+      int room) {
+    Cursor c = db.query(Comments.TABLE_NAME,
+        RENUMBER_PROJECTION,
+        Comments.SELECT_BY_SESSION_ID,
+        Array.of(sessionId),
+        null,
+        null,
+        Comments.SORT_BY_SEQUENCE_AND_ID);
+    long[] ids;
+    try {
+      ids = new long[c.getCount()];
+      for (int i = 0; c.moveToNext(); i++) {
+        ids[i] = c.getLong(RENUMBER_INDEX_ID);
+      }
+    } finally {
+      c.close();
+    }
+
+    SQLiteStatement renumber = db.compileStatement(
+        RENUMBER_SEQUENCE_STATEMENT);
+    try {
+      for (int i = 0; i < ids.length; i++) {
+        int extra = roomIndex != NO_ROOM_INDEX && i > roomIndex ? room : 0;
+        renumber.bindLong(1, CommentLogic.getSpacedSequence(i) + extra);
+        renumber.bindLong(2, ids[i]);
+        renumber.executeUpdateDelete();
+      }
+    } finally {
+      renumber.close();
+    }
+  }
+
   private Bundle editComment(String accountName, Bundle extras) {
     String body = getBodyExtra(extras);
     String parentThingId = getParentThingIdExtra(extras);
@@ -0,0 +1,104 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.provider;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ValueQueue} is a bounded queue that hands batches of parsed rows from
+ * a {@link Listing} running on a parsing thread to the thread inserting them
+ * into the database.
+ */
+class ValueQueue {
+
+  /** Marker put at the end of the queue when no more rows will follow. */
+  private static final RowBatch END = new RowBatch(
+      new RowBatch.Columns("", new String[0], new long[0], new String[0]), 1);
+
+  /** How long the producer waits before checking whether it was cancelled. */
+  private static final long PUT_POLL_MS = 250;
+
+  private final BlockingQueue<RowBatch> queue;
+  private volatile Throwable error;
+  private volatile boolean cancelled;
+
+  ValueQueue(int capacity) {
+    this.queue = new ArrayBlockingQueue<RowBatch>(capacity);
+  }
+
+  /** Put a batch into the queue blocking until there is room for it. */
+  void put(RowBatch v) throws InterruptedIOException {
+    try {
+      while (!cancelled) {
+        if (queue.offer(v, PUT_POLL_MS, TimeUnit.MILLISECONDS)) {
+          return;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    throw new InterruptedIOException("cancelled");
+  }
+
+  /** Signal that the producer has finished putting rows. */
+  void close() {
+    try {
+      put(END);
+    } catch (InterruptedIOException e) {
+      // Nobody is waiting for the end marker anymore.
+    }
+  }
+
+  /**
+   * Signal that the producer failed and close the queue. Errors like running
+   * out of memory are passed on too, so the consumer isn't left waiting.
+   */
+  void fail(Throwable e) {
+    error = e;
+    close();
+  }
+
+  /**
+   * Take the next batch of rows from the queue.
+   *
+   * @return next batch or null if there are no more rows
+   * @throws Exception passed to {@link #fail(Throwable)} by the producer
+   * @throws Error passed to {@link #fail(Throwable)} by the producer
+   */
+  RowBatch take() throws Exception {
+    RowBatch v = queue.take();
+    if (v == END) {
+      if (error instanceof Error) {
+        throw (Error) error;
+      }
+      if (error != null) {
+        throw (Exception) error;
+      }
+      return null;
+    }
+    return v;
+  }
+
+  /** Stop accepting batches and unblock the producer. */
+  void cancel() {
+    cancelled = true;
+    queue.clear();
+  }
+}
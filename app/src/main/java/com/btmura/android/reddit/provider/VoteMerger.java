@@ -16,7 +16,6 @@
 
 package com.btmura.android.reddit.provider;
 
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
@@ -122,49 +121,63 @@ class VoteMerger {
     }
   }
 
-  static void updateContentValues(
-      ContentValues v,
-      Map<String, Integer> actionMap) {
+  /**
+   * Applies a pending vote to the row. Listings pass the indexes of their
+   * columns, so they aren't looked up for every row.
+   */
+  static void updateRow(
+      RowBatch rows,
+      int row,
+      Map<String, Integer> actionMap,
+      int thingIdColumn,
+      int scoreColumn,
+      int likesColumn,
+      int upsColumn,
+      int downsColumn) {
     if (!actionMap.isEmpty()) {
-      String thingId = (String) v.get(SharedColumns.COLUMN_THING_ID);
-      Integer action = actionMap.remove(thingId);
+      Integer action = actionMap.remove(rows.getString(row, thingIdColumn));
       if (action != null) {
-        updateContentValues(v, action);
+        updateRow(rows, row, action, scoreColumn, likesColumn, upsColumn,
+            downsColumn);
       }
     }
   }
 
-  static void updateContentValues(ContentValues v, int action) {
+  static void updateRow(
+      RowBatch rows,
+      int row,
+      int action,
+      int scoreColumn,
+      int likesColumn,
+      int upsColumn,
+      int downsColumn) {
     switch (action) {
       case ACTION_VOTE_UP:
-        change(v, COLUMN_SCORE, 1);
-        change(v, COLUMN_UPS, 1);
+        change(rows, row, scoreColumn, 1);
+        change(rows, row, upsColumn, 1);
         break;
 
       case ACTION_VOTE_DOWN:
-        change(v, COLUMN_SCORE, -1);
-        change(v, COLUMN_DOWNS, 1);
+        change(rows, row, scoreColumn, -1);
+        change(rows, row, downsColumn, 1);
         break;
 
       case ACTION_VOTE_NEUTRAL:
-        if (v.containsKey(COLUMN_LIKES)) {
-          Integer likes = (Integer) v.get(COLUMN_LIKES);
-          if (likes == ACTION_VOTE_UP) {
-            change(v, COLUMN_SCORE, -1);
-            change(v, COLUMN_UPS, -1);
-          } else if (likes == ACTION_VOTE_DOWN) {
-            change(v, COLUMN_SCORE, 1);
-            change(v, COLUMN_DOWNS, -1);
-          }
+        long currentLikes = rows.getLong(row, likesColumn);
+        if (currentLikes == ACTION_VOTE_UP) {
+          change(rows, row, scoreColumn, -1);
+          change(rows, row, upsColumn, -1);
+        } else if (currentLikes == ACTION_VOTE_DOWN) {
+          change(rows, row, scoreColumn, 1);
+          change(rows, row, downsColumn, -1);
         }
         break;
     }
-    v.put(COLUMN_LIKES, action);
+    rows.setLong(row, likesColumn, action);
   }
 
-  private static void change(ContentValues v, String key, int delta) {
-    Integer value = (Integer) v.get(key);
-    v.put(key, (value != null ? value : 0) + delta);
+  private static void change(RowBatch rows, int row, int column, int delta) {
+    rows.setLong(row, column, rows.getLong(row, column) + delta);
   }
 
   static int updateDatabase(
@@ -0,0 +1,181 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.text;
+
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+import com.btmura.android.reddit.content.ThemePrefs;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link MarkdownCache} keeps bodies formatted by {@link MarkdownFormatter},
+ * so rows scrolled back into view are not formatted again on the main
+ * thread. Bodies of rows about to be shown can also be formatted ahead of
+ * time in the background. Entries are keyed by thing id, body hash and theme.
+ */
+public class MarkdownCache implements ComponentCallbacks2 {
+
+  /** Most characters of formatted bodies to keep. */
+  private static final int MAX_CHARS = 512 * 1024;
+
+  private static MarkdownCache INSTANCE;
+
+  public static MarkdownCache getInstance(Context ctx) {
+    synchronized (MarkdownCache.class) {
+      if (INSTANCE == null) {
+        INSTANCE = new MarkdownCache(MAX_CHARS);
+        ctx.getApplicationContext().registerComponentCallbacks(INSTANCE);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final LruCache<String, CharSequence> cache;
+
+  private final AtomicInteger hitCount = new AtomicInteger();
+  private final AtomicInteger missCount = new AtomicInteger();
+  private final AtomicInteger formatCount = new AtomicInteger();
+  private final AtomicLong formatTimeNs = new AtomicLong();
+
+  MarkdownCache(int maxChars) {
+    this.cache = new LruCache<String, CharSequence>(maxChars) {
+      @Override
+      protected int sizeOf(String key, CharSequence value) {
+        return Math.max(1, value.length());
+      }
+    };
+  }
+
+  /** Returns the formatted body from the cache or formats and caches it. */
+  public CharSequence formatSpans(
+      Context ctx,
+      String thingId,
+      CharSequence body,
+      MarkdownFormatter formatter) {
+    if (TextUtils.isEmpty(thingId)) {
+      return format(ctx, body, formatter);
+    }
+    return formatSpans(ctx, thingId, body, ThemePrefs.getTheme(ctx),
+        formatter);
+  }
+
+  CharSequence formatSpans(
+      Context ctx,
+      String thingId,
+      CharSequence body,
+      int theme,
+      MarkdownFormatter formatter) {
+    String key = getKey(thingId, body, theme);
+    CharSequence formatted = cache.get(key);
+    if (formatted != null) {
+      hitCount.incrementAndGet();
+      return formatted;
+    }
+    missCount.incrementAndGet();
+    formatted = format(ctx, body, formatter);
+    cache.put(key, formatted);
+    return formatted;
+  }
+
+  /**
+   * Formats and caches a body ahead of time. Called on a background thread
+   * with a formatter only it uses. Doesn't count as a hit or miss.
+   */
+  public CharSequence prefetchSpans(
+      Context ctx,
+      String thingId,
+      CharSequence body,
+      MarkdownFormatter formatter) {
+    String key = getKey(thingId, body, ThemePrefs.getTheme(ctx));
+    CharSequence formatted = cache.get(key);
+    if (formatted == null) {
+      formatted = format(ctx, body, formatter);
+      cache.put(key, formatted);
+    }
+    return formatted;
+  }
+
+  private CharSequence format(
+      Context ctx,
+      CharSequence body,
+      MarkdownFormatter formatter) {
+    long start = System.nanoTime();
+    CharSequence formatted = formatter.formatSpans(ctx, body);
+    formatTimeNs.addAndGet(System.nanoTime() - start);
+    formatCount.incrementAndGet();
+    return formatted;
+  }
+
+  static String getKey(String thingId, CharSequence body, int theme) {
+    return thingId + "/" + body.toString().hashCode() + "/" + theme;
+  }
+
+  /** Returns the number of bodies bound that were already formatted. */
+  public int getHitCount() {
+    return hitCount.get();
+  }
+
+  /** Returns the number of bodies bound that had to be formatted. */
+  public int getMissCount() {
+    return missCount.get();
+  }
+
+  /** Returns the average time to format a body in microseconds. */
+  public long getAverageFormatTimeUs() {
+    int count = formatCount.get();
+    return count > 0 ? formatTimeNs.get() / 1000 / count : 0;
+  }
+
+  int size() {
+    return cache.size();
+  }
+
+  @Override
+  public void onTrimMemory(int level) {
+    if (level >= TRIM_MEMORY_MODERATE
+        || level == TRIM_MEMORY_RUNNING_CRITICAL) {
+      cache.evictAll();
+    } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+      trimToSize(cache.maxSize() / 2);
+    }
+  }
+
+  @Override
+  public void onLowMemory() {
+    cache.evictAll();
+  }
+
+  @Override
+  public void onConfigurationChanged(Configuration newConfig) {
+  }
+
+  /** Removes the least recently used bodies until the size fits. */
+  private void trimToSize(int maxSize) {
+    // LruCache#trimToSize isn't public before JB MR1.
+    Iterator<String> i = cache.snapshot().keySet().iterator();
+    while (cache.size() > maxSize && i.hasNext()) {
+      cache.remove(i.next());
+    }
+  }
+}
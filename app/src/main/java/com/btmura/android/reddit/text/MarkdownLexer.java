@@ -0,0 +1,509 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.text;
+
+import android.content.Context;
+import android.graphics.Typeface;
+import android.text.SpannableStringBuilder;
+import android.text.style.BulletSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.TypefaceSpan;
+import android.util.Patterns;
+
+import com.btmura.android.reddit.R;
+import com.btmura.android.reddit.net.Urls;
+import com.btmura.android.reddit.text.style.MarkdownTableSpan;
+import com.btmura.android.reddit.text.style.SubredditSpan;
+import com.btmura.android.reddit.text.style.URLSpan;
+import com.btmura.android.reddit.text.style.UserSpan;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link MarkdownLexer} formats markdown in one pass over the text. It
+ * appends the plain text to a buffer while recording spans by their offsets
+ * in it, so nothing is ever deleted from the middle of a spannable. Links
+ * are found in the plain text afterwards, since they match what is shown.
+ */
+class MarkdownLexer {
+
+  static final Pattern URL_PATTERN = Patterns.WEB_URL;
+
+  private static final int BULLET_GAP_WIDTH = 20;
+
+  private final StringBuilder out = new StringBuilder();
+  private final Matcher urlMatcher = URL_PATTERN.matcher("");
+  private final StringBuilder urlBuilder = new StringBuilder();
+
+  private Object[] spans = new Object[16];
+  private int[] spanStarts = new int[16];
+  private int[] spanEnds = new int[16];
+  private int spanCount;
+
+  /**
+   * Returns the formatted text. The context is only used for the label of
+   * tables and may be null when the text has none.
+   */
+  CharSequence format(Context ctx, CharSequence text) {
+    out.setLength(0);
+    spanCount = 0;
+
+    int len = text.length();
+    int codeStart = -1;
+    int codeEnd = -1;
+    for (int i = 0; i < len; ) {
+      int lineEnd = indexOf(text, '\n', i, len);
+
+      // Strip the indentation of code lines and span adjacent ones together.
+      // Code is shown as is, so nothing else applies to it.
+      int indent = getCodeIndent(text, i, lineEnd);
+      if (indent > 0) {
+        if (codeStart == -1) {
+          codeStart = out.length();
+        }
+        out.append(text, i + indent, lineEnd);
+        codeEnd = out.length();
+        i = appendNewline(text, lineEnd, len);
+        continue;
+      }
+      if (codeStart != -1) {
+        addSpan(new TypefaceSpan("monospace"), codeStart, codeEnd);
+        codeStart = -1;
+      }
+
+      int tableEnd = findTableEnd(text, i, lineEnd, len);
+      if (tableEnd != -1) {
+        int start = out.length();
+        out.append(ctx.getString(R.string.view_table));
+        addSpan(new MarkdownTableSpan(text.subSequence(i, tableEnd).toString()),
+            start, out.length());
+        i = text.charAt(tableEnd - 1) == '\n' ? tableEnd - 1 : tableEnd;
+        i = appendNewline(text, i, len);
+        continue;
+      }
+
+      i = formatLine(text, i, lineEnd, len);
+      i = appendNewline(text, i, len);
+    }
+    if (codeStart != -1) {
+      addSpan(new TypefaceSpan("monospace"), codeStart, codeEnd);
+    }
+
+    addUrlSpans();
+    addRelativeLinkSpans();
+    return build();
+  }
+
+  /** Formats a line that isn't code and returns where it stopped. */
+  private int formatLine(CharSequence s, int start, int lineEnd, int len) {
+    int outStart = out.length();
+
+    // Headings are #s, an optional space, text and optionally more #s.
+    if (s.charAt(start) == '#') {
+      int hashEnd = start;
+      while (hashEnd < lineEnd && s.charAt(hashEnd) == '#') {
+        hashEnd++;
+      }
+      int contentStart = hashEnd;
+      if (contentStart < lineEnd && s.charAt(contentStart) == ' ') {
+        contentStart++;
+      }
+      int contentEnd = lineEnd;
+      while (contentEnd > contentStart && s.charAt(contentEnd - 1) == '#') {
+        contentEnd--;
+      }
+
+      // Like a lazy regex, give back the space or a # if there is no text.
+      if (contentEnd == contentStart) {
+        if (contentStart > hashEnd) {
+          contentStart--;
+        } else if (hashEnd - start > 1) {
+          contentStart = hashEnd - 1;
+          contentEnd = hashEnd;
+        }
+      }
+      if (contentEnd > contentStart) {
+        formatInline(s, contentStart, contentEnd, false);
+        addSpan(new StyleSpan(Typeface.BOLD_ITALIC), outStart, out.length());
+        return lineEnd;
+      }
+    }
+
+    // Bullets are spaces, one of *+- and a space before some text.
+    int marker = start;
+    while (marker < lineEnd && s.charAt(marker) == ' ') {
+      marker++;
+    }
+    if (marker + 2 < lineEnd
+        && isBulletMarker(s.charAt(marker))
+        && s.charAt(marker + 1) == ' ') {
+      int end = formatInline(s, marker + 2, len, true);
+      addSpan(new BulletSpan(BULLET_GAP_WIDTH), outStart, out.length());
+      return end;
+    }
+
+    return formatInline(s, start, len, true);
+  }
+
+  /**
+   * Formats styles and named links until the limit or the end of the line if
+   * stopping at new lines. Returns where it stopped.
+   */
+  private int formatInline(CharSequence s, int start, int limit,
+      boolean stopAtNewline) {
+    int i = start;
+    while (i < limit) {
+      char c = s.charAt(i);
+      if (c == '\n') {
+        if (stopAtNewline) {
+          break;
+        }
+        out.append(c);
+        i++;
+      } else if (c == '*') {
+        i = formatAsterisks(s, i, limit);
+      } else if (c == '~') {
+        i = formatStrikethrough(s, i, limit);
+      } else if (c == '[') {
+        i = formatNamedLink(s, i, limit);
+      } else {
+        out.append(c);
+        i++;
+      }
+    }
+    return i;
+  }
+
+  /** Formats ***bold italic***, **bold** or *italic* text at the index. */
+  private int formatAsterisks(CharSequence s, int i, int limit) {
+    int run = getRunLength(s, '*', i, limit);
+    if (run >= 3) {
+      int close = indexOfRun(s, '*', 3, i + 4, limit);
+      if (close != -1) {
+        int outStart = out.length();
+        formatInline(s, i + 3, close, true);
+        addSpan(new StyleSpan(Typeface.BOLD), outStart, out.length());
+        addSpan(new StyleSpan(Typeface.ITALIC), outStart, out.length());
+        return close + 3;
+      }
+    }
+    if (run >= 2) {
+      int close = indexOfRun(s, '*', 2, i + 3, limit);
+      if (close != -1) {
+        int outStart = out.length();
+        formatInline(s, i + 2, close, true);
+        addSpan(new StyleSpan(Typeface.BOLD), outStart, out.length());
+        return close + 2;
+      }
+    }
+
+    // Find the closing * while skipping over any **bold** text inside.
+    int lineLimit = indexOf(s, '\n', i, limit);
+    for (int j = i + 2; j < lineLimit; j++) {
+      if (s.charAt(j) == '*') {
+        int boldClose = -1;
+        if (j + 1 < lineLimit && s.charAt(j + 1) == '*') {
+          boldClose = indexOfRun(s, '*', 2, j + 3, lineLimit);
+        }
+        if (boldClose == -1) {
+          int outStart = out.length();
+          formatInline(s, i + 1, j, true);
+          addSpan(new StyleSpan(Typeface.ITALIC), outStart, out.length());
+          return j + 1;
+        }
+        j = boldClose + 1;
+      }
+    }
+    out.append('*');
+    return i + 1;
+  }
+
+  /** Formats ~~strikethrough~~ text at the index. */
+  private int formatStrikethrough(CharSequence s, int i, int limit) {
+    if (getRunLength(s, '~', i, limit) >= 2) {
+      int close = indexOfRun(s, '~', 2, i + 3, limit);
+      if (close != -1) {
+        int outStart = out.length();
+        formatInline(s, i + 2, close, true);
+        addSpan(new StrikethroughSpan(), outStart, out.length());
+        return close + 2;
+      }
+    }
+    out.append('~');
+    return i + 1;
+  }
+
+  /** Formats [text](url "description") links which may span lines. */
+  private int formatNamedLink(CharSequence s, int startBrack, int limit) {
+    int endBrack = findClosingMarker(s, '[', ']', startBrack + 1, limit);
+    int startParen = endBrack != -1
+        ? findOpeningParen(s, endBrack + 1, limit)
+        : -1;
+    int endParen = startParen != -1
+        ? findClosingMarker(s, '(', ')', startParen + 1, limit)
+        : -1;
+    if (endParen == -1 || hasCodeLine(s, startBrack, endParen)) {
+      out.append('[');
+      return startBrack + 1;
+    }
+
+    int endUrl = indexOf(s, ' ', startParen + 1, endParen);
+    String url = s.subSequence(startParen + 1, endUrl).toString();
+
+    int outStart = out.length();
+    formatInline(s, startBrack + 1, endBrack, false);
+    addSpan(newUrlSpan(url), outStart, out.length());
+    return endParen + 1;
+  }
+
+  private Object newUrlSpan(String url) {
+    urlBuilder.setLength(0);
+    if (url.startsWith("/")) {
+      urlBuilder.append(Urls.WWW_REDDIT_COM);
+    } else if (!url.startsWith("http://") && !url.startsWith("https://")) {
+      urlBuilder.append("http://");
+    }
+    return new URLSpan(urlBuilder.append(url).toString());
+  }
+
+  /** Adds spans to raw URLs in the plain text including link text. */
+  private void addUrlSpans() {
+    Matcher m = urlMatcher.reset(out);
+    while (m.find()) {
+      addSpan(new URLSpan(m.group()), m.start(), m.end());
+    }
+    urlMatcher.reset("");
+  }
+
+  /** Adds spans to /r/subreddit and /u/user in the plain text. */
+  private void addRelativeLinkSpans() {
+    int len = out.length();
+    for (int i = 0; i + 3 < len; ) {
+      char type = out.charAt(i + 1);
+      if (out.charAt(i) == '/'
+          && (type == 'r' || type == 'u')
+          && out.charAt(i + 2) == '/') {
+        int nameEnd = i + 3;
+        while (nameEnd < len && isNameChar(out.charAt(nameEnd))) {
+          nameEnd++;
+        }
+        if (nameEnd > i + 3) {
+          String name = out.substring(i + 3, nameEnd);
+          int end = nameEnd < len && out.charAt(nameEnd) == '/'
+              ? nameEnd + 1
+              : nameEnd;
+          addSpan(type == 'r' ? new SubredditSpan(name) : new UserSpan(name),
+              i, end);
+          i = end;
+          continue;
+        }
+      }
+      i++;
+    }
+  }
+
+  private CharSequence build() {
+    if (spanCount == 0) {
+      return out.toString();
+    }
+    SpannableStringBuilder b = new SpannableStringBuilder(out);
+    for (int i = 0; i < spanCount; i++) {
+      b.setSpan(spans[i], spanStarts[i], spanEnds[i], 0);
+      spans[i] = null;
+    }
+    return b;
+  }
+
+  private void addSpan(Object span, int start, int end) {
+    if (start == end) {
+      return;
+    }
+    if (spanCount == spans.length) {
+      int capacity = spanCount * 2;
+      Object[] newSpans = new Object[capacity];
+      int[] newStarts = new int[capacity];
+      int[] newEnds = new int[capacity];
+      System.arraycopy(spans, 0, newSpans, 0, spanCount);
+      System.arraycopy(spanStarts, 0, newStarts, 0, spanCount);
+      System.arraycopy(spanEnds, 0, newEnds, 0, spanCount);
+      spans = newSpans;
+      spanStarts = newStarts;
+      spanEnds = newEnds;
+    }
+    spans[spanCount] = span;
+    spanStarts[spanCount] = start;
+    spanEnds[spanCount] = end;
+    spanCount++;
+  }
+
+  private int appendNewline(CharSequence s, int i, int len) {
+    if (i < len) {
+      out.append('\n');
+      return i + 1;
+    }
+    return i;
+  }
+
+  /**
+   * Returns the end of a table starting at the line including the new line
+   * of its last row or -1 if there is none. Tables have a header row, a row
+   * of dashes, colons and pipes and one or more data rows.
+   */
+  static int findTableEnd(CharSequence s, int start, int lineEnd, int len) {
+    if (lineEnd == len || indexOf(s, '|', start, lineEnd) == lineEnd) {
+      return -1;
+    }
+
+    int justifyStart = lineEnd + 1;
+    int justifyEnd = indexOf(s, '\n', justifyStart, len);
+    int i = justifyStart;
+    while (i < justifyEnd && (s.charAt(i) == '-' || s.charAt(i) == ':')) {
+      i++;
+    }
+    if (justifyEnd == len || i == justifyEnd || s.charAt(i) != '|') {
+      return -1;
+    }
+
+    int end = -1;
+    for (int rowStart = justifyEnd + 1; rowStart < len; ) {
+      int rowEnd = indexOf(s, '\n', rowStart, len);
+      if (getCodeIndent(s, rowStart, rowEnd) > 0
+          || indexOf(s, '|', rowStart, rowEnd) == rowEnd) {
+        break;
+      }
+      end = rowEnd < len ? rowEnd + 1 : rowEnd;
+      rowStart = end;
+    }
+    return end;
+  }
+
+  /** Returns the length of the code indentation or 0 if not code. */
+  static int getCodeIndent(CharSequence s, int start, int lineEnd) {
+    if (start < lineEnd && s.charAt(start) == '\t') {
+      return 1;
+    }
+    if (start + 4 <= lineEnd
+        && s.charAt(start) == ' '
+        && s.charAt(start + 1) == ' '
+        && s.charAt(start + 2) == ' '
+        && s.charAt(start + 3) == ' ') {
+      return 4;
+    }
+    return 0;
+  }
+
+  /** Returns true if a line after the start is code. */
+  private static boolean hasCodeLine(CharSequence s, int start, int end) {
+    for (int i = indexOf(s, '\n', start, end); i < end;
+        i = indexOf(s, '\n', i + 1, end)) {
+      if (getCodeIndent(s, i + 1, indexOf(s, '\n', i + 1, s.length())) > 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static int findOpeningParen(CharSequence s, int start, int limit) {
+    boolean spaceFound = false;
+    for (int i = start; i < limit; i++) {
+      char ch = s.charAt(i);
+      if (ch == '(') {
+        return i;
+      } else if (ch == ' ' || ch == '\n') {
+        if (spaceFound) {
+          break;
+        }
+        spaceFound = true;
+      } else {
+        break;
+      }
+    }
+    return -1;
+  }
+
+  private static int findClosingMarker(
+      CharSequence s,
+      char open,
+      char close,
+      int start,
+      int limit) {
+    int nesting = 0;
+    for (int i = start; i < limit; i++) {
+      char ch = s.charAt(i);
+      if (ch == open) {
+        nesting++;
+      } else if (ch == close) {
+        if (nesting == 0) {
+          return i;
+        }
+        nesting--;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns the first index from the start where the char repeats the given
+   * number of times on the same line or -1 if there is none.
+   */
+  private static int indexOfRun(CharSequence s, char c, int count, int start,
+      int limit) {
+    for (int i = start; i + count <= limit; i++) {
+      char ch = s.charAt(i);
+      if (ch == '\n') {
+        break;
+      }
+      if (ch == c && getRunLength(s, c, i, i + count) == count) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int getRunLength(CharSequence s, char c, int start,
+      int limit) {
+    int i = start;
+    while (i < limit && s.charAt(i) == c) {
+      i++;
+    }
+    return i - start;
+  }
+
+  /** Returns the index of the char or the end if it isn't found. */
+  private static int indexOf(CharSequence s, char c, int start, int end) {
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i) == c) {
+        return i;
+      }
+    }
+    return end;
+  }
+
+  private static boolean isBulletMarker(char c) {
+    return c == '*' || c == '+' || c == '-';
+  }
+
+  private static boolean isNameChar(char c) {
+    return c >= '0' && c <= '9'
+        || c >= 'A' && c <= 'Z'
+        || c >= 'a' && c <= 'z'
+        || c == '_'
+        || c == '+';
+  }
+}
@@ -20,7 +20,7 @@ import android.content.res.Resources;
 
 import com.btmura.android.reddit.R;
 
-import java.util.Formatter;
+import java.util.Arrays;
 import java.util.Locale;
 
 public class RelativeTime {
@@ -31,32 +31,78 @@ public class RelativeTime {
   private static final int MONTH_SECONDS = DAY_SECONDS * 30;
   private static final int YEAR_SECONDS = MONTH_SECONDS * 12;
 
-  public static Formatter format(
-      Resources resources,
-      Formatter formatter,
-      long nowMs,
-      long timeSec) {
+  private static final int[] UNIT_SECONDS = {
+      YEAR_SECONDS,
+      MONTH_SECONDS,
+      DAY_SECONDS,
+      HOUR_SECONDS,
+      MINUTE_SECONDS,
+      1,
+  };
+
+  private static final int[] UNIT_PLURALS = {
+      R.plurals.time_years,
+      R.plurals.time_months,
+      R.plurals.time_days,
+      R.plurals.time_hours,
+      R.plurals.time_minutes,
+      R.plurals.time_seconds,
+  };
+
+  /** Quantities below this are cached. Larger ones can only be years. */
+  private static final int MAX_CACHED_QUANTITY = 60;
+
+  /** Formatted strings by unit and quantity for {@link #cachedLocale}. */
+  private static final String[][] CACHE =
+      new String[UNIT_SECONDS.length][MAX_CACHED_QUANTITY];
+  private static Locale cachedLocale;
+
+  /**
+   * Returns a string like "5 minutes ago" from a cache shared by all callers,
+   * since only a few hundred different strings are ever shown.
+   */
+  public static String format(Resources resources, long nowMs, long timeSec) {
     long diff = nowMs / 1000 - timeSec;
-    int resId;
-    double value;
-    if ((value = diff / YEAR_SECONDS) > 0) {
-      resId = R.plurals.time_years;
-    } else if ((value = diff / MONTH_SECONDS) > 0) {
-      resId = R.plurals.time_months;
-    } else if ((value = diff / DAY_SECONDS) > 0) {
-      resId = R.plurals.time_days;
-    } else if ((value = diff / HOUR_SECONDS) > 0) {
-      resId = R.plurals.time_hours;
-    } else if ((value = diff / MINUTE_SECONDS) > 0) {
-      resId = R.plurals.time_minutes;
-    } else {
-      resId = R.plurals.time_seconds;
-      value = Math.max(0, diff);
+    int unit = getUnit(diff);
+    int quantity = getQuantity(diff, unit);
+    Locale locale = resources.getConfiguration().locale;
+    synchronized (CACHE) {
+      if (!locale.equals(cachedLocale)) {
+        for (String[] strings : CACHE) {
+          Arrays.fill(strings, null);
+        }
+        cachedLocale = locale;
+      }
+      if (quantity < MAX_CACHED_QUANTITY && CACHE[unit][quantity] != null) {
+        return CACHE[unit][quantity];
+      }
     }
 
-    Locale locale = resources.getConfiguration().locale;
-    int quantity = (int) Math.round(value);
-    String format = resources.getQuantityText(resId, quantity).toString();
-    return formatter.format(locale, format, quantity);
+    String format = resources.getQuantityText(UNIT_PLURALS[unit], quantity)
+        .toString();
+    String formatted = String.format(locale, format, quantity);
+    if (quantity < MAX_CACHED_QUANTITY) {
+      synchronized (CACHE) {
+        if (locale.equals(cachedLocale)) {
+          CACHE[unit][quantity] = formatted;
+        }
+      }
+    }
+    return formatted;
+  }
+
+  /** Returns the index of the largest unit the difference has one of. */
+  private static int getUnit(long diff) {
+    int last = UNIT_SECONDS.length - 1;
+    for (int i = 0; i < last; i++) {
+      if (diff / UNIT_SECONDS[i] > 0) {
+        return i;
+      }
+    }
+    return last;
+  }
+
+  private static int getQuantity(long diff, int unit) {
+    return (int) Math.max(0, diff / UNIT_SECONDS[unit]);
   }
 }
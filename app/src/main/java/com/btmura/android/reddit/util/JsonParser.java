@@ -16,42 +16,177 @@
 
 package com.btmura.android.reddit.util;
 
-import android.util.JsonReader;
 import android.util.JsonToken;
 
-import java.io.BufferedInputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.util.Arrays;
 
 public class JsonParser {
 
+  // Fields within an entity's data that are passed to the callbacks.
+
+  protected static final int FIELD_AUTHOR = 0;
+  protected static final int FIELD_BODY = 1;
+  protected static final int FIELD_CHILDREN = 2;
+  protected static final int FIELD_COMMENT_KARMA = 3;
+  protected static final int FIELD_CONTEXT = 4;
+  protected static final int FIELD_CREATED_UTC = 5;
+  protected static final int FIELD_DESCRIPTION = 6;
+  protected static final int FIELD_DESTINATION = 7;
+  protected static final int FIELD_DISPLAY_NAME = 8;
+  protected static final int FIELD_DOMAIN = 9;
+  protected static final int FIELD_DOWNS = 10;
+  protected static final int FIELD_HAS_MAIL = 11;
+  protected static final int FIELD_HEADER_IMAGE = 12;
+  protected static final int FIELD_HIDDEN = 13;
+  protected static final int FIELD_ID = 14;
+  protected static final int FIELD_IS_SELF = 15;
+  protected static final int FIELD_LIKES = 16;
+  protected static final int FIELD_LINK_ID = 17;
+  protected static final int FIELD_LINK_KARMA = 18;
+  protected static final int FIELD_LINK_TITLE = 19;
+  protected static final int FIELD_NAME = 20;
+  protected static final int FIELD_NEW = 21;
+  protected static final int FIELD_NUM_COMMENTS = 22;
+  protected static final int FIELD_OVER_18 = 23;
+  protected static final int FIELD_PARENT_ID = 24;
+  protected static final int FIELD_PERMA_LINK = 25;
+  protected static final int FIELD_REPLIES = 26;
+  protected static final int FIELD_SAVED = 27;
+  protected static final int FIELD_SCORE = 28;
+  protected static final int FIELD_SELF_TEXT = 29;
+  protected static final int FIELD_SUBJECT = 30;
+  protected static final int FIELD_SUBREDDIT = 31;
+  protected static final int FIELD_SUBREDDIT_ID = 32;
+  protected static final int FIELD_SUBSCRIBERS = 33;
+  protected static final int FIELD_TITLE = 34;
+  protected static final int FIELD_THUMBNAIL = 35;
+  protected static final int FIELD_UPS = 36;
+  protected static final int FIELD_URL = 37;
+  protected static final int FIELD_WAS_COMMENT = 38;
+
+  private static final int FIELD_COUNT = 39;
+
+  /** Map from JSON key to field used to dispatch to the matching callback. */
+  private static final Utf8JsonReader.Names FIELDS =
+      new Utf8JsonReader.Names(FIELD_COUNT + 1);
+
+  // Keys of the objects that wrap listings and entities.
+
+  private static final int KEY_AFTER = 0;
+  private static final int KEY_CHILDREN = 1;
+  private static final int KEY_DATA = 2;
+  private static final int KEY_JSON = 3;
+  private static final int KEY_KIND = 4;
+  private static final int KEY_THINGS = 5;
+
+  private static final Utf8JsonReader.Names KEYS = new Utf8JsonReader.Names(6);
+
+  static {
+    KEYS.put("after", KEY_AFTER);
+    KEYS.put("children", KEY_CHILDREN);
+    KEYS.put("data", KEY_DATA);
+    KEYS.put("json", KEY_JSON);
+    KEYS.put("kind", KEY_KIND);
+    KEYS.put("things", KEY_THINGS);
+
+    FIELDS.put("author", FIELD_AUTHOR);
+    FIELDS.put("body", FIELD_BODY);
+    FIELDS.put("children", FIELD_CHILDREN);
+    FIELDS.put("comment_karma", FIELD_COMMENT_KARMA);
+    FIELDS.put("context", FIELD_CONTEXT);
+    FIELDS.put("created_utc", FIELD_CREATED_UTC);
+    FIELDS.put("description", FIELD_DESCRIPTION);
+    FIELDS.put("dest", FIELD_DESTINATION);
+    FIELDS.put("display_name", FIELD_DISPLAY_NAME);
+    FIELDS.put("domain", FIELD_DOMAIN);
+    FIELDS.put("downs", FIELD_DOWNS);
+    FIELDS.put("has_mail", FIELD_HAS_MAIL);
+    FIELDS.put("header_img", FIELD_HEADER_IMAGE);
+    FIELDS.put("hidden", FIELD_HIDDEN);
+    FIELDS.put("id", FIELD_ID);
+    FIELDS.put("is_self", FIELD_IS_SELF);
+    FIELDS.put("likes", FIELD_LIKES);
+    FIELDS.put("link_id", FIELD_LINK_ID);
+    FIELDS.put("link_karma", FIELD_LINK_KARMA);
+    FIELDS.put("link_title", FIELD_LINK_TITLE);
+    FIELDS.put("name", FIELD_NAME);
+    FIELDS.put("new", FIELD_NEW);
+    FIELDS.put("num_comments", FIELD_NUM_COMMENTS);
+    FIELDS.put("over_18", FIELD_OVER_18);
+    FIELDS.put("over18", FIELD_OVER_18);
+    FIELDS.put("parent_id", FIELD_PARENT_ID);
+    FIELDS.put("permalink", FIELD_PERMA_LINK);
+    FIELDS.put("replies", FIELD_REPLIES);
+    FIELDS.put("saved", FIELD_SAVED);
+    FIELDS.put("score", FIELD_SCORE);
+    FIELDS.put("selftext", FIELD_SELF_TEXT);
+    FIELDS.put("subject", FIELD_SUBJECT);
+    FIELDS.put("subreddit", FIELD_SUBREDDIT);
+    FIELDS.put("subreddit_id", FIELD_SUBREDDIT_ID);
+    FIELDS.put("subscribers", FIELD_SUBSCRIBERS);
+    FIELDS.put("title", FIELD_TITLE);
+    FIELDS.put("thumbnail", FIELD_THUMBNAIL);
+    FIELDS.put("ups", FIELD_UPS);
+    FIELDS.put("url", FIELD_URL);
+    FIELDS.put("was_comment", FIELD_WAS_COMMENT);
+  }
+
   public int replyNesting;
 
   private int entityIndex;
 
-  public void parseListingArray(JsonReader r) throws IOException {
+  /** Fields that this parser wants passed to its callbacks. */
+  private final boolean[] parsedFields = new boolean[FIELD_COUNT];
+
+  /** Creates a parser that passes all fields to its callbacks. */
+  public JsonParser() {
+    Arrays.fill(parsedFields, true);
+  }
+
+  /**
+   * Creates a parser that only passes the given fields to its callbacks.
+   * Other fields are skipped without calling the callbacks.
+   */
+  protected JsonParser(int[] fields) {
+    for (int field : fields) {
+      parsedFields[field] = true;
+    }
+  }
+
+  public void parseListingArray(Utf8JsonReader r) throws IOException {
     reset();
     onParseStart();
     doParseListingArray(r);
     onParseEnd();
   }
 
-  public void parseListingObject(JsonReader r) throws IOException {
+  public void parseListingObject(Utf8JsonReader r) throws IOException {
     reset();
     onParseStart();
     doParseListingObject(r);
     onParseEnd();
   }
 
-  public void parseEntity(JsonReader r) throws IOException {
+  /**
+   * Parses the things of an API response like {@code /api/morechildren}
+   * that wraps a flat array of entities in {@code json.data.things}.
+   */
+  public void parseThingsResponse(Utf8JsonReader r) throws IOException {
+    reset();
+    onParseStart();
+    doParseThingsResponse(r);
+    onParseEnd();
+  }
+
+  public void parseEntity(Utf8JsonReader r) throws IOException {
     reset();
     onParseStart();
     doParseEntityObject(r);
     onParseEnd();
   }
 
-  public void parseEntityData(JsonReader r) throws IOException {
+  public void parseEntityData(Utf8JsonReader r) throws IOException {
     reset();
     onParseStart();
     doParseEntityData(r, 0);
@@ -63,7 +198,7 @@ public class JsonParser {
     replyNesting = 0;
   }
 
-  private void doParseListingArray(JsonReader r) throws IOException {
+  private void doParseListingArray(Utf8JsonReader r) throws IOException {
     if (JsonToken.BEGIN_ARRAY == r.peek()) {
       r.beginArray();
       while (r.hasNext()) {
@@ -75,12 +210,43 @@ public class JsonParser {
     }
   }
 
-  private void doParseListingObject(JsonReader r) throws IOException {
+  private void doParseThingsResponse(Utf8JsonReader r) throws IOException {
+    r.beginObject();
+    while (r.hasNext()) {
+      if (r.nextName(KEYS) == KEY_JSON) {
+        r.beginObject();
+        while (r.hasNext()) {
+          if (r.nextName(KEYS) == KEY_DATA) {
+            doParseThingsData(r);
+          } else {
+            r.skipValue();
+          }
+        }
+        r.endObject();
+      } else {
+        r.skipValue();
+      }
+    }
+    r.endObject();
+  }
+
+  private void doParseThingsData(Utf8JsonReader r) throws IOException {
+    r.beginObject();
+    while (r.hasNext()) {
+      if (r.nextName(KEYS) == KEY_THINGS) {
+        doParseListingChildren(r);
+      } else {
+        r.skipValue();
+      }
+    }
+    r.endObject();
+  }
+
+  private void doParseListingObject(Utf8JsonReader r) throws IOException {
     if (JsonToken.BEGIN_OBJECT == r.peek()) {
       r.beginObject();
       while (r.hasNext()) {
-        String name = r.nextName();
-        if ("data".equals(name)) {
+        if (r.nextName(KEYS) == KEY_DATA) {
           doParseListingData(r);
         } else {
           r.skipValue();
@@ -92,22 +258,27 @@ public class JsonParser {
     }
   }
 
-  private void doParseListingData(JsonReader r) throws IOException {
+  private void doParseListingData(Utf8JsonReader r) throws IOException {
     r.beginObject();
     while (r.hasNext()) {
-      String name = r.nextName();
-      if ("children".equals(name)) {
-        doParseListingChildren(r);
-      } else if ("after".equals(name)) {
-        onAfter(r);
-      } else {
-        r.skipValue();
+      switch (r.nextName(KEYS)) {
+        case KEY_CHILDREN:
+          doParseListingChildren(r);
+          break;
+
+        case KEY_AFTER:
+          onAfter(r);
+          break;
+
+        default:
+          r.skipValue();
+          break;
       }
     }
     r.endObject();
   }
 
-  private void doParseListingChildren(JsonReader r) throws IOException {
+  private void doParseListingChildren(Utf8JsonReader r) throws IOException {
     r.beginArray();
     while (r.hasNext()) {
       doParseEntityObject(r);
@@ -115,110 +286,197 @@ public class JsonParser {
     r.endArray();
   }
 
-  private void doParseEntityObject(JsonReader r) throws IOException {
+  private void doParseEntityObject(Utf8JsonReader r) throws IOException {
     int i = ++entityIndex;
     onEntityStart(i);
     r.beginObject();
     while (r.hasNext()) {
-      String name = r.nextName();
-      if ("kind".equals(name)) {
-        onKind(r, i);
-      } else if ("data".equals(name)) {
-        doParseEntityData(r, i);
-      } else {
-        r.skipValue();
+      switch (r.nextName(KEYS)) {
+        case KEY_KIND:
+          onKind(r, i);
+          break;
+
+        case KEY_DATA:
+          doParseEntityData(r, i);
+          break;
+
+        default:
+          r.skipValue();
+          break;
       }
     }
     r.endObject();
     onEntityEnd(i);
   }
 
-  private void doParseEntityData(JsonReader r, int i) throws IOException {
+  private void doParseEntityData(Utf8JsonReader r, int i) throws IOException {
     r.beginObject();
     while (r.hasNext()) {
-      if (isNextNull(r)) {
+      int field = r.nextName(FIELDS);
+      if (field == -1 || !parsedFields[field]) {
         r.skipValue();
         continue;
       }
-      String name = r.nextName();
-      if ("author".equals(name)) {
-        onAuthor(r, i);
-      } else if ("body".equals(name)) {
-        onBody(r, i);
-      } else if ("children".equals(name)) {
-        onChildren(r, i);
-      } else if ("comment_karma".equals(name)) {
-        onCommentKarma(r, i);
-      } else if ("context".equals(name)) {
-        onContext(r, i);
-      } else if ("created_utc".equals(name)) {
-        onCreatedUtc(r, i);
-      } else if ("description".equals(name)) {
-        onDescription(r, i);
-      } else if ("dest".equals(name)) {
-        onDestination(r, i);
-      } else if ("display_name".equals(name)) {
-        onDisplayName(r, i);
-      } else if ("domain".equals(name)) {
-        onDomain(r, i);
-      } else if ("downs".equals(name)) {
-        onDowns(r, i);
-      } else if ("has_mail".equals(name)) {
-        onHasMail(r, i);
-      } else if ("header_img".equals(name)) {
-        onHeaderImage(r, i);
-      } else if ("hidden".equals(name)) {
-        onHidden(r, i);
-      } else if ("id".equals(name)) {
-        onId(r, i);
-      } else if ("is_self".equals(name)) {
-        onIsSelf(r, i);
-      } else if ("likes".equals(name)) {
-        onLikes(r, i);
-      } else if ("link_id".equals(name)) {
-        onLinkId(r, i);
-      } else if ("link_karma".equals(name)) {
-        onLinkKarma(r, i);
-      } else if ("link_title".equals(name)) {
-        onLinkTitle(r, i);
-      } else if ("name".equals(name)) {
-        onName(r, i);
-      } else if ("new".equals(name)) {
-        onNew(r, i);
-      } else if ("num_comments".equals(name)) {
-        onNumComments(r, i);
-      } else if ("over_18".equals(name) || "over18".equals(name)) {
-        onOver18(r, i);
-      } else if ("permalink".equals(name)) {
-        onPermaLink(r, i);
-      } else if ("replies".equals(name)) {
-        onReplies(r, i);
-      } else if ("saved".equals(name)) {
-        onSaved(r, i);
-      } else if ("score".equals(name)) {
-        onScore(r, i);
-      } else if ("selftext".equals(name)) {
-        onSelfText(r, i);
-      } else if ("subject".equals(name)) {
-        onSubject(r, i);
-      } else if ("subreddit".equals(name)) {
-        onSubreddit(r, i);
-      } else if ("subreddit_id".equals(name)) {
-        onSubredditId(r, i);
-      } else if ("subscribers".equals(name)) {
-        onSubscribers(r, i);
-      } else if ("title".equals(name)) {
-        onTitle(r, i);
-      } else if ("thumbnail".equals(name)) {
-        onThumbnail(r, i);
-      } else if ("ups".equals(name)) {
-        onUps(r, i);
-      } else if ("url".equals(name)) {
-        onUrl(r, i);
-      } else if ("was_comment".equals(name)) {
-        onWasComment(r, i);
-      } else {
-        r.skipValue();
+      switch (field) {
+        case FIELD_AUTHOR:
+          onAuthor(r, i);
+          break;
+
+        case FIELD_BODY:
+          onBody(r, i);
+          break;
+
+        case FIELD_CHILDREN:
+          onChildren(r, i);
+          break;
+
+        case FIELD_COMMENT_KARMA:
+          onCommentKarma(r, i);
+          break;
+
+        case FIELD_CONTEXT:
+          onContext(r, i);
+          break;
+
+        case FIELD_CREATED_UTC:
+          onCreatedUtc(r, i);
+          break;
+
+        case FIELD_DESCRIPTION:
+          onDescription(r, i);
+          break;
+
+        case FIELD_DESTINATION:
+          onDestination(r, i);
+          break;
+
+        case FIELD_DISPLAY_NAME:
+          onDisplayName(r, i);
+          break;
+
+        case FIELD_DOMAIN:
+          onDomain(r, i);
+          break;
+
+        case FIELD_DOWNS:
+          onDowns(r, i);
+          break;
+
+        case FIELD_HAS_MAIL:
+          onHasMail(r, i);
+          break;
+
+        case FIELD_HEADER_IMAGE:
+          onHeaderImage(r, i);
+          break;
+
+        case FIELD_HIDDEN:
+          onHidden(r, i);
+          break;
+
+        case FIELD_ID:
+          onId(r, i);
+          break;
+
+        case FIELD_IS_SELF:
+          onIsSelf(r, i);
+          break;
+
+        case FIELD_LIKES:
+          onLikes(r, i);
+          break;
+
+        case FIELD_LINK_ID:
+          onLinkId(r, i);
+          break;
+
+        case FIELD_LINK_KARMA:
+          onLinkKarma(r, i);
+          break;
+
+        case FIELD_LINK_TITLE:
+          onLinkTitle(r, i);
+          break;
+
+        case FIELD_NAME:
+          onName(r, i);
+          break;
+
+        case FIELD_NEW:
+          onNew(r, i);
+          break;
+
+        case FIELD_NUM_COMMENTS:
+          onNumComments(r, i);
+          break;
+
+        case FIELD_OVER_18:
+          onOver18(r, i);
+          break;
+
+        case FIELD_PARENT_ID:
+          onParentId(r, i);
+          break;
+
+        case FIELD_PERMA_LINK:
+          onPermaLink(r, i);
+          break;
+
+        case FIELD_REPLIES:
+          onReplies(r, i);
+          break;
+
+        case FIELD_SAVED:
+          onSaved(r, i);
+          break;
+
+        case FIELD_SCORE:
+          onScore(r, i);
+          break;
+
+        case FIELD_SELF_TEXT:
+          onSelfText(r, i);
+          break;
+
+        case FIELD_SUBJECT:
+          onSubject(r, i);
+          break;
+
+        case FIELD_SUBREDDIT:
+          onSubreddit(r, i);
+          break;
+
+        case FIELD_SUBREDDIT_ID:
+          onSubredditId(r, i);
+          break;
+
+        case FIELD_SUBSCRIBERS:
+          onSubscribers(r, i);
+          break;
+
+        case FIELD_TITLE:
+          onTitle(r, i);
+          break;
+
+        case FIELD_THUMBNAIL:
+          onThumbnail(r, i);
+          break;
+
+        case FIELD_UPS:
+          onUps(r, i);
+          break;
+
+        case FIELD_URL:
+          onUrl(r, i);
+          break;
+
+        case FIELD_WAS_COMMENT:
+          onWasComment(r, i);
+          break;
+
+        default:
+          r.skipValue();
+          break;
       }
     }
     r.endObject();
@@ -230,111 +488,115 @@ public class JsonParser {
   public void onEntityStart(int i) {
   }
 
-  public void onAuthor(JsonReader r, int i) throws IOException {
+  public void onAuthor(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onBody(JsonReader r, int i) throws IOException {
+  public void onBody(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onChildren(JsonReader r, int i) throws IOException {
+  public void onChildren(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onCommentKarma(JsonReader r, int i) throws IOException {
+  public void onCommentKarma(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onContext(JsonReader r, int i) throws IOException {
+  public void onContext(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onCreatedUtc(JsonReader r, int i) throws IOException {
+  public void onCreatedUtc(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onDescription(JsonReader r, int i) throws IOException {
+  public void onDescription(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onDestination(JsonReader r, int i) throws IOException {
+  public void onDestination(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onDisplayName(JsonReader r, int i) throws IOException {
+  public void onDisplayName(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onDomain(JsonReader r, int i) throws IOException {
+  public void onDomain(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onDowns(JsonReader r, int i) throws IOException {
+  public void onDowns(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onHeaderImage(JsonReader r, int i) throws IOException {
+  public void onHeaderImage(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onKind(JsonReader r, int i) throws IOException {
+  public void onKind(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onHasMail(JsonReader r, int i) throws IOException {
+  public void onHasMail(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onHidden(JsonReader r, int i) throws IOException {
+  public void onHidden(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onId(JsonReader r, int i) throws IOException {
+  public void onId(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onIsSelf(JsonReader r, int i) throws IOException {
+  public void onIsSelf(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onLikes(JsonReader r, int i) throws IOException {
+  public void onLikes(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onLinkId(JsonReader r, int i) throws IOException {
+  public void onLinkId(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onLinkKarma(JsonReader r, int i) throws IOException {
+  public void onLinkKarma(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onLinkTitle(JsonReader r, int i) throws IOException {
+  public void onLinkTitle(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onName(JsonReader r, int i) throws IOException {
+  public void onName(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onNew(JsonReader r, int i) throws IOException {
+  public void onNew(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onNumComments(JsonReader r, int i) throws IOException {
+  public void onNumComments(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onOver18(JsonReader r, int i) throws IOException {
+  public void onOver18(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onPermaLink(JsonReader r, int i) throws IOException {
+  public void onParentId(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onReplies(JsonReader r, int i) throws IOException {
+  public void onPermaLink(Utf8JsonReader r, int i) throws IOException {
+    r.skipValue();
+  }
+
+  public void onReplies(Utf8JsonReader r, int i) throws IOException {
     if (shouldParseReplies()) {
       replyNesting++;
       doParseListingObject(r);
@@ -344,58 +606,58 @@ public class JsonParser {
     }
   }
 
-  public void onSaved(JsonReader r, int i) throws IOException {
+  public void onSaved(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onScore(JsonReader r, int i) throws IOException {
+  public void onScore(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onSelfText(JsonReader r, int i) throws IOException {
+  public void onSelfText(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onSubscribers(JsonReader r, int i) throws IOException {
+  public void onSubscribers(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onSubject(JsonReader r, int i) throws IOException {
+  public void onSubject(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onSubreddit(JsonReader r, int i) throws IOException {
+  public void onSubreddit(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onSubredditId(JsonReader r, int i) throws IOException {
+  public void onSubredditId(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onTitle(JsonReader r, int i) throws IOException {
+  public void onTitle(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onThumbnail(JsonReader r, int i) throws IOException {
+  public void onThumbnail(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onUps(JsonReader r, int i) throws IOException {
+  public void onUps(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onUrl(JsonReader r, int i) throws IOException {
+  public void onUrl(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onWasComment(JsonReader r, int i) throws IOException {
+  public void onWasComment(Utf8JsonReader r, int i) throws IOException {
     r.skipValue();
   }
 
-  public void onEntityEnd(int i) {
+  public void onEntityEnd(int i) throws IOException {
   }
 
-  public void onAfter(JsonReader r) throws IOException {
+  public void onAfter(Utf8JsonReader r) throws IOException {
     r.skipValue();
   }
 
@@ -406,7 +668,7 @@ public class JsonParser {
     return false;
   }
 
-  protected static boolean readBoolean(JsonReader r, boolean defaultValue)
+  protected static boolean readBoolean(Utf8JsonReader r, boolean defaultValue)
       throws IOException {
     if (isNextNull(r)) {
       r.skipValue();
@@ -415,7 +677,7 @@ public class JsonParser {
     return r.nextBoolean();
   }
 
-  protected static int readInt(JsonReader r, int defaultValue)
+  protected static int readInt(Utf8JsonReader r, int defaultValue)
       throws IOException {
     if (isNextNull(r)) {
       r.skipValue();
@@ -424,7 +686,7 @@ public class JsonParser {
     return r.nextInt();
   }
 
-  protected static long readLong(JsonReader r, long defaultValue)
+  protected static long readLong(Utf8JsonReader r, long defaultValue)
       throws IOException {
     if (isNextNull(r)) {
       r.skipValue();
@@ -433,7 +695,7 @@ public class JsonParser {
     return r.nextLong();
   }
 
-  protected static String readString(JsonReader r, String defaultValue)
+  protected static String readString(Utf8JsonReader r, String defaultValue)
       throws IOException {
     if (isNextNull(r)) {
       r.skipValue();
@@ -442,11 +704,15 @@ public class JsonParser {
     return r.nextString().trim();
   }
 
-  protected static boolean isNextBoolean(JsonReader r) throws IOException {
+  protected static boolean isNextArray(Utf8JsonReader r) throws IOException {
+    return JsonToken.BEGIN_ARRAY.equals(r.peek());
+  }
+
+  protected static boolean isNextBoolean(Utf8JsonReader r) throws IOException {
     return JsonToken.BOOLEAN.equals(r.peek());
   }
 
-  protected static boolean isNextNull(JsonReader r) throws IOException {
+  protected static boolean isNextNull(Utf8JsonReader r) throws IOException {
     return JsonToken.NULL.equals(r.peek());
   }
 }
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.util;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * {@link SingleFlight} runs only one call at a time per key. Callers that
+ * arrive while a call with their key is in flight wait for it and share its
+ * result or exception rather than making the same call again.
+ */
+public class SingleFlight<K> {
+
+  private final Map<K, FutureTask<?>> calls = new HashMap<K, FutureTask<?>>();
+
+  /**
+   * Returns the result of the callable or of the call already in flight for
+   * the key. Callers using the same key must expect the same type of result.
+   *
+   * @throws Exception thrown by the callable
+   */
+  @SuppressWarnings("unchecked")
+  public <V> V execute(K key, Callable<V> callable) throws Exception {
+    FutureTask<V> call;
+    boolean owner = false;
+    synchronized (calls) {
+      call = (FutureTask<V>) calls.get(key);
+      if (call == null) {
+        call = new FutureTask<V>(callable);
+        calls.put(key, call);
+        owner = true;
+      }
+    }
+
+    if (owner) {
+      try {
+        call.run();
+      } finally {
+        synchronized (calls) {
+          calls.remove(key);
+        }
+      }
+    }
+
+    try {
+      return call.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw (Error) cause;
+    }
+  }
+
+  /** Returns the number of calls in flight. */
+  public int getInFlightCount() {
+    synchronized (calls) {
+      return calls.size();
+    }
+  }
+}
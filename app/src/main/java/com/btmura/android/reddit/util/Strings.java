@@ -18,6 +18,10 @@ package com.btmura.android.reddit.util;
 
 import android.text.TextUtils;
 
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
 public class Strings {
 
   static final String ELLIPSIS = "…";
@@ -43,4 +47,22 @@ public class Strings {
   public static String toString(Object object) {
     return object != null ? object.toString() : null;
   }
+
+  /** Returns the MD5 digest of the string in hex for naming cache files. */
+  public static String toMd5Hex(String string) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("MD5");
+      byte[] digest = md.digest(string.getBytes("UTF-8"));
+      StringBuilder sb = new StringBuilder(digest.length * 2);
+      for (byte b : digest) {
+        sb.append(Character.forDigit((b >> 4) & 0xf, 16))
+            .append(Character.forDigit(b & 0xf, 16));
+      }
+      return sb.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
 }
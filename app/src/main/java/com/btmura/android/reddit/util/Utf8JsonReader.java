@@ -0,0 +1,773 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.util;
+
+import android.util.JsonToken;
+import android.util.MalformedJsonException;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * {@link Utf8JsonReader} reads JSON straight from UTF-8 bytes with the same
+ * methods as {@link android.util.JsonReader}. It avoids the charset decoder
+ * and extra buffers of an {@link java.io.InputStreamReader}, reuses buffers
+ * per thread, only decodes strings that are asked for, and can match names
+ * against a {@link Names} table without creating Strings.
+ */
+public class Utf8JsonReader implements Closeable {
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private static final int BYTE_BUFFER_SIZE = 8192;
+  private static final int CHAR_BUFFER_SIZE = 1024;
+
+  /** Largest char buffer kept around for the next reader on the thread. */
+  private static final int MAX_POOLED_CHARS = 32 * 1024;
+
+  // Values of peeked.
+
+  private static final int PEEKED_NONE = 0;
+  private static final int PEEKED_BEGIN_OBJECT = 1;
+  private static final int PEEKED_END_OBJECT = 2;
+  private static final int PEEKED_BEGIN_ARRAY = 3;
+  private static final int PEEKED_END_ARRAY = 4;
+  private static final int PEEKED_TRUE = 5;
+  private static final int PEEKED_FALSE = 6;
+  private static final int PEEKED_NULL = 7;
+  private static final int PEEKED_STRING = 8;
+  private static final int PEEKED_NAME = 9;
+  private static final int PEEKED_NUMBER = 10;
+  private static final int PEEKED_EOF = 11;
+
+  // Values of the scope stack.
+
+  private static final int EMPTY_ARRAY = 1;
+  private static final int NONEMPTY_ARRAY = 2;
+  private static final int EMPTY_OBJECT = 3;
+  private static final int DANGLING_NAME = 4;
+  private static final int NONEMPTY_OBJECT = 5;
+  private static final int EMPTY_DOCUMENT = 6;
+  private static final int NONEMPTY_DOCUMENT = 7;
+  private static final int CLOSED = 8;
+
+  private static final ThreadLocal<Buffers> BUFFERS =
+      new ThreadLocal<Buffers>() {
+        @Override
+        protected Buffers initialValue() {
+          return new Buffers();
+        }
+      };
+
+  private final InputStream in;
+  private final Buffers buffers;
+  private final byte[] buf;
+  private char[] chars;
+  private int pos;
+  private int limit;
+
+  private int peeked = PEEKED_NONE;
+
+  /** Characters of the last peeked number. */
+  private char[] number = new char[32];
+  private int numberLength;
+
+  private int[] stack = new int[32];
+  private int stackSize;
+
+  public Utf8JsonReader(InputStream in) {
+    if (in == null) {
+      throw new NullPointerException("in == null");
+    }
+    this.in = in;
+
+    // Nested readers on the same thread get their own buffers.
+    Buffers b = BUFFERS.get();
+    if (b.inUse) {
+      b = new Buffers();
+    }
+    b.inUse = true;
+    this.buffers = b;
+    this.buf = b.bytes;
+    this.chars = b.chars;
+
+    stack[stackSize++] = EMPTY_DOCUMENT;
+  }
+
+  public void beginArray() throws IOException {
+    if (peekInternal() != PEEKED_BEGIN_ARRAY) {
+      throw unexpected("BEGIN_ARRAY");
+    }
+    push(EMPTY_ARRAY);
+    peeked = PEEKED_NONE;
+  }
+
+  public void endArray() throws IOException {
+    if (peekInternal() != PEEKED_END_ARRAY) {
+      throw unexpected("END_ARRAY");
+    }
+    stackSize--;
+    peeked = PEEKED_NONE;
+  }
+
+  public void beginObject() throws IOException {
+    if (peekInternal() != PEEKED_BEGIN_OBJECT) {
+      throw unexpected("BEGIN_OBJECT");
+    }
+    push(EMPTY_OBJECT);
+    peeked = PEEKED_NONE;
+  }
+
+  public void endObject() throws IOException {
+    if (peekInternal() != PEEKED_END_OBJECT) {
+      throw unexpected("END_OBJECT");
+    }
+    stackSize--;
+    peeked = PEEKED_NONE;
+  }
+
+  public boolean hasNext() throws IOException {
+    int p = peekInternal();
+    return p != PEEKED_END_OBJECT && p != PEEKED_END_ARRAY;
+  }
+
+  public JsonToken peek() throws IOException {
+    switch (peekInternal()) {
+      case PEEKED_BEGIN_OBJECT:
+        return JsonToken.BEGIN_OBJECT;
+
+      case PEEKED_END_OBJECT:
+        return JsonToken.END_OBJECT;
+
+      case PEEKED_BEGIN_ARRAY:
+        return JsonToken.BEGIN_ARRAY;
+
+      case PEEKED_END_ARRAY:
+        return JsonToken.END_ARRAY;
+
+      case PEEKED_TRUE:
+      case PEEKED_FALSE:
+        return JsonToken.BOOLEAN;
+
+      case PEEKED_NULL:
+        return JsonToken.NULL;
+
+      case PEEKED_STRING:
+        return JsonToken.STRING;
+
+      case PEEKED_NAME:
+        return JsonToken.NAME;
+
+      case PEEKED_NUMBER:
+        return JsonToken.NUMBER;
+
+      default:
+        return JsonToken.END_DOCUMENT;
+    }
+  }
+
+  public String nextName() throws IOException {
+    if (peekInternal() != PEEKED_NAME) {
+      throw unexpected("a name");
+    }
+    peeked = PEEKED_NONE;
+    return decodeString();
+  }
+
+  /**
+   * Returns the value that the next name maps to in the table or -1 if the
+   * table does not have the name. Names are matched on their bytes, so no
+   * String is created for them.
+   */
+  public int nextName(Names names) throws IOException {
+    if (peekInternal() != PEEKED_NAME) {
+      throw unexpected("a name");
+    }
+    peeked = PEEKED_NONE;
+
+    // Fast path for names without escapes that are entirely in the buffer.
+    byte[] buf = this.buf;
+    int hash = 0;
+    for (int p = pos; p < limit; p++) {
+      byte b = buf[p];
+      if (b == '"') {
+        int value = names.get(buf, pos, p, hash);
+        pos = p + 1;
+        return value;
+      }
+      if (b == '\\') {
+        break;
+      }
+      hash = 31 * hash + b;
+    }
+    return names.get(decodeString());
+  }
+
+  public String nextString() throws IOException {
+    int p = peekInternal();
+    if (p == PEEKED_STRING) {
+      peeked = PEEKED_NONE;
+      return decodeString();
+    }
+    if (p == PEEKED_NUMBER) {
+      peeked = PEEKED_NONE;
+      return new String(number, 0, numberLength);
+    }
+    throw unexpected("a string");
+  }
+
+  public boolean nextBoolean() throws IOException {
+    int p = peekInternal();
+    if (p == PEEKED_TRUE) {
+      peeked = PEEKED_NONE;
+      return true;
+    }
+    if (p == PEEKED_FALSE) {
+      peeked = PEEKED_NONE;
+      return false;
+    }
+    throw unexpected("a boolean");
+  }
+
+  public void nextNull() throws IOException {
+    if (peekInternal() != PEEKED_NULL) {
+      throw unexpected("null");
+    }
+    peeked = PEEKED_NONE;
+  }
+
+  public double nextDouble() throws IOException {
+    return Double.parseDouble(nextNumber());
+  }
+
+  public long nextLong() throws IOException {
+    int p = peekInternal();
+    if (p == PEEKED_NUMBER) {
+      peeked = PEEKED_NONE;
+      return parseLong(number, numberLength);
+    }
+    return parseLong(nextNumber());
+  }
+
+  public int nextInt() throws IOException {
+    long value = nextLong();
+    int result = (int) value;
+    if (result != value) {
+      throw new NumberFormatException("Expected an int but was " + value);
+    }
+    return result;
+  }
+
+  /** Skips the next value recursively without decoding any strings. */
+  public void skipValue() throws IOException {
+    int count = 0;
+    do {
+      switch (peekInternal()) {
+        case PEEKED_BEGIN_ARRAY:
+          push(EMPTY_ARRAY);
+          count++;
+          break;
+
+        case PEEKED_BEGIN_OBJECT:
+          push(EMPTY_OBJECT);
+          count++;
+          break;
+
+        case PEEKED_END_ARRAY:
+        case PEEKED_END_OBJECT:
+          if (count == 0) {
+            throw unexpected("a value");
+          }
+          stackSize--;
+          count--;
+          break;
+
+        case PEEKED_STRING:
+        case PEEKED_NAME:
+          skipString();
+          break;
+
+        case PEEKED_EOF:
+          throw unexpected("a value");
+      }
+      peeked = PEEKED_NONE;
+    } while (count != 0);
+  }
+
+  public void close() throws IOException {
+    peeked = PEEKED_NONE;
+    stack[0] = CLOSED;
+    stackSize = 1;
+    if (buffers.inUse) {
+      if (chars.length <= MAX_POOLED_CHARS) {
+        buffers.chars = chars;
+      }
+      buffers.inUse = false;
+    }
+    in.close();
+  }
+
+  private int peekInternal() throws IOException {
+    int p = peeked;
+    return p != PEEKED_NONE ? p : doPeek();
+  }
+
+  private int doPeek() throws IOException {
+    int top = stack[stackSize - 1];
+    if (top == EMPTY_ARRAY) {
+      stack[stackSize - 1] = NONEMPTY_ARRAY;
+    } else if (top == NONEMPTY_ARRAY) {
+      int c = nextNonWhitespace(true);
+      if (c == ']') {
+        return peeked = PEEKED_END_ARRAY;
+      } else if (c != ',') {
+        throw syntaxError("Unterminated array");
+      }
+    } else if (top == EMPTY_OBJECT || top == NONEMPTY_OBJECT) {
+      stack[stackSize - 1] = DANGLING_NAME;
+      if (top == NONEMPTY_OBJECT) {
+        int c = nextNonWhitespace(true);
+        if (c == '}') {
+          return peeked = PEEKED_END_OBJECT;
+        } else if (c != ',') {
+          throw syntaxError("Unterminated object");
+        }
+      }
+      int c = nextNonWhitespace(true);
+      if (c == '"') {
+        return peeked = PEEKED_NAME;
+      } else if (c == '}' && top == EMPTY_OBJECT) {
+        return peeked = PEEKED_END_OBJECT;
+      }
+      throw syntaxError("Expected name");
+    } else if (top == DANGLING_NAME) {
+      stack[stackSize - 1] = NONEMPTY_OBJECT;
+      if (nextNonWhitespace(true) != ':') {
+        throw syntaxError("Expected ':'");
+      }
+    } else if (top == EMPTY_DOCUMENT) {
+      stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+    } else if (top == NONEMPTY_DOCUMENT) {
+      if (nextNonWhitespace(false) == -1) {
+        return peeked = PEEKED_EOF;
+      }
+      throw syntaxError("Expected end of document");
+    } else if (top == CLOSED) {
+      throw new IllegalStateException("JsonReader is closed");
+    }
+
+    int c = nextNonWhitespace(true);
+    switch (c) {
+      case ']':
+        if (top == EMPTY_ARRAY) {
+          return peeked = PEEKED_END_ARRAY;
+        }
+        throw syntaxError("Unexpected value");
+
+      case '"':
+        return peeked = PEEKED_STRING;
+
+      case '[':
+        return peeked = PEEKED_BEGIN_ARRAY;
+
+      case '{':
+        return peeked = PEEKED_BEGIN_OBJECT;
+
+      case 't':
+        readLiteral("rue");
+        return peeked = PEEKED_TRUE;
+
+      case 'f':
+        readLiteral("alse");
+        return peeked = PEEKED_FALSE;
+
+      case 'n':
+        readLiteral("ull");
+        return peeked = PEEKED_NULL;
+
+      default:
+        if (c == '-' || (c >= '0' && c <= '9')) {
+          readNumber(c);
+          return peeked = PEEKED_NUMBER;
+        }
+        throw syntaxError("Unexpected value");
+    }
+  }
+
+  private void push(int scope) {
+    if (stackSize == stack.length) {
+      stack = Arrays.copyOf(stack, stackSize * 2);
+    }
+    stack[stackSize++] = scope;
+  }
+
+  private boolean fill() throws IOException {
+    pos = 0;
+    limit = 0;
+    int read;
+    while ((read = in.read(buf, 0, buf.length)) == 0) {
+    }
+    if (read == -1) {
+      return false;
+    }
+    limit = read;
+    return true;
+  }
+
+  private int nextByte() throws IOException {
+    if (pos == limit && !fill()) {
+      throw new EOFException("End of input");
+    }
+    return buf[pos++];
+  }
+
+  private int nextNonWhitespace(boolean throwOnEof) throws IOException {
+    while (true) {
+      if (pos == limit && !fill()) {
+        if (throwOnEof) {
+          throw new EOFException("End of input");
+        }
+        return -1;
+      }
+      int c = buf[pos++];
+      if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+        return c;
+      }
+    }
+  }
+
+  private void readLiteral(String rest) throws IOException {
+    for (int i = 0; i < rest.length(); i++) {
+      if (nextByte() != rest.charAt(i)) {
+        throw syntaxError("Unexpected value");
+      }
+    }
+    if ((pos < limit || fill()) && isLiteral(buf[pos])) {
+      throw syntaxError("Unexpected value");
+    }
+  }
+
+  private void readNumber(int first) throws IOException {
+    int length = 0;
+    number[length++] = (char) first;
+    while (pos < limit || fill()) {
+      int c = buf[pos];
+      if ((c >= '0' && c <= '9') || c == '.' || c == 'e' || c == 'E'
+          || c == '-' || c == '+') {
+        if (length == number.length) {
+          number = Arrays.copyOf(number, length * 2);
+        }
+        number[length++] = (char) c;
+        pos++;
+      } else if (isLiteral(c)) {
+        throw syntaxError("Unexpected value");
+      } else {
+        break;
+      }
+    }
+    numberLength = length;
+  }
+
+  private String nextNumber() throws IOException {
+    int p = peekInternal();
+    if (p == PEEKED_NUMBER) {
+      peeked = PEEKED_NONE;
+      return new String(number, 0, numberLength);
+    }
+    if (p == PEEKED_STRING) {
+      peeked = PEEKED_NONE;
+      return decodeString();
+    }
+    throw unexpected("a number");
+  }
+
+  /** Decodes the string after its opening quote up to its closing quote. */
+  private String decodeString() throws IOException {
+    byte[] buf = this.buf;
+    char[] chars = this.chars;
+    int length = 0;
+    while (true) {
+      // Copy plain ASCII straight out of the buffer.
+      if (chars.length - length < limit - pos) {
+        chars = Arrays.copyOf(chars,
+            Math.max(chars.length * 2, length + limit - pos));
+      }
+      int p = pos;
+      int l = limit;
+      while (p < l) {
+        byte b = buf[p];
+        if (b == '"' || b == '\\' || b < 0) {
+          break;
+        }
+        chars[length++] = (char) b;
+        p++;
+      }
+      pos = p;
+
+      if (p == l) {
+        if (!fill()) {
+          throw syntaxError("Unterminated string");
+        }
+        continue;
+      }
+
+      // Make room for a surrogate pair in case the next char needs it.
+      if (chars.length - length < 2) {
+        chars = Arrays.copyOf(chars, chars.length * 2);
+      }
+
+      int b = buf[pos++];
+      if (b == '"') {
+        break;
+      } else if (b == '\\') {
+        chars[length++] = readEscape();
+      } else {
+        length = decodeMultiByte(b, chars, length);
+      }
+    }
+    this.chars = chars;
+    return new String(chars, 0, length);
+  }
+
+  private int decodeMultiByte(int b, char[] chars, int length)
+      throws IOException {
+    int codePoint;
+    int count;
+    if ((b & 0xe0) == 0xc0) {
+      codePoint = b & 0x1f;
+      count = 1;
+    } else if ((b & 0xf0) == 0xe0) {
+      codePoint = b & 0x0f;
+      count = 2;
+    } else if ((b & 0xf8) == 0xf0) {
+      codePoint = b & 0x07;
+      count = 3;
+    } else {
+      chars[length++] = '\uFFFD';
+      return length;
+    }
+
+    for (int i = 0; i < count; i++) {
+      int next = nextByte();
+      if ((next & 0xc0) != 0x80) {
+        // Let the caller see the byte that broke the sequence.
+        pos--;
+        chars[length++] = '\uFFFD';
+        return length;
+      }
+      codePoint = (codePoint << 6) | (next & 0x3f);
+    }
+
+    if (codePoint >= 0x10000) {
+      codePoint -= 0x10000;
+      chars[length++] = (char) (0xd800 + (codePoint >>> 10));
+      chars[length++] = (char) (0xdc00 + (codePoint & 0x3ff));
+    } else {
+      chars[length++] = (char) codePoint;
+    }
+    return length;
+  }
+
+  private char readEscape() throws IOException {
+    int c = nextByte();
+    switch (c) {
+      case 'u':
+        int result = 0;
+        for (int i = 0; i < 4; i++) {
+          int h = nextByte();
+          result <<= 4;
+          if (h >= '0' && h <= '9') {
+            result += h - '0';
+          } else if (h >= 'a' && h <= 'f') {
+            result += h - 'a' + 10;
+          } else if (h >= 'A' && h <= 'F') {
+            result += h - 'A' + 10;
+          } else {
+            throw syntaxError("Malformed unicode escape");
+          }
+        }
+        return (char) result;
+
+      case 't':
+        return '\t';
+
+      case 'b':
+        return '\b';
+
+      case 'n':
+        return '\n';
+
+      case 'r':
+        return '\r';
+
+      case 'f':
+        return '\f';
+
+      default:
+        return (char) c;
+    }
+  }
+
+  /** Skips the string after its opening quote without decoding it. */
+  private void skipString() throws IOException {
+    byte[] buf = this.buf;
+    while (true) {
+      int p = pos;
+      int l = limit;
+      while (p < l) {
+        byte b = buf[p++];
+        if (b == '"') {
+          pos = p;
+          return;
+        }
+        if (b == '\\') {
+          pos = p;
+          nextByte();
+          p = pos;
+          l = limit;
+        }
+      }
+      pos = p;
+      if (!fill()) {
+        throw syntaxError("Unterminated string");
+      }
+    }
+  }
+
+  private static boolean isLiteral(int c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+        || (c >= '0' && c <= '9') || c == '_' || c == '.' || c == '-';
+  }
+
+  private static long parseLong(char[] chars, int length) {
+    // Parse plain integers by hand and leave everything else to Double.
+    int i = chars[0] == '-' ? 1 : 0;
+    if (length > i && length - i <= 18) {
+      long value = 0;
+      for (; i < length; i++) {
+        char c = chars[i];
+        if (c < '0' || c > '9') {
+          return parseLong(new String(chars, 0, length));
+        }
+        value = value * 10 + (c - '0');
+      }
+      return chars[0] == '-' ? -value : value;
+    }
+    return parseLong(new String(chars, 0, length));
+  }
+
+  private static long parseLong(String s) {
+    try {
+      return Long.parseLong(s);
+    } catch (NumberFormatException e) {
+      double asDouble = Double.parseDouble(s);
+      long result = (long) asDouble;
+      if (result != asDouble) {
+        throw new NumberFormatException("Expected a long but was " + s);
+      }
+      return result;
+    }
+  }
+
+  private IllegalStateException unexpected(String expected)
+      throws IOException {
+    return new IllegalStateException("Expected " + expected
+        + " but was " + peek());
+  }
+
+  private IOException syntaxError(String message) {
+    return new MalformedJsonException(message);
+  }
+
+  private static class Buffers {
+    final byte[] bytes = new byte[BYTE_BUFFER_SIZE];
+    char[] chars = new char[CHAR_BUFFER_SIZE];
+    boolean inUse;
+  }
+
+  /**
+   * {@link Names} maps JSON names to ints for
+   * {@link Utf8JsonReader#nextName(Names)}.
+   */
+  public static class Names {
+
+    private final byte[][] keys;
+    private final int[] values;
+    private final int mask;
+
+    public Names(int capacity) {
+      int size = Integer.highestOneBit(Math.max(capacity, 1) * 4);
+      keys = new byte[size][];
+      values = new int[size];
+      mask = size - 1;
+    }
+
+    public void put(String name, int value) {
+      byte[] key = name.getBytes(UTF_8);
+      int slot = slot(hash(key, 0, key.length));
+      while (keys[slot] != null) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      values[slot] = value;
+    }
+
+    /** Returns the value for the name or -1 if there is none. */
+    public int get(String name) {
+      byte[] key = name.getBytes(UTF_8);
+      return get(key, 0, key.length, hash(key, 0, key.length));
+    }
+
+    int get(byte[] b, int start, int end, int hash) {
+      for (int slot = slot(hash); keys[slot] != null;
+          slot = (slot + 1) & mask) {
+        if (equals(keys[slot], b, start, end)) {
+          return values[slot];
+        }
+      }
+      return -1;
+    }
+
+    private int slot(int hash) {
+      return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private static int hash(byte[] b, int start, int end) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + b[i];
+      }
+      return hash;
+    }
+
+    private static boolean equals(byte[] key, byte[] b, int start, int end) {
+      if (key.length != end - start) {
+        return false;
+      }
+      for (int i = 0; i < key.length; i++) {
+        if (key[i] != b[start + i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.annotation.TargetApi;
+import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
+import android.os.Build;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link BitmapPool} holds bitmaps that are no longer displayed or cached,
+ * so thumbnails can be decoded into them with {@code inBitmap} rather than
+ * allocating new ones. Bitmaps are bucketed by size and config, since only
+ * exact matches can be reused before KitKat. Since KitKat, any bitmap with
+ * enough bytes can be reused through {@link #getAtLeast(int)}.
+ */
+class BitmapPool {
+
+  private final HashMap<Long, ArrayDeque<Bitmap>> buckets =
+      new HashMap<Long, ArrayDeque<Bitmap>>();
+  private final long maxBytes;
+  private long bytes;
+
+  BitmapPool(long maxBytes) {
+    this.maxBytes = maxBytes;
+  }
+
+  /** Returns a bitmap to decode into or null if there is none. */
+  @Nullable
+  synchronized Bitmap get(int width, int height, Config config) {
+    ArrayDeque<Bitmap> bucket = buckets.get(key(width, height, config));
+    if (bucket == null || bucket.isEmpty()) {
+      return null;
+    }
+    Bitmap b = bucket.removeLast();
+    bytes -= getByteCount(b);
+    return b;
+  }
+
+  /**
+   * Returns the smallest bitmap with at least the given number of bytes to
+   * decode into or null if there is none. Only for KitKat and later.
+   */
+  @Nullable
+  @TargetApi(Build.VERSION_CODES.KITKAT)
+  synchronized Bitmap getAtLeast(int byteCount) {
+    ArrayDeque<Bitmap> best = null;
+    int bestByteCount = Integer.MAX_VALUE;
+    for (Map.Entry<Long, ArrayDeque<Bitmap>> entry : buckets.entrySet()) {
+      ArrayDeque<Bitmap> bucket = entry.getValue();
+      if (!bucket.isEmpty()) {
+        int allocated = bucket.peekLast().getAllocationByteCount();
+        if (allocated >= byteCount && allocated < bestByteCount) {
+          best = bucket;
+          bestByteCount = allocated;
+        }
+      }
+    }
+    if (best == null) {
+      return null;
+    }
+    Bitmap b = best.removeLast();
+    bytes -= getByteCount(b);
+    return b;
+  }
+
+  /** Adds a bitmap that nothing refers to anymore if there is room. */
+  synchronized void put(Bitmap b) {
+    int byteCount = getByteCount(b);
+    if (!b.isMutable() || b.isRecycled() || bytes + byteCount > maxBytes) {
+      return;
+    }
+    Long key = key(b.getWidth(), b.getHeight(), b.getConfig());
+    ArrayDeque<Bitmap> bucket = buckets.get(key);
+    if (bucket == null) {
+      bucket = new ArrayDeque<Bitmap>();
+      buckets.put(key, bucket);
+    }
+    bucket.addLast(b);
+    bytes += byteCount;
+  }
+
+  synchronized long getBytes() {
+    return bytes;
+  }
+
+  static int getByteCount(Bitmap b) {
+    return b.getRowBytes() * b.getHeight();
+  }
+
+  static int getBytesPerPixel(Config config) {
+    switch (config) {
+      case ALPHA_8:
+        return 1;
+
+      case RGB_565:
+      case ARGB_4444:
+        return 2;
+
+      default:
+        return 4;
+    }
+  }
+
+  private static Long key(int width, int height, @Nullable Config config) {
+    int ordinal = config != null ? config.ordinal() : Config.values().length;
+    return ((long) width << 32 | height) * 8 + ordinal;
+  }
+}
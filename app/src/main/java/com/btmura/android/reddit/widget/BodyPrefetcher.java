@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.os.Process;
+import android.text.TextPaint;
+import android.text.TextUtils;
+
+import com.btmura.android.reddit.database.Kinds;
+import com.btmura.android.reddit.text.MarkdownCache;
+import com.btmura.android.reddit.text.MarkdownFormatter;
+import com.btmura.android.reddit.util.Strings;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * {@link BodyPrefetcher} formats and lays out the bodies of the rows after
+ * the one being bound on a background thread, so binding and measuring them
+ * only looks them up in {@link MarkdownCache} and {@link LayoutCache}.
+ */
+class BodyPrefetcher {
+
+  /** Number of rows after the one being bound to prepare. */
+  static final int PREFETCH_ROWS = 10;
+
+  private static final Executor EXECUTOR =
+      Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable r) {
+          Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+              Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+              r.run();
+            }
+          }, "BodyPrefetcher");
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+
+  /** Formatter only used by the executor's single thread. */
+  private static final MarkdownFormatter FORMATTER = new MarkdownFormatter();
+
+  private final int kindIndex;
+  private final int thingIdIndex;
+  private final int bodyIndex;
+  private final int nestingIndex;
+  private final int thumbnailUrlIndex;
+  private int prefetchedPosition = -1;
+
+  /**
+   * @param nestingIndex of the nesting column or -1 if rows aren't nested
+   * @param thumbnailUrlIndex of the thumbnail column or -1 if there is none
+   */
+  BodyPrefetcher(
+      int kindIndex,
+      int thingIdIndex,
+      int bodyIndex,
+      int nestingIndex,
+      int thumbnailUrlIndex) {
+    this.kindIndex = kindIndex;
+    this.thingIdIndex = thingIdIndex;
+    this.bodyIndex = bodyIndex;
+    this.nestingIndex = nestingIndex;
+    this.thumbnailUrlIndex = thumbnailUrlIndex;
+  }
+
+  /** Forgets which rows were prepared like when the cursor is swapped. */
+  void reset() {
+    prefetchedPosition = -1;
+  }
+
+  /**
+   * Prepares the rows after the cursor's position. Their layouts use the
+   * width and paint that the view just bound to the current row would use.
+   */
+  void prefetch(Context ctx, Cursor c, ThingView tv) {
+    int position = c.getPosition();
+    if (prefetchedPosition >= position + PREFETCH_ROWS / 2) {
+      return;
+    }
+
+    int start = Math.max(prefetchedPosition, position) + 1;
+    int end = Math.min(position + PREFETCH_ROWS, c.getCount() - 1);
+    final List<String> thingIds = new ArrayList<String>(PREFETCH_ROWS);
+    final List<String> bodies = new ArrayList<String>(PREFETCH_ROWS);
+    final List<Integer> widths = new ArrayList<Integer>(PREFETCH_ROWS);
+    for (int i = start; i <= end && c.moveToPosition(i); i++) {
+      // Only comments and links have bodies that get formatted.
+      int kind = c.getInt(kindIndex);
+      if (kind != Kinds.KIND_COMMENT && kind != Kinds.KIND_LINK) {
+        continue;
+      }
+      String thingId = c.getString(thingIdIndex);
+      String body = c.getString(bodyIndex);
+      if (!TextUtils.isEmpty(thingId) && !TextUtils.isEmpty(body)) {
+        int nesting = nestingIndex != -1 ? c.getInt(nestingIndex) : 0;
+        boolean showThumbnail = thumbnailUrlIndex != -1
+            && !TextUtils.isEmpty(c.getString(thumbnailUrlIndex));
+        thingIds.add(thingId);
+        bodies.add(body);
+        widths.add(tv.getBodyWidth(nesting, showThumbnail));
+      }
+    }
+    c.moveToPosition(position);
+    prefetchedPosition = Math.max(prefetchedPosition, end);
+
+    if (thingIds.isEmpty()) {
+      return;
+    }
+    final Context appContext = ctx.getApplicationContext();
+    final TextPaint paint = tv.getBodyPaint();
+    final int maxTextLength = tv.getMaxTextLength();
+    EXECUTOR.execute(new Runnable() {
+      @Override
+      public void run() {
+        MarkdownCache markdownCache = MarkdownCache.getInstance(appContext);
+        LayoutCache layoutCache = LayoutCache.getInstance();
+        for (int i = 0; i < thingIds.size(); i++) {
+          CharSequence formatted = markdownCache.prefetchSpans(appContext,
+              thingIds.get(i), bodies.get(i), FORMATTER);
+          int width = widths.get(i);
+          if (width > 0) {
+            layoutCache.warm(Strings.ellipsize(formatted, maxTextLength),
+                paint, width);
+          }
+        }
+      }
+    });
+  }
+}
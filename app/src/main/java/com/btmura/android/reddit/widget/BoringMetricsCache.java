@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.support.annotation.Nullable;
+import android.text.BoringLayout;
+import android.text.BoringLayout.Metrics;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.style.MetricAffectingSpan;
+import android.util.LruCache;
+
+/**
+ * {@link BoringMetricsCache} memoizes {@link BoringLayout#isBoring} for the
+ * short lines like details and statuses that rows repeat, so measuring them
+ * again doesn't measure their text again. Returned metrics are shared and
+ * must not be passed back to {@link BoringLayout#isBoring} to be reused.
+ */
+class BoringMetricsCache {
+
+  private static final int MAX_ENTRIES = 256;
+
+  private static BoringMetricsCache INSTANCE;
+
+  static BoringMetricsCache getInstance() {
+    synchronized (BoringMetricsCache.class) {
+      if (INSTANCE == null) {
+        INSTANCE = new BoringMetricsCache(MAX_ENTRIES);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final LruCache<Key, Metrics> cache;
+
+  BoringMetricsCache(int maxEntries) {
+    cache = new LruCache<Key, Metrics>(maxEntries);
+  }
+
+  /** Returns the metrics of the text or null if it isn't boring. */
+  @Nullable
+  Metrics isBoring(CharSequence text, TextPaint paint) {
+    // Spans like italics change the width without changing the key.
+    if (text instanceof Spanned && ((Spanned) text).getSpans(0,
+        text.length(), MetricAffectingSpan.class).length > 0) {
+      return BoringLayout.isBoring(text, paint);
+    }
+
+    Key key = new Key(text.toString(), paint);
+    Metrics metrics = cache.get(key);
+    if (metrics == null) {
+      metrics = BoringLayout.isBoring(text, paint);
+      if (metrics != null) {
+        cache.put(key, metrics);
+      }
+    }
+    return metrics;
+  }
+
+  static class Key {
+
+    private final String text;
+    private final TextPaint paint;
+
+    Key(String text, TextPaint paint) {
+      this.text = text;
+      this.paint = paint;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      return paint == other.paint && text.equals(other.text);
+    }
+
+    @Override
+    public int hashCode() {
+      return text.hashCode() * 31 + System.identityHashCode(paint);
+    }
+  }
+}
@@ -18,11 +18,15 @@ package com.btmura.android.reddit.widget;
 
 import android.content.Context;
 import android.database.Cursor;
+import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.TextView;
 
+import com.btmura.android.reddit.R;
 import com.btmura.android.reddit.accounts.AccountUtils;
 import com.btmura.android.reddit.content.CommentLoader;
+import com.btmura.android.reddit.database.Kinds;
 import com.btmura.android.reddit.text.MarkdownFormatter;
 import com.btmura.android.reddit.widget.ThingView.OnThingViewClickListener;
 
@@ -30,6 +34,12 @@ public class CommentAdapter extends BaseCursorAdapter {
 
   private final MarkdownFormatter formatter = new MarkdownFormatter();
   private final long nowTimeMs = System.currentTimeMillis();
+  private final BodyPrefetcher bodyPrefetcher = new BodyPrefetcher(
+      CommentLoader.INDEX_KIND,
+      CommentLoader.INDEX_THING_ID,
+      CommentLoader.INDEX_BODY,
+      CommentLoader.INDEX_NESTING,
+      -1);
 
   private final String accountName;
   private final OnThingViewClickListener listener;
@@ -43,13 +53,62 @@ public class CommentAdapter extends BaseCursorAdapter {
     this.listener = listener;
   }
 
+  @Override
+  public Cursor swapCursor(Cursor newCursor) {
+    bodyPrefetcher.reset();
+    return super.swapCursor(newCursor);
+  }
+
+  @Override
+  public int getViewTypeCount() {
+    return 2;
+  }
+
+  @Override
+  public int getItemViewType(int position) {
+    switch (getInt(position, CommentLoader.INDEX_KIND)) {
+      case Kinds.KIND_MORE:
+        return 0;
+
+      default:
+        return 1;
+    }
+  }
+
   @Override
   public View newView(Context ctx, Cursor c, ViewGroup parent) {
-    return new ThingView(ctx);
+    switch (c.getInt(CommentLoader.INDEX_KIND)) {
+      case Kinds.KIND_MORE:
+        LayoutInflater inflater = LayoutInflater.from(ctx);
+        return inflater.inflate(R.layout.comment_more_row, parent, false);
+
+      default:
+        return new ThingView(ctx);
+    }
   }
 
   @Override
   public void bindView(View view, Context ctx, Cursor c) {
+    if (view instanceof ThingView) {
+      bindThingView(view, ctx, c);
+    } else {
+      bindMoreView(view, ctx, c);
+    }
+  }
+
+  private void bindMoreView(View view, Context ctx, Cursor c) {
+    int nesting = c.getInt(CommentLoader.INDEX_NESTING);
+    int numComments = c.getInt(CommentLoader.INDEX_NUM_COMMENTS);
+    boolean drawVotingArrows = AccountUtils.isAccount(accountName);
+
+    TextView tv = (TextView) view;
+    tv.setText(ctx.getResources().getQuantityString(R.plurals.more_replies,
+        numComments, numComments));
+    tv.setPadding(ThingView.getNestingPadding(ctx, nesting, drawVotingArrows),
+        tv.getPaddingTop(), tv.getPaddingRight(), tv.getPaddingBottom());
+  }
+
+  private void bindThingView(View view, Context ctx, Cursor c) {
     final String author = c.getString(CommentLoader.INDEX_AUTHOR);
     final String body = c.getString(CommentLoader.INDEX_BODY);
     final long createdUtc = c.getLong(CommentLoader.INDEX_CREATED_UTC);
@@ -109,5 +168,7 @@ public class CommentAdapter extends BaseCursorAdapter {
         showStatusPoints,
         formatter);
     tv.setThingViewOnClickListener(listener);
+
+    bodyPrefetcher.prefetch(ctx, c, tv);
   }
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.os.Process;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * {@link Executor} for loading images that runs the most recently submitted
+ * task first, since it belongs to the row that was bound last, and that can
+ * be paused while the list is scrolling. Its threads are separate from
+ * {@link android.os.AsyncTask#THREAD_POOL_EXECUTOR}, so waiting images don't
+ * hold up other tasks. Prefetch tasks only run when no other task waits.
+ */
+class ImageExecutor implements Executor {
+
+  private static final int THREAD_COUNT = 3;
+
+  private static ImageExecutor INSTANCE;
+
+  static ImageExecutor getInstance() {
+    synchronized (ImageExecutor.class) {
+      if (INSTANCE == null) {
+        INSTANCE = new ImageExecutor(THREAD_COUNT);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final ArrayDeque<Runnable> tasks = new ArrayDeque<Runnable>();
+  private final ArrayDeque<Runnable> prefetchTasks = new ArrayDeque<Runnable>();
+  private final Executor prefetchExecutor = new Executor() {
+    @Override
+    public void execute(Runnable task) {
+      synchronized (tasks) {
+        prefetchTasks.addLast(task);
+        tasks.notify();
+      }
+    }
+  };
+  private boolean paused;
+
+  ImageExecutor(int threadCount) {
+    for (int i = 0; i < threadCount; i++) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+          runTasks();
+        }
+      }, "ImageExecutor-" + i);
+      thread.setDaemon(true);
+      thread.start();
+    }
+  }
+
+  @Override
+  public void execute(Runnable task) {
+    synchronized (tasks) {
+      tasks.addLast(task);
+      tasks.notify();
+    }
+  }
+
+  /**
+   * Returns an {@link Executor} whose tasks run in submission order after
+   * the tasks of this executor, so rows being bound preempt them.
+   */
+  Executor getPrefetchExecutor() {
+    return prefetchExecutor;
+  }
+
+  /** Moves a waiting prefetch task ahead like when a row now needs it. */
+  void promote(Runnable task) {
+    synchronized (tasks) {
+      if (prefetchTasks.remove(task)) {
+        tasks.addLast(task);
+      }
+    }
+  }
+
+  /** Stops starting tasks until resumed. Tasks already running finish. */
+  void pause(boolean pause) {
+    synchronized (tasks) {
+      paused = pause;
+      if (!pause) {
+        tasks.notifyAll();
+      }
+    }
+  }
+
+  /** Drops waiting tasks that were cancelled. */
+  void purge() {
+    synchronized (tasks) {
+      purge(tasks);
+      purge(prefetchTasks);
+    }
+  }
+
+  private static void purge(ArrayDeque<Runnable> queue) {
+    Iterator<Runnable> i = queue.iterator();
+    while (i.hasNext()) {
+      Runnable task = i.next();
+      if (task instanceof Future && ((Future<?>) task).isCancelled()) {
+        i.remove();
+      }
+    }
+  }
+
+  /** Returns the number of tasks waiting to run. */
+  int getQueuedCount() {
+    synchronized (tasks) {
+      return tasks.size() + prefetchTasks.size();
+    }
+  }
+
+  private void runTasks() {
+    while (true) {
+      Runnable task;
+      synchronized (tasks) {
+        while (paused || tasks.isEmpty() && prefetchTasks.isEmpty()) {
+          try {
+            tasks.wait();
+          } catch (InterruptedException e) {
+            // Keep the thread alive. Only cancelled tasks interrupt it.
+          }
+        }
+        task = !tasks.isEmpty() ? tasks.removeLast()
+            : prefetchTasks.removeFirst();
+      }
+
+      // Tasks of rows that were recycled are cancelled, so skip them.
+      if (!(task instanceof Future) || !((Future<?>) task).isCancelled()) {
+        task.run();
+      }
+
+      // Cancelling a running task interrupts this thread, but reads and
+      // decodes don't clear it, so clear it before waiting for the next one.
+      Thread.interrupted();
+    }
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.text.Layout;
+import android.text.Layout.Alignment;
+import android.text.Spanned;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.util.LruCache;
+
+/**
+ * {@link LayoutCache} keeps the {@link StaticLayout}s of recently measured
+ * text, so measuring a row again or binding a row whose layout was warmed in
+ * the background skips breaking its lines. Layouts are keyed by text, width
+ * and paint. Spanned text like formatted bodies matches by identity, since
+ * {@link com.btmura.android.reddit.text.MarkdownCache} hands out the same
+ * object, while plain text matches by its characters.
+ */
+class LayoutCache {
+
+  private static final int MAX_LAYOUTS = 150;
+
+  private static LayoutCache INSTANCE;
+
+  static LayoutCache getInstance() {
+    synchronized (LayoutCache.class) {
+      if (INSTANCE == null) {
+        INSTANCE = new LayoutCache(MAX_LAYOUTS);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final LruCache<Key, Layout> cache;
+
+  LayoutCache(int maxLayouts) {
+    cache = new LruCache<Key, Layout>(maxLayouts);
+  }
+
+  /** Returns the cached layout of the text or makes and caches one. */
+  Layout get(CharSequence text, TextPaint paint, int width) {
+    Key key = new Key(text, paint, width);
+    Layout layout = cache.get(key);
+    if (layout == null) {
+      layout = makeStaticLayout(text, paint, width);
+      cache.put(key, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Makes and caches the layout of the text if it is missing. Called on a
+   * background thread, which only reads the paint like the main thread does.
+   */
+  void warm(CharSequence text, TextPaint paint, int width) {
+    Key key = new Key(text, paint, width);
+    if (cache.get(key) == null) {
+      cache.put(key, makeStaticLayout(text, paint, width));
+    }
+  }
+
+  static Layout makeStaticLayout(
+      CharSequence text,
+      TextPaint paint,
+      int width) {
+    return new StaticLayout(text,
+        paint,
+        width,
+        Alignment.ALIGN_NORMAL,
+        1f,
+        0f,
+        true);
+  }
+
+  static class Key {
+
+    private final CharSequence text;
+    private final TextPaint paint;
+    private final int width;
+    private final int hash;
+
+    Key(CharSequence text, TextPaint paint, int width) {
+      this.text = text;
+      this.paint = paint;
+      this.width = width;
+      this.hash = (hashText(text) * 31 + System.identityHashCode(paint)) * 31
+          + width;
+    }
+
+    private static int hashText(CharSequence text) {
+      if (text instanceof Spanned) {
+        return System.identityHashCode(text);
+      }
+      if (text instanceof String) {
+        return text.hashCode();
+      }
+      int h = 0;
+      for (int i = 0, len = text.length(); i < len; i++) {
+        h = 31 * h + text.charAt(i);
+      }
+      return h;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) o;
+      if (hash != other.hash
+          || width != other.width
+          || paint != other.paint) {
+        return false;
+      }
+      if (text instanceof Spanned || other.text instanceof Spanned) {
+        return text == other.text;
+      }
+      return TextUtils.equals(text, other.text);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -48,6 +48,12 @@ public class ThingListAdapter extends AbstractThingListAdapter
 
   private final MarkdownFormatter formatter = new MarkdownFormatter();
   private final ThumbnailLoader thumbnailLoader = new ThumbnailLoader();
+  private final BodyPrefetcher bodyPrefetcher = new BodyPrefetcher(
+      INDEX_KIND,
+      INDEX_THING_ID,
+      INDEX_BODY,
+      -1,
+      INDEX_THUMBNAIL_URL);
   private final OnThingViewClickListener listener;
 
   private String parentSubreddit;
@@ -82,6 +88,12 @@ public class ThingListAdapter extends AbstractThingListAdapter
     return singleChoice;
   }
 
+  @Override
+  public Cursor swapCursor(Cursor newCursor) {
+    bodyPrefetcher.reset();
+    return super.swapCursor(newCursor);
+  }
+
   @Override
   public void bindView(View v, Context ctx, Cursor c) {
     if (v instanceof ThingView) {
@@ -155,6 +167,8 @@ public class ThingListAdapter extends AbstractThingListAdapter
     tv.setThingViewOnClickListener(listener);
     setThingDetails(tv, kind);
     thumbnailLoader.setThumbnail(ctx, tv, thumbnailUrl);
+
+    bodyPrefetcher.prefetch(ctx, c, tv);
   }
 
   private void setThingDetails(ThingView tv, int kind) {
@@ -21,7 +21,6 @@ import android.text.Layout;
 import android.text.Layout.Alignment;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
-import android.text.StaticLayout;
 import android.text.TextPaint;
 import android.text.TextUtils;
 import android.text.TextUtils.TruncateAt;
@@ -39,6 +38,7 @@ import android.view.View;
 import com.btmura.android.reddit.BuildConfig;
 import com.btmura.android.reddit.R;
 import com.btmura.android.reddit.database.Kinds;
+import com.btmura.android.reddit.text.MarkdownCache;
 import com.btmura.android.reddit.text.MarkdownFormatter;
 import com.btmura.android.reddit.text.RelativeTime;
 import com.btmura.android.reddit.util.Strings;
@@ -162,7 +162,7 @@ public class ThingView extends CustomView implements OnGestureListener {
   private int rightHeight;
   private int minHeight;
 
-  /** Array of Formatters used for making quantity strings and relative times. */
+  /** Array of Formatters used for making quantity strings. */
   private java.util.Formatter[] formatters;
 
   /** Array of StringBuilder objects backing the array of Formatters. */
@@ -295,7 +295,7 @@ public class ThingView extends CustomView implements OnGestureListener {
       scoreText = VotingArrows.getScoreText(score);
     }
 
-    setBodyFields(body, isNew, formatter);
+    setBodyFields(thingId, body, isNew, formatter);
     setThumbnailFields(showThumbnail);
 
     if (nesting > 0) {
@@ -324,12 +324,15 @@ public class ThingView extends CustomView implements OnGestureListener {
   }
 
   private void setBodyFields(
+      String thingId,
       CharSequence body,
       boolean isNew,
       MarkdownFormatter formatter) {
     if (!TextUtils.isEmpty(body)) {
-      this.body = Strings.ellipsize(formatter.formatSpans(getContext(), body),
-          maxTextLength);
+      Context ctx = getContext();
+      CharSequence formatted = MarkdownCache.getInstance(ctx)
+          .formatSpans(ctx, thingId, body, formatter);
+      this.body = Strings.ellipsize(formatted, maxTextLength);
       if (bodyBounds == null) {
         bodyBounds = new RectF();
       }
@@ -403,7 +406,7 @@ public class ThingView extends CustomView implements OnGestureListener {
 
     if (createdUtc != 0) {
       statusText.append(
-          getRelativeTime(nowTimeMs, createdUtc, FORMATTER_STATUS));
+          RelativeTime.format(getResources(), nowTimeMs, createdUtc));
       statusText.append("  ");
     }
 
@@ -428,16 +431,6 @@ public class ThingView extends CustomView implements OnGestureListener {
     return formatterData[formatterIndex];
   }
 
-  private CharSequence getRelativeTime(
-      long nowTimeMs,
-      long createdUtc,
-      int formatterIndex) {
-    Resources r = getResources();
-    java.util.Formatter formatter = resetFormatter(formatterIndex, 15);
-    RelativeTime.format(r, formatter, nowTimeMs, createdUtc);
-    return formatterData[formatterIndex];
-  }
-
   private java.util.Formatter resetFormatter(int index, int expectedSize) {
     if (formatters == null) {
       formatterData = new StringBuilder[NUM_FORMATTERS];
@@ -451,6 +444,10 @@ public class ThingView extends CustomView implements OnGestureListener {
     return formatters[index];
   }
 
+  Bitmap getThumbnailBitmap() {
+    return thumbBitmap;
+  }
+
   public void setThumbnailBitmap(Bitmap bitmap, boolean animate) {
     BitmapShader currentShader = thumbShader;
     if (bitmap != null) {
@@ -524,7 +521,7 @@ public class ThingView extends CustomView implements OnGestureListener {
         break;
     }
 
-    int nestingIndent = getNestingIndent();
+    int nestingIndent = getNestingIndent(drawVotingArrows);
 
     // Total outer padding of left and right sides.
     // Also includes additional padding for nested comments.
@@ -563,16 +560,10 @@ public class ThingView extends CustomView implements OnGestureListener {
       numFittingDetails = 0;
     }
 
-    int leftGadgetWidth = 0;
-    if (drawVotingArrows) {
-      leftGadgetWidth += VotingArrows.getWidth(drawVotingArrows) + PADDING;
-      if (drawScore) {
-        VotingArrows.measureScoreText(scoreText, scoreBounds);
-      }
-    }
-    if (showThumbnail) {
-      leftGadgetWidth += Thumbnail.getWidth() + PADDING;
+    if (drawVotingArrows && drawScore) {
+      VotingArrows.measureScoreText(scoreText, scoreBounds);
     }
+    int leftGadgetWidth = getLeftGadgetWidth(drawVotingArrows, showThumbnail);
     titleWidth -= leftGadgetWidth;
 
     int statusWidth = contentWidth - leftGadgetWidth;
@@ -687,10 +678,62 @@ public class ThingView extends CustomView implements OnGestureListener {
     }
   }
 
-  private int getNestingIndent() {
+  /** Returns the left padding of other rows nested like comments. */
+  static int getNestingPadding(
+      Context ctx,
+      int nesting,
+      boolean drawVotingArrows) {
+    VotingArrows.init(ctx);
+    int padding = ctx.getResources().getDimensionPixelSize(R.dimen.padding);
+    int indent = padding + VotingArrows.getWidth(drawVotingArrows) / 2;
+    return padding + indent * nesting;
+  }
+
+  private static int getNestingIndent(boolean drawVotingArrows) {
     return PADDING + VotingArrows.getWidth(drawVotingArrows) / 2;
   }
 
+  private static int getLeftGadgetWidth(
+      boolean drawVotingArrows,
+      boolean showThumbnail) {
+    int width = 0;
+    if (drawVotingArrows) {
+      width += VotingArrows.getWidth(drawVotingArrows) + PADDING;
+    }
+    if (showThumbnail) {
+      width += Thumbnail.getWidth() + PADDING;
+    }
+    return width;
+  }
+
+  /**
+   * Returns the width that the body of a row with the given nesting and
+   * thumbnail will be laid out with, if it is like this view otherwise.
+   * Returns 0 if this view wasn't measured yet.
+   */
+  int getBodyWidth(int nesting, boolean showThumbnail) {
+    int measuredWidth = getMeasuredWidth();
+    if (measuredWidth == 0) {
+      return 0;
+    }
+    int outerPadding = getNestingIndent(drawVotingArrows) * nesting
+        + PADDING * 2;
+    int width = thingBodyWidth > 0
+        ? Math.min(measuredWidth, thingBodyWidth)
+        : measuredWidth;
+    width -= outerPadding + getLeftGadgetWidth(drawVotingArrows,
+        showThumbnail);
+    return Math.max(0, width);
+  }
+
+  TextPaint getBodyPaint() {
+    return TEXT_PAINTS[bodyPaint];
+  }
+
+  int getMaxTextLength() {
+    return maxTextLength;
+  }
+
   private boolean hasTopStatus() {
     return kind == Kinds.KIND_COMMENT;
   }
@@ -716,33 +759,36 @@ public class ThingView extends CustomView implements OnGestureListener {
         TEXT_PAINTS[linkTitlePaint],
         width,
         TruncateAt.END);
-    return makeStaticLayout(linkTitlePaint, truncated, width);
+    return getLayout(linkTitleLayout, linkTitlePaint, truncated, width);
   }
 
   private Layout createTitleLayout(int width) {
-    return makeStaticLayout(titlePaint, title, width);
+    return getLayout(titleLayout, titlePaint, title, width);
   }
 
   private Layout createBodyLayout(int width) {
-    return makeStaticLayout(bodyPaint, body, width);
+    return getLayout(bodyLayout, bodyPaint, body, width);
   }
 
-  private static Layout makeStaticLayout(
+  /** Returns the current layout if nothing changed since the last measure. */
+  private static Layout getLayout(
+      Layout current,
       int paint,
       CharSequence text,
       int width) {
-    return new StaticLayout(text,
-        TEXT_PAINTS[paint],
-        width,
-        Alignment.ALIGN_NORMAL,
-        1f,
-        0f,
-        true);
+    if (current != null
+        && current.getText() == text
+        && current.getPaint() == TEXT_PAINTS[paint]
+        && current.getWidth() == width) {
+      return current;
+    }
+    return LayoutCache.getInstance().get(text, TEXT_PAINTS[paint], width);
   }
 
   private BoringLayout createStatusLayout(int width) {
     TextPaint paint = TEXT_PAINTS[statusPaint];
-    statusMetrics = BoringLayout.isBoring(statusText, paint, statusMetrics);
+    statusMetrics = BoringMetricsCache.getInstance()
+        .isBoring(statusText, paint);
     if (statusLayout != null) {
       statusLayout = statusLayout.replaceOrMake(statusText,
           paint,
@@ -794,7 +840,8 @@ public class ThingView extends CustomView implements OnGestureListener {
         break;
 
       case DETAIL_TIMESTAMP:
-        makeDetailsLayout(index, getRelativeTime(nowTimeMs, createdUtc, index));
+        makeDetailsLayout(index,
+            RelativeTime.format(getResources(), nowTimeMs, createdUtc));
         break;
 
       case DETAIL_DESTINATION:
@@ -816,9 +863,9 @@ public class ThingView extends CustomView implements OnGestureListener {
       detailLayouts = new BoringLayout[MAX_INTERNAL_DETAILS];
     }
 
-    // Calculate the metrics and try to reuse the existing instance.
+    // Look up the metrics, since rows repeat the same details.
     TextPaint paint = TEXT_PAINTS[statusPaint];
-    detailMetrics[i] = BoringLayout.isBoring(text, paint, detailMetrics[i]);
+    detailMetrics[i] = BoringMetricsCache.getInstance().isBoring(text, paint);
 
     // Create the layout and try to reuse the existing layout.
     if (detailLayouts[i] != null) {
@@ -869,7 +916,7 @@ public class ThingView extends CustomView implements OnGestureListener {
       c.translate(-dx - DETAILS_CELL_WIDTH * numFittingDetails, 0);
     }
 
-    int nestingIndent = getNestingIndent();
+    int nestingIndent = getNestingIndent(drawVotingArrows);
     c.translate(nestingIndent * nesting + PADDING, PADDING);
 
     if (hasLinkTitle()) {
@@ -1014,7 +1061,7 @@ public class ThingView extends CustomView implements OnGestureListener {
   }
 
   private float getLeftOffset() {
-    return getNestingIndent() * nesting;
+    return getNestingIndent(drawVotingArrows) * nesting;
   }
 
   @Override
@@ -0,0 +1,349 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.content.Context;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.btmura.android.reddit.util.Strings;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * {@link ThumbnailDiskCache} is a size bounded disk cache of encoded
+ * thumbnails keyed by a hash of their URL. A journal of writes, reads and
+ * deletes keeps the least recently used order across process restarts.
+ */
+class ThumbnailDiskCache {
+
+  private static final String TAG = "ThumbnailDiskCache";
+
+  private static final String DIRECTORY = "thumbnails";
+  private static final long MAX_SIZE = 8 * 1024 * 1024;
+
+  static final String JOURNAL = "journal";
+  private static final String JOURNAL_TEMP = "journal.tmp";
+  private static final String SUFFIX_TEMP = ".tmp";
+
+  private static final char OP_PUT = 'P';
+  private static final char OP_READ = 'R';
+  private static final char OP_DELETE = 'D';
+
+  /** Rewrite the journal once it has this many lines more than entries. */
+  private static final int MAX_REDUNDANT_OPS = 2000;
+
+  private static ThumbnailDiskCache INSTANCE;
+
+  static ThumbnailDiskCache getInstance(Context ctx) {
+    synchronized (ThumbnailDiskCache.class) {
+      if (INSTANCE == null) {
+        File dir = new File(ctx.getApplicationContext().getCacheDir(),
+            DIRECTORY);
+        INSTANCE = new ThumbnailDiskCache(dir, MAX_SIZE);
+      }
+      return INSTANCE;
+    }
+  }
+
+  private final File dir;
+  private final long maxSize;
+
+  /** Sizes of the entries by key from least to most recently used. */
+  private final LinkedHashMap<String, Long> sizes =
+      new LinkedHashMap<String, Long>(16, 0.75f, true);
+  private long size;
+  private int opCount;
+  private Writer journal;
+
+  /** Whether temporary files left over by another process were deleted. */
+  private boolean cleanedTempFiles;
+
+  ThumbnailDiskCache(File dir, long maxSize) {
+    this.dir = dir;
+    this.maxSize = maxSize;
+  }
+
+  /** Returns the encoded thumbnail or null if it is not in the cache. */
+  @Nullable
+  byte[] get(String url) {
+    String key = key(url);
+    synchronized (this) {
+      if (!open() || !sizes.containsKey(key)) {
+        return null;
+      }
+      sizes.get(key); // Mark as recently used.
+      appendJournal(OP_READ, key, -1);
+    }
+
+    // Read outside the lock since a file deleted while reading stays readable.
+    try {
+      return readFully(new FileInputStream(new File(dir, key)));
+    } catch (IOException e) {
+      synchronized (this) {
+        remove(key);
+      }
+      return null;
+    }
+  }
+
+  /** Stores the encoded thumbnail and evicts the least recently used. */
+  void put(String url, byte[] data) {
+    if (data.length > maxSize / 8) {
+      return;
+    }
+    String key = key(url);
+    try {
+      synchronized (this) {
+        if (!open()) {
+          return;
+        }
+      }
+
+      File temp = File.createTempFile(key, SUFFIX_TEMP, dir);
+      OutputStream out = new FileOutputStream(temp);
+      try {
+        out.write(data);
+      } finally {
+        out.close();
+      }
+
+      synchronized (this) {
+        // The cache might have been closed while writing.
+        if (!open() || !temp.renameTo(new File(dir, key))) {
+          temp.delete();
+          return;
+        }
+        Long oldSize = sizes.put(key, (long) data.length);
+        size += data.length - (oldSize != null ? oldSize : 0);
+        appendJournal(OP_PUT, key, data.length);
+        trim();
+      }
+    } catch (IOException e) {
+      Log.e(TAG, e.getMessage(), e);
+    }
+  }
+
+  /** Returns the total size of the cached thumbnails. */
+  synchronized long size() {
+    return open() ? size : 0;
+  }
+
+  /** Closes the journal. The cache opens it again when used. */
+  synchronized void close() {
+    if (journal != null) {
+      try {
+        journal.close();
+      } catch (IOException e) {
+        Log.e(TAG, e.getMessage(), e);
+      }
+      journal = null;
+    }
+  }
+
+  /** Reads the journal on first use and returns false if that failed. */
+  private boolean open() {
+    if (journal != null) {
+      return true;
+    }
+    if (!dir.isDirectory() && !dir.mkdirs()) {
+      return false;
+    }
+    sizes.clear();
+    size = 0;
+    opCount = 0;
+    readJournal();
+
+    // Delete files that were written but not journaled or left over. Only
+    // delete temporary files the first time, since after that they might be
+    // ones that puts are still writing.
+    Set<String> names = new HashSet<String>(sizes.keySet());
+    names.add(JOURNAL);
+    File[] files = dir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        String name = file.getName();
+        if (!names.contains(name)
+            && (!cleanedTempFiles || !name.endsWith(SUFFIX_TEMP))) {
+          file.delete();
+        }
+      }
+    }
+    cleanedTempFiles = true;
+
+    try {
+      rewriteJournal();
+      return true;
+    } catch (IOException e) {
+      Log.e(TAG, e.getMessage(), e);
+      return false;
+    }
+  }
+
+  private void readJournal() {
+    File file = new File(dir, JOURNAL);
+    if (!file.exists()) {
+      return;
+    }
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new FileReader(file));
+      for (String line; (line = reader.readLine()) != null; ) {
+        String[] parts = line.split(" ");
+        if (parts.length < 2 || parts[0].length() != 1) {
+          continue; // Partially written line from a crash.
+        }
+        String key = parts[1];
+        switch (parts[0].charAt(0)) {
+          case OP_PUT:
+            if (parts.length == 3) {
+              long entrySize = Long.parseLong(parts[2]);
+              Long oldSize = sizes.put(key, entrySize);
+              size += entrySize - (oldSize != null ? oldSize : 0);
+            }
+            break;
+
+          case OP_READ:
+            sizes.get(key);
+            break;
+
+          case OP_DELETE:
+            Long removedSize = sizes.remove(key);
+            size -= removedSize != null ? removedSize : 0;
+            break;
+        }
+      }
+    } catch (IOException e) {
+      Log.e(TAG, e.getMessage(), e);
+    } catch (NumberFormatException e) {
+      Log.e(TAG, e.getMessage(), e);
+    } finally {
+      if (reader != null) {
+        try {
+          reader.close();
+        } catch (IOException e) {
+          Log.e(TAG, e.getMessage(), e);
+        }
+      }
+    }
+
+    // Drop entries whose files are gone like after the system cleared them.
+    Iterator<Map.Entry<String, Long>> i = sizes.entrySet().iterator();
+    while (i.hasNext()) {
+      Map.Entry<String, Long> e = i.next();
+      if (!new File(dir, e.getKey()).exists()) {
+        size -= e.getValue();
+        i.remove();
+      }
+    }
+  }
+
+  /** Writes a journal with only the current entries in LRU order. */
+  private void rewriteJournal() throws IOException {
+    close();
+    File temp = new File(dir, JOURNAL_TEMP);
+    Writer writer = new BufferedWriter(new FileWriter(temp));
+    try {
+      for (Map.Entry<String, Long> e : sizes.entrySet()) {
+        writer.write(OP_PUT + " " + e.getKey() + " " + e.getValue() + "\n");
+      }
+    } finally {
+      writer.close();
+    }
+    if (!temp.renameTo(new File(dir, JOURNAL))) {
+      throw new IOException("rename failed: " + temp);
+    }
+    journal = new BufferedWriter(new FileWriter(new File(dir, JOURNAL), true));
+    opCount = 0;
+  }
+
+  private void appendJournal(char op, String key, long entrySize) {
+    try {
+      journal.write(op + " " + key
+          + (entrySize >= 0 ? " " + entrySize : "") + "\n");
+      // Leave reads buffered to keep disk writes off of gets. They are
+      // flushed with the next put or delete or when closing, and losing
+      // them only makes the order a little less recent.
+      if (op != OP_READ) {
+        journal.flush();
+      }
+      if (++opCount >= MAX_REDUNDANT_OPS + sizes.size()) {
+        rewriteJournal();
+      }
+    } catch (IOException e) {
+      Log.e(TAG, e.getMessage(), e);
+    }
+  }
+
+  private void trim() {
+    Iterator<Map.Entry<String, Long>> i = sizes.entrySet().iterator();
+    while (size > maxSize && i.hasNext()) {
+      Map.Entry<String, Long> e = i.next();
+      i.remove();
+      deleteFile(e.getKey(), e.getValue());
+    }
+  }
+
+  private void remove(String key) {
+    Long entrySize = sizes.remove(key);
+    if (entrySize != null) {
+      deleteFile(key, entrySize);
+    }
+  }
+
+  private void deleteFile(String key, long entrySize) {
+    new File(dir, key).delete();
+    size -= entrySize;
+    if (journal != null) {
+      appendJournal(OP_DELETE, key, -1);
+    }
+  }
+
+  private static byte[] readFully(InputStream in) throws IOException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      for (int read; (read = in.read(buffer)) != -1; ) {
+        out.write(buffer, 0, read);
+      }
+      return out.toByteArray();
+    } finally {
+      in.close();
+    }
+  }
+
+  static String key(String url) {
+    return Strings.toMd5Hex(url);
+  }
+
+}
@@ -16,25 +16,33 @@
 
 package com.btmura.android.reddit.widget;
 
+import android.annotation.TargetApi;
+import android.app.ActivityManager;
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Bitmap.Config;
 import android.graphics.BitmapFactory;
 import android.os.AsyncTask;
-import android.os.SystemClock;
+import android.os.Build;
 import android.text.TextUtils;
-import android.util.DisplayMetrics;
 import android.util.Log;
 import android.util.LruCache;
 
 import com.btmura.android.reddit.BuildConfig;
-import com.btmura.android.reddit.R;
+import com.btmura.android.reddit.net.HttpTransport;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.ref.WeakReference;
 import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class ThumbnailLoader {
@@ -43,150 +51,413 @@ public class ThumbnailLoader {
 
   private static final boolean DEBUG = BuildConfig.DEBUG && !true;
 
-  private static final int LOCK_WAIT_TIME_MS = 250;
-
   private static final AtomicInteger taskIdCounter = DEBUG ? new AtomicInteger() : null;
 
-  private static volatile boolean locked = false;
+  /** Tasks loading thumbnails by URL. Only accessed on the main thread. */
+  private static final HashMap<String, LoadThumbnailTask> IN_FLIGHT =
+      new HashMap<String, LoadThumbnailTask>();
 
+  /** Pauses loading thumbnails like while the list is flung. */
   public static void lock(boolean lock) {
-    locked = lock;
+    ImageExecutor.getInstance().pause(lock);
+  }
+
+  /**
+   * Decodes opaque thumbnails like JPEGs with {@link Config#RGB_565} to halve
+   * their memory at the cost of some color banding. It is on by default for
+   * low RAM devices.
+   */
+  public static void setOpaqueRgb565(Context context, boolean enabled) {
+    BitmapCache.getInstance(context).setOpaqueRgb565(enabled);
+  }
+
+  /** Cancels loading the thumbnail of a view that scrolled off screen. */
+  public static void cancel(ThingView v) {
+    if (v.getTag() instanceof LoadThumbnailTask) {
+      clearLoadThumbnailTask(v);
+      ImageExecutor.getInstance().purge();
+    }
   }
 
   public void setThumbnail(Context ctx, ThingView v, String url) {
     if (!TextUtils.isEmpty(url)) {
+      ThumbnailPrefetcher.onShown(url);
       Bitmap b = BitmapCache.getInstance(ctx).get(url);
-      v.setThumbnailBitmap(b, false);
+      setThumbnailBitmap(ctx, v, b, false);
       if (b != null) {
         clearLoadThumbnailTask(v);
       } else {
         LoadThumbnailTask task = (LoadThumbnailTask) v.getTag();
         if (task == null || !url.equals(task.url)) {
+          clearLoadThumbnailTask(v);
+
+          // Share the download with other views showing the same thumbnail.
+          task = IN_FLIGHT.get(url);
           if (task != null) {
-            task.cancel(true);
+            task.promote();
+          } else {
+            task = new LoadThumbnailTask(ctx, url, false);
+            task.start(ImageExecutor.getInstance());
           }
-          task = new LoadThumbnailTask(ctx, v, url);
+          task.addWaiter(v);
           v.setTag(task);
-          task.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
         }
       }
     } else {
-      v.setThumbnailBitmap(null, false);
+      setThumbnailBitmap(ctx, v, null, false);
       clearLoadThumbnailTask(v);
     }
   }
 
-  private void clearLoadThumbnailTask(ThingView v) {
+  /**
+   * Loads a thumbnail into the caches before any view shows it. Returns
+   * false if it is already cached or loading.
+   */
+  static boolean prefetch(Context ctx, String url) {
+    if (IN_FLIGHT.containsKey(url)
+        || BitmapCache.getInstance(ctx).get(url) != null) {
+      return false;
+    }
+    new LoadThumbnailTask(ctx, url, true).start(
+        ImageExecutor.getInstance().getPrefetchExecutor());
+    return true;
+  }
+
+  /** Sets the view's bitmap and tracks which bitmaps are on screen. */
+  private static void setThumbnailBitmap(Context ctx, ThingView v, Bitmap b,
+      boolean animate) {
+    Bitmap oldBitmap = v.getThumbnailBitmap();
+    if (oldBitmap != b) {
+      BitmapCache cache = BitmapCache.getInstance(ctx);
+      cache.onDisplayed(b);
+      cache.onHidden(oldBitmap);
+    }
+    v.setThumbnailBitmap(b, animate);
+  }
+
+  /**
+   * Returns the largest power of two to sample an image by that keeps it at
+   * least as large as the requested size.
+   */
+  static int getSampleSize(int width, int height, int reqWidth,
+      int reqHeight) {
+    int sampleSize = 1;
+    if (reqWidth > 0 && reqHeight > 0) {
+      while (width / (sampleSize * 2) >= reqWidth
+          && height / (sampleSize * 2) >= reqHeight) {
+        sampleSize *= 2;
+      }
+    }
+    return sampleSize;
+  }
+
+  /** Returns the size of a side after sampling, rounded up like decoders. */
+  private static int ceilDiv(int size, int sampleSize) {
+    return (size + sampleSize - 1) / sampleSize;
+  }
+
+  private static void clearLoadThumbnailTask(ThingView v) {
     LoadThumbnailTask task = (LoadThumbnailTask) v.getTag();
     if (task != null) {
-      task.cancel(true);
+      task.removeWaiter(v);
       v.setTag(null);
     }
   }
 
-  class LoadThumbnailTask extends AsyncTask<Void, Void, Bitmap> {
+  /**
+   * {@link LoadThumbnailTask} loads one URL for all the views waiting on it.
+   * Its waiters are only accessed on the main thread.
+   */
+  static class LoadThumbnailTask extends AsyncTask<Void, Void, Bitmap> {
 
     private final Context context;
     private final int taskId;
-    private final WeakReference<ThingView> ref;
     private final String url;
+    private final boolean prefetch;
+    private final ArrayList<WeakReference<ThingView>> waiters =
+        new ArrayList<WeakReference<ThingView>>(1);
+    private Runnable runnable;
 
-    LoadThumbnailTask(Context context, ThingView v, String url) {
+    LoadThumbnailTask(Context context, String url, boolean prefetch) {
       this.context = context.getApplicationContext();
       this.taskId = taskIdCounter != null ? taskIdCounter.getAndIncrement() : -1;
-      this.ref = new WeakReference<ThingView>(v);
       this.url = url;
+      this.prefetch = prefetch;
+    }
+
+    void start(final Executor executor) {
+      IN_FLIGHT.put(url, this);
+      executeOnExecutor(new Executor() {
+        @Override
+        public void execute(Runnable task) {
+          runnable = task;
+          executor.execute(task);
+        }
+      });
+    }
+
+    /** Moves a prefetch a view is now waiting on ahead of other prefetches. */
+    void promote() {
+      if (prefetch && runnable != null) {
+        ImageExecutor.getInstance().promote(runnable);
+      }
+    }
+
+    void addWaiter(ThingView v) {
+      waiters.add(new WeakReference<ThingView>(v));
+    }
+
+    /** Removes the view and cancels the task if no other view waits. */
+    void removeWaiter(ThingView v) {
+      Iterator<WeakReference<ThingView>> i = waiters.iterator();
+      while (i.hasNext()) {
+        ThingView waiter = i.next().get();
+        if (waiter == null || waiter == v) {
+          i.remove();
+        }
+      }
+
+      // Prefetches keep going, since they were wanted without any view.
+      if (waiters.isEmpty() && !prefetch) {
+        cancel(true);
+        if (IN_FLIGHT.get(url) == this) {
+          IN_FLIGHT.remove(url);
+        }
+      }
     }
 
     @Override
     protected Bitmap doInBackground(Void... params) {
-      while (locked) {
+      // Check the disk first, so thumbnails survive restarts and evictions.
+      ThumbnailDiskCache diskCache = ThumbnailDiskCache.getInstance(context);
+      byte[] data = diskCache.get(url);
+      boolean downloaded = data == null;
+      if (downloaded) {
+        data = download();
+        if (data == null) {
+          return null;
+        }
+      }
+      if (isCancelled()) {
         if (DEBUG) {
-          Log.d(TAG, taskId + ": locked");
+          Log.d(TAG, taskId + ": cancelled(3)");
         }
-        SystemClock.sleep(LOCK_WAIT_TIME_MS);
-        if (isCancelled()) {
-          if (DEBUG) {
-            Log.d(TAG, taskId + ": cancelled(1)");
-          }
-          return null;
+        return null;
+      }
+
+      Bitmap b = decode(data);
+      if (b != null && downloaded) {
+        diskCache.put(url, data);
+      }
+      return b;
+    }
+
+    /**
+     * Decodes the thumbnail no larger than needed for the view. The shader
+     * scales it to the thumbnail size, so density scaling isn't needed.
+     */
+    private Bitmap decode(byte[] data) {
+      BitmapFactory.Options options = new BitmapFactory.Options();
+      options.inJustDecodeBounds = true;
+      BitmapFactory.decodeByteArray(data, 0, data.length, options);
+      if (options.outWidth <= 0 || options.outHeight <= 0) {
+        return null;
+      }
+
+      options.inJustDecodeBounds = false;
+      options.inSampleSize = getSampleSize(options.outWidth,
+          options.outHeight, Thumbnail.getWidth(), Thumbnail.getHeight());
+      BitmapCache cache = BitmapCache.getInstance(context);
+      options.inPreferredConfig = cache.isOpaqueRgb565()
+          && "image/jpeg".equals(options.outMimeType)
+          ? Config.RGB_565
+          : Config.ARGB_8888;
+      options.inMutable = true;
+
+      // Before KitKat, only bitmaps of the exact same size can be reused and
+      // only when not sampling. Since KitKat, any bitmap large enough can be.
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+        int width = ceilDiv(options.outWidth, options.inSampleSize);
+        int height = ceilDiv(options.outHeight, options.inSampleSize);
+        options.inBitmap = cache.getPool().getAtLeast(width * height
+            * BitmapPool.getBytesPerPixel(options.inPreferredConfig));
+      } else if (options.inSampleSize == 1) {
+        options.inBitmap = cache.getPool().get(options.outWidth,
+            options.outHeight, options.inPreferredConfig);
+      }
+      if (options.inBitmap != null) {
+        try {
+          return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        } catch (IllegalArgumentException e) {
+          options.inBitmap = null;
         }
       }
+      return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
 
+    /** Returns the encoded thumbnail or null if it failed or was cancelled. */
+    private byte[] download() {
+      HttpTransport transport = HttpTransport.getInstance();
       HttpURLConnection conn = null;
       try {
-        URL u = new URL(url);
-        conn = (HttpURLConnection) u.openConnection();
+        conn = transport.open(url);
         if (isCancelled()) {
           if (DEBUG) {
-            Log.d(TAG, taskId + ": cancelled(2)");
+            Log.d(TAG, taskId + ": cancelled(1)");
           }
           return null;
         }
 
         InputStream is = null;
         try {
-          is = conn.getInputStream();
+          is = transport.getInputStream(conn);
           if (isCancelled()) {
             if (DEBUG) {
-              Log.d(TAG, taskId + ": cancelled(3)");
+              Log.d(TAG, taskId + ": cancelled(2)");
             }
             return null;
           }
 
-          BitmapFactory.Options options = new BitmapFactory.Options();
-          options.inScaled = true;
-          options.inDensity = DisplayMetrics.DENSITY_MEDIUM;
-          options.inTargetDensity = context.getResources().getDisplayMetrics().densityDpi;
-          return BitmapFactory.decodeStream(is, null, options);
+          ByteArrayOutputStream out = new ByteArrayOutputStream();
+          byte[] buffer = new byte[8192];
+          for (int read; (read = is.read(buffer)) != -1; ) {
+            out.write(buffer, 0, read);
+          }
+          return out.toByteArray();
         } finally {
           if (is != null) {
             is.close();
           }
         }
 
-      } catch (MalformedURLException e) {
-        Log.e(TAG, e.getMessage(), e);
       } catch (IOException e) {
         Log.e(TAG, e.getMessage(), e);
       } finally {
-        if (conn != null) {
-          conn.disconnect();
-        }
+        transport.release(conn);
       }
       return null;
     }
 
     @Override
     protected void onPostExecute(Bitmap b) {
-      if (b != null) {
-        BitmapCache.getInstance(context).put(url, b);
+      if (IN_FLIGHT.get(url) == this) {
+        IN_FLIGHT.remove(url);
       }
-      ThingView v = ref.get();
-      if (v != null && equals(v.getTag())) {
-        if (b != null) {
-          v.setThumbnailBitmap(b, true);
+
+      // Display before caching, so the bitmap isn't pooled if it's evicted.
+      for (WeakReference<ThingView> ref : waiters) {
+        ThingView v = ref.get();
+        if (v != null && equals(v.getTag())) {
+          if (b != null) {
+            setThumbnailBitmap(context, v, b, true);
+          }
+          v.setTag(null);
         }
-        v.setTag(null);
+      }
+      waiters.clear();
+      if (b != null) {
+        BitmapCache.getInstance(context).put(url, b);
       }
     }
   }
 
+  /**
+   * {@link BitmapCache} is sized in bytes from the memory class. Evicted
+   * bitmaps go to a {@link BitmapPool} once no view displays them. Only
+   * accessed on the main thread except for the pool.
+   */
   static class BitmapCache extends LruCache<String, Bitmap> {
 
     private static BitmapCache BITMAP_CACHE;
 
     static BitmapCache getInstance(Context context) {
-      if (BITMAP_CACHE == null) {
-        int cacheSize = context.getResources().getInteger(
-            R.integer.bitmap_cache_size);
-        BITMAP_CACHE = new BitmapCache(cacheSize);
+      // Decoding threads get the pool through here too.
+      synchronized (BitmapCache.class) {
+        if (BITMAP_CACHE == null) {
+          ActivityManager am = (ActivityManager)
+              context.getSystemService(Context.ACTIVITY_SERVICE);
+          int maxBytes = am.getMemoryClass() * 1024 * 1024 / 8;
+          BITMAP_CACHE = new BitmapCache(maxBytes,
+              new BitmapPool(maxBytes / 4));
+          BITMAP_CACHE.setOpaqueRgb565(isLowRamDevice(am));
+        }
+        return BITMAP_CACHE;
+      }
+    }
+
+    private static boolean isLowRamDevice(ActivityManager am) {
+      return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+          && isLowRamDeviceKitKat(am);
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static boolean isLowRamDeviceKitKat(ActivityManager am) {
+      return am.isLowRamDevice();
+    }
+
+    private final BitmapPool pool;
+    private volatile boolean opaqueRgb565;
+
+    // Weak, so bitmaps of views that were destroyed can still be collected.
+    private final WeakHashMap<Bitmap, Integer> displayCounts =
+        new WeakHashMap<Bitmap, Integer>();
+    private final Set<Bitmap> evictedWhileDisplayed =
+        Collections.newSetFromMap(new WeakHashMap<Bitmap, Boolean>());
+
+    BitmapCache(int maxBytes, BitmapPool pool) {
+      super(maxBytes);
+      this.pool = pool;
+    }
+
+    BitmapPool getPool() {
+      return pool;
+    }
+
+    boolean isOpaqueRgb565() {
+      return opaqueRgb565;
+    }
+
+    void setOpaqueRgb565(boolean enabled) {
+      opaqueRgb565 = enabled;
+    }
+
+    void onDisplayed(Bitmap b) {
+      if (b != null) {
+        Integer count = displayCounts.get(b);
+        displayCounts.put(b, count != null ? count + 1 : 1);
+      }
+    }
+
+    void onHidden(Bitmap b) {
+      if (b != null) {
+        Integer count = displayCounts.get(b);
+        if (count != null && count > 1) {
+          displayCounts.put(b, count - 1);
+        } else {
+          displayCounts.remove(b);
+          if (evictedWhileDisplayed.remove(b)) {
+            pool.put(b);
+          }
+        }
       }
-      return BITMAP_CACHE;
     }
 
-    BitmapCache(int size) {
-      super(size);
+    @Override
+    protected int sizeOf(String key, Bitmap value) {
+      return BitmapPool.getByteCount(value);
+    }
+
+    @Override
+    protected void entryRemoved(boolean evicted, String key, Bitmap oldValue,
+        Bitmap newValue) {
+      if (oldValue == newValue) {
+        return;
+      }
+      if (displayCounts.containsKey(oldValue)) {
+        evictedWhileDisplayed.add(oldValue);
+      } else {
+        pool.put(oldValue);
+      }
     }
   }
 
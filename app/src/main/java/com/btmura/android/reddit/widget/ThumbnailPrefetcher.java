@@ -0,0 +1,135 @@
+/*
+ * Copyright (C) 2016 Brian Muramatsu
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.btmura.android.reddit.widget;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ThumbnailPrefetcher} loads thumbnails of rows that haven't been
+ * shown yet into the memory and disk caches, so they are ready by the time
+ * the user scrolls to them. How many it loads depends on the connection and
+ * how many of the thumbnails it loaded were actually shown.
+ */
+public class ThumbnailPrefetcher {
+
+  /** Depth when the connection is unmetered like Wi-Fi. */
+  static final int UNMETERED_DEPTH = 25;
+
+  /** Depth when the connection is metered like mobile data. */
+  static final int METERED_DEPTH = 8;
+
+  /** Number of prefetches to see before trusting the hit rate. */
+  static final int MIN_SAMPLES = 20;
+
+  /** Number of prefetched URLs to remember when checking for hits. */
+  private static final int MAX_PENDING = 256;
+
+  private static final LinkedHashMap<String, Boolean> PENDING =
+      new LinkedHashMap<String, Boolean>(16, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> e) {
+          return size() > MAX_PENDING;
+        }
+      };
+
+  private static int prefetchCount;
+  private static int hitCount;
+
+  /**
+   * Returns how many thumbnails to prefetch after a page is loaded or 0 if
+   * there is no connection.
+   */
+  public static int getDepth(Context ctx) {
+    ConnectivityManager cm = (ConnectivityManager)
+        ctx.getSystemService(Context.CONNECTIVITY_SERVICE);
+    NetworkInfo info = cm.getActiveNetworkInfo();
+    if (info == null || !info.isConnected()) {
+      return 0;
+    }
+    int type = info.getType();
+    boolean unmetered = type == ConnectivityManager.TYPE_WIFI
+        || type == ConnectivityManager.TYPE_ETHERNET;
+    synchronized (PENDING) {
+      return getDepth(unmetered, prefetchCount, hitCount);
+    }
+  }
+
+  /**
+   * Scales the depth for the connection by the fraction of prefetched
+   * thumbnails that were shown, doubled so half being shown is enough for
+   * the full depth, but never below a quarter of it.
+   */
+  static int getDepth(boolean unmetered, int prefetchCount, int hitCount) {
+    int depth = unmetered ? UNMETERED_DEPTH : METERED_DEPTH;
+    if (prefetchCount < MIN_SAMPLES) {
+      return depth;
+    }
+    int scaled = (int) ((long) depth * hitCount * 2 / prefetchCount);
+    return Math.max(depth / 4, Math.min(depth, scaled));
+  }
+
+  /** Queues the thumbnails to load after rows being shown. */
+  public static void prefetch(Context ctx, final List<String> urls) {
+    final Context appContext = ctx.getApplicationContext();
+    new Handler(Looper.getMainLooper()).post(new Runnable() {
+      @Override
+      public void run() {
+        for (String url : urls) {
+          if (!TextUtils.isEmpty(url) && !isPending(url)
+              && ThumbnailLoader.prefetch(appContext, url)) {
+            onPrefetch(url);
+          }
+        }
+      }
+    });
+  }
+
+  private static boolean isPending(String url) {
+    synchronized (PENDING) {
+      return PENDING.containsKey(url);
+    }
+  }
+
+  private static void onPrefetch(String url) {
+    synchronized (PENDING) {
+      PENDING.put(url, Boolean.TRUE);
+      if (++prefetchCount > MAX_PENDING) {
+        // Halve both, so the hit rate follows recent listings.
+        prefetchCount /= 2;
+        hitCount /= 2;
+      }
+    }
+  }
+
+  /** Records that a thumbnail is being shown. */
+  static void onShown(String url) {
+    synchronized (PENDING) {
+      if (PENDING.remove(url) != null) {
+        hitCount++;
+      }
+    }
+  }
+}